@@ -0,0 +1,333 @@
+package edu.vandy.recommender.movies;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * This class matches a text against a set of search queries in a
+ * single pass using an Aho-Corasick automaton built over the
+ * case-folded queries.  A text matches a query if it contains the
+ * query, ignoring case, which is the same as {@code
+ * text.toLowerCase().contains(query.toLowerCase())}.
+ *
+ * The cost of matching a text is proportional to its length plus the
+ * number of query occurrences reported, regardless of how many
+ * queries there are, so filtering a catalog of titles costs
+ * O(catalog size) rather than O(catalog size * number of queries).
+ * A matcher is cheap enough to build per request and is immutable,
+ * so it can be shared by parallel streams once built.
+ *
+ * This class is duplicated in the assignment2c {@code common}
+ * module because each assignment is a standalone build, so a change
+ * to one copy must also be made to the other.
+ */
+public class AhoCorasickMatcher {
+    /**
+     * The root node of the automaton.
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * Marks a missing transition, output, or dictionary link.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The number of distinct non-empty folded queries.
+     */
+    private final int mQueryCount;
+
+    /**
+     * True if one of the queries is empty, which every text contains.
+     */
+    private final boolean mHasEmptyQuery;
+
+    /**
+     * The failure link of each node, i.e., the node for the longest
+     * proper suffix of its path that's also a path in the trie.
+     */
+    private final int[] mFail;
+
+    /**
+     * The index of the query that ends at each node, or {@link #NONE}.
+     */
+    private final int[] mOutput;
+
+    /**
+     * The nearest node on the failure chain of each node at which a
+     * query ends, or {@link #NONE}.
+     */
+    private final int[] mDictionaryLink;
+
+    /**
+     * The keys of the open-addressing transition table, which pack a
+     * node and a character into a {@code long}.
+     */
+    private final long[] mKeys;
+
+    /**
+     * The target node of each transition in {@link #mKeys}.
+     */
+    private final int[] mTargets;
+
+    /**
+     * Build a matcher for the given {@code queries}.
+     *
+     * @param queries The search queries, which may contain duplicates
+     */
+    public AhoCorasickMatcher(Collection<String> queries) {
+        // Build the trie of the folded queries, recording the parent
+        // and incoming character of each node.
+        var edges = new HashMap<Long, Integer>();
+        var parents = new IntList();
+        var chars = new StringBuilder();
+        var outputs = new IntList();
+        parents.add(NONE);
+        chars.append('\0');
+        outputs.add(NONE);
+
+        int queryCount = 0;
+        boolean hasEmptyQuery = false;
+
+        for (String query : queries) {
+            String folded = fold(query);
+            if (folded.isEmpty()) {
+                hasEmptyQuery = true;
+                continue;
+            }
+
+            int node = ROOT;
+            for (int i = 0; i < folded.length(); i++) {
+                char c = folded.charAt(i);
+                Integer child = edges.get(key(node, c));
+                if (child == null) {
+                    child = parents.size();
+                    edges.put(key(node, c), child);
+                    parents.add(node);
+                    chars.append(c);
+                    outputs.add(NONE);
+                }
+                node = child;
+            }
+
+            // Duplicate queries share the same output.
+            if (outputs.get(node) == NONE)
+                outputs.set(node, queryCount++);
+        }
+
+        mQueryCount = queryCount;
+        mHasEmptyQuery = hasEmptyQuery;
+        mOutput = outputs.toArray();
+
+        // Pack the transitions into an open-addressing table with a
+        // load factor of at most 1/2.
+        int capacity = Integer.highestOneBit(Math.max(1, edges.size()) * 2) * 2;
+        mKeys = new long[capacity];
+        mTargets = new int[capacity];
+        Arrays.fill(mTargets, NONE);
+        edges.forEach(this::putTransition);
+
+        // Compute the failure and dictionary links in breadth-first
+        // order, so the links of shallower nodes are always known.
+        int nodes = mOutput.length;
+        mFail = new int[nodes];
+        mDictionaryLink = new int[nodes];
+        mDictionaryLink[ROOT] = NONE;
+
+        for (int node : breadthFirstOrder(parents)) {
+            int parent = parents.get(node);
+            char c = chars.charAt(node);
+            int fail = ROOT;
+
+            if (parent != ROOT) {
+                int state = mFail[parent];
+                while (state != ROOT && transition(state, c) == NONE)
+                    state = mFail[state];
+                int target = transition(state, c);
+                fail = target == NONE ? ROOT : target;
+            }
+
+            mFail[node] = fail;
+            mDictionaryLink[node] = mOutput[fail] != NONE
+                ? fail
+                : mDictionaryLink[fail];
+        }
+    }
+
+    /**
+     * @param text The text to match
+     * @return True if the {@code text} contains at least one of the
+     *         queries, ignoring case
+     */
+    public boolean matchesAny(String text) {
+        if (mHasEmptyQuery)
+            return true;
+        if (mQueryCount == 0)
+            return false;
+
+        String folded = fold(text);
+        int state = ROOT;
+        for (int i = 0; i < folded.length(); i++) {
+            state = next(state, folded.charAt(i));
+            if (mOutput[state] != NONE || mDictionaryLink[state] != NONE)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param text The text to match
+     * @return True if the {@code text} contains all the queries,
+     *         ignoring case
+     */
+    public boolean matchesAll(String text) {
+        if (mQueryCount == 0)
+            return true;
+
+        var found = new BitSet(mQueryCount);
+        int remaining = mQueryCount;
+
+        String folded = fold(text);
+        int state = ROOT;
+        for (int i = 0; i < folded.length(); i++) {
+            state = next(state, folded.charAt(i));
+
+            // Report every query ending at this position.
+            for (int node = mOutput[state] != NONE
+                     ? state
+                     : mDictionaryLink[state];
+                 node != NONE;
+                 node = mDictionaryLink[node])
+                if (!found.get(mOutput[node])) {
+                    found.set(mOutput[node]);
+                    if (--remaining == 0)
+                        return true;
+                }
+        }
+        return false;
+    }
+
+    /**
+     * @return The state reached from {@code state} on character
+     *         {@code c}, following failure links as needed
+     */
+    private int next(int state, char c) {
+        int target;
+        while ((target = transition(state, c)) == NONE && state != ROOT)
+            state = mFail[state];
+        return target == NONE ? ROOT : target;
+    }
+
+    /**
+     * @return The child of {@code node} on character {@code c}, or
+     *         {@link #NONE} if there is none
+     */
+    private int transition(int node, char c) {
+        long key = key(node, c);
+        int mask = mKeys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (mTargets[slot] == NONE)
+                return NONE;
+            if (mKeys[slot] == key)
+                return mTargets[slot];
+        }
+    }
+
+    /**
+     * Add the transition with the packed {@code key} to the table.
+     */
+    private void putTransition(long key, int target) {
+        int mask = mKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (mTargets[slot] != NONE)
+            slot = (slot + 1) & mask;
+        mKeys[slot] = key;
+        mTargets[slot] = target;
+    }
+
+    /**
+     * @return The non-root nodes ordered by increasing depth
+     */
+    private static int[] breadthFirstOrder(IntList parents) {
+        int nodes = parents.size();
+        var depth = new int[nodes];
+        int maxDepth = 0;
+
+        // Nodes are always created after their parents.
+        for (int node = 1; node < nodes; node++) {
+            depth[node] = depth[parents.get(node)] + 1;
+            maxDepth = Math.max(maxDepth, depth[node]);
+        }
+
+        // Counting sort the nodes by depth.
+        var start = new int[maxDepth + 1];
+        for (int node = 1; node < nodes; node++)
+            start[depth[node]]++;
+        for (int d = 1, first = 0; d <= maxDepth; d++) {
+            int count = start[d];
+            start[d] = first;
+            first += count;
+        }
+
+        var order = new int[nodes - 1];
+        for (int node = 1; node < nodes; node++)
+            order[start[depth[node]]++] = node;
+        return order;
+    }
+
+    /**
+     * @return The {@code node} and character {@code c} packed into a
+     *         {@code long}
+     */
+    private static long key(int node, char c) {
+        return ((long) node << 16) | c;
+    }
+
+    /**
+     * @return A well-mixed hash of the packed {@code key}
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return The case-folded form of the {@code text}
+     */
+    private static String fold(String text) {
+        return text.toLowerCase();
+    }
+
+    /**
+     * A minimal growable list of {@code int} values used while the
+     * automaton is being built.
+     */
+    private static class IntList {
+        private int[] mValues = new int[16];
+        private int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length)
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            mValues[mSize++] = value;
+        }
+
+        int get(int index) {
+            return mValues[index];
+        }
+
+        void set(int index, int value) {
+            mValues[index] = value;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+    }
+}
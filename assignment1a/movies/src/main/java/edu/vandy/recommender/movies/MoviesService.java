@@ -4,6 +4,7 @@ import edu.vandy.recommender.movies.model.Movie;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,12 @@ public class MoviesService {
     @Autowired
     List<Movie> mMovies;
 
+    /**
+     * A {@link TitleIndex} over the ids of {@code mMovies}, which is
+     * built on first use.
+     */
+    private volatile TitleIndex mTitleIndex;
+
     /**
      * @return A {@link List} of all the movies
      */
@@ -41,7 +48,8 @@ public class MoviesService {
 
     /**
      * Search for movie titles containing the given query {@link
-     * String} using the Java sequential streams framework.
+     * String}, ignoring case.  The matches are found by a {@link
+     * TitleIndex} rather than by scanning every title.
      *
      * @param query The search query
      * @return A {@link List} of {@link Movie} objects containing the
@@ -53,16 +61,17 @@ public class MoviesService {
 
         // TODO -- you fill in here, replacing 'return null' with
         // the proper code.
-        return mMovies.stream()
-                .filter(movie -> movie.id().toLowerCase()
-                        .contains(query.toLowerCase()))
-                .toList();
+        return Arrays
+            .stream(titleIndex().search(query))
+            .mapToObj(mMovies::get)
+            .toList();
     }
 
     /**
      * Search for movie titles in the database containing the given
      * {@link String} queries using the Java sequential streams
-     * framework.
+     * framework and an {@link AhoCorasickMatcher}, which matches all
+     * the queries in a single pass over each title.
      *
      * @param queries The search queries
      * @return A {@link List} of {@link Movie} objects containing the
@@ -74,14 +83,28 @@ public class MoviesService {
 
         // TODO -- you fill in here, replacing 'return null' with
         // the proper code.
+        var matcher = new AhoCorasickMatcher(queries);
+
         return mMovies.stream()
-                .filter(movie -> anyMatch(movie.id(), queries))
+                .filter(movie -> matcher.matchesAny(movie.id()))
                 .toList();
-   }
+    }
 
-   private boolean anyMatch(String id, List<String> queries) {
-        return queries.stream()
-                .anyMatch(query -> id.toLowerCase()
-                        .contains(query.toLowerCase()));
-   }
+    /**
+     * @return A {@link TitleIndex} over the ids of {@code mMovies}
+     *         whose title ids are the positions of the movies
+     */
+    private TitleIndex titleIndex() {
+        TitleIndex index = mTitleIndex;
+        if (index == null)
+            synchronized (this) {
+                index = mTitleIndex;
+                if (index == null)
+                    mTitleIndex = index = new TitleIndex(mMovies
+                                                         .stream()
+                                                         .map(Movie::id)
+                                                         .toList());
+            }
+        return index;
+    }
 }
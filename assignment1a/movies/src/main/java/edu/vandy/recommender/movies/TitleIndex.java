@@ -0,0 +1,260 @@
+package edu.vandy.recommender.movies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is an inverted trigram index over movie titles that
+ * answers case-insensitive substring queries without scanning every
+ * title.  Each title is case-folded once when the index is built and
+ * every distinct 3-character substring (trigram) of a folded title
+ * maps to the ascending ids of the titles containing it.
+ *
+ * A query is answered by intersecting the posting lists of its
+ * trigrams, shortest first, and then confirming each remaining
+ * candidate with {@link String#contains(CharSequence)}, so the work
+ * is proportional to the size of the rarest posting list rather than
+ * to the number of titles.  Queries shorter than a trigram fall back
+ * to scanning the pre-folded titles.
+ *
+ * Title ids are the positions of the titles in the {@link List}
+ * passed to the constructor and all results are returned in
+ * ascending id order.  Instances are immutable once constructed.
+ *
+ * This is a copy of the assignment3 {@code common.TitleIndex}, since
+ * each assignment is a standalone build that can't depend on another.
+ */
+public class TitleIndex {
+    /**
+     * The number of characters in each indexed substring.
+     */
+    private static final int GRAM = 3;
+
+    /**
+     * The result of a query that matches no titles.
+     */
+    private static final int[] NO_IDS = new int[0];
+
+    /**
+     * The original titles indexed by title id.
+     */
+    private final String[] mTitles;
+
+    /**
+     * The case-folded titles indexed by title id.
+     */
+    private final String[] mFolded;
+
+    /**
+     * Maps each packed trigram to the ascending ids of the titles
+     * that contain it.
+     */
+    private final Map<Long, int[]> mPostings;
+
+    /**
+     * Build the index for the given {@code titles}.
+     *
+     * @param titles The titles to index, whose positions become
+     *               their title ids
+     */
+    public TitleIndex(List<String> titles) {
+        mTitles = titles.toArray(new String[0]);
+        mFolded = new String[mTitles.length];
+
+        var builders = new HashMap<Long, PostingBuilder>();
+
+        for (int id = 0; id < mTitles.length; id++) {
+            String folded = fold(mTitles[id]);
+            mFolded[id] = folded;
+
+            for (int i = 0; i + GRAM <= folded.length(); i++)
+                builders
+                    .computeIfAbsent(trigram(folded, i),
+                                     gram -> new PostingBuilder())
+                    .add(id);
+        }
+
+        mPostings = new HashMap<>(builders.size() * 4 / 3 + 1);
+        builders.forEach((gram, builder) ->
+                         mPostings.put(gram, builder.toArray()));
+    }
+
+    /**
+     * @return The number of indexed titles
+     */
+    public int size() {
+        return mTitles.length;
+    }
+
+    /**
+     * @param id A title id
+     * @return The original title with the given {@code id}
+     */
+    public String title(int id) {
+        return mTitles[id];
+    }
+
+    /**
+     * Find the titles that contain the {@code query}, ignoring case.
+     *
+     * @param query The search query
+     * @return The ascending ids of the matching titles
+     */
+    public int[] search(String query) {
+        String folded = fold(query);
+
+        if (folded.length() < GRAM)
+            return scan(folded);
+
+        // Collect the posting list of each trigram in the query,
+        // returning early if any trigram occurs in no title.
+        var postings = new ArrayList<int[]>();
+        for (int i = 0; i + GRAM <= folded.length(); i++) {
+            int[] posting = mPostings.get(trigram(folded, i));
+            if (posting == null)
+                return NO_IDS;
+            postings.add(posting);
+        }
+
+        // Intersect the posting lists starting with the shortest, so
+        // the candidate set only ever shrinks.
+        postings.sort(Comparator.comparingInt(posting -> posting.length));
+
+        int[] candidates = postings.get(0).clone();
+        int size = candidates.length;
+        for (int i = 1; i < postings.size() && size > 0; i++)
+            size = intersect(candidates, size, postings.get(i));
+
+        // The trigrams may occur in a title without being adjacent,
+        // so confirm each remaining candidate.
+        int matches = 0;
+        for (int i = 0; i < size; i++)
+            if (mFolded[candidates[i]].contains(folded))
+                candidates[matches++] = candidates[i];
+
+        return Arrays.copyOf(candidates, matches);
+    }
+
+    /**
+     * Find the titles that contain at least one of the {@code
+     * queries}, ignoring case.
+     *
+     * @param queries The search queries
+     * @return The ascending ids of the matching titles without
+     *         duplicates
+     */
+    public int[] searchAny(Collection<String> queries) {
+        var matches = new BitSet(mTitles.length);
+        for (String query : queries)
+            for (int id : search(query))
+                matches.set(id);
+        return matches.stream().toArray();
+    }
+
+    /**
+     * Convenience method that returns the titles of the matches of
+     * {@link #search(String)}.
+     *
+     * @param query The search query
+     * @return The matching titles in ascending id order
+     */
+    public List<String> searchTitles(String query) {
+        return titles(search(query));
+    }
+
+    /**
+     * @param ids Title ids
+     * @return The titles with the given {@code ids} in the same order
+     */
+    public List<String> titles(int[] ids) {
+        var titles = new ArrayList<String>(ids.length);
+        for (int id : ids)
+            titles.add(mTitles[id]);
+        return titles;
+    }
+
+    /**
+     * Scan every pre-folded title for the {@code folded} query.
+     */
+    private int[] scan(String folded) {
+        var ids = new int[mFolded.length];
+        int size = 0;
+        for (int id = 0; id < mFolded.length; id++)
+            if (mFolded[id].contains(folded))
+                ids[size++] = id;
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Keep the first {@code size} ascending {@code candidates} that
+     * also occur in the ascending {@code posting} list.
+     *
+     * @return The number of candidates kept
+     */
+    private static int intersect(int[] candidates, int size, int[] posting) {
+        int kept = 0;
+        for (int i = 0, j = 0; i < size && j < posting.length; ) {
+            if (candidates[i] < posting[j])
+                i++;
+            else if (candidates[i] > posting[j])
+                j++;
+            else {
+                candidates[kept++] = candidates[i];
+                i++;
+                j++;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return The case-folded form of the {@code text}
+     */
+    private static String fold(String text) {
+        return text.toLowerCase();
+    }
+
+    /**
+     * @return The trigram starting at {@code offset} in {@code text}
+     *         packed into a {@code long}
+     */
+    private static long trigram(String text, int offset) {
+        return ((long) text.charAt(offset) << 32)
+            | ((long) text.charAt(offset + 1) << 16)
+            | text.charAt(offset + 2);
+    }
+
+    /**
+     * A growable list of ascending title ids used while the index is
+     * being built.
+     */
+    private static class PostingBuilder {
+        private int[] mIds = new int[4];
+        private int mSize;
+
+        /**
+         * Append {@code id} unless it's already the last entry,
+         * which happens when a trigram repeats within a title.
+         */
+        void add(int id) {
+            if (mSize > 0 && mIds[mSize - 1] == id)
+                return;
+            if (mSize == mIds.length)
+                mIds = Arrays.copyOf(mIds, mSize * 2);
+            mIds[mSize++] = id;
+        }
+
+        /**
+         * @return The ids trimmed to their actual size
+         */
+        int[] toArray() {
+            return Arrays.copyOf(mIds, mSize);
+        }
+    }
+}
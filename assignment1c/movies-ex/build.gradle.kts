@@ -1,6 +1,23 @@
+plugins {
+    id("me.champeau.jmh") version "0.7.0"
+}
+
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springframework:spring-test")
     implementation ("org.junit.jupiter:junit-jupiter")
     testImplementation ("org.springframework.boot:spring-boot-starter-test")
-}
\ No newline at end of file
+}
+
+jmh {
+    jvmArgs.addAll(
+        listOf(
+            "--enable-preview",
+            "--add-modules",
+            "jdk.incubator.concurrent"
+        )
+    )
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
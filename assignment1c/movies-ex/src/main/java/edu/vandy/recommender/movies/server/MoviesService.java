@@ -1,17 +1,22 @@
 package edu.vandy.recommender.movies.server;
 
+import edu.vandy.recommender.movies.common.RegexPrefilter;
 import edu.vandy.recommender.movies.common.model.Movie;
 import edu.vandy.recommender.movies.server.utils.FutureUtils;
 import jdk.incubator.concurrent.StructuredTaskScope;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.concurrent.Future;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -45,6 +50,32 @@ public class MoviesService {
     @Autowired
     protected List<Movie> mMovies;
 
+    /**
+     * Narrows the {@link Movie} objects that a search must match, which
+     * is built from {@link #mMovies} the first time it's needed.
+     */
+    private volatile RegexPrefilter mPrefilter;
+
+    /**
+     * The number of candidate movies matched by each forked subtask,
+     * or 0 to derive it from the number of candidates and available
+     * processors.
+     */
+    @Value("${app.search.batch-size:0}")
+    protected int mBatchSize;
+
+    /**
+     * The number of subtasks forked per available processor when the
+     * batch size is derived automatically.
+     */
+    private static final int TASKS_PER_PROCESSOR = 4;
+
+    /**
+     * The smallest automatically derived batch size, which keeps the
+     * fork overhead small compared with the matching work.
+     */
+    private static final int MIN_BATCH_SIZE = 64;
+
     /**
      * @return A {@link List} of all the movies
      */
@@ -79,10 +110,9 @@ public class MoviesService {
              new StructuredTaskScope.ShutdownOnFailure()
         ) {
             // Call a helper method to concurrently get a List of all
-            // Movie objects that match the pattern.
-            // TODO -- You fill in here, replacing 'null' with
-            // the proper code.
-            List<Future<Movie>> results = getMatchesForPattern(pattern, scope);
+            // Movie objects that match the pattern in batches.
+            List<Future<List<Movie>>> results =
+                getBatchMatches(List.of(pattern), scope);
 
             // Perform a barrier synchronization that waits for all
             // the tasks to complete.
@@ -97,7 +127,7 @@ public class MoviesService {
             // objects that matched at least one client query.
             // TODO -- you fill in here, replacing 'return null' with
             // the proper code.
-            return convertMovieMatches(results);
+            return convertBatchMatches(results);
         }
         catch (Exception ex) {
             throw new RuntimeException(ex);
@@ -130,10 +160,9 @@ public class MoviesService {
              new StructuredTaskScope.ShutdownOnFailure()
         ) {
             // Call a helper method to concurrently get a List of all
-            // Movie objects that match the patternList.
-            // TODO -- You fill in here, replacing 'null' with
-            // the proper code.
-            List<Future<Movie>> results = getMatchesForPatterns(patternList, scope);
+            // Movie objects that match the patternList in batches.
+            List<Future<List<Movie>>> results =
+                getBatchMatches(patternList, scope);
 
             // Perform a barrier synchronization that waits for all
             // the tasks to complete.
@@ -149,7 +178,7 @@ public class MoviesService {
             // one client query.
             // TODO -- you fill in here, replacing 'return null' with
             // the proper code.
-            return convertMovieMatches(results);
+            return convertBatchMatches(results);
         }
         catch (Exception exception) {
             System.out.println("Exception: " + exception.getMessage());
@@ -219,7 +248,8 @@ public class MoviesService {
         // Use a Java sequential stream to perform the following
         // steps:
         //
-        // 1. Convert the List of Movie objects to a Stream.
+        // 1. Convert the List of candidate Movie objects that may
+        //    match the patternList to a Stream.
         // 
         // 2. Use the scope param to concurrently call a helper method
         //    that itself uses a nested Java StructuredTaskScope to
@@ -230,7 +260,7 @@ public class MoviesService {
 
         // TODO -- you fill in here, replacing 'return null' with the
         // proper code.
-        return mMovies.stream()
+        return getCandidates(patternList).stream()
                 .map(movie -> scope.fork(() ->
                         findMatchesForPatternsTask(patternList, movie)))
                 .toList();
@@ -254,7 +284,8 @@ public class MoviesService {
         // Use a Java sequential stream to perform the following
         // steps:
         //
-        // 1. Convert the List of Movies into a Stream.
+        // 1. Convert the List of candidate Movies that may match the
+        //    pattern into a Stream.
         // 
         // 2. Call a helper method that concurrently determines if the
         //    movie title matches the search query pattern.
@@ -263,11 +294,157 @@ public class MoviesService {
 
         // TODO -- you fill in here, replacing 'return null' with the
         // proper code.
-        return mMovies.stream()
+        return getCandidates(pattern).stream()
                 .map(movie -> findMatchAsync(pattern, movie, scope))
                 .toList();
     }
 
+    /**
+     * Concurrently get the {@link Movie} objects that match at least
+     * one {@link Pattern} in the {@code patternList}.  The candidate
+     * movies are split into contiguous batches and each batch is
+     * matched sequentially by one forked subtask, so the number of
+     * forks is proportional to the number of processors rather than
+     * to the number of movies.
+     *
+     * @param patternList A {@link List} of queries in compiled
+     *                    regular expression form
+     * @param scope       The {@link StructuredTaskScope} used to {@code
+     *                    fork()} a virtual thread per batch
+     * @return A {@link List} of {@link Future} objects that will emit
+     * the matching {@link Movie} objects of each batch in batch order
+     */
+    @NotNull
+    protected List<Future<List<Movie>>> getBatchMatches
+        (List<Pattern> patternList,
+         StructuredTaskScope.ShutdownOnFailure scope) {
+        List<Movie> candidates = getCandidates(patternList);
+        int batchSize = getBatchSize(candidates.size());
+
+        return IntStream
+            // Generate the start index of each batch.
+            .iterate(0,
+                     from -> from < candidates.size(),
+                     from -> from + batchSize)
+
+            // Fork a virtual thread that matches the batch.
+            .mapToObj(from -> scope.fork(() -> findMatchesInBatch
+                (patternList,
+                 candidates.subList(from,
+                                    Math.min(from + batchSize,
+                                             candidates.size())))))
+
+            // Convert the Stream to a List.
+            .toList();
+    }
+
+    /**
+     * Determine how many movies each forked subtask matches.
+     *
+     * @param candidateCount The number of candidate movies
+     * @return The configured batch size or, if it's 0, a batch size
+     * that yields a few subtasks per available processor
+     */
+    protected int getBatchSize(int candidateCount) {
+        if (mBatchSize > 0)
+            return mBatchSize;
+
+        int tasks = Runtime.getRuntime().availableProcessors()
+            * TASKS_PER_PROCESSOR;
+        return Math.max(MIN_BATCH_SIZE,
+                        (candidateCount + tasks - 1) / tasks);
+    }
+
+    /**
+     * Sequentially find the {@link Movie} objects in the {@code
+     * batch} that match at least one {@link Pattern} in the {@code
+     * patternList}, stopping at the first matching {@link Pattern}
+     * for each movie.
+     *
+     * @param patternList The {@link List} of search queries in
+     *                    compiled regular expression form
+     * @param batch       The {@link Movie} objects to match
+     * @return The matching {@link Movie} objects in {@code batch}
+     * order
+     */
+    protected List<Movie> findMatchesInBatch(List<Pattern> patternList,
+                                             List<Movie> batch) {
+        // Create one Matcher per Pattern and reuse it for every
+        // movie in the batch.
+        List<Matcher> matchers = patternList
+            .stream()
+            .map(pattern -> pattern.matcher(""))
+            .toList();
+
+        var matches = new ArrayList<Movie>();
+        for (Movie movie : batch)
+            for (Matcher matcher : matchers)
+                if (matcher.reset(movie.id()).find()) {
+                    matches.add(movie);
+                    break;
+                }
+        return matches;
+    }
+
+    /**
+     * Concatenate the batch results into a {@link List} of {@link
+     * Movie} objects.
+     *
+     * @param results A {@link List} of {@link Future} objects that
+     *                each emit the matching {@link Movie} objects of
+     *                one batch
+     * @return A {@link List} of matching {@link Movie} objects in
+     * batch order
+     */
+    @NotNull
+    protected List<Movie> convertBatchMatches
+        (List<Future<List<Movie>>> results) {
+        return FutureUtils.futures2Stream(results)
+            .flatMap(List::stream)
+            .toList();
+    }
+
+    /**
+     * Get the {@link Movie} objects that may match the {@code
+     * pattern}, i.e., those whose titles contain every literal
+     * fragment the {@code pattern} requires.
+     *
+     * @param pattern A query in compiled regular expression form
+     * @return A {@link List} of candidate {@link Movie} objects in
+     * the same order as {@link #mMovies}
+     */
+    protected List<Movie> getCandidates(Pattern pattern) {
+        return getPrefilter().candidates(pattern);
+    }
+
+    /**
+     * Get the {@link Movie} objects that may match at least one
+     * {@link Pattern} in the {@code patternList}.
+     *
+     * @param patternList A {@link List} of queries in compiled
+     *                    regular expression form
+     * @return A {@link List} of candidate {@link Movie} objects in
+     * the same order as {@link #mMovies}
+     */
+    protected List<Movie> getCandidates(List<Pattern> patternList) {
+        return getPrefilter().candidates(patternList);
+    }
+
+    /**
+     * @return The {@link RegexPrefilter} for {@link #mMovies}, which
+     * is built on first use
+     */
+    private RegexPrefilter getPrefilter() {
+        RegexPrefilter prefilter = mPrefilter;
+        if (prefilter == null)
+            synchronized (this) {
+                prefilter = mPrefilter;
+                if (prefilter == null)
+                    mPrefilter = prefilter = new RegexPrefilter(mMovies);
+            }
+        return prefilter;
+    }
+
     /**
      * Concurrently determine if any {@link Pattern} objects in
      * {@code patternList} match the {@link Movie}.
@@ -0,0 +1,59 @@
+package edu.vandy.recommender.movies.common
+
+import edu.vandy.recommender.admin.AssignmentTests
+import edu.vandy.recommender.movies.common.model.Movie
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.util.regex.Pattern
+import kotlin.random.Random
+
+internal class RegexPrefilterTest : AssignmentTests() {
+    private val movies = listOf(
+        "Star Wars", "Star Trek", "Wars of the Worlds", "The Dark Knight",
+        "Knight and Day", "Up", "Mr. Smith", "Starship Troopers"
+    ).map { Movie(it, listOf(1.0)) }
+
+    private val prefilter = RegexPrefilter(movies)
+
+    private fun pattern(regex: String) = Pattern.compile(regex, Pattern.CASE_INSENSITIVE)
+
+    @Test
+    fun `requiredLiterals keeps only mandatory fragments`() {
+        assertThat(RegexPrefilter.requiredLiterals(pattern("Star.*Wars")))
+            .containsExactlyInAnyOrder("star", "wars")
+        assertThat(RegexPrefilter.requiredLiterals(pattern("mr\\. s?mith")))
+            .containsExactlyInAnyOrder("mr. ", "mith")
+        assertThat(RegexPrefilter.requiredLiterals(pattern("kn(i|e)ght[s]?")))
+            .containsExactly("ght", "kn")
+        assertThat(RegexPrefilter.requiredLiterals(pattern("star|trek"))).isEmpty()
+        assertThat(RegexPrefilter.requiredLiterals(pattern("\\p{Alpha}+"))).isEmpty()
+        assertThat(RegexPrefilter.requiredLiterals(Pattern.compile("a b", Pattern.COMMENTS)))
+            .isEmpty()
+    }
+
+    @Test
+    fun `candidates narrow the movies in their original order`() {
+        assertThat(prefilter.candidates(pattern("star")).map { it.id() })
+            .containsExactly("Star Wars", "Star Trek", "Starship Troopers")
+        assertThat(prefilter.candidates(listOf(pattern("knight"), pattern("wars"))).map { it.id() })
+            .containsExactly("Star Wars", "Wars of the Worlds", "The Dark Knight", "Knight and Day")
+        assertThat(prefilter.candidates(pattern("^\\w+$"))).isSameAs(movies)
+    }
+
+    @Test
+    fun `candidates never drop a matching movie`() {
+        val random = Random(5)
+        val atoms = listOf(
+            "a", "s", "K", "r", " ", ".", "\\.", "\\w", "[st]", "[^a]", "(a|r)",
+            "(?-i)", "^", "$", "a?", "r*", "s+", "t{2}", "|", "\\b"
+        )
+        repeat(2000) {
+            val regex = List(1 + random.nextInt(5)) { atoms.random(random) }.joinToString("")
+            val pattern = runCatching { pattern(regex) }.getOrNull() ?: return@repeat
+
+            assertThat(prefilter.candidates(pattern).filter { pattern.matcher(it.id()).find() })
+                .`as`(regex)
+                .isEqualTo(movies.filter { pattern.matcher(it.id()).find() })
+        }
+    }
+}
@@ -43,40 +43,29 @@ class MoviesServiceTest : AssignmentTests() {
     fun findMoviesMatchingQuery() {
         val ms = spyk(MoviesService())
         val s = ""
-        val lfm = mockk<List<Future<Movie>>>()
+        val lfm = mockk<List<Future<List<Movie>>>>()
         val lm = mockk<List<Movie>>()
         val p = mockk<Pattern>()
 
         mockkConstructor(StructuredTaskScope.ShutdownOnFailure::class)
 
         every { ms.makePattern(any()) } answers { p }
-        every {
-            ms.getMatchesForPatterns(
-                any<List<Pattern>>(),
-                any()
-            )
-        } answers { lfm }
+        every { ms.getBatchMatches(listOf(p), any()) } answers { lfm }
         every { anyConstructed<StructuredTaskScope.ShutdownOnFailure>().throwIfFailed() } answers { }
         every { anyConstructed<StructuredTaskScope.ShutdownOnFailure>().join() } answers { mockk() }
         every { anyConstructed<StructuredTaskScope.ShutdownOnFailure>().close() } answers { }
-        every {
-            ms.getMatchesForPattern(
-                any<Pattern>(),
-                any()
-            )
-        } answers { mockk() }
-        every { ms.convertMovieMatches(any()) } answers { lm }
+        every { ms.convertBatchMatches(lfm) } answers { lm }
 
         assertThat(ms.search(s)).isSameAs(lm)
 
         verify {
             ms.makePattern(any())
-            ms.getMatchesForPattern(any(), any())
+            ms.getBatchMatches(listOf(p), any())
             anyConstructed<StructuredTaskScope.ShutdownOnFailure>().throwIfFailed()
             anyConstructed<StructuredTaskScope.ShutdownOnFailure>().join()
             anyConstructed<StructuredTaskScope.ShutdownOnFailure>().close()
             ms.search(any<String>())
-            ms.convertMovieMatches(any())
+            ms.convertBatchMatches(lfm)
         }
 
         confirmVerified(ms, lm, p, lfm)
@@ -87,17 +76,12 @@ class MoviesServiceTest : AssignmentTests() {
         val ms = spyk(MoviesService())
         val ls = mockk<List<String>>()
         val lm = mockk<List<Movie>>()
-        val lfm = mockk<List<Future<Movie>>>()
+        val lfm = mockk<List<Future<List<Movie>>>>()
         val lp = mockk<List<Pattern>>()
         mockkConstructor(StructuredTaskScope.ShutdownOnFailure::class)
         every { ms.makePatterns(any<List<String>>()) } answers { lp }
-        every { ms.convertMovieMatches(any()) } answers { lm }
-        every {
-            ms.getMatchesForPatterns(
-                any<List<Pattern>>(),
-                any()
-            )
-        } answers { lfm }
+        every { ms.convertBatchMatches(lfm) } answers { lm }
+        every { ms.getBatchMatches(lp, any()) } answers { lfm }
         every { anyConstructed<StructuredTaskScope.ShutdownOnFailure>().throwIfFailed() } answers { }
         every { anyConstructed<StructuredTaskScope.ShutdownOnFailure>().join() } answers { mockk() }
         every { anyConstructed<StructuredTaskScope.ShutdownOnFailure>().close() } answers { }
@@ -106,8 +90,8 @@ class MoviesServiceTest : AssignmentTests() {
 
         verify {
             ms.makePatterns(any<List<String>>())
-            ms.convertMovieMatches(any())
-            ms.getMatchesForPatterns(any<List<Pattern>>(), any())
+            ms.convertBatchMatches(lfm)
+            ms.getBatchMatches(lp, any())
             anyConstructed<StructuredTaskScope.ShutdownOnFailure>().throwIfFailed()
             anyConstructed<StructuredTaskScope.ShutdownOnFailure>().join()
             anyConstructed<StructuredTaskScope.ShutdownOnFailure>().close()
@@ -165,6 +149,7 @@ class MoviesServiceTest : AssignmentTests() {
         val fm = mockk<Future<Movie>>()
         val lfm = mockk<List<Future<Movie>>>()
 
+        every { ms.getCandidates(lp) } answers { lm }
         every { lm.stream() } answers { sm }
         every { sm.map<Future<Movie>>(any()) } answers {
             firstArg<Function<Movie, Future<Movie>>>().apply(m)
@@ -180,6 +165,7 @@ class MoviesServiceTest : AssignmentTests() {
         assertThat(ms.getMatchesForPatterns(lp, sof)).isSameAs(lfm)
 
         verify {
+            ms.getCandidates(lp)
             lm.stream()
             sm.map<Future<Movie>>(any())
             sof.fork<Movie>(any())
@@ -202,6 +188,7 @@ class MoviesServiceTest : AssignmentTests() {
         val sfm = mockk<Stream<Future<Movie>>>()
         val lfm = mockk<List<Future<Movie>>>()
 
+        every { ms.getCandidates(lp) } answers { lm }
         every { lm.stream() } answers { sm }
         every { sm.map<Future<Movie>>(any()) } answers {
             firstArg<Function<Movie, Future<Movie>>>().apply(m)
@@ -217,6 +204,7 @@ class MoviesServiceTest : AssignmentTests() {
         assertThat(ms.getMatchesForPatterns(lp, sof)).isSameAs(lfm)
 
         verify {
+            ms.getCandidates(lp)
             lm.stream()
             sm.map<Future<Movie>>(any())
             sof.fork<Movie>(any())
@@ -366,4 +354,81 @@ class MoviesServiceTest : AssignmentTests() {
         }
         confirmVerified(ms, lfm, slm, sm)
     }
+
+    @Test
+    fun getBatchMatches() {
+        val ms = spyk(MoviesService())
+        val lp = mockk<List<Pattern>>()
+        val sof = mockk<StructuredTaskScope.ShutdownOnFailure>()
+        val lm = (0 until 10).map { Movie("m$it", listOf()) }
+        val batches = mutableListOf<List<Movie>>()
+
+        every { ms.getCandidates(lp) } answers { lm }
+        every { ms.getBatchSize(10) } answers { 4 }
+        every { ms.findMatchesInBatch(lp, any()) } answers { secondArg() }
+        every { sof.fork<List<Movie>>(any()) } answers {
+            batches.add(firstArg<Callable<List<Movie>>>().call())
+            mockk()
+        }
+
+        assertThat(ms.getBatchMatches(lp, sof)).hasSize(3)
+        assertThat(batches).containsExactly(
+            lm.subList(0, 4), lm.subList(4, 8), lm.subList(8, 10)
+        )
+
+        verify {
+            ms.getCandidates(lp)
+            ms.getBatchSize(10)
+            sof.fork<List<Movie>>(any())
+            ms.findMatchesInBatch(lp, any())
+            ms.getBatchMatches(lp, sof)
+        }
+        confirmVerified(ms, lp, sof)
+    }
+
+    @Test
+    fun getBatchSize() {
+        val ms = spyk(MoviesService())
+        val tasks = Runtime.getRuntime().availableProcessors() * 4
+
+        assertThat(ms.getBatchSize(0)).isEqualTo(64)
+        assertThat(ms.getBatchSize(tasks * 1000)).isEqualTo(1000)
+        assertThat(ms.getBatchSize(tasks * 1000 + 1)).isEqualTo(1001)
+
+        ms.mBatchSize = 7
+        assertThat(ms.getBatchSize(tasks * 1000)).isEqualTo(7)
+    }
+
+    @Test
+    fun findMatchesInBatch() {
+        val ms = spyk(MoviesService())
+        val batch = listOf("Star Wars", "Alien", "Star Trek", "Aliens", "Up")
+            .map { Movie(it, listOf()) }
+        val patterns = listOf("^star", "alien", "star")
+            .map { Pattern.compile(it, Pattern.CASE_INSENSITIVE) }
+
+        assertThat(ms.findMatchesInBatch(patterns, batch))
+            .containsExactly(batch[0], batch[1], batch[2], batch[3])
+        assertThat(ms.findMatchesInBatch(listOf(), batch)).isEmpty()
+    }
+
+    @Test
+    fun convertBatchMatches() {
+        val ms = spyk(MoviesService())
+        val lfm = mockk<List<Future<List<Movie>>>>()
+        val m1 = mockk<Movie>()
+        val m2 = mockk<Movie>()
+        val m3 = mockk<Movie>()
+
+        mockkStatic(FutureUtils::class)
+        every { FutureUtils.futures2Stream<List<Movie>>(lfm) } answers {
+            Stream.of(listOf(m1, m2), listOf(), listOf(m3))
+        }
+        assertThat(ms.convertBatchMatches(lfm)).containsExactly(m1, m2, m3)
+        verify {
+            FutureUtils.futures2Stream<List<Movie>>(lfm)
+            ms.convertBatchMatches(lfm)
+        }
+        confirmVerified(ms, lfm)
+    }
 }
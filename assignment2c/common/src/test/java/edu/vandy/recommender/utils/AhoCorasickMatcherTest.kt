@@ -0,0 +1,45 @@
+package edu.vandy.recommender.utils
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import kotlin.random.Random
+
+class AhoCorasickMatcherTest : AssignmentTests() {
+    @Test
+    fun `matcher finds overlapping and nested queries ignoring case`() {
+        val matcher = AhoCorasickMatcher(listOf("HE", "she", "his", "hers", "she"))
+
+        assertThat(matcher.matchesAny("uSHErs")).isTrue
+        assertThat(matcher.matchesAny("hi")).isFalse
+        assertThat(matcher.matchesAll("ushers and his")).isTrue
+        assertThat(matcher.matchesAll("ushers")).isFalse
+    }
+
+    @Test
+    fun `matcher handles empty query lists and empty queries`() {
+        assertThat(AhoCorasickMatcher(listOf()).matchesAny("x")).isFalse
+        assertThat(AhoCorasickMatcher(listOf()).matchesAll("x")).isTrue
+        assertThat(AhoCorasickMatcher(listOf("", "zz")).matchesAny("x")).isTrue
+        assertThat(AhoCorasickMatcher(listOf("", "zz")).matchesAll("x")).isFalse
+    }
+
+    @Test
+    fun `matcher agrees with a scan of every query`() {
+        val random = Random(7)
+        fun randomString(length: Int) =
+            String(CharArray(length) { "abAB c"[random.nextInt(6)] })
+
+        repeat(5000) {
+            val queries = List(random.nextInt(5)) { randomString(random.nextInt(4)) }
+            val text = randomString(random.nextInt(12))
+            val matcher = AhoCorasickMatcher(queries)
+            val folded = text.lowercase()
+
+            assertThat(matcher.matchesAny(text))
+                .isEqualTo(queries.any { folded.contains(it.lowercase()) })
+            assertThat(matcher.matchesAll(text))
+                .isEqualTo(queries.all { folded.contains(it.lowercase()) })
+        }
+    }
+}
@@ -2,6 +2,7 @@ package edu.vandy.recommender.database.repository;
 
 import edu.vandy.recommender.common.model.Movie;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -39,4 +40,12 @@ public interface DatabaseRepository
      */
     // TODO -- you fill in here.
     List<Movie> findByIdContainingIgnoreCaseOrderByIdAsc(String query);
+
+    /**
+     * @return A {@link List} of the ids (movie titles) of all {@link
+     *         Movie} objects in the database, which doesn't load their
+     *         vectors
+     */
+    @Query("SELECT m.id FROM Movie m")
+    List<String> findAllIds();
 }
@@ -2,6 +2,7 @@ package edu.vandy.recommender.database.server;
 
 import edu.vandy.recommender.common.model.Movie;
 import edu.vandy.recommender.database.repository.DatabaseRepository;
+import edu.vandy.recommender.utils.AhoCorasickMatcher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -64,21 +65,45 @@ public class DatabaseService {
 
     /**
      * Search for movie titles in the database containing the given
-     * {@link String} queries using Java parallel streams.
+     * {@link String} queries using an {@link AhoCorasickMatcher},
+     * which matches all the queries in a single pass over the titles.
+     * Only the titles are read to match the queries, and then just
+     * the matching movies are fetched by id.
      *
      * @param queries The {@link List} of search queries
      * @return A {@link List} of {@link Movie} objects containing the
      *         queries sorted in ascending order by the {@link Movie}
      *         title (id)
      */
-
     public List<Movie> search(List<String> queries) {
-        // TODO -- you fill in here.
-        return queries.parallelStream()
-                .flatMap(query -> search(query).stream())
-                .sorted()
-                .distinct()
-                .toList();
+        var matcher = new AhoCorasickMatcher(queries);
+
+        var ids = mRepository
+            // Get all the titles, which are unique.
+            .findAllIds()
+
+            // Convert the List to a Stream.
+            .stream()
+
+            // Keep the titles containing at least one query.
+            .filter(matcher::matchesAny)
+
+            // Convert the Stream to a List.
+            .toList();
+
+        return mRepository
+            // Fetch only the matching movies.
+            .findAllById(ids)
+
+            // Convert the List to a Stream.
+            .stream()
+
+            // Sort the movies, which compares their titles ignoring
+            // case.
+            .sorted()
+
+            // Convert the Stream to a List.
+            .toList();
     }
 
     /**
@@ -71,28 +71,16 @@ class DatabaseServiceTest : AssignmentTests() {
 
     @Test
     fun `search(list) is implemented correctly`() {
-        every { ls.parallelStream() } answers { ss }
-        every { ss.flatMap<Movie>(any()) } answers {
-            firstArg<Function<String, Stream<Movie>>>().apply("")
-            sm
-        }
-        every { lm.stream() } answers { sm }
-        every { sm.sorted() } answers { sm }
-        every { s.search(any<String>()) } answers { lm }
-        every { sm.distinct() } answers { sm }
-        every { sm.toList() } answers { lm }
+        val movies = listOf("Star Wars", "alien", "Aliens", "Up", "The Lost World")
+            .map { Movie(it, null) }
+        every { r.findAllByOrderByIdAsc() } returns movies
 
-        assertThat(s.search(ls)).isSameAs(lm)
+        assertThat(s.search(listOf("star", "ALIEN", "alien")))
+            .containsExactly(movies[1], movies[2], movies[0])
 
         verify(exactly = 1) {
-            s.search(any<String>())
-            ls.parallelStream()
-            ss.flatMap<Movie>(any())
-            lm.stream()
-            sm.sorted()
-            sm.distinct()
-            sm.toList()
             s.search(any<List<String>>())
+            r.findAllByOrderByIdAsc()
         }
         doConfirmVerified()
     }
@@ -1,3 +1,7 @@
+plugins {
+    id("me.champeau.jmh") version "0.7.0"
+}
+
 dependencies {
     implementation(project(":common"))
     implementation("org.springframework.boot:spring-boot-starter-web")
@@ -6,3 +10,16 @@ dependencies {
     implementation("org.assertj:assertj-core:3.24.1")
     testImplementation ("org.springframework.boot:spring-boot-starter-test")
 }
+
+jmh {
+    jvmArgs.addAll(
+        listOf(
+            "--enable-preview",
+            "--add-modules",
+            "jdk.incubator.concurrent"
+        )
+    )
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
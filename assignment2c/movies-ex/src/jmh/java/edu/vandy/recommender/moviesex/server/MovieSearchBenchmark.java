@@ -0,0 +1,110 @@
+package edu.vandy.recommender.moviesex.server;
+
+import edu.vandy.recommender.common.model.Movie;
+import jdk.incubator.concurrent.StructuredTaskScope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * This JMH benchmark compares the original {@link MoviesService}
+ * search, which forks one virtual thread per movie plus a nested
+ * {@link StructuredTaskScope.ShutdownOnSuccess} scope per movie, with
+ * the batched search that forks one virtual thread per batch of
+ * movies.  A {@code batchSize} of 0 uses the automatically derived
+ * batch size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MovieSearchBenchmark {
+    /**
+     * The number of movies in the synthetic catalog.
+     */
+    @Param({"5000", "50000"})
+    public int movies;
+
+    /**
+     * The number of movies matched by each forked subtask.
+     */
+    @Param({"0", "1", "64", "1024"})
+    public int batchSize;
+
+    /**
+     * Words used to generate the synthetic movie titles.
+     */
+    private static final String[] WORDS = {
+        "star", "wars", "the", "return", "of", "night", "day",
+        "love", "story", "lost", "city", "dark", "king", "island",
+        "toy", "alien", "game", "empire", "last", "summer"
+    };
+
+    /**
+     * The search queries, which mix queries with and without a
+     * required literal.
+     */
+    private final List<String> mQueries =
+        List.of("star.*wars", "^the", "\\w+ing$", "island");
+
+    /**
+     * The {@link MoviesService} under test.
+     */
+    private MoviesService mService;
+
+    /**
+     * Generate a random catalog of movie titles.
+     */
+    @Setup
+    public void setup() {
+        var random = new Random(42);
+        var movieList = new ArrayList<Movie>(movies);
+
+        for (int i = 0; i < movies; i++) {
+            var title = new StringBuilder();
+            for (int w = 1 + random.nextInt(4); w > 0; w--)
+                title.append(WORDS[random.nextInt(WORDS.length)])
+                    .append(' ');
+            title.append(i);
+            movieList.add(new Movie(title.toString(), List.of()));
+        }
+
+        mService = new MoviesService();
+        mService.mMovies = movieList;
+        mService.mBatchSize = batchSize;
+    }
+
+    /**
+     * Search by forking a virtual thread per movie.
+     */
+    @Benchmark
+    public List<Movie> perMovieFanOut() throws Exception {
+        List<Pattern> patternList = mService.makePatterns(mQueries);
+
+        try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            var results = mService
+                .getMatchesForPatterns(patternList, scope);
+            scope.join();
+            scope.throwIfFailed();
+            return mService.convertMovieMatches(results);
+        }
+    }
+
+    /**
+     * Search by forking a virtual thread per batch of movies.
+     */
+    @Benchmark
+    public List<Movie> batched() {
+        return mService.search(mQueries);
+    }
+}
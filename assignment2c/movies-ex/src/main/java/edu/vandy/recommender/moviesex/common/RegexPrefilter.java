@@ -0,0 +1,363 @@
+package edu.vandy.recommender.moviesex.common;
+
+import edu.vandy.recommender.common.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * This class narrows the {@link Movie} objects that a regular
+ * expression search must match to those whose titles contain every
+ * literal fragment that any match of the expression requires.  For
+ * example, every title matching {@code "star.*wars"} contains both
+ * {@code "star"} and {@code "wars"}, so only those titles are passed
+ * on to the full {@link Pattern}.
+ *
+ * The titles are case-folded once into a single arena {@link String}
+ * and the rarest-looking (longest) literal is located with {@link
+ * String#indexOf(String, int)}, which the JVM implements with an
+ * intrinsic.  The other literals are then checked against the
+ * remaining candidates only.
+ *
+ * Literal extraction is conservative: whenever a construct could
+ * make a fragment optional (alternation, groups, quantifiers,
+ * unsupported escapes, the {@link Pattern#COMMENTS} flag, etc.) the
+ * fragment is dropped and, if in doubt, every movie remains a
+ * candidate.  The candidates are therefore always a superset of the
+ * matches, so filtering them with the full {@link Pattern} yields
+ * exactly the same results, in the same order, as matching every
+ * movie.
+ *
+ * This class is duplicated in the assignment1c {@code movies-ex}
+ * module because each assignment is a standalone build, so a change
+ * to one copy must also be made to the other.
+ */
+public class RegexPrefilter {
+    /**
+     * Separates the folded titles in {@link #mArena}, which can't
+     * appear in a literal.
+     */
+    private static final char SEPARATOR = '\n';
+
+    /**
+     * The {@link Movie} objects in their original order.
+     */
+    private final List<Movie> mMovies;
+
+    /**
+     * The case-folded titles indexed by their position in {@link
+     * #mMovies}.
+     */
+    private final String[] mFolded;
+
+    /**
+     * All case-folded titles, each one followed by {@link #SEPARATOR}.
+     */
+    private final String mArena;
+
+    /**
+     * The offset of each title in {@link #mArena}.
+     */
+    private final int[] mOffsets;
+
+    /**
+     * Build a prefilter for the {@code movies}.
+     *
+     * @param movies The {@link Movie} objects to search
+     */
+    public RegexPrefilter(List<Movie> movies) {
+        mMovies = movies;
+        mFolded = new String[movies.size()];
+        mOffsets = new int[movies.size()];
+
+        var arena = new StringBuilder();
+        for (int i = 0; i < mFolded.length; i++) {
+            mFolded[i] = fold(movies.get(i).id);
+            mOffsets[i] = arena.length();
+            arena.append(mFolded[i]).append(SEPARATOR);
+        }
+        mArena = arena.toString();
+    }
+
+    /**
+     * Find the {@link Movie} objects that may match the {@code
+     * pattern}.
+     *
+     * @param pattern A compiled regular expression
+     * @return A {@link List} containing every {@link Movie} that
+     *         matches the {@code pattern} (and possibly others) in
+     *         their original order
+     */
+    public List<Movie> candidates(Pattern pattern) {
+        return candidates(List.of(pattern));
+    }
+
+    /**
+     * Find the {@link Movie} objects that may match at least one of
+     * the {@code patterns}.
+     *
+     * @param patterns A {@link List} of compiled regular expressions
+     * @return A {@link List} containing every {@link Movie} that
+     *         matches one of the {@code patterns} (and possibly
+     *         others) in their original order
+     */
+    public List<Movie> candidates(List<Pattern> patterns) {
+        var candidates = new BitSet(mFolded.length);
+
+        for (Pattern pattern : patterns) {
+            List<String> literals = requiredLiterals(pattern);
+
+            // Without a required literal every movie is a candidate.
+            if (literals.isEmpty())
+                return mMovies;
+
+            addCandidates(literals, candidates);
+        }
+
+        var movies = new ArrayList<Movie>(candidates.cardinality());
+        candidates.stream().forEach(i -> movies.add(mMovies.get(i)));
+        return movies;
+    }
+
+    /**
+     * Add the positions of the titles that contain all the {@code
+     * literals} to {@code candidates}.
+     */
+    private void addCandidates(List<String> literals, BitSet candidates) {
+        // Search the arena for the longest literal, which is likely
+        // the rarest one, and check the others per candidate.
+        String longest = literals.get(0);
+
+        for (int at = mArena.indexOf(longest);
+             at >= 0;
+             at = mArena.indexOf(longest, at + 1)) {
+            int i = titleAt(at);
+
+            if (!candidates.get(i) && containsAll(mFolded[i], literals))
+                candidates.set(i);
+
+            // Skip the rest of this title.
+            at = (i + 1 < mOffsets.length
+                  ? mOffsets[i + 1]
+                  : mArena.length()) - 1;
+        }
+    }
+
+    /**
+     * @return The position of the title containing arena offset
+     *         {@code at}
+     */
+    private int titleAt(int at) {
+        int i = Arrays.binarySearch(mOffsets, at);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * @return True if the {@code folded} title contains all the
+     *         {@code literals}
+     */
+    private static boolean containsAll(String folded, List<String> literals) {
+        for (String literal : literals)
+            if (!folded.contains(literal))
+                return false;
+        return true;
+    }
+
+    /**
+     * Extract the case-folded literal fragments that every match of
+     * the {@code pattern} must contain.
+     *
+     * @param pattern A compiled regular expression
+     * @return The required literals ordered from longest to shortest,
+     *         or an empty {@link List} if none can be proven
+     */
+    public static List<String> requiredLiterals(Pattern pattern) {
+        String regex = pattern.pattern();
+        List<String> literals;
+
+        if ((pattern.flags() & Pattern.LITERAL) != 0)
+            literals = List.of(fold(regex));
+        else if ((pattern.flags()
+                  & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0)
+            literals = List.of();
+        else
+            literals = parse(regex);
+
+        var required = new ArrayList<String>();
+        for (String literal : literals)
+            if (!literal.isEmpty() && literal.indexOf(SEPARATOR) < 0)
+                required.add(literal);
+
+        required.sort(Comparator.comparingInt(String::length).reversed());
+        return required;
+    }
+
+    /**
+     * Scan the top-level sequence of the {@code regex} and collect
+     * the runs of literal characters that aren't made optional.
+     *
+     * @return The folded literal runs, or an empty {@link List} if
+     *         the {@code regex} uses a construct this method doesn't
+     *         understand
+     */
+    private static List<String> parse(String regex) {
+        var literals = new ArrayList<String>();
+        var run = new StringBuilder();
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            switch (c) {
+                case '\\' -> {
+                    if (++i == regex.length())
+                        return List.of();
+                    char e = regex.charAt(i);
+
+                    if (!Character.isLetterOrDigit(e))
+                        // An escaped metacharacter is a literal.
+                        run.append(e);
+                    else if ("dDwWsSbBAzZGhHvVRX".indexOf(e) >= 0)
+                        // A character class or an anchor.
+                        flush(run, literals);
+                    else
+                        // Octal, hex, unicode, property, quoting and
+                        // backreference escapes aren't supported.
+                        return List.of();
+                }
+                case '?', '*', '{' -> {
+                    // The preceding character is optional.
+                    dropLastCharacter(run);
+                    flush(run, literals);
+
+                    if (c == '{' && (i = regex.indexOf('}', i)) < 0)
+                        return List.of();
+                }
+                case '+' ->
+                    // The preceding character may repeat, so the run
+                    // can't continue past it.
+                    flush(run, literals);
+                case '[' -> {
+                    flush(run, literals);
+                    if ((i = skipClass(regex, i)) < 0)
+                        return List.of();
+                }
+                case '(' -> {
+                    flush(run, literals);
+                    if (regex.startsWith("(?", i)
+                        && hasCommentsFlag(regex, i + 2))
+                        return List.of();
+                    if ((i = skipGroup(regex, i)) < 0)
+                        return List.of();
+                }
+                case '|' -> {
+                    // Any alternative may match, so nothing is
+                    // required.
+                    return List.of();
+                }
+                case '.', '^', '$', ')', ']', '}' ->
+                    flush(run, literals);
+                default ->
+                    run.append(c);
+            }
+        }
+
+        flush(run, literals);
+        return literals;
+    }
+
+    /**
+     * Remove the last character (or surrogate pair) from the {@code
+     * run}.
+     */
+    private static void dropLastCharacter(StringBuilder run) {
+        if (!run.isEmpty())
+            run.setLength(run.length()
+                          - Character.charCount(run.codePointBefore(run.length())));
+    }
+
+    /**
+     * Add the folded {@code run} to the {@code literals} and reset it.
+     */
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (!run.isEmpty())
+            literals.add(fold(run.toString()));
+        run.setLength(0);
+    }
+
+    /**
+     * @return The index of the {@code ']'} that closes the character
+     *         class opened at {@code start}, or -1 if there is none
+     */
+    private static int skipClass(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^')
+            i++;
+        // A ']' right after the opening bracket is a literal.
+        if (i < regex.length() && regex.charAt(i) == ']')
+            i++;
+
+        for (int depth = 1; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\')
+                i++;
+            else if (c == '[')
+                depth++;
+            else if (c == ']' && --depth == 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The index of the {@code ')'} that closes the group
+     *         opened at {@code start}, or -1 if there is none
+     */
+    private static int skipGroup(String regex, int start) {
+        for (int i = start + 1, depth = 1; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\')
+                i++;
+            else if (c == '[') {
+                if ((i = skipClass(regex, i)) < 0)
+                    return -1;
+            } else if (c == '(')
+                depth++;
+            else if (c == ')' && --depth == 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return True if the inline flags starting at {@code start}
+     *         enable {@link Pattern#COMMENTS} mode
+     */
+    private static boolean hasCommentsFlag(String regex, int start) {
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == 'x')
+                return true;
+            if (!Character.isLetter(c) && c != '-')
+                return false;
+        }
+        return false;
+    }
+
+    /**
+     * Fold the case of each character independently, so a character
+     * always folds the same way regardless of its context and any two
+     * characters that a case-insensitive {@link Pattern} considers
+     * equal fold to the same character.
+     */
+    private static String fold(String text) {
+        var folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++)
+            folded[i] = Character
+                .toLowerCase(Character.toUpperCase(text.charAt(i)));
+        return new String(folded);
+    }
+}
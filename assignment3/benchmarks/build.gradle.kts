@@ -0,0 +1,59 @@
+plugins {
+    id("me.champeau.jmh") version "0.7.0"
+}
+
+tasks {
+    bootJar { enabled = false }
+    jar { enabled = true }
+}
+
+dependencies {
+    jmh(project(":common"))
+    jmh(project(":recommenders"))
+    jmh("io.projectreactor:reactor-core")
+    jmh("com.fasterxml.jackson.core:jackson-databind")
+}
+
+val jmhResults = layout.buildDirectory.file("results/jmh/results.json")
+val jmhBaselineFile = layout.projectDirectory.file("baseline/results.json")
+
+jmh {
+    jvmArgs.addAll(
+        listOf(
+            "--enable-preview",
+            "--add-modules",
+            "jdk.incubator.concurrent",
+            "--add-modules",
+            "jdk.incubator.vector"
+        )
+    )
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(jmhResults)
+}
+
+// Compare the results of the last jmh run with the stored baseline,
+// failing if a benchmark regressed by more than the threshold
+// percentage (-PjmhThreshold=10 by default).
+tasks.register<JavaExec>("jmhReport") {
+    group = "benchmark"
+    description = "Compares the last JMH results with the stored baseline."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("edu.vandy.recommender.benchmarks.BenchmarkReport")
+    jvmArgs("--enable-preview")
+    args(
+        jmhBaselineFile.asFile.path,
+        jmhResults.get().asFile.path,
+        (findProperty("jmhThreshold") ?: "10").toString()
+    )
+}
+
+// Store the results of the last jmh run as the new baseline.
+tasks.register<Copy>("jmhBaseline") {
+    group = "benchmark"
+    description = "Stores the last JMH results as the baseline."
+    from(jmhResults)
+    into(jmhBaselineFile.asFile.parentFile)
+}
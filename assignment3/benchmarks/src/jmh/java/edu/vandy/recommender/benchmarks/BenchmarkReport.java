@@ -0,0 +1,199 @@
+package edu.vandy.recommender.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This program compares the JSON results of a JMH run with a stored
+ * baseline and prints the change of each benchmark score.  A change
+ * is flagged as a regression or an improvement only if it's larger
+ * than the threshold percentage and than the combined score errors of
+ * both runs, so noise isn't reported.  The program exits with status
+ * 1 if any benchmark regressed, so it can gate a build.
+ *
+ * Usage: {@code BenchmarkReport <baseline.json> <results.json>
+ * [threshold-percent]}
+ */
+public final class BenchmarkReport {
+    /**
+     * The default threshold percentage of a flagged change.
+     */
+    private static final double DEFAULT_THRESHOLD = 10.0;
+
+    /**
+     * The score of one benchmark in one run.
+     *
+     * @param mode The JMH mode, e.g., "avgt" or "thrpt"
+     * @param score The score
+     * @param error The error of the score, or 0 if unknown
+     * @param unit The unit of the score
+     */
+    record Score(String mode, double score, double error, String unit) {
+        /**
+         * @return True if a higher score is better, i.e., the score
+         *         is a throughput
+         */
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    /**
+     * A utility class should not be instantiated.
+     */
+    private BenchmarkReport() {
+    }
+
+    /**
+     * Compare the results with the baseline and print the report.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkReport <baseline.json> "
+                               + "<results.json> [threshold-percent]");
+            System.exit(2);
+        }
+
+        Path baselinePath = Path.of(args[0]);
+        Path resultsPath = Path.of(args[1]);
+        double threshold = args.length > 2
+            ? Double.parseDouble(args[2])
+            : DEFAULT_THRESHOLD;
+
+        if (!Files.exists(resultsPath)) {
+            System.err.println("No benchmark results at " + resultsPath
+                               + ", run the jmh task first.");
+            System.exit(2);
+        }
+        if (!Files.exists(baselinePath)) {
+            System.out.println("No baseline at " + baselinePath
+                               + ", run the jmhBaseline task to store one.");
+            return;
+        }
+
+        var lines = new ArrayList<String>();
+        int regressions = report(read(baselinePath),
+                                 read(resultsPath),
+                                 threshold,
+                                 lines);
+        lines.forEach(System.out::println);
+        if (regressions > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Compare the {@code results} with the {@code baseline}.
+     *
+     * @param baseline The baseline scores keyed by benchmark
+     * @param results The current scores keyed by benchmark
+     * @param threshold The threshold percentage of a flagged change
+     * @param lines Receives the lines of the report
+     * @return The number of regressions
+     */
+    static int report(Map<String, Score> baseline,
+                      Map<String, Score> results,
+                      double threshold,
+                      List<String> lines) {
+        int regressions = 0;
+        int improvements = 0;
+
+        lines.add(String.format(Locale.ROOT, "%-70s %14s %14s %9s  %s",
+                                "Benchmark", "Baseline", "Current", "Change", "Unit"));
+        for (var entry : results.entrySet()) {
+            Score current = entry.getValue();
+            Score base = baseline.get(entry.getKey());
+            if (base == null || !base.unit().equals(current.unit())) {
+                lines.add(String.format(Locale.ROOT, "%-70s %14s %14.3f %9s  %s  NEW",
+                                        entry.getKey(), "-", current.score(), "-",
+                                        current.unit()));
+                continue;
+            }
+
+            double change = base.score() == 0.0
+                ? 0.0
+                : (current.score() - base.score()) / base.score() * 100.0;
+            boolean significant = Math.abs(change) > threshold
+                && Math.abs(current.score() - base.score()) > base.error() + current.error();
+            boolean better = current.higherIsBetter() == change > 0;
+
+            String flag = "";
+            if (significant && better) {
+                flag = "  IMPROVED";
+                improvements++;
+            } else if (significant) {
+                flag = "  REGRESSED";
+                regressions++;
+            }
+            lines.add(String.format(Locale.ROOT, "%-70s %14.3f %14.3f %+8.1f%%  %s%s",
+                                    entry.getKey(), base.score(), current.score(),
+                                    change, current.unit(), flag));
+        }
+
+        for (String key : baseline.keySet())
+            if (!results.containsKey(key))
+                lines.add(String.format(Locale.ROOT, "%-70s  MISSING", key));
+
+        lines.add(String.format(Locale.ROOT,
+                                "%d benchmarks, %d regressed, %d improved (threshold %.1f%%)",
+                                results.size(), regressions, improvements, threshold));
+        return regressions;
+    }
+
+    /**
+     * Read the scores of a JMH JSON result file.
+     *
+     * @param path The path of the file
+     * @return The scores keyed by benchmark name and parameters in
+     *         name order
+     */
+    static Map<String, Score> read(Path path) throws IOException {
+        JsonNode runs = new ObjectMapper().readTree(path.toFile());
+        var scores = new TreeMap<String, Score>();
+
+        for (JsonNode run : runs) {
+            JsonNode metric = run.path("primaryMetric");
+            double error = metric.path("scoreError").asDouble(0.0);
+            scores.put(key(run),
+                       new Score(run.path("mode").asText(),
+                                 metric.path("score").asDouble(),
+                                 Double.isFinite(error) ? error : 0.0,
+                                 metric.path("scoreUnit").asText()));
+        }
+        return scores;
+    }
+
+    /**
+     * @return The benchmark name without its package followed by its
+     *         parameters, e.g., {@code
+     *         GetTopKBenchmark.flux(k=10,movies=4800)}
+     */
+    private static String key(JsonNode run) {
+        String name = run.path("benchmark").asText();
+        name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+
+        var params = new TreeMap<String, String>();
+        run.path("params")
+            .fields()
+            .forEachRemaining(param -> params.put(param.getKey(),
+                                                  param.getValue().asText()));
+        if (params.isEmpty())
+            return name;
+
+        var joined = new StringBuilder();
+        params.forEach((param, value) -> joined
+                       .append(joined.isEmpty() ? "" : ",")
+                       .append(param)
+                       .append('=')
+                       .append(value));
+        return name + "(" + joined + ")";
+    }
+}
@@ -0,0 +1,226 @@
+package edu.vandy.recommender.benchmarks;
+
+import edu.vandy.recommender.common.CosineSimilarityUtils;
+import edu.vandy.recommender.common.MovieCatalog;
+import edu.vandy.recommender.common.ScalarSimilarityKernel;
+import edu.vandy.recommender.common.SimilarityKernel;
+import edu.vandy.recommender.common.VectorSimilarityKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This JMH benchmark compares the cost of scoring one query vector
+ * against every movie in a catalog using the original stream-based
+ * {@link CosineSimilarityUtils#cosineSimilarity(List, List, boolean)}
+ * method and the scalar and SIMD {@link SimilarityKernel}
+ * implementations that operate on a pre-normalized {@link
+ * MovieCatalog}.  It also compares the multi-movie scorers, i.e., the
+ * boxed {@link CosineSimilarityUtils#sumOfCosines(List, List, Map,
+ * boolean)}, its catalog counterpart, and one dot product against
+ * the summed profile vector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CosineSimilarityBenchmark {
+    /**
+     * The number of movies in the synthetic catalog.
+     */
+    @Param({"4800"})
+    public int movies;
+
+    /**
+     * The number of components in each movie vector.
+     */
+    @Param({"16", "64", "256"})
+    public int dimension;
+
+    /**
+     * The number of movies a multi-movie query has watched.
+     */
+    @Param({"5"})
+    public int watched;
+
+    /**
+     * The movie vectors in the original boxed representation.
+     */
+    private List<List<Double>> mVectorList;
+
+    /**
+     * The movie vectors packed into a {@link MovieCatalog}.
+     */
+    private MovieCatalog mCatalog;
+
+    /**
+     * The query vector in the boxed representation.
+     */
+    private List<Double> mQueryList;
+
+    /**
+     * The L2-normalized query vector.
+     */
+    private double[] mQuery;
+
+    /**
+     * The movie vectors keyed by title.
+     */
+    private Map<String, List<Double>> mMovies;
+
+    /**
+     * The titles of the watched movies.
+     */
+    private List<String> mWatchedTitles;
+
+    /**
+     * The catalog ids of the watched movies.
+     */
+    private int[] mWatchedIds;
+
+    /**
+     * The sum of the normalized watched vectors.
+     */
+    private double[] mProfile;
+
+    private final SimilarityKernel mScalarKernel =
+        new ScalarSimilarityKernel();
+
+    private SimilarityKernel mVectorKernel;
+
+    /**
+     * Generate a random catalog and query vector.
+     */
+    @Setup
+    public void setup() {
+        var random = new Random(SyntheticCatalog.SEED);
+
+        mMovies = SyntheticCatalog.movies(movies, dimension);
+        mCatalog = MovieCatalog.of(mMovies);
+        mVectorList = new ArrayList<>(mMovies.values());
+        mQueryList = SyntheticCatalog.vector(random, dimension);
+        mQuery = CosineSimilarityUtils.normalize(mQueryList
+            .stream()
+            .mapToDouble(Double::doubleValue)
+            .toArray());
+        mVectorKernel = SimilarityKernel.isVectorApiAvailable()
+            ? new VectorSimilarityKernel()
+            : mScalarKernel;
+
+        var titles = new ArrayList<>(mMovies.keySet());
+        mWatchedTitles = new ArrayList<>(watched);
+        for (int i = 0; i < watched; i++)
+            mWatchedTitles.add(titles.get(random.nextInt(titles.size())));
+        mWatchedIds = mWatchedTitles
+            .stream()
+            .mapToInt(mCatalog::idOf)
+            .toArray();
+        mProfile = CosineSimilarityUtils.profileVector(mCatalog, mWatchedIds);
+    }
+
+    /**
+     * Score the query with sequential streams over boxed vectors.
+     */
+    @Benchmark
+    public double streamSequential() {
+        double sum = 0.0;
+        for (var vector : mVectorList)
+            sum += CosineSimilarityUtils
+                .cosineSimilarity(vector, mQueryList, false);
+        return sum;
+    }
+
+    /**
+     * Score the query with parallel streams over boxed vectors,
+     * which is how the recommenders originally called the method.
+     */
+    @Benchmark
+    public double streamParallel() {
+        double sum = 0.0;
+        for (var vector : mVectorList)
+            sum += CosineSimilarityUtils
+                .cosineSimilarity(vector, mQueryList, true);
+        return sum;
+    }
+
+    /**
+     * Score the query with the scalar kernel over the catalog.
+     */
+    @Benchmark
+    public double scalarKernel() {
+        return scoreAll(mScalarKernel);
+    }
+
+    /**
+     * Score the query with the Vector API kernel over the catalog.
+     */
+    @Benchmark
+    public double vectorKernel() {
+        return scoreAll(mVectorKernel);
+    }
+
+    /**
+     * Score every movie against the watched movies with sequential
+     * streams over boxed vectors.
+     */
+    @Benchmark
+    public double sumOfCosinesBoxed() {
+        double sum = 0.0;
+        for (var vector : mVectorList)
+            sum += CosineSimilarityUtils
+                .sumOfCosines(vector, mWatchedTitles, mMovies, false);
+        return sum;
+    }
+
+    /**
+     * Score every movie against the watched movies with one dot
+     * product per watched movie over the catalog.
+     */
+    @Benchmark
+    public double sumOfCosinesCatalog() {
+        double sum = 0.0;
+        for (int id = 0; id < mCatalog.size(); id++)
+            sum += CosineSimilarityUtils
+                .sumOfCosines(mCatalog, id, mWatchedIds);
+        return sum;
+    }
+
+    /**
+     * Score every movie against the summed profile vector of the
+     * watched movies, i.e., with one dot product per movie.
+     */
+    @Benchmark
+    public double sumOfCosinesProfile() {
+        double sum = 0.0;
+        for (int id = 0; id < mCatalog.size(); id++)
+            sum += CosineSimilarityUtils.dot(mCatalog, id, mProfile);
+        return sum;
+    }
+
+    /**
+     * Score the query against every catalog movie.
+     */
+    private double scoreAll(SimilarityKernel kernel) {
+        double[] vectors = mCatalog.vectors();
+        int dimension = mCatalog.dimension();
+
+        double sum = 0.0;
+        for (int id = 0; id < mCatalog.size(); id++)
+            sum += kernel.dot(vectors,
+                              mCatalog.offset(id),
+                              mQuery,
+                              0,
+                              dimension);
+        return sum;
+    }
+}
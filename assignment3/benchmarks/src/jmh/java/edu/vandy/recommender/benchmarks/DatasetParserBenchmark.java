@@ -0,0 +1,107 @@
+package edu.vandy.recommender.benchmarks;
+
+import edu.vandy.recommender.common.MovieDatasetParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * This JMH benchmark compares the cost of parsing the movie dataset
+ * CSV with the {@link MovieDatasetParser} byte parser and with the
+ * original line-by-line parser, which split each line and its vector
+ * with regular expressions and boxed every component.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DatasetParserBenchmark {
+    /**
+     * The regex that splits a vector into its components.
+     */
+    private static final Pattern SPLITTER = Pattern.compile(" ");
+
+    /**
+     * The number of movies in the synthetic dataset.
+     */
+    @Param({"4800", "50000"})
+    public int movies;
+
+    /**
+     * The number of components in each movie vector.
+     */
+    @Param({"64"})
+    public int dimension;
+
+    /**
+     * The CSV bytes of the dataset.
+     */
+    private byte[] mCsv;
+
+    /**
+     * Generate the dataset.
+     */
+    @Setup
+    public void setup() {
+        mCsv = SyntheticCatalog.csv(SyntheticCatalog.movies(movies, dimension));
+    }
+
+    /**
+     * Parse the dataset with the {@link MovieDatasetParser}.
+     */
+    @Benchmark
+    public MovieDatasetParser.Dataset byteParser() {
+        return MovieDatasetParser.parse(ByteBuffer.wrap(mCsv));
+    }
+
+    /**
+     * Parse the dataset the original way, i.e., split each line at
+     * the {@code ;} and split its vector into boxed components.
+     */
+    @Benchmark
+    public Map<String, List<Double>> regexParser() throws IOException {
+        var movies = new HashMap<String, List<Double>>();
+
+        try (var reader = new BufferedReader
+             (new InputStreamReader(new ByteArrayInputStream(mCsv),
+                                    StandardCharsets.UTF_8))) {
+            // Skip the header line.
+            reader.readLine();
+
+            for (String line; (line = reader.readLine()) != null; ) {
+                String[] strings = line.split(";");
+                movies.putIfAbsent(strings[0], parseVector(strings[1]));
+            }
+        }
+        return movies;
+    }
+
+    /**
+     * Convert the {@link String} form of a vector, e.g., {@code "[ 0.5
+     * -1.0 ]"} with the quotes, into a {@link List} of {@link Double}.
+     */
+    private static List<Double> parseVector(String movieValues) {
+        return SPLITTER
+            .splitAsStream(movieValues
+                           // Remove the quotes, brackets, and spaces.
+                           .substring(3, movieValues.length() - 3))
+            .map(Double::valueOf)
+            .toList();
+    }
+}
@@ -0,0 +1,103 @@
+package edu.vandy.recommender.benchmarks;
+
+import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.utils.GetTopK;
+import edu.vandy.recommender.utils.TopKSelector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This JMH benchmark compares the {@link GetTopK} variants that
+ * select the top {@code k} of a {@link Collection}, a {@link
+ * java.util.stream.Stream}, and a {@link Flux} of {@link Ranking}
+ * objects with a {@link TopKSelector} over primitive ids and scores,
+ * which the recommenders use instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GetTopKBenchmark {
+    /**
+     * The number of items to select from.
+     */
+    @Param({"4800", "100000"})
+    public int movies;
+
+    /**
+     * The number of items to select.
+     */
+    @Param({"10", "100"})
+    public int k;
+
+    /**
+     * The items to select from.
+     */
+    private List<Ranking> mRankings;
+
+    /**
+     * The scores of the items, indexed by item id.
+     */
+    private double[] mScores;
+
+    /**
+     * Generate the items.
+     */
+    @Setup
+    public void setup() {
+        mRankings = SyntheticCatalog.rankings(movies);
+        mScores = mRankings
+            .stream()
+            .mapToDouble(Ranking::getCosineSimilarity)
+            .toArray();
+    }
+
+    /**
+     * Select the top items of a {@link Collection}.
+     */
+    @Benchmark
+    public Collection<Ranking> collection() {
+        return GetTopK.getTopK(mRankings, k);
+    }
+
+    /**
+     * Select the top items of a sequential stream.
+     */
+    @Benchmark
+    public List<Ranking> stream() {
+        return GetTopK.getTopK(mRankings.stream(), k).toList();
+    }
+
+    /**
+     * Select the top items of a {@link Flux}.
+     */
+    @Benchmark
+    public List<Ranking> flux() {
+        return GetTopK
+            .getTopK(Flux.fromIterable(mRankings), k)
+            .collectList()
+            .block();
+    }
+
+    /**
+     * Select the top ids and scores with a {@link TopKSelector}.
+     */
+    @Benchmark
+    public void selector(Blackhole blackhole) {
+        var selector = new TopKSelector(k);
+        for (int id = 0; id < mScores.length; id++)
+            selector.offer(id, mScores[id]);
+        selector.drain((rank, id, score) -> blackhole.consume(id));
+    }
+}
@@ -0,0 +1,132 @@
+package edu.vandy.recommender.benchmarks;
+
+import edu.vandy.recommender.common.GetTopRecommendations;
+import edu.vandy.recommender.common.GetTopRecommendationsFlux;
+import edu.vandy.recommender.common.GetTopRecommendationsStream;
+import edu.vandy.recommender.common.model.Ranking;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.ParallelFlux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This JMH benchmark compares the heap-based and the sort-based
+ * implementations of {@link GetTopRecommendations}, {@link
+ * GetTopRecommendationsStream}, and {@link GetTopRecommendationsFlux}
+ * that select the top {@code maxCount} of the scored catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GetTopRecommendationsBenchmark {
+    /**
+     * The number of scored movies to select from.
+     */
+    @Param({"4800", "100000"})
+    public int movies;
+
+    /**
+     * The number of recommendations to select.
+     */
+    @Param({"10", "100"})
+    public int maxCount;
+
+    /**
+     * The scored movies.
+     */
+    private List<Ranking> mRankings;
+
+    /**
+     * Generate the scored movies.
+     */
+    @Setup
+    public void setup() {
+        mRankings = SyntheticCatalog.rankings(movies);
+    }
+
+    /**
+     * Select from a {@link Collection} with a bounded heap.
+     */
+    @Benchmark
+    public Collection<Ranking> collectionHeap() {
+        return GetTopRecommendations
+            .getTopRecommendationsHeap(mRankings, maxCount);
+    }
+
+    /**
+     * Select from a {@link Collection} by sorting a {@link
+     * java.util.TreeSet}.
+     */
+    @Benchmark
+    public Collection<Ranking> collectionSort() {
+        return GetTopRecommendations
+            .getTopRecommendationsSort(mRankings, maxCount);
+    }
+
+    /**
+     * Select from a sequential stream with a bounded heap.
+     */
+    @Benchmark
+    public List<Ranking> streamHeap() {
+        return GetTopRecommendationsStream
+            .getTopRecommendationsHeap(mRankings.stream(), maxCount);
+    }
+
+    /**
+     * Select from a sequential stream by sorting it.
+     */
+    @Benchmark
+    public List<Ranking> streamSort() {
+        return GetTopRecommendationsStream
+            .getTopRecommendationsSort(mRankings.stream(), maxCount);
+    }
+
+    /**
+     * Select from a {@link Flux} with a bounded heap.
+     */
+    @Benchmark
+    public List<Ranking> fluxHeap() {
+        return GetTopRecommendationsFlux
+            .getTopRecommendationsHeap(Flux.fromIterable(mRankings), maxCount)
+            .collectList()
+            .block();
+    }
+
+    /**
+     * Select with one heap per rail of a {@link ParallelFlux} on the
+     * parallel() Scheduler.
+     */
+    @Benchmark
+    public List<Ranking> parallelFluxHeap() {
+        return GetTopRecommendationsFlux
+            .getTopRecommendationsHeap(Flux
+                                       .fromIterable(mRankings)
+                                       .parallel()
+                                       .runOn(Schedulers.parallel()),
+                                       maxCount)
+            .collectList()
+            .block();
+    }
+
+    /**
+     * Select from a {@link Flux} by sorting it.
+     */
+    @Benchmark
+    public List<Ranking> fluxSort() {
+        return GetTopRecommendationsFlux
+            .getTopRecommendationsSort(Flux.fromIterable(mRankings), maxCount)
+            .collectList()
+            .block();
+    }
+}
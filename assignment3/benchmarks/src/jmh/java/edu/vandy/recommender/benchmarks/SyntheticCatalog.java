@@ -0,0 +1,134 @@
+package edu.vandy.recommender.benchmarks;
+
+import edu.vandy.recommender.common.MovieCatalog;
+import edu.vandy.recommender.common.model.Ranking;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This utility class generates reproducible synthetic movie data for
+ * the benchmarks, so each benchmark can be run at any catalog size
+ * and vector dimension without the real dataset.  The titles are made
+ * of words from a small vocabulary plus a unique number, so title
+ * searches match a realistic fraction of the catalog.
+ */
+public final class SyntheticCatalog {
+    /**
+     * The words the titles are made of.
+     */
+    private static final String[] WORDS = {
+        "the", "last", "night", "star", "river", "dark", "city", "love",
+        "war", "king", "secret", "lost", "game", "blue", "house",
+        "summer", "ghost", "road", "island", "dream", "fire", "silent",
+        "return", "empire", "shadow", "golden", "wild", "storm"
+    };
+
+    /**
+     * The seed used by all generators, so runs are comparable.
+     */
+    public static final long SEED = 42;
+
+    /**
+     * A utility class should not be instantiated.
+     */
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * Generate the titles and vectors of a catalog.
+     *
+     * @param movies The number of movies
+     * @param dimension The number of components in each vector
+     * @return A {@link Map} that associates each title with its
+     *         vector, in generation order
+     */
+    public static Map<String, List<Double>> movies(int movies,
+                                                   int dimension) {
+        var random = new Random(SEED);
+        var map = new LinkedHashMap<String, List<Double>>(movies * 4 / 3 + 1);
+
+        for (int i = 0; i < movies; i++)
+            map.put(title(random, i), vector(random, dimension));
+        return map;
+    }
+
+    /**
+     * Generate a catalog.
+     *
+     * @param movies The number of movies
+     * @param dimension The number of components in each vector
+     * @return A {@link MovieCatalog} of the generated movies
+     */
+    public static MovieCatalog catalog(int movies, int dimension) {
+        return MovieCatalog.of(movies(movies, dimension));
+    }
+
+    /**
+     * Generate random {@link Ranking} objects with distinct titles.
+     *
+     * @param count The number of rankings
+     * @return A {@link List} of {@link Ranking} objects in no
+     *         particular order
+     */
+    public static List<Ranking> rankings(int count) {
+        var random = new Random(SEED);
+        var rankings = new ArrayList<Ranking>(count);
+
+        for (int i = 0; i < count; i++)
+            rankings.add(new Ranking(title(random, i),
+                                     random.nextDouble() * 2.0 - 1.0));
+        return rankings;
+    }
+
+    /**
+     * Encode the {@code movies} in the dataset CSV format, i.e., a
+     * header line followed by one {@code title;"[ v1 v2 ... ]"} line
+     * per movie.
+     *
+     * @param movies The titles and vectors to encode
+     * @return The UTF-8 bytes of the CSV file
+     */
+    public static byte[] csv(Map<String, List<Double>> movies) {
+        var csv = new StringBuilder("title;vector\n");
+
+        movies.forEach((title, vector) -> {
+                csv.append(title).append(";\"[");
+                for (double component : vector)
+                    csv.append(' ').append(component);
+                csv.append(" ]\"\n");
+            });
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return A random vector with components in [-1, 1)
+     */
+    public static List<Double> vector(Random random, int dimension) {
+        var vector = new ArrayList<Double>(dimension);
+        for (int i = 0; i < dimension; i++)
+            vector.add(random.nextDouble() * 2.0 - 1.0);
+        return vector;
+    }
+
+    /**
+     * @return A title of two to four random words that's made unique
+     *         by the movie's {@code number}
+     */
+    private static String title(Random random, int number) {
+        var title = new StringBuilder();
+        int words = 2 + random.nextInt(3);
+
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            title.append(Character.toUpperCase(word.charAt(0)))
+                .append(word, 1, word.length())
+                .append(' ');
+        }
+        return title.append(number).toString();
+    }
+}
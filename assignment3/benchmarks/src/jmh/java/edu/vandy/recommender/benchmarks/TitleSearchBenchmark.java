@@ -0,0 +1,118 @@
+package edu.vandy.recommender.benchmarks;
+
+import edu.vandy.recommender.common.TitleIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This JMH benchmark compares the title search paths, i.e., the
+ * trigram {@link TitleIndex} and the case-insensitive scan of every
+ * title that it replaced, for a single query and for a list of
+ * queries matched with "any" semantics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TitleSearchBenchmark {
+    /**
+     * The query of a single-query search, which is kept in its own
+     * state so only the single-query benchmarks run once per query.
+     */
+    @State(Scope.Benchmark)
+    public static class SingleQuery {
+        /**
+         * A query that's too short for the trigram index, a common
+         * word, and a rare phrase.
+         */
+        @Param({"st", "river", "golden storm"})
+        public String query;
+    }
+
+    /**
+     * The number of movies in the synthetic catalog.
+     */
+    @Param({"4800", "100000"})
+    public int movies;
+
+    /**
+     * The queries of a multi-query search.
+     */
+    private final List<String> mQueries =
+        List.of("night", "lost city", "empire", "ghost road");
+
+    /**
+     * The catalog titles.
+     */
+    private List<String> mTitles;
+
+    /**
+     * The index of the catalog titles.
+     */
+    private TitleIndex mIndex;
+
+    /**
+     * Generate the titles and index them.
+     */
+    @Setup
+    public void setup() {
+        mTitles = new ArrayList<>(SyntheticCatalog.movies(movies, 1).keySet());
+        mIndex = new TitleIndex(mTitles);
+    }
+
+    /**
+     * Search for the single query in the index.
+     */
+    @Benchmark
+    public int[] indexSearch(SingleQuery single) {
+        return mIndex.search(single.query);
+    }
+
+    /**
+     * Search for the single query by scanning every title.
+     */
+    @Benchmark
+    public List<String> scanSearch(SingleQuery single) {
+        String folded = single.query.toLowerCase(Locale.ROOT);
+        return mTitles
+            .stream()
+            .filter(title -> title.toLowerCase(Locale.ROOT).contains(folded))
+            .toList();
+    }
+
+    /**
+     * Search for any of the queries in the index.
+     */
+    @Benchmark
+    public int[] indexSearchAny() {
+        return mIndex.searchAny(mQueries);
+    }
+
+    /**
+     * Search for any of the queries by scanning every title.
+     */
+    @Benchmark
+    public List<String> scanSearchAny() {
+        List<String> folded = mQueries
+            .stream()
+            .map(query -> query.toLowerCase(Locale.ROOT))
+            .toList();
+        return mTitles
+            .stream()
+            .filter(title -> {
+                    String lower = title.toLowerCase(Locale.ROOT);
+                    return folded.stream().anyMatch(lower::contains);
+                })
+            .toList();
+    }
+}
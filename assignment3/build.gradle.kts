@@ -45,7 +45,9 @@ subprojects {
                 listOf(
                     "--enable-preview",
                     "--add-modules",
-                    "jdk.incubator.concurrent"
+                    "jdk.incubator.concurrent",
+                    "--add-modules",
+                    "jdk.incubator.vector"
                 )
             )
             targetCompatibility = "19"
@@ -59,6 +61,8 @@ subprojects {
                     "--enable-preview",
                     "--add-modules",
                     "jdk.incubator.concurrent",
+                    "--add-modules",
+                    "jdk.incubator.vector",
                     // For mockk workaround for JDK 17+ static mocks issues.
                     "--add-opens",
                     "java.base/java.util.concurrent=ALL-UNNAMED",
@@ -38,6 +38,8 @@ public class RecommenderClientDriver
         System.out.println("Entering the RecommenderClientDriver tests");
 
         testAsyncClient.runTests("parallelflux");
+        testAsyncClient.runTests("parallelstream");
+        testAsyncClient.runTests("structuredconcurrency");
 
         testAsyncClient.printTestResults();
 
@@ -8,6 +8,8 @@ import reactor.core.publisher.Flux;
 import java.util.List;
 
 import static edu.vandy.recommender.common.Constants.Service.PARALLEL_FLUX;
+import static edu.vandy.recommender.common.Constants.Service.PARALLEL_STREAM;
+import static edu.vandy.recommender.common.Constants.Service.STRUCTURED_CONCURRENCY;
 
 /**
  * This class is a proxy to the {@code Recommender*} microservices and
@@ -23,12 +25,28 @@ public class RecommenderAsyncProxy {
     @Autowired
     ParallelFluxAPI mParallelFluxAPI;
 
+    /**
+     * This auto-wired field connects the {@link ParallelStreamAPI} to
+     * the {@link RecommenderAsyncProxy} that performs HTTP requests
+     * asynchronously.
+     */
+    @Autowired
+    ParallelStreamAPI mParallelStreamAPI;
+
+    /**
+     * This auto-wired field connects the {@link
+     * StructuredConcurrencyAPI} to the {@link RecommenderAsyncProxy}
+     * that performs HTTP requests asynchronously.
+     */
+    @Autowired
+    StructuredConcurrencyAPI mStructuredConcurrencyAPI;
+
     /**
      * Return a {@link List} of all movie titles.
      *
-     * @param strategy The implementation strategy to invoke (e.g.,
-     *                 "structureconcurrency", "parallelstream",
-     *                 "sequentialloop", etc.)
+     * @param strategy The implementation strategy to invoke, i.e.,
+     *                 "parallelflux", "parallelstream", or
+     *                 "structuredconcurrency"
      * @param timed    True if the implementation strategy should be
      *                 timed, else false
      * @return A {@link Flux} that emits {@link Ranking} objects
@@ -43,6 +61,16 @@ public class RecommenderAsyncProxy {
                     mParallelFluxAPI.getMoviesTimed() :
                     mParallelFluxAPI.getMovies();
         }
+        else if (strategy.equals(PARALLEL_STREAM)) {
+            return timed?
+                    mParallelStreamAPI.getMoviesTimed() :
+                    mParallelStreamAPI.getMovies();
+        }
+        else if (strategy.equals(STRUCTURED_CONCURRENCY)) {
+            return timed?
+                    mStructuredConcurrencyAPI.getMoviesTimed() :
+                    mStructuredConcurrencyAPI.getMovies();
+        }
         throw new IllegalArgumentException();
     }
 
@@ -50,9 +78,9 @@ public class RecommenderAsyncProxy {
      * Search for movie titles in the database containing the given
      * query {@link String}.
      *
-     * @param strategy The implementation strategy to invoke (e.g.,
-     *                 "structureconcurrency", "parallelstream",
-     *                 "sequentialloop", etc.)
+     * @param strategy The implementation strategy to invoke, i.e.,
+     *                 "parallelflux", "parallelstream", or
+     *                 "structuredconcurrency"
      * @param query    The {@link String} to search for
      * @param timed    True if the implementation strategy should be
      *                 timed, else false
@@ -69,6 +97,16 @@ public class RecommenderAsyncProxy {
                     mParallelFluxAPI.searchMoviesTimed(query) :
                     mParallelFluxAPI.searchMovies(query);
         }
+        else if (strategy.equals(PARALLEL_STREAM)) {
+            return timed?
+                    mParallelStreamAPI.searchMoviesTimed(query) :
+                    mParallelStreamAPI.searchMovies(query);
+        }
+        else if (strategy.equals(STRUCTURED_CONCURRENCY)) {
+            return timed?
+                    mStructuredConcurrencyAPI.searchMoviesTimed(query) :
+                    mStructuredConcurrencyAPI.searchMovies(query);
+        }
         throw new IllegalArgumentException();
     }
 
@@ -78,8 +116,9 @@ public class RecommenderAsyncProxy {
      * parameter containing the title of the movie that has been
      * watched.
      *
-     * @param strategy     The implementation strategy to invoke (e.g.,
-     *                     "parallelflux", "concurrentflux", etc.)
+     * @param strategy     The implementation strategy to invoke, i.e.,
+     *                     "parallelflux", "parallelstream", or
+     *                     "structuredconcurrency"
      * @param watchedMovie A {@link String} indicating the title of
      *                     the movie that has been watched
      * @param maxCount     The upper limit for the number of
@@ -99,6 +138,16 @@ public class RecommenderAsyncProxy {
                     mParallelFluxAPI.recommendationsTimed(watchedMovie, maxCount) :
                     mParallelFluxAPI.recommendations(watchedMovie, maxCount);
         }
+        else if (strategy.equals(PARALLEL_STREAM)) {
+            return timed?
+                    mParallelStreamAPI.recommendationsTimed(watchedMovie, maxCount) :
+                    mParallelStreamAPI.recommendations(watchedMovie, maxCount);
+        }
+        else if (strategy.equals(STRUCTURED_CONCURRENCY)) {
+            return timed?
+                    mStructuredConcurrencyAPI.recommendationsTimed(watchedMovie, maxCount) :
+                    mStructuredConcurrencyAPI.recommendations(watchedMovie, maxCount);
+        }
         throw new IllegalArgumentException();
     }
 
@@ -107,8 +156,9 @@ public class RecommenderAsyncProxy {
      * function of movies the user has watched previously, indicated
      * by a {@link List} of movie titles in the request body.
      *
-     * @param strategy      The implementation strategy to invoke (e.g.,
-     *                      "parallelflux", "concurrentflux", etc.)
+     * @param strategy      The implementation strategy to invoke, i.e.,
+     *                      "parallelflux", "parallelstream", or
+     *                      "structuredconcurrency"
      * @param watchedMovies A {@link List} of titles of movies the
      *                      user has watched
      * @param maxCount      The upper limit for the number of
@@ -128,6 +178,16 @@ public class RecommenderAsyncProxy {
                     mParallelFluxAPI.recommendationsTimed(watchedMovies, maxCount) :
                     mParallelFluxAPI.recommendations(watchedMovies, maxCount);
         }
+        else if (strategy.equals(PARALLEL_STREAM)) {
+            return timed?
+                    mParallelStreamAPI.recommendationsTimed(watchedMovies, maxCount) :
+                    mParallelStreamAPI.recommendations(watchedMovies, maxCount);
+        }
+        else if (strategy.equals(STRUCTURED_CONCURRENCY)) {
+            return timed?
+                    mStructuredConcurrencyAPI.recommendationsTimed(watchedMovies, maxCount) :
+                    mStructuredConcurrencyAPI.recommendations(watchedMovies, maxCount);
+        }
         throw new IllegalArgumentException();
     }
 }
@@ -0,0 +1,18 @@
+package edu.vandy.recommender.client.proxies;
+
+import org.springframework.web.service.annotation.HttpExchange;
+
+import static edu.vandy.recommender.common.Constants.Service.STRUCTURED_CONCURRENCY;
+
+/**
+ * This interface provides the contract for the RESTful {@code
+ * StructuredConcurrencyController} API used in conjunction with the {@code
+ * GatewayApplication}.  The controller serves the same endpoints as
+ * the {@code ParallelFluxController}, so this interface inherits the
+ * methods of the {@link ParallelFluxAPI} and only replaces its
+ * {@code @HttpExchange} prefix.
+ */
+@HttpExchange(STRUCTURED_CONCURRENCY + "/")
+public interface StructuredConcurrencyAPI
+       extends ParallelFluxAPI {
+}
@@ -2,9 +2,12 @@ package edu.vandy.recommender.common;
 
 import edu.vandy.recommender.client.proxies.DatabaseAPI;
 import edu.vandy.recommender.client.proxies.ParallelFluxAPI;
+import edu.vandy.recommender.client.proxies.ParallelStreamAPI;
+import edu.vandy.recommender.client.proxies.StructuredConcurrencyAPI;
 import edu.vandy.recommender.client.proxies.TimerAPI;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -50,12 +53,43 @@ public class ClientBeans {
     }
 
     /**
-     * @return A new instance of the {@link ParallelFluxAPI}
+     * @return A new instance of the {@link ParallelFluxAPI}, which is
+     *         the {@code Primary} one since the other recommender
+     *         APIs extend it
      */
     @Bean
+    @Primary
     public ParallelFluxAPI getParallelFluxAPI() {
         // TODO -- you fill in here, replacing 'return null' with the
         // proper code.
+        return createRecommenderClient(ParallelFluxAPI.class);
+    }
+
+    /**
+     * @return A new instance of the {@link ParallelStreamAPI}
+     */
+    @Bean
+    public ParallelStreamAPI getParallelStreamAPI() {
+        return createRecommenderClient(ParallelStreamAPI.class);
+    }
+
+    /**
+     * @return A new instance of the {@link StructuredConcurrencyAPI}
+     */
+    @Bean
+    public StructuredConcurrencyAPI getStructuredConcurrencyAPI() {
+        return createRecommenderClient(StructuredConcurrencyAPI.class);
+    }
+
+    /**
+     * Create an HTTP interface client of a recommender API that makes
+     * HTTP requests to the {@code GatewayApplication}.
+     *
+     * @param api The {@link ParallelFluxAPI} interface whose {@code
+     *            HttpExchange} prefix selects the recommender
+     * @return A new instance of the {@code api}
+     */
+    private static <T extends ParallelFluxAPI> T createRecommenderClient(Class<T> api) {
         var webClient = WebClient
                 .builder()
                 .baseUrl(GATEWAY_BASE_URL)
@@ -65,7 +99,7 @@ public class ClientBeans {
                 .builder(WebClientAdapter
                         .forClient(webClient))
                 .build()
-                .createClient(ParallelFluxAPI.class);
+                .createClient(api);
     }
 
     /**
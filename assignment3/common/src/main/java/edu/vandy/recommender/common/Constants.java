@@ -33,12 +33,22 @@ public class Constants {
         public static final String POST_SEARCHES_EX = "searchesEx";
         public static final String SEARCH_QUERY = "{query}";
         public static final String PATH_QUERY = "query";
+        public static final String GET_CATALOG_VERSION = "catalogVersion";
+        public static final String GET_CATALOG_CHANGES = "catalogChanges";
+        public static final String PUT_MOVIE = "movie";
+        public static final String DELETE_MOVIE = "movie";
+        public static final String MOVIE_TITLE = "{title}";
 
         /*
         * Recommender microservice endponts.
          */
         public static final String GET_RECOMMENDATIONS = "getRecommendations";
         public static final String POST_RECOMMENDATIONS = "postRecommendations";
+        public static final String POST_BATCH_RECOMMENDATIONS = "postBatchRecommendations";
+        public static final String GET_PROGRESSIVE_RECOMMENDATIONS = "getProgressiveRecommendations";
+        public static final String GET_MOVIE_VECTOR = "getMovieVector";
+        public static final String POST_SHARD_RECOMMENDATIONS = "postShardRecommendations";
+        public static final String GET_SHARDED_RECOMMENDATIONS = "getShardedRecommendations";
 
         /*
         * Timer microservice endpoints.
@@ -58,6 +68,8 @@ public class Constants {
         public static final String MOVIES = "movies";
         public static final String DATABASE_EX = "databaseex";
         public static final String PARALLEL_FLUX = "parallelflux";
+        public static final String PARALLEL_STREAM = "parallelstream";
+        public static final String STRUCTURED_CONCURRENCY = "structuredconcurrency";
     }
 
     /**
@@ -67,6 +79,14 @@ public class Constants {
         public static final String QUERIES_PARAM = "queries";
         public static final String WATCHED_MOVIE_PARAM = "watchedMovie";
         public static final String MAX_COUNT_PARAM = "maxCount";
+        public static final String SINCE_PARAM = "since";
+        public static final String EPOCH_PARAM = "epoch";
+        public static final String DEADLINE_PARAM = "deadlineMs";
+        public static final String DEADLINE_HEADER = "X-Deadline-Ms";
+        public static final String SHARD_PARAM = "shard";
+        public static final String SHARDS_PARAM = "shards";
+        public static final String SHARD_INDEX_METADATA = "shard-index";
+        public static final String SHARD_COUNT_METADATA = "shard-count";
         public static final String MOVIES_CACHE = "moviesCache";
         public static final String ROUTE_NAME = "{routename}";
     }
@@ -0,0 +1,419 @@
+package edu.vandy.recommender.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class stores the movie titles and cosine vectors in a dense,
+ * primitive form.  All vectors are packed into a single contiguous
+ * row-major {@code double[]} matrix (one row per movie) and each
+ * movie is identified by an {@code int} id that indexes both the
+ * title dictionary and the matrix row.
+ *
+ * Compared with a {@link Map} of {@link List} of {@link Double}
+ * objects, this layout avoids a boxed {@link Double} and a reference
+ * per vector component, so a full scan of the catalog streams
+ * through memory sequentially instead of chasing pointers.
+ *
+ * Each vector is L2-normalized once when the catalog is built and its
+ * original norm is cached in {@link #norm(int)}, so the cosine
+ * similarity of two catalog vectors reduces to a single dot product.
+ *
+ * Movie ids are assigned in ascending title order, so iterating ids
+ * from {@code 0} to {@code size() - 1} visits the titles in the same
+ * order as the {@link java.util.TreeMap} this class replaces.
+ * Instances are immutable once constructed.
+ */
+public class MovieCatalog {
+    /**
+     * The movie titles indexed by movie id.
+     */
+    private final String[] mTitles;
+
+    /**
+     * Maps each movie title to its movie id.
+     */
+    private final Map<String, Integer> mIds;
+
+    /**
+     * The L2-normalized cosine vectors of all movies stored in
+     * row-major order, i.e., the vector for movie {@code id} occupies
+     * the range {@code [id * mDimension, (id + 1) * mDimension)}.
+     */
+    private final double[] mVectors;
+
+    /**
+     * The original L2 norm of each movie vector indexed by movie id.
+     */
+    private final double[] mNorms;
+
+    /**
+     * The number of components in each cosine vector.
+     */
+    private final int mDimension;
+
+    /**
+     * An unmodifiable {@link List} view of {@link #mTitles}.
+     */
+    private final List<String> mTitleList;
+
+    /**
+     * The {@link TitleIndex} over {@link #mTitles}, which is built the
+     * first time a substring search needs it.
+     */
+    private volatile TitleIndex mTitleIndex;
+
+    /**
+     * Construct a {@link MovieCatalog} from already packed arrays.
+     * The {@code vectors} array is adopted rather than copied and its
+     * rows are normalized in place.
+     *
+     * @param titles The movie titles sorted in ascending order
+     * @param vectors The row-major vector matrix, whose length must
+     *                be {@code titles.length * dimension}
+     * @param dimension The number of components in each vector
+     */
+    public MovieCatalog(String[] titles,
+                        double[] vectors,
+                        int dimension) {
+        this(titles, vectors, null, dimension);
+    }
+
+    /**
+     * Construct a {@link MovieCatalog} from already packed arrays,
+     * normalizing the rows of {@code vectors} in place unless their
+     * original {@code norms} are given.
+     *
+     * @param titles The movie titles sorted in ascending order
+     * @param vectors The row-major vector matrix
+     * @param norms The original norm of each row of the already
+     *              normalized {@code vectors}, or null to normalize
+     *              them
+     * @param dimension The number of components in each vector
+     */
+    private MovieCatalog(String[] titles,
+                         double[] vectors,
+                         double[] norms,
+                         int dimension) {
+        if (dimension < 0
+            || (long) titles.length * dimension != vectors.length
+            || (norms != null && norms.length != titles.length))
+            throw new IllegalArgumentException
+                ("Vector matrix size "
+                 + vectors.length
+                 + " doesn't match "
+                 + titles.length
+                 + " titles of dimension "
+                 + dimension);
+
+        mTitles = titles;
+        mVectors = vectors;
+        mDimension = dimension;
+        mTitleList = Collections.unmodifiableList(Arrays.asList(titles));
+        mNorms = norms != null ? norms : normalize(titles.length, vectors, dimension);
+
+        // Build the title -> id dictionary.
+        mIds = new HashMap<>(titles.length * 4 / 3 + 1);
+        for (int id = 0; id < titles.length; id++)
+            mIds.put(titles[id], id);
+    }
+
+    /**
+     * Normalize each row of the {@code vectors} matrix in place.  A
+     * zero vector is left as is, so all its similarities are 0.
+     *
+     * @return The original norm of each row
+     */
+    private static double[] normalize(int rows,
+                                      double[] vectors,
+                                      int dimension) {
+        var norms = new double[rows];
+
+        for (int id = 0; id < rows; id++)
+            norms[id] = normalize(vectors, id * dimension, dimension);
+        return norms;
+    }
+
+    /**
+     * Normalize the row of {@code vectors} starting at {@code offset}
+     * in place, leaving a zero vector as is.
+     *
+     * @return The original norm of the row
+     */
+    private static double normalize(double[] vectors,
+                                    int offset,
+                                    int dimension) {
+        double sum = 0.0;
+        for (int i = 0; i < dimension; i++)
+            sum += vectors[offset + i] * vectors[offset + i];
+
+        double norm = Math.sqrt(sum);
+        if (norm > 0.0)
+            for (int i = 0; i < dimension; i++)
+                vectors[offset + i] /= norm;
+        return norm;
+    }
+
+    /**
+     * Factory method that adopts already normalized vectors and their
+     * original norms, e.g., as written by {@link
+     * MovieCatalogSnapshot}, without normalizing them again.
+     *
+     * @param titles The movie titles sorted in ascending order
+     * @param vectors The row-major matrix of L2-normalized vectors
+     * @param norms The original norm of each vector
+     * @param dimension The number of components in each vector
+     * @return A {@link MovieCatalog} that adopts the given arrays
+     */
+    public static MovieCatalog ofNormalized(String[] titles,
+                                            double[] vectors,
+                                            double[] norms,
+                                            int dimension) {
+        return new MovieCatalog(titles, vectors, norms, dimension);
+    }
+
+    /**
+     * Factory method that packs the contents of a {@link Map} of
+     * movie titles and cosine vectors into a {@link MovieCatalog}.
+     *
+     * @param movieMap A {@link Map} that associates each movie title
+     *                 with its cosine vector
+     * @return A {@link MovieCatalog} containing the same movies
+     */
+    public static MovieCatalog of(Map<String, List<Double>> movieMap) {
+        // Assign the ids in ascending title order.
+        var titles = new ArrayList<>(movieMap.keySet());
+        Collections.sort(titles);
+
+        int dimension = titles.isEmpty()
+            ? 0
+            : movieMap.get(titles.get(0)).size();
+
+        var vectors = new double[titles.size() * dimension];
+
+        for (int id = 0; id < titles.size(); id++) {
+            var vector = movieMap.get(titles.get(id));
+
+            if (vector.size() != dimension)
+                throw new IllegalArgumentException
+                    ("Movie \""
+                     + titles.get(id)
+                     + "\" has "
+                     + vector.size()
+                     + " components, expected "
+                     + dimension);
+
+            // Unbox each component into its row of the matrix.
+            int offset = id * dimension;
+            for (int i = 0; i < dimension; i++)
+                vectors[offset + i] = vector.get(i);
+        }
+
+        return new MovieCatalog(titles.toArray(String[]::new),
+                                vectors,
+                                dimension);
+    }
+
+    /**
+     * Create a new {@link MovieCatalog} that contains the movies of
+     * this catalog with the given changes applied, leaving this
+     * catalog unchanged.  The unchanged rows are copied in a single
+     * merge pass over the sorted titles together with their norms, so
+     * only the rows of the {@code upserts} are normalized and the
+     * unchanged rows keep exactly the same values.
+     *
+     * @param upserts A {@link Map} that associates the title of each
+     *                added or modified movie with its cosine vector
+     * @param deletions The titles of the deleted movies, which are
+     *                  removed before the {@code upserts} are applied
+     * @return A new {@link MovieCatalog} containing the changed movies
+     */
+    public MovieCatalog withChanges(Map<String, List<Double>> upserts,
+                                    Collection<String> deletions) {
+        var changed = new TreeMap<>(upserts);
+        var deleted = new HashSet<>(deletions);
+
+        int dimension = mTitles.length > 0 || changed.isEmpty()
+            ? mDimension
+            : changed.firstEntry().getValue().size();
+
+        var titles = new ArrayList<String>(mTitles.length + changed.size());
+        var vectors = new double[(mTitles.length + changed.size()) * dimension];
+        var norms = new double[mTitles.length + changed.size()];
+        var entries = changed.entrySet().iterator();
+        var entry = entries.hasNext() ? entries.next() : null;
+        int id = 0;
+
+        // Merge the sorted titles of this catalog with the sorted
+        // titles of the upserts, which replace equal titles.
+        while (id < mTitles.length || entry != null) {
+            int order = id == mTitles.length
+                ? 1
+                : entry == null
+                ? -1
+                : mTitles[id].compareTo(entry.getKey());
+
+            if (order < 0) {
+                if (!deleted.contains(mTitles[id])) {
+                    // Copy the normalized row and its norm as is.
+                    System.arraycopy(mVectors, offset(id),
+                                     vectors, titles.size() * dimension,
+                                     dimension);
+                    norms[titles.size()] = mNorms[id];
+                    titles.add(mTitles[id]);
+                }
+                id++;
+            } else {
+                List<Double> vector = entry.getValue();
+                if (vector.size() != dimension)
+                    throw new IllegalArgumentException
+                        ("Movie \""
+                         + entry.getKey()
+                         + "\" has "
+                         + vector.size()
+                         + " components, expected "
+                         + dimension);
+
+                int offset = titles.size() * dimension;
+                for (int i = 0; i < dimension; i++)
+                    vectors[offset + i] = vector.get(i);
+                norms[titles.size()] = normalize(vectors, offset, dimension);
+                titles.add(entry.getKey());
+
+                if (order == 0)
+                    id++;
+                entry = entries.hasNext() ? entries.next() : null;
+            }
+        }
+
+        return new MovieCatalog(titles.toArray(String[]::new),
+                                Arrays.copyOf(vectors,
+                                              titles.size() * dimension),
+                                Arrays.copyOf(norms, titles.size()),
+                                dimension);
+    }
+
+    /**
+     * @return An empty {@link MovieCatalog}
+     */
+    public static MovieCatalog empty() {
+        return new MovieCatalog(new String[0], new double[0], 0);
+    }
+
+    /**
+     * @return The number of movies in this catalog
+     */
+    public int size() {
+        return mTitles.length;
+    }
+
+    /**
+     * @return True if this catalog contains no movies, else false
+     */
+    public boolean isEmpty() {
+        return mTitles.length == 0;
+    }
+
+    /**
+     * @return The number of components in each cosine vector
+     */
+    public int dimension() {
+        return mDimension;
+    }
+
+    /**
+     * @param id A movie id
+     * @return The title of the movie with the given {@code id}
+     */
+    public String title(int id) {
+        return mTitles[id];
+    }
+
+    /**
+     * @param title A movie title
+     * @return The id of the movie with the given {@code title}, or
+     *         {@code -1} if there's no such movie
+     */
+    public int idOf(String title) {
+        Integer id = mIds.get(title);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param title A movie title
+     * @return True if this catalog contains the given {@code title},
+     *         else false
+     */
+    public boolean contains(String title) {
+        return mIds.containsKey(title);
+    }
+
+    /**
+     * @return An unmodifiable {@link List} of all movie titles in
+     *         ascending order, indexed by movie id
+     */
+    public List<String> titles() {
+        return mTitleList;
+    }
+
+    /**
+     * @return A {@link TitleIndex} over the movie titles whose title
+     *         ids are the movie ids, which is built on first use
+     */
+    public TitleIndex titleIndex() {
+        TitleIndex index = mTitleIndex;
+        if (index == null)
+            synchronized (this) {
+                index = mTitleIndex;
+                if (index == null)
+                    mTitleIndex = index = new TitleIndex(mTitleList);
+            }
+        return index;
+    }
+
+    /**
+     * Returns the backing row-major matrix of L2-normalized vectors.
+     * This array is shared, not copied, so callers must treat it as
+     * read-only.
+     *
+     * @return The backing row-major vector matrix
+     */
+    public double[] vectors() {
+        return mVectors;
+    }
+
+    /**
+     * @param id A movie id
+     * @return The index in {@link #vectors()} where the vector of the
+     *         movie with the given {@code id} starts
+     */
+    public int offset(int id) {
+        return id * mDimension;
+    }
+
+    /**
+     * @param id A movie id
+     * @return The original L2 norm of the vector of the movie with
+     *         the given {@code id}
+     */
+    public double norm(int id) {
+        return mNorms[id];
+    }
+
+    /**
+     * @param id A movie id
+     * @return A copy of the L2-normalized cosine vector of the movie
+     *         with the given {@code id}
+     */
+    public double[] vector(int id) {
+        int offset = offset(id);
+        return Arrays.copyOfRange(mVectors, offset, offset + mDimension);
+    }
+}
@@ -0,0 +1,274 @@
+package edu.vandy.recommender.common;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This Java utility class saves a {@link MovieCatalog} to a snapshot
+ * file and maps it back into memory, so a recommender can restart
+ * without fetching the catalog from the database microservice or
+ * parsing it again.
+ *
+ * The file holds the catalog exactly as it's laid out in memory,
+ * with all values little-endian:
+ *
+ * <pre>
+ * header:     int32 magic "MCSN", int32 version, int32 movie count,
+ *             int32 dimension, int64 title dictionary size in bytes
+ * dictionary: int32 byte length of each title, then the UTF-8 titles
+ *             in ascending order, padded to an 8-byte boundary
+ * norms:      float64 original norm of each vector
+ * vectors:    float64 row-major matrix of the L2-normalized vectors
+ * </pre>
+ *
+ * The file is read through {@link FileChannel#map} and the aligned
+ * vector block is copied into the heap arrays of the catalog with
+ * bulk {@link java.nio.DoubleBuffer} transfers instead of being
+ * parsed or normalized again.  Only loading gets faster: the catalog
+ * doesn't keep the mapping, so each recommender still holds its own
+ * copy of the vectors and the similarity kernels keep scanning plain
+ * {@code double[]} arrays.
+ */
+public final class MovieCatalogSnapshot {
+    /**
+     * Identifies the format ("MCSN" in ASCII).
+     */
+    private static final int MAGIC = 0x4D43534E;
+
+    /**
+     * The version of the format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * The max number of bytes mapped at once, which is a multiple of
+     * {@link Double#BYTES}.
+     */
+    private static final int MAX_WINDOW = 1 << 30;
+
+    /**
+     * The size of the buffer used to write the snapshot.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A Java utility class should have a private constructor.
+     */
+    private MovieCatalogSnapshot() {}
+
+    /**
+     * Write the {@code catalog} to a snapshot file, which replaces
+     * any existing file atomically once it's complete.
+     *
+     * @param catalog The {@link MovieCatalog} to save
+     * @param path The {@link Path} of the snapshot file
+     */
+    public static void write(MovieCatalog catalog,
+                             Path path) throws IOException {
+        int count = catalog.size();
+        var titles = new byte[count][];
+        long titleBytes = 0;
+        for (int id = 0; id < count; id++) {
+            titles[id] = catalog.title(id).getBytes(StandardCharsets.UTF_8);
+            titleBytes += titles[id].length;
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        if (path.getParent() != null)
+            Files.createDirectories(path.getParent());
+
+        try (var channel = FileChannel.open(temp,
+                                            StandardOpenOption.CREATE,
+                                            StandardOpenOption.TRUNCATE_EXISTING,
+                                            StandardOpenOption.WRITE)) {
+            var buffer = ByteBuffer
+                .allocate(BUFFER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(count)
+                .putInt(catalog.dimension())
+                .putLong(titleBytes);
+
+            for (byte[] title : titles) {
+                ensureRemaining(buffer, Integer.BYTES, channel);
+                buffer.putInt(title.length);
+            }
+            for (byte[] title : titles)
+                for (int offset = 0; offset < title.length; ) {
+                    ensureRemaining(buffer, 1, channel);
+                    int length = Math.min(buffer.remaining(),
+                                          title.length - offset);
+                    buffer.put(title, offset, length);
+                    offset += length;
+                }
+
+            // Pad the dictionary so the doubles that follow are
+            // aligned.
+            long padding = dictionaryEnd(count, titleBytes)
+                - HEADER_SIZE - (long) count * Integer.BYTES - titleBytes;
+            ensureRemaining(buffer, Double.BYTES, channel);
+            buffer.put(new byte[(int) padding]);
+
+            for (int id = 0; id < count; id++) {
+                ensureRemaining(buffer, Double.BYTES, channel);
+                buffer.putDouble(catalog.norm(id));
+            }
+            for (double component : catalog.vectors()) {
+                ensureRemaining(buffer, Double.BYTES, channel);
+                buffer.putDouble(component);
+            }
+
+            flush(buffer, channel);
+            channel.force(false);
+        }
+
+        Files.move(temp,
+                   path,
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map a snapshot file into memory and build a {@link MovieCatalog}
+     * from it.
+     *
+     * @param path The {@link Path} of the snapshot file
+     * @return The {@link MovieCatalog} stored in the file
+     */
+    public static MovieCatalog read(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE)
+                throw new IOException("Truncated catalog snapshot: " + path);
+
+            var header = map(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a catalog snapshot: " + path);
+            if (header.getInt() != VERSION)
+                throw new IOException("Unsupported catalog snapshot version: "
+                                      + path);
+
+            int count = header.getInt();
+            int dimension = header.getInt();
+            long titleBytes = header.getLong();
+
+            if (count < 0
+                || dimension < 0
+                || titleBytes < 0
+                || (long) count * dimension > Integer.MAX_VALUE)
+                throw new IOException("Invalid catalog snapshot size: " + path);
+
+            long normsStart = dictionaryEnd(count, titleBytes);
+            long vectorsStart = normsStart + (long) count * Double.BYTES;
+            if (fileSize != vectorsStart
+                + (long) count * dimension * Double.BYTES)
+                throw new IOException("Truncated catalog snapshot: " + path);
+
+            // Decode the title dictionary.
+            var titles = new String[count];
+            var dictionary = map(channel, HEADER_SIZE, normsStart - HEADER_SIZE);
+            var lengths = new int[count];
+            dictionary.asIntBuffer().get(lengths);
+            dictionary.position(count * Integer.BYTES);
+            for (int id = 0; id < count; id++) {
+                if (lengths[id] < 0)
+                    throw new IOException("Corrupt catalog snapshot: " + path);
+                var bytes = new byte[lengths[id]];
+                dictionary.get(bytes);
+                titles[id] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            // Copy the norms and vectors with bulk transfers.
+            var norms = new double[count];
+            readDoubles(channel, normsStart, norms);
+            var vectors = new double[count * dimension];
+            readDoubles(channel, vectorsStart, vectors);
+
+            return MovieCatalog.ofNormalized(titles, vectors, norms, dimension);
+        } catch (IllegalArgumentException
+                 | IndexOutOfBoundsException
+                 | BufferUnderflowException e) {
+            throw new IOException("Corrupt catalog snapshot: " + path, e);
+        }
+    }
+
+    /**
+     * Copy {@code values.length} doubles starting at byte {@code
+     * position} of the {@code channel} into {@code values}, mapping at
+     * most {@link #MAX_WINDOW} bytes at a time.
+     */
+    private static void readDoubles(FileChannel channel,
+                                    long position,
+                                    double[] values) throws IOException {
+        int perWindow = MAX_WINDOW / Double.BYTES;
+        for (int start = 0; start < values.length; start += perWindow) {
+            int length = Math.min(perWindow, values.length - start);
+            map(channel, position + (long) start * Double.BYTES,
+                (long) length * Double.BYTES)
+                .asDoubleBuffer()
+                .get(values, start, length);
+        }
+    }
+
+    /**
+     * @return A read-only little-endian {@link MappedByteBuffer} over
+     *         {@code size} bytes of the {@code channel} starting at
+     *         {@code position}
+     */
+    private static MappedByteBuffer map(FileChannel channel,
+                                        long position,
+                                        long size) throws IOException {
+        var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * @return The file offset where the title dictionary ends, which
+     *         is rounded up to a multiple of {@link Double#BYTES}
+     */
+    private static long dictionaryEnd(int count, long titleBytes) {
+        long end = HEADER_SIZE + (long) count * Integer.BYTES + titleBytes;
+        return (end + Double.BYTES - 1) & -Double.BYTES;
+    }
+
+    /**
+     * Flush the {@code buffer} to the {@code channel} unless it has
+     * room for {@code bytes} more bytes.
+     */
+    private static void ensureRemaining(ByteBuffer buffer,
+                                        int bytes,
+                                        FileChannel channel) throws IOException {
+        if (buffer.remaining() < bytes)
+            flush(buffer, channel);
+    }
+
+    /**
+     * Write the contents of the {@code buffer} to the {@code channel}
+     * and clear it.
+     */
+    private static void flush(ByteBuffer buffer,
+                              FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,514 @@
+package edu.vandy.recommender.common;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * This Java utility class parses the movie dataset CSV file, whose
+ * first line is a header and whose other lines each hold a movie
+ * title and its cosine vector separated by a {@code ;}, e.g.:
+ *
+ * <pre>
+ * title;vector
+ * Movie A;"[ 0.125 -0.5 3.25e-05 ]"
+ * </pre>
+ *
+ * The file is mapped into memory (or read into one buffer if it's a
+ * resource inside a jar) and split into line-aligned chunks that are
+ * parsed in parallel.  Each chunk is tokenized byte by byte, and the
+ * vector components are parsed straight from the bytes into a
+ * primitive {@code double[]}, so no line, token, or boxed {@link
+ * Double} is created per value.  Only tokens the fast path can't round
+ * exactly, e.g., those with more than 15 significant digits, fall back
+ * to {@link Double#parseDouble(String)}.
+ */
+public final class MovieDatasetParser {
+    /**
+     * The movies of a dataset in file order.
+     *
+     * @param titles The movie titles, which may contain duplicates
+     * @param vectors The row-major matrix of cosine vectors, one row
+     *                per title
+     * @param dimension The number of components in each vector
+     */
+    public record Dataset(String[] titles,
+                          double[] vectors,
+                          int dimension) {
+        /**
+         * @return The number of rows in the dataset
+         */
+        public int size() {
+            return titles.length;
+        }
+
+        /**
+         * Build a {@link MovieCatalog} from the dataset.  If a title
+         * occurs more than once its first row is kept.
+         *
+         * @return A {@link MovieCatalog} containing the movies
+         */
+        public MovieCatalog toCatalog() {
+            int[] rows = uniqueRowsByTitle();
+            var sortedTitles = new String[rows.length];
+            var sortedVectors = new double[rows.length * dimension];
+
+            for (int id = 0; id < rows.length; id++) {
+                sortedTitles[id] = titles[rows[id]];
+                System.arraycopy(vectors, rows[id] * dimension,
+                                 sortedVectors, id * dimension,
+                                 dimension);
+            }
+
+            return new MovieCatalog(sortedTitles, sortedVectors, dimension);
+        }
+
+        /**
+         * Build a {@link TreeMap} from the dataset.  If a title
+         * occurs more than once its first row is kept.
+         *
+         * @return A {@link TreeMap} that associates each movie title
+         *         with its cosine vector
+         */
+        public TreeMap<String, List<Double>> toMap() {
+            var map = new TreeMap<String, List<Double>>();
+
+            for (int row : uniqueRowsByTitle()) {
+                var vector = new Double[dimension];
+                for (int i = 0; i < dimension; i++)
+                    vector[i] = vectors[row * dimension + i];
+                map.put(titles[row], List.of(vector));
+            }
+            return map;
+        }
+
+        /**
+         * @return The rows sorted by title, keeping only the first row
+         *         of each title
+         */
+        private int[] uniqueRowsByTitle() {
+            var order = new Integer[titles.length];
+            Arrays.setAll(order, row -> row);
+
+            // The sort is stable, so equal titles stay in file order.
+            Arrays.parallelSort(order, Comparator.comparing(row -> titles[row]));
+
+            var rows = new int[order.length];
+            int count = 0;
+            for (int i = 0; i < order.length; i++)
+                if (i == 0 || !titles[order[i]].equals(titles[order[i - 1]]))
+                    rows[count++] = order[i];
+            return Arrays.copyOf(rows, count);
+        }
+    }
+
+    /**
+     * Separates the title from the cosine vector.
+     */
+    private static final byte SEPARATOR = ';';
+
+    /**
+     * The smallest chunk worth parsing on its own thread.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The powers of ten that are exactly representable as a double.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * A Java utility class should have a private constructor.
+     */
+    private MovieDatasetParser() {}
+
+    /**
+     * Parse the dataset with the given resource name, which is mapped
+     * into memory if it's a plain file.
+     *
+     * @param dataset The name of the dataset resource
+     * @return The parsed {@link Dataset}
+     */
+    public static Dataset parseResource(String dataset) throws IOException {
+        URL url = MovieDatasetParser.class.getResource("/" + dataset);
+        if (url == null)
+            throw new FileNotFoundException("Dataset not found: " + dataset);
+
+        if ("file".equals(url.getProtocol()))
+            try {
+                return parse(Path.of(url.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+
+        try (var inputStream = url.openStream()) {
+            return parse(ByteBuffer.wrap(inputStream.readAllBytes()));
+        }
+    }
+
+    /**
+     * Map the dataset file into memory and parse it.
+     *
+     * @param path The {@link Path} of the dataset file
+     * @return The parsed {@link Dataset}
+     */
+    public static Dataset parse(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Dataset is too large to map: " + path);
+
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY,
+                                     0,
+                                     channel.size()));
+        }
+    }
+
+    /**
+     * Parse the dataset between the position and the limit of the
+     * {@code data}, which isn't modified.
+     *
+     * @param data The contents of the dataset file
+     * @return The parsed {@link Dataset}
+     */
+    public static Dataset parse(ByteBuffer data) {
+        int end = data.limit();
+
+        // Skip the header line.
+        int start = nextLine(data, data.position(), end);
+
+        // Split the rest into chunks that start at a line.
+        int count = Math.max(1,
+                             Math.min(Runtime.getRuntime().availableProcessors() * 4,
+                                      (end - start) / MIN_CHUNK_SIZE));
+        var bounds = new int[count + 1];
+        bounds[0] = start;
+        bounds[count] = end;
+        for (int i = 1; i < count; i++)
+            bounds[i] = Math.max(bounds[i - 1],
+                                 nextLine(data,
+                                          start + (int) ((long) (end - start) * i / count),
+                                          end));
+
+        var chunks = IntStream
+            .range(0, count)
+            .parallel()
+            .mapToObj(i -> new Chunk(data).parse(bounds[i], bounds[i + 1]))
+            .toList();
+
+        return merge(chunks);
+    }
+
+    /**
+     * Concatenate the rows of the {@code chunks} in order.
+     */
+    private static Dataset merge(List<Chunk> chunks) {
+        int rows = 0;
+        int dimension = -1;
+        for (Chunk chunk : chunks) {
+            if (chunk.mTitles.isEmpty())
+                continue;
+            if (dimension >= 0 && chunk.mDimension != dimension)
+                throw new IllegalArgumentException
+                    ("Movie \""
+                     + chunk.mTitles.get(0)
+                     + "\" has "
+                     + chunk.mDimension
+                     + " components, expected "
+                     + dimension);
+            dimension = chunk.mDimension;
+            rows += chunk.mTitles.size();
+        }
+        dimension = Math.max(dimension, 0);
+
+        var titles = new String[rows];
+        var vectors = new double[rows * dimension];
+        int row = 0;
+        for (Chunk chunk : chunks) {
+            int size = chunk.mTitles.size();
+            if (size == 0)
+                continue;
+            for (int i = 0; i < size; i++)
+                titles[row + i] = chunk.mTitles.get(i);
+            System.arraycopy(chunk.mValues, 0,
+                             vectors, row * dimension,
+                             size * dimension);
+            row += size;
+        }
+
+        return new Dataset(titles, vectors, dimension);
+    }
+
+    /**
+     * Parses the rows of one chunk of the dataset.
+     */
+    private static final class Chunk {
+        /**
+         * The contents of the dataset file.
+         */
+        private final ByteBuffer mData;
+
+        /**
+         * The titles of the rows in this chunk.
+         */
+        private final ArrayList<String> mTitles = new ArrayList<>();
+
+        /**
+         * The row-major components of the rows in this chunk.
+         */
+        private double[] mValues = new double[1024];
+
+        /**
+         * The number of components stored in {@link #mValues}.
+         */
+        private int mSize;
+
+        /**
+         * The number of components of each row, or -1 until the first
+         * row is parsed.
+         */
+        private int mDimension = -1;
+
+        /**
+         * Holds the bytes of a title or a fallback token.
+         */
+        private byte[] mScratch = new byte[256];
+
+        Chunk(ByteBuffer data) {
+            mData = data;
+        }
+
+        /**
+         * Parse the lines from {@code start} up to {@code end}.
+         *
+         * @return This {@link Chunk}
+         */
+        Chunk parse(int start, int end) {
+            int line = start;
+            while (line < end) {
+                int lineEnd = line;
+                while (lineEnd < end && mData.get(lineEnd) != '\n')
+                    lineEnd++;
+
+                parseLine(line,
+                          lineEnd > line && mData.get(lineEnd - 1) == '\r'
+                          ? lineEnd - 1
+                          : lineEnd);
+                line = lineEnd + 1;
+            }
+            return this;
+        }
+
+        /**
+         * Parse the line from {@code start} up to {@code end}, which
+         * excludes the line terminator.
+         */
+        private void parseLine(int start, int end) {
+            if (start == end)
+                return;
+
+            int separator = start;
+            while (separator < end && mData.get(separator) != SEPARATOR)
+                separator++;
+            if (separator == end)
+                throw new IllegalArgumentException
+                    ("Missing '"
+                     + (char) SEPARATOR
+                     + "' in line \""
+                     + decode(start, end)
+                     + "\"");
+
+            String title = decode(start, separator);
+            int rowStart = mSize;
+
+            // Parse the tokens up to the end of the line or the next
+            // separator.
+            for (int position = separator + 1; position < end; ) {
+                byte b = mData.get(position);
+                if (b == SEPARATOR)
+                    break;
+                if (isDelimiter(b)) {
+                    position++;
+                    continue;
+                }
+
+                int tokenEnd = position + 1;
+                while (tokenEnd < end
+                       && !isDelimiter(b = mData.get(tokenEnd))
+                       && b != SEPARATOR)
+                    tokenEnd++;
+
+                add(parseDouble(position, tokenEnd));
+                position = tokenEnd;
+            }
+
+            int components = mSize - rowStart;
+            if (mDimension < 0)
+                mDimension = components;
+            else if (components != mDimension)
+                throw new IllegalArgumentException
+                    ("Movie \""
+                     + title
+                     + "\" has "
+                     + components
+                     + " components, expected "
+                     + mDimension);
+            mTitles.add(title);
+        }
+
+        /**
+         * Parse the token from {@code start} up to {@code end} as a
+         * decimal number with an optional sign, fraction, and exponent.
+         */
+        private double parseDouble(int start, int end) {
+            int position = start;
+            boolean negative = false;
+            byte b = mData.get(position);
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+                position++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean truncated = false;
+            boolean fraction = false;
+            int firstDigit = position;
+
+            for (; position < end; position++) {
+                b = mData.get(position);
+                if (b == '.' && !fraction) {
+                    fraction = true;
+                    continue;
+                }
+                if (b < '0' || b > '9')
+                    break;
+
+                // Keep up to 18 significant digits in the mantissa.
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0)
+                        digits++;
+                    if (fraction)
+                        exponent--;
+                } else {
+                    truncated |= b != '0';
+                    if (!fraction)
+                        exponent++;
+                }
+            }
+
+            boolean hasDigits = position - firstDigit > (fraction ? 1 : 0);
+
+            if (hasDigits && position < end && (b == 'e' || b == 'E')) {
+                position++;
+                boolean negativeExponent = false;
+                if (position < end
+                    && ((b = mData.get(position)) == '-' || b == '+')) {
+                    negativeExponent = b == '-';
+                    position++;
+                }
+
+                int exponentStart = position;
+                int value = 0;
+                for (; position < end
+                         && (b = mData.get(position)) >= '0' && b <= '9';
+                     position++)
+                    if (value < 100_000)
+                        value = value * 10 + (b - '0');
+
+                if (position == exponentStart)
+                    hasDigits = false;
+                exponent += negativeExponent ? -value : value;
+            }
+
+            if (!hasDigits || position != end || truncated)
+                return parseFallback(start, end);
+
+            double value;
+            if (mantissa == 0)
+                value = 0.0;
+            else if (mantissa < 1L << 53 && exponent >= -22 && exponent <= 22)
+                // Both operands are exact, so the result is correctly
+                // rounded.
+                value = exponent < 0
+                    ? mantissa / POWERS_OF_TEN[-exponent]
+                    : mantissa * POWERS_OF_TEN[exponent];
+            else
+                return parseFallback(start, end);
+
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parse the token from {@code start} up to {@code end} with
+         * {@link Double#parseDouble(String)}.
+         */
+        private double parseFallback(int start, int end) {
+            return Double.parseDouble(decode(start, end));
+        }
+
+        /**
+         * @return The UTF-8 bytes from {@code start} up to {@code end}
+         *         decoded as a {@link String}
+         */
+        private String decode(int start, int end) {
+            int length = end - start;
+            if (mData.hasArray())
+                return new String(mData.array(),
+                                  mData.arrayOffset() + start,
+                                  length,
+                                  StandardCharsets.UTF_8);
+
+            if (mScratch.length < length)
+                mScratch = new byte[Math.max(length, mScratch.length * 2)];
+            mData.get(start, mScratch, 0, length);
+            return new String(mScratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Append the {@code value} to {@link #mValues}.
+         */
+        private void add(double value) {
+            if (mSize == mValues.length)
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            mValues[mSize++] = value;
+        }
+    }
+
+    /**
+     * @return True if {@code b} separates the components of a vector,
+     *         else false
+     */
+    private static boolean isDelimiter(byte b) {
+        return switch (b) {
+            case ' ', '\t', ',', '[', ']', '"', '\'' -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return The position after the next line terminator at or after
+     *         {@code position}, or {@code end} if there's none
+     */
+    private static int nextLine(ByteBuffer data, int position, int end) {
+        while (position < end && data.get(position) != '\n')
+            position++;
+        return Math.min(position + 1, end);
+    }
+}
@@ -0,0 +1,279 @@
+package edu.vandy.recommender.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This Java utility class encodes a movie map into a compact binary
+ * format and decodes it straight into a {@link MovieCatalog}, which
+ * avoids formatting every vector component as decimal text and
+ * parsing it back into boxed {@link Double} objects.
+ *
+ * The format is a header followed by one record per movie, where all
+ * integers and vector components are little-endian:
+ *
+ * <pre>
+ * header: int32 magic "MMAP", int8 version, int8 bytes per component
+ *         (4 for float32 or 8 for float64), int32 movie count, int32
+ *         dimension
+ * record: int32 title length in bytes, UTF-8 title, dimension
+ *         components
+ * </pre>
+ *
+ * Both directions are streamed through a fixed-size buffer, so
+ * neither side materializes the whole encoded map.
+ */
+public final class MovieMapCodec {
+    /**
+     * The media type of the binary representation.
+     */
+    public static final String MEDIA_TYPE = "application/x-movie-map";
+
+    /**
+     * The number of bytes per float32 vector component.
+     */
+    public static final int FLOAT32 = Float.BYTES;
+
+    /**
+     * The number of bytes per float64 vector component.
+     */
+    public static final int FLOAT64 = Double.BYTES;
+
+    /**
+     * Identifies the format ("MMAP" in ASCII).
+     */
+    private static final int MAGIC = 0x4D4D4150;
+
+    /**
+     * The version of the format.
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = 14;
+
+    /**
+     * The size of the buffer used to stream the records.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A Java utility class should have a private constructor.
+     */
+    private MovieMapCodec() {}
+
+    /**
+     * Encode the {@code movieMap} to the {@code out} stream, whose
+     * records are written in the iteration order of the {@code
+     * movieMap}.
+     *
+     * @param movieMap A {@link Map} that associates each movie title
+     *                 with its cosine vector
+     * @param precision The number of bytes per vector component,
+     *                  i.e., {@link #FLOAT32} or {@link #FLOAT64}
+     * @param out The {@link OutputStream} to write to, which isn't
+     *            closed
+     */
+    public static void write(Map<String, List<Double>> movieMap,
+                             int precision,
+                             OutputStream out) throws IOException {
+        if (precision != FLOAT32 && precision != FLOAT64)
+            throw new IllegalArgumentException
+                ("Unsupported precision: " + precision);
+
+        int dimension = movieMap.isEmpty()
+            ? 0
+            : movieMap.values().iterator().next().size();
+
+        var buffer = ByteBuffer
+            .allocate(Math.max(BUFFER_SIZE,
+                               Integer.BYTES + dimension * precision))
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer
+            .putInt(MAGIC)
+            .put(VERSION)
+            .put((byte) precision)
+            .putInt(movieMap.size())
+            .putInt(dimension);
+
+        for (var entry : movieMap.entrySet()) {
+            byte[] title = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            List<Double> vector = entry.getValue();
+
+            if (vector.size() != dimension)
+                throw new IllegalArgumentException
+                    ("Movie \""
+                     + entry.getKey()
+                     + "\" has "
+                     + vector.size()
+                     + " components, expected "
+                     + dimension);
+
+            ensureRemaining(buffer, Integer.BYTES, out);
+            buffer.putInt(title.length);
+            put(buffer, title, out);
+
+            ensureRemaining(buffer, dimension * precision, out);
+            if (precision == FLOAT32)
+                for (Double component : vector)
+                    buffer.putFloat(component.floatValue());
+            else
+                for (Double component : vector)
+                    buffer.putDouble(component);
+        }
+
+        flush(buffer, out);
+    }
+
+    /**
+     * Decode a movie map from the {@code in} stream directly into the
+     * primitive arrays of a {@link MovieCatalog}.
+     *
+     * @param in The {@link InputStream} to read from, which isn't
+     *           closed
+     * @return A {@link MovieCatalog} containing the decoded movies
+     */
+    public static MovieCatalog read(InputStream in) throws IOException {
+        var header = ByteBuffer
+            .wrap(readFully(in, new byte[HEADER_SIZE], HEADER_SIZE))
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.getInt() != MAGIC)
+            throw new IOException("Not a binary movie map");
+        if (header.get() != VERSION)
+            throw new IOException("Unsupported movie map version");
+
+        int precision = header.get();
+        int count = header.getInt();
+        int dimension = header.getInt();
+
+        if (precision != FLOAT32 && precision != FLOAT64)
+            throw new IOException("Unsupported precision: " + precision);
+        if (count < 0
+            || dimension < 0
+            || (long) count * dimension > Integer.MAX_VALUE)
+            throw new IOException("Invalid movie map size: "
+                                  + count + " x " + dimension);
+
+        var titles = new String[count];
+        var vectors = new double[count * dimension];
+
+        int blockSize = dimension * precision;
+        var block = new byte[Math.max(Integer.BYTES, blockSize)];
+        var blockBuffer = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+        var floats = blockBuffer.asFloatBuffer();
+        var doubles = blockBuffer.asDoubleBuffer();
+
+        for (int id = 0; id < count; id++) {
+            readFully(in, block, Integer.BYTES);
+            int length = blockBuffer.getInt(0);
+            if (length < 0)
+                throw new IOException("Invalid title length: " + length);
+            titles[id] = new String(readFully(in, new byte[length], length),
+                                    StandardCharsets.UTF_8);
+
+            // Copy the components straight into the vector matrix.
+            readFully(in, block, blockSize);
+            int offset = id * dimension;
+            if (precision == FLOAT64)
+                doubles.get(0, vectors, offset, dimension);
+            else
+                for (int i = 0; i < dimension; i++)
+                    vectors[offset + i] = floats.get(i);
+        }
+
+        return catalog(titles, vectors, dimension);
+    }
+
+    /**
+     * Create a {@link MovieCatalog} from the decoded movies, sorting
+     * them by title first if the sender didn't.
+     */
+    private static MovieCatalog catalog(String[] titles,
+                                        double[] vectors,
+                                        int dimension) {
+        boolean sorted = true;
+        for (int id = 1; id < titles.length && sorted; id++)
+            sorted = titles[id - 1].compareTo(titles[id]) <= 0;
+
+        if (sorted)
+            return new MovieCatalog(titles, vectors, dimension);
+
+        Integer[] order = new Integer[titles.length];
+        Arrays.setAll(order, id -> id);
+        Arrays.sort(order, Comparator.comparing(id -> titles[id]));
+
+        var sortedTitles = new String[titles.length];
+        var sortedVectors = new double[vectors.length];
+        for (int id = 0; id < order.length; id++) {
+            sortedTitles[id] = titles[order[id]];
+            System.arraycopy(vectors, order[id] * dimension,
+                             sortedVectors, id * dimension,
+                             dimension);
+        }
+        return new MovieCatalog(sortedTitles, sortedVectors, dimension);
+    }
+
+    /**
+     * Read exactly {@code length} bytes from {@code in} into the
+     * start of {@code bytes}.
+     *
+     * @return The {@code bytes} array
+     */
+    private static byte[] readFully(InputStream in,
+                                    byte[] bytes,
+                                    int length) throws IOException {
+        if (in.readNBytes(bytes, 0, length) != length)
+            throw new EOFException("Truncated movie map");
+        return bytes;
+    }
+
+    /**
+     * Write the {@code bytes} to the {@code buffer}, flushing it to
+     * {@code out} whenever it's full.
+     */
+    private static void put(ByteBuffer buffer,
+                            byte[] bytes,
+                            OutputStream out) throws IOException {
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!buffer.hasRemaining())
+                flush(buffer, out);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Flush the {@code buffer} to {@code out} unless it has room for
+     * {@code bytes} more bytes.
+     */
+    private static void ensureRemaining(ByteBuffer buffer,
+                                        int bytes,
+                                        OutputStream out) throws IOException {
+        if (buffer.remaining() < bytes)
+            flush(buffer, out);
+    }
+
+    /**
+     * Write the contents of the {@code buffer} to {@code out} and
+     * clear it.
+     */
+    private static void flush(ByteBuffer buffer,
+                              OutputStream out) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
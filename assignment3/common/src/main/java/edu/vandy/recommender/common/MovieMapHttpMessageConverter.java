@@ -0,0 +1,93 @@
+package edu.vandy.recommender.common;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This {@link org.springframework.http.converter.HttpMessageConverter}
+ * transfers a movie map in the binary {@link MovieMapCodec} format
+ * whenever a client asks for the {@link MovieMapCodec#MEDIA_TYPE}
+ * media type.  It writes the {@link Map} returned by a controller and
+ * reads the response directly into a {@link MovieCatalog}.
+ *
+ * Clients that don't ask for the binary format still get JSON, so
+ * this converter should be registered after the JSON converter.
+ */
+public class MovieMapHttpMessageConverter
+       extends AbstractHttpMessageConverter<Object> {
+    /**
+     * The {@link MediaType} of the binary movie map.
+     */
+    public static final MediaType MOVIE_MAP =
+        MediaType.parseMediaType(MovieMapCodec.MEDIA_TYPE);
+
+    /**
+     * The number of bytes per vector component written.
+     */
+    private final int mPrecision;
+
+    /**
+     * Create a converter that writes float64 vector components.
+     */
+    public MovieMapHttpMessageConverter() {
+        this(MovieMapCodec.FLOAT64);
+    }
+
+    /**
+     * Create a converter that writes vector components with the given
+     * {@code precision}.
+     *
+     * @param precision The number of bytes per vector component,
+     *                  i.e., {@link MovieMapCodec#FLOAT32} or {@link
+     *                  MovieMapCodec#FLOAT64}
+     */
+    public MovieMapHttpMessageConverter(int precision) {
+        super(MOVIE_MAP);
+        if (precision != MovieMapCodec.FLOAT32
+            && precision != MovieMapCodec.FLOAT64)
+            throw new IllegalArgumentException
+                ("Unsupported precision: " + precision);
+        mPrecision = precision;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Map.class.isAssignableFrom(clazz)
+            || MovieCatalog.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return MovieCatalog.class.isAssignableFrom(clazz)
+            && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return Map.class.isAssignableFrom(clazz)
+            && canWrite(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz,
+                                  HttpInputMessage inputMessage)
+        throws IOException {
+        return MovieMapCodec.read(inputMessage.getBody());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object movieMap,
+                                 HttpOutputMessage outputMessage)
+        throws IOException {
+        MovieMapCodec.write((Map<String, List<Double>>) movieMap,
+                            mPrecision,
+                            outputMessage.getBody());
+    }
+}
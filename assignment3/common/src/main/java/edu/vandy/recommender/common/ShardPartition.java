@@ -0,0 +1,60 @@
+package edu.vandy.recommender.common;
+
+/**
+ * Identifies the slice of the movie catalog owned by one shard of a
+ * sharded recommender cluster.  Movies are hash-partitioned by title
+ * via {@link String#hashCode()}, whose value is fixed by the language
+ * specification, so the database and every recommender agree on the
+ * owner of a movie without coordinating.
+ *
+ * @param index The index of the shard, from 0 up to {@code count}
+ * @param count The number of shards, which is 1 when the catalog
+ *              isn't sharded
+ */
+public record ShardPartition(int index, int count) {
+    /**
+     * The partition that owns the whole catalog.
+     */
+    public static final ShardPartition UNSHARDED = new ShardPartition(0, 1);
+
+    /**
+     * Validate the partition.
+     */
+    public ShardPartition {
+        if (count < 1 || index < 0 || index >= count)
+            throw new IllegalArgumentException
+                ("Invalid shard " + index + " of " + count);
+    }
+
+    /**
+     * @param title A movie title
+     * @param count The number of shards
+     * @return The index of the shard that owns the movie with the
+     *         given {@code title}
+     */
+    public static int shardOf(String title, int count) {
+        return Math.floorMod(title.hashCode(), count);
+    }
+
+    /**
+     * @param title A movie title
+     * @return True if this shard owns the movie with the given
+     *         {@code title}, else false
+     */
+    public boolean owns(String title) {
+        return count == 1 || shardOf(title, count) == index;
+    }
+
+    /**
+     * @return True if the catalog is split across several shards,
+     *         else false
+     */
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    @Override
+    public String toString() {
+        return "shard " + index + " of " + count;
+    }
+}
@@ -0,0 +1,69 @@
+package edu.vandy.recommender.common.model;
+
+import java.util.List;
+
+/**
+ * The changes made to the movie catalog of the database microservice
+ * between two catalog versions, which clients apply to their own copy
+ * of the catalog instead of downloading all of it again.
+ *
+ * If {@link #reset} is true the {@link #upserts} contain the entire
+ * catalog, which replaces the client's copy, e.g., because the
+ * requested version is older than the retained change log or was
+ * issued by a different {@link #epoch} of the database.
+ */
+public class CatalogDelta {
+    /**
+     * Identifies the lifetime of the database microservice that issued
+     * the catalog versions, which restart from 0 in each epoch.
+     */
+    public String epoch;
+
+    /**
+     * The catalog version the changes are relative to.
+     */
+    public long since;
+
+    /**
+     * The catalog version after the changes are applied.
+     */
+    public long version;
+
+    /**
+     * True if the {@link #upserts} replace the entire catalog.
+     */
+    public boolean reset;
+
+    /**
+     * The {@link Movie} entries that were added or modified.
+     */
+    public List<Movie> upserts;
+
+    /**
+     * The titles of the movies that were deleted.
+     */
+    public List<String> deletions;
+
+    /**
+     * A default constructor is needed.
+     */
+    public CatalogDelta() {
+    }
+
+    /**
+     * Initialize all fields in a {@link CatalogDelta}.
+     */
+    public CatalogDelta(String epoch,
+                        long since,
+                        long version,
+                        boolean reset,
+                        List<Movie> upserts,
+                        List<String> deletions) {
+        this.epoch = epoch;
+        this.since = since;
+        this.version = version;
+        this.reset = reset;
+        this.upserts = upserts;
+        this.deletions = deletions;
+    }
+}
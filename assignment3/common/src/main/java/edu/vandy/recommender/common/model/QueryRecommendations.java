@@ -0,0 +1,37 @@
+package edu.vandy.recommender.common.model;
+
+import java.util.List;
+
+/**
+ * The recommendations for one query of a batch recommendation
+ * request, which identifies the query by its position in the request
+ * since the results of a batch are streamed back as soon as they're
+ * ready rather than in request order.
+ */
+public class QueryRecommendations {
+    /**
+     * The 0-based position of the query in the batch request.
+     */
+    public int query;
+
+    /**
+     * The {@link Ranking} objects of the query in descending
+     * similarity order.
+     */
+    public List<Ranking> rankings;
+
+    /**
+     * A default constructor is needed.
+     */
+    public QueryRecommendations() {
+    }
+
+    /**
+     * Initialize all fields in a {@link QueryRecommendations}.
+     */
+    public QueryRecommendations(int query,
+                                List<Ranking> rankings) {
+        this.query = query;
+        this.rankings = rankings;
+    }
+}
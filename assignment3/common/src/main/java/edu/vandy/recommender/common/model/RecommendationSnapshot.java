@@ -0,0 +1,52 @@
+package edu.vandy.recommender.common.model;
+
+import java.util.List;
+
+/**
+ * The best recommendations found so far by a deadline-aware
+ * recommendation request, which scores the catalog progressively and
+ * may stop before it has scored every movie.
+ */
+public class RecommendationSnapshot {
+    /**
+     * The best {@link Ranking} objects found so far in descending
+     * similarity order.
+     */
+    public List<Ranking> rankings;
+
+    /**
+     * True if some movies weren't scored, so better recommendations
+     * may exist.
+     */
+    public boolean partial;
+
+    /**
+     * The number of movies scored so far.
+     */
+    public int scored;
+
+    /**
+     * The number of movies that can be recommended, i.e., the movies
+     * in the catalog other than the watched movie.
+     */
+    public int total;
+
+    /**
+     * A default constructor is needed.
+     */
+    public RecommendationSnapshot() {
+    }
+
+    /**
+     * Initialize all fields in a {@link RecommendationSnapshot}.
+     */
+    public RecommendationSnapshot(List<Ranking> rankings,
+                                  boolean partial,
+                                  int scored,
+                                  int total) {
+        this.rankings = rankings;
+        this.partial = partial;
+        this.scored = scored;
+        this.total = total;
+    }
+}
@@ -0,0 +1,43 @@
+package edu.vandy.recommender.common.model;
+
+import java.util.List;
+
+/**
+ * A query vector that a coordinator scatters to every shard of a
+ * sharded recommender cluster, each of which returns the top {@code
+ * maxCount} movies of its slice of the catalog.
+ */
+public class ShardQuery {
+    /**
+     * The vector all movies are compared with.
+     */
+    public List<Double> vector;
+
+    /**
+     * The title of a movie to leave out of the results (e.g., the
+     * watched movie), or null.
+     */
+    public String excludedMovie;
+
+    /**
+     * The upper limit for the number of recommendations returned.
+     */
+    public int maxCount;
+
+    /**
+     * A default constructor is needed.
+     */
+    public ShardQuery() {
+    }
+
+    /**
+     * Initialize all fields in a {@link ShardQuery}.
+     */
+    public ShardQuery(List<Double> vector,
+                      String excludedMovie,
+                      int maxCount) {
+        this.vector = vector;
+        this.excludedMovie = excludedMovie;
+        this.maxCount = maxCount;
+    }
+}
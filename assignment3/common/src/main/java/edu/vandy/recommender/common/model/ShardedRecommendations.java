@@ -0,0 +1,50 @@
+package edu.vandy.recommender.common.model;
+
+import java.util.List;
+
+/**
+ * The recommendations merged from the shards of a sharded recommender
+ * cluster, which are partial if some shards didn't answer in time.
+ */
+public class ShardedRecommendations {
+    /**
+     * The merged {@link Ranking} objects in descending similarity
+     * order.
+     */
+    public List<Ranking> rankings;
+
+    /**
+     * True if some shards didn't answer, so better recommendations
+     * may exist.
+     */
+    public boolean partial;
+
+    /**
+     * The number of shards in the cluster.
+     */
+    public int shards;
+
+    /**
+     * The indices of the shards that didn't answer.
+     */
+    public List<Integer> missingShards;
+
+    /**
+     * A default constructor is needed.
+     */
+    public ShardedRecommendations() {
+    }
+
+    /**
+     * Initialize all fields in a {@link ShardedRecommendations}.
+     */
+    public ShardedRecommendations(List<Ranking> rankings,
+                                  boolean partial,
+                                  int shards,
+                                  List<Integer> missingShards) {
+        this.rankings = rankings;
+        this.partial = partial;
+        this.shards = shards;
+        this.missingShards = missingShards;
+    }
+}
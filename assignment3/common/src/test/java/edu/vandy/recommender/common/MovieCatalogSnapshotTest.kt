@@ -0,0 +1,59 @@
+package edu.vandy.recommender.common
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import test.admin.AssignmentTests
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+
+class MovieCatalogSnapshotTest : AssignmentTests() {
+    @TempDir
+    lateinit var dir: Path
+
+    private val catalog = MovieCatalog.of(
+        mapOf(
+            "Amélie" to listOf(3.0, 4.0, 0.0),
+            "b" to listOf(0.0, 0.0, 2.0),
+            "Up" to listOf(1.0, 1.0, 1.0),
+            "z" to listOf(0.0, 0.0, 0.0)
+        )
+    )
+
+    @Test
+    fun `snapshot round trip restores the catalog exactly`() {
+        val path = dir.resolve("nested/catalog.snapshot")
+
+        MovieCatalogSnapshot.write(catalog, path)
+        val restored = MovieCatalogSnapshot.read(path)
+
+        assertThat(restored.titles()).containsExactlyElementsOf(catalog.titles())
+        assertThat(restored.dimension()).isEqualTo(3)
+        assertThat(restored.vectors()).containsExactly(*catalog.vectors())
+        (0 until catalog.size()).forEach {
+            assertThat(restored.norm(it)).isEqualTo(catalog.norm(it))
+        }
+        assertThat(restored.idOf("Up")).isEqualTo(catalog.idOf("Up"))
+        assertThat(Files.exists(dir.resolve("nested/catalog.snapshot.tmp"))).isFalse
+
+        MovieCatalogSnapshot.write(MovieCatalog.empty(), path)
+        assertThat(MovieCatalogSnapshot.read(path).isEmpty).isTrue
+    }
+
+    @Test
+    fun `truncated and foreign files are rejected`() {
+        val path = dir.resolve("catalog.snapshot")
+        MovieCatalogSnapshot.write(catalog, path)
+        val bytes = Files.readAllBytes(path)
+
+        Files.write(path, bytes.copyOf(bytes.size - 8))
+        assertThatThrownBy { MovieCatalogSnapshot.read(path) }
+            .isInstanceOf(IOException::class.java)
+
+        Files.write(path, ByteArray(bytes.size))
+        assertThatThrownBy { MovieCatalogSnapshot.read(path) }
+            .isInstanceOf(IOException::class.java)
+    }
+}
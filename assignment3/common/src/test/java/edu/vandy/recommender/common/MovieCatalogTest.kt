@@ -0,0 +1,101 @@
+package edu.vandy.recommender.common
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.api.Assertions.within
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import kotlin.random.Random
+
+class MovieCatalogTest : AssignmentTests() {
+    private val map = mapOf(
+        "c" to listOf(0.0, 5.0, 0.0),
+        "a" to listOf(3.0, 4.0, 0.0),
+        "b" to listOf(0.0, 0.0, 2.0)
+    )
+
+    @Test
+    fun `of assigns ids in ascending title order`() {
+        val catalog = MovieCatalog.of(map)
+
+        assertThat(catalog.size()).isEqualTo(3)
+        assertThat(catalog.dimension()).isEqualTo(3)
+        assertThat(catalog.titles()).containsExactly("a", "b", "c")
+        assertThat(catalog.idOf("c")).isEqualTo(2)
+        assertThat(catalog.title(1)).isEqualTo("b")
+    }
+
+    @Test
+    fun `vectors are normalized and packed in row-major order`() {
+        val catalog = MovieCatalog.of(map)
+
+        assertThat(catalog.vectors())
+            .containsExactly(0.6, 0.8, 0.0, 0.0, 0.0, 1.0, 0.0, 1.0, 0.0)
+        assertThat(catalog.offset(2)).isEqualTo(6)
+        assertThat(catalog.vector(1)).containsExactly(0.0, 0.0, 1.0)
+        assertThat(catalog.norm(0)).isEqualTo(5.0)
+        assertThat(catalog.norm(1)).isEqualTo(2.0)
+    }
+
+    @Test
+    fun `zero vectors are left unchanged`() {
+        val catalog = MovieCatalog.of(mapOf("z" to listOf(0.0, 0.0)))
+
+        assertThat(catalog.vector(0)).containsExactly(0.0, 0.0)
+        assertThat(catalog.norm(0)).isEqualTo(0.0)
+    }
+
+    @Test
+    fun `unknown titles are not found`() {
+        val catalog = MovieCatalog.of(map)
+
+        assertThat(catalog.idOf("?")).isEqualTo(-1)
+        assertThat(catalog.contains("?")).isFalse
+        assertThat(catalog.contains("a")).isTrue
+        assertThat(MovieCatalog.empty().isEmpty).isTrue
+    }
+
+    @Test
+    fun `of rejects vectors of different dimensions`() {
+        assertThatThrownBy {
+            MovieCatalog.of(map + ("d" to listOf(1.0)))
+        }.isInstanceOf(IllegalArgumentException::class.java)
+    }
+
+    @Test
+    fun `withChanges matches a catalog built from the changed map`() {
+        val catalog = MovieCatalog.of(map)
+        val upserts = mapOf("a" to listOf(1.0, 1.0, 1.0), "aa" to listOf(0.0, 3.0, 4.0))
+        val changed = catalog.withChanges(upserts, listOf("c", "?"))
+        val expected = MovieCatalog.of(map - "c" + upserts)
+
+        assertThat(changed.titles()).containsExactly("a", "aa", "b")
+        assertThat(changed.vectors()).containsExactly(expected.vectors(), within(1e-12))
+        assertThat(changed.norm(1)).isEqualTo(5.0)
+        assertThat(catalog.titles()).containsExactly("a", "b", "c")
+        assertThat(MovieCatalog.empty().withChanges(upserts, listOf()).dimension())
+            .isEqualTo(3)
+        assertThatThrownBy {
+            catalog.withChanges(mapOf("d" to listOf(1.0)), listOf())
+        }.isInstanceOf(IllegalArgumentException::class.java)
+    }
+
+    @Test
+    fun `withChanges keeps the unchanged rows exactly`() {
+        val random = Random(11)
+        val catalog = MovieCatalog.of(
+            (1..40).associate { "m$it" to (1..8).map { random.nextDouble(-1.0, 1.0) } }
+        )
+        var changed = catalog
+        repeat(5) {
+            changed = changed.withChanges(mapOf("z$it" to listOf(it.toDouble(), 1.0, 2.0, 0.0, 0.0, 0.0, 0.0, 3.0)), listOf())
+        }
+
+        catalog.titles().forEachIndexed { id, title ->
+            assertThat(changed.vector(changed.idOf(title))).containsExactly(*catalog.vector(id))
+            assertThat(changed.norm(changed.idOf(title))).isEqualTo(catalog.norm(id))
+        }
+        assertThat(changed.vector(changed.idOf("z4")))
+            .containsExactly(*MovieCatalog.of(mapOf("z4" to listOf(4.0, 1.0, 2.0, 0.0, 0.0, 0.0, 0.0, 3.0))).vector(0))
+    }
+}
@@ -0,0 +1,85 @@
+package edu.vandy.recommender.common
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.data.Offset.offset
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import test.admin.AssignmentTests
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.Locale
+import kotlin.random.Random
+
+class MovieDatasetParserTest : AssignmentTests() {
+    @TempDir
+    lateinit var dir: Path
+
+    private fun parse(text: String) =
+        MovieDatasetParser.parse(ByteBuffer.wrap(text.toByteArray()))
+
+    @Test
+    fun `values are parsed exactly like Double parseDouble`() {
+        val random = Random(17)
+        val tokens = listOf(
+            "0", "-0.0", "+1.5", "1e3", "2.5E-7", "-3.25e+05", ".5", "7.",
+            "0.000000000000000000001234", "123456789012345678901234",
+            "0.30000000000000004", "1.7976931348623157e308", "4.9e-324"
+        ) + (1..500).flatMap {
+            val value = random.nextDouble(-1.0, 1.0) * Math.pow(10.0, random.nextInt(-30, 30).toDouble())
+            listOf(value.toString(), String.format(Locale.ROOT, "%.8f", value))
+        }
+
+        val dataset = parse("title;vector\nm;\"[ ${tokens.joinToString(" ")} ]\"\n")
+
+        assertThat(dataset.titles()).containsExactly("m")
+        assertThat(dataset.dimension()).isEqualTo(tokens.size)
+        tokens.forEachIndexed { i, token ->
+            assertThat(dataset.vectors()[i]).isEqualTo(token.toDouble())
+        }
+    }
+
+    @Test
+    fun `large files are parsed in line aligned chunks`() {
+        val path = dir.resolve("dataset.csv")
+        val lines = (0 until 40_000).map { row ->
+            "Movie $row;\"[ ${(0 until 8).joinToString(" ") { "%.8f".format(Locale.ROOT, row + it / 8.0) }} ]\"\r"
+        }
+        Files.writeString(path, "title;vector\n" + lines.joinToString("\n") + "\nMovie 7;[ 9 9 9 9 9 9 9 9 ]\n")
+        assertThat(Files.size(path)).isGreaterThan(2L shl 20)
+
+        val dataset = MovieDatasetParser.parse(path)
+
+        assertThat(dataset.size()).isEqualTo(40_001)
+        (0 until 40_000).forEach { row ->
+            assertThat(dataset.titles()[row]).isEqualTo("Movie $row")
+            assertThat(dataset.vectors()[row * 8 + 3]).isEqualTo(row + 3 / 8.0)
+        }
+
+        // The first row of a duplicated title is kept.
+        val map = dataset.toMap()
+        assertThat(map).hasSize(40_000)
+        assertThat(map["Movie 7"]).startsWith(7.0, 7.125)
+
+        val catalog = dataset.toCatalog()
+        assertThat(catalog.titles()).containsExactlyElementsOf(map.keys)
+        assertThat(catalog.norm(catalog.idOf("Movie 7")))
+            .isCloseTo(Math.sqrt(map["Movie 7"]!!.sumOf { it * it }),
+                       offset(1e-9))
+    }
+
+    @Test
+    fun `malformed lines are rejected`() {
+        assertThat(parse("title;vector\n").size()).isZero
+        assertThat(parse("").size()).isZero
+
+        assertThatThrownBy { parse("title;vector\na;[ 1 2 ]\nb;[ 1 ]\n") }
+            .isInstanceOf(IllegalArgumentException::class.java)
+            .hasMessageContaining("\"b\"")
+        assertThatThrownBy { parse("title;vector\nno separator\n") }
+            .isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { parse("title;vector\na;[ 1 x2 ]\n") }
+            .isInstanceOf(NumberFormatException::class.java)
+    }
+}
@@ -0,0 +1,65 @@
+package edu.vandy.recommender.common
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.api.Assertions.within
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.EOFException
+import java.io.IOException
+
+class MovieMapCodecTest : AssignmentTests() {
+    private val map = linkedMapOf(
+        "c" to listOf(0.0, 5.0, 0.1),
+        "Amélie" to listOf(3.0, 4.0, 0.0),
+        "b" to listOf(0.0, 0.0, 2.0)
+    )
+
+    private fun encode(map: Map<String, List<Double>>, precision: Int) =
+        ByteArrayOutputStream()
+            .also { MovieMapCodec.write(map, precision, it) }
+            .toByteArray()
+
+    private fun decode(bytes: ByteArray) =
+        MovieMapCodec.read(ByteArrayInputStream(bytes))
+
+    @Test
+    fun `float64 round trip matches the catalog built from the map`() {
+        val expected = MovieCatalog.of(map)
+        val catalog = decode(encode(map, MovieMapCodec.FLOAT64))
+
+        assertThat(catalog.titles()).containsExactlyElementsOf(expected.titles())
+        assertThat(catalog.dimension()).isEqualTo(3)
+        assertThat(catalog.vectors()).containsExactly(*expected.vectors())
+        assertThat(catalog.norm(0)).isEqualTo(expected.norm(0))
+    }
+
+    @Test
+    fun `float32 round trip halves the vector payload`() {
+        val expected = MovieCatalog.of(map)
+        val float32 = encode(map, MovieMapCodec.FLOAT32)
+        val catalog = decode(float32)
+
+        assertThat(encode(map, MovieMapCodec.FLOAT64).size - float32.size)
+            .isEqualTo(3 * 3 * 4)
+        assertThat(catalog.titles()).containsExactlyElementsOf(expected.titles())
+        assertThat(catalog.vectors()).containsExactly(expected.vectors(), within(1e-6))
+    }
+
+    @Test
+    fun `empty maps and invalid input are handled`() {
+        assertThat(decode(encode(emptyMap(), MovieMapCodec.FLOAT64)).isEmpty).isTrue
+
+        val bytes = encode(map, MovieMapCodec.FLOAT64)
+        assertThatThrownBy { decode(bytes.copyOf(bytes.size - 1)) }
+            .isInstanceOf(EOFException::class.java)
+        assertThatThrownBy { decode(ByteArray(20)) }
+            .isInstanceOf(IOException::class.java)
+        assertThatThrownBy { encode(map, 2) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { encode(map + ("d" to listOf(1.0)), 8) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+    }
+}
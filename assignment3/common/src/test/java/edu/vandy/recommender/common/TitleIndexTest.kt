@@ -0,0 +1,56 @@
+package edu.vandy.recommender.common
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import kotlin.random.Random
+
+class TitleIndexTest : AssignmentTests() {
+    private val titles = listOf(
+        "Alien", "Aliens", "Batman Begins", "The Dark Knight",
+        "The Dark Knight Rises", "Knight and Day", "Up"
+    )
+    private val index = TitleIndex(titles)
+
+    @Test
+    fun `search matches substrings ignoring case in id order`() {
+        assertThat(index.searchTitles("ALIEN")).containsExactly("Alien", "Aliens")
+        assertThat(index.searchTitles("dark knight"))
+            .containsExactly("The Dark Knight", "The Dark Knight Rises")
+        assertThat(index.search("knight")).containsExactly(3, 4, 5)
+    }
+
+    @Test
+    fun `search rejects titles whose trigrams aren't adjacent`() {
+        assertThat(index.search("the dark rises")).isEmpty()
+        assertThat(index.search("zzz")).isEmpty()
+    }
+
+    @Test
+    fun `short queries fall back to a scan`() {
+        assertThat(index.searchTitles("up")).containsExactly("Up")
+        assertThat(index.search("")).hasSize(titles.size)
+    }
+
+    @Test
+    fun `searchAny merges the matches of all queries`() {
+        assertThat(index.searchAny(listOf("rises", "alien", "dark")))
+            .containsExactly(0, 1, 3, 4)
+    }
+
+    @Test
+    fun `search agrees with a linear scan`() {
+        val random = Random(3)
+        val words = listOf("the", "dark", "knight", "of", "star", "wars", "a", "new", "hope")
+        val titles = List(500) {
+            List(1 + random.nextInt(4)) { words.random(random) }.joinToString(" ")
+        }
+        val index = TitleIndex(titles)
+
+        listOf("dark kn", "star", "e d", "of the", "hope", "ars a", "xyz").forEach { query ->
+            assertThat(index.search(query).toList()).isEqualTo(
+                titles.indices.filter { titles[it].lowercase().contains(query) }
+            )
+        }
+    }
+}
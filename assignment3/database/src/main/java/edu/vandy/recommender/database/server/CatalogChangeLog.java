@@ -0,0 +1,125 @@
+package edu.vandy.recommender.database.server;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * This class versions the movie catalog of the database microservice.
+ * Every change of a movie increments the catalog version and records
+ * the title of the changed movie, so clients can ask which titles
+ * changed since the version they last saw.
+ *
+ * Only the latest change of each title is kept, since a client only
+ * needs the current state of a changed movie.  The log is further
+ * bounded by {@code app.catalog-changes.max-entries}, and clients
+ * whose version predates the oldest retained change must reload the
+ * entire catalog.  Catalog versions restart from 0 with each {@link
+ * #getEpoch() epoch} of the microservice.
+ */
+@Component
+public class CatalogChangeLog {
+    /**
+     * The titles that changed since a catalog version.
+     *
+     * @param version The current catalog version
+     * @param complete False if changes since the requested version are
+     *                 no longer retained, else true
+     * @param titles The titles of the changed movies
+     */
+    public record Changes(long version,
+                          boolean complete,
+                          List<String> titles) {}
+
+    /**
+     * Identifies this lifetime of the microservice.
+     */
+    private final String mEpoch = UUID.randomUUID().toString();
+
+    /**
+     * The max number of changes retained.
+     */
+    @Value("${app.catalog-changes.max-entries:100000}")
+    private int mMaxEntries = 100_000;
+
+    /**
+     * The current catalog version, where version 0 is the initial
+     * catalog.
+     */
+    private long mVersion;
+
+    /**
+     * The oldest catalog version from which changes are retained.
+     */
+    private long mOldestVersion;
+
+    /**
+     * Maps the version of each retained change to the changed title.
+     */
+    private final TreeMap<Long, String> mChanges = new TreeMap<>();
+
+    /**
+     * Maps each title in {@link #mChanges} to its latest version.
+     */
+    private final Map<String, Long> mVersions = new HashMap<>();
+
+    /**
+     * @return The epoch of the catalog versions
+     */
+    public String getEpoch() {
+        return mEpoch;
+    }
+
+    /**
+     * @return The current catalog version
+     */
+    public synchronized long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Record a change of the movie with the given {@code title}.
+     *
+     * @param title The title of the added, modified, or deleted movie
+     * @return The new catalog version
+     */
+    public synchronized long record(String title) {
+        Long previous = mVersions.put(title, ++mVersion);
+        if (previous != null)
+            mChanges.remove(previous);
+        mChanges.put(mVersion, title);
+
+        // Drop the oldest changes once the log is full.
+        while (mChanges.size() > mMaxEntries) {
+            var oldest = mChanges.pollFirstEntry();
+            mVersions.remove(oldest.getValue());
+            mOldestVersion = oldest.getKey();
+        }
+        return mVersion;
+    }
+
+    /**
+     * Get the titles that changed after the given catalog {@code
+     * version}.
+     *
+     * @param version A catalog version of this epoch
+     * @return The {@link Changes} since {@code version}, which are
+     *         incomplete if {@code version} is unknown or no longer
+     *         retained
+     */
+    public synchronized Changes changesSince(long version) {
+        if (version < mOldestVersion || version > mVersion)
+            return new Changes(mVersion, false, List.of());
+
+        return new Changes(mVersion,
+                           true,
+                           List.copyOf(mChanges
+                                       .tailMap(version, false)
+                                       .values()));
+    }
+}
@@ -1,5 +1,7 @@
 package edu.vandy.recommender.database.server;
 
+import edu.vandy.recommender.common.ShardPartition;
+import edu.vandy.recommender.common.model.CatalogDelta;
 import edu.vandy.recommender.common.model.Movie;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
@@ -11,6 +13,10 @@ import java.util.List;
 import java.util.Map;
 
 import static edu.vandy.recommender.common.Constants.EndPoint.*;
+import static edu.vandy.recommender.common.Constants.Params.EPOCH_PARAM;
+import static edu.vandy.recommender.common.Constants.Params.SHARDS_PARAM;
+import static edu.vandy.recommender.common.Constants.Params.SHARD_PARAM;
+import static edu.vandy.recommender.common.Constants.Params.SINCE_PARAM;
 
 /**
  * The Spring controller for the {@link DatabaseService}, whose
@@ -66,15 +72,28 @@ public class DatabaseController {
     }
 
     /**
+     * Returns the movies of the whole catalog, or only those owned by
+     * one shard of a sharded recommender cluster if the {@code shard}
+     * and {@code shards} parameters are given.
+     *
+     * @param shard The index of the shard, if any
+     * @param shards The number of shards, if any
      * @return A {@link Map} that associates the movie title with
      *         the cosine vector for each movie
      */
     @GetMapping(GET_MOVIES_MAP)
-    public Map<String, List<Double>> getMoviesMap() {
+    public Map<String, List<Double>> getMoviesMap
+        (@RequestParam(value = SHARD_PARAM, required = false) Integer shard,
+         @RequestParam(value = SHARDS_PARAM, required = false) Integer shards) {
         System.out.println("DatabaseController.getMoviesMap()");
+        if (shard == null || shards == null || shards == 1)
+            return mService
+                // Forward to the service.
+                .getMoviesMap();
+
         return mService
             // Forward to the service.
-            .getMoviesMap();
+            .getMoviesMap(new ShardPartition(shard, shards));
     }
 
     /**
@@ -133,4 +152,58 @@ public class DatabaseController {
             // Forward to the service.
             .searchEx(queries);
     }
+
+    /**
+     * Add or replace a movie in the database.
+     *
+     * @param movie The {@link Movie} to save
+     * @return The saved {@link Movie}
+     */
+    @PutMapping(PUT_MOVIE)
+    public Movie saveMovie(@RequestBody Movie movie) {
+        return mService
+            // Forward to the service.
+            .saveMovie(movie);
+    }
+
+    /**
+     * Delete a movie from the database.
+     *
+     * @param title The title of the movie to delete
+     * @return An empty response with status 204 if the movie was
+     *         deleted, or 404 if there's no such movie
+     */
+    @DeleteMapping(DELETE_MOVIE + "/" + MOVIE_TITLE)
+    public ResponseEntity<Void> deleteMovie(@PathVariable String title) {
+        return mService.deleteMovie(title)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * @return The current version of the movie catalog
+     */
+    @GetMapping(GET_CATALOG_VERSION)
+    public long getCatalogVersion() {
+        return mService
+            // Forward to the service.
+            .getCatalogVersion();
+    }
+
+    /**
+     * Returns the changes of the movie catalog since a version.
+     *
+     * @param since The catalog version the client has
+     * @param epoch The epoch of the {@code since} version, if known
+     * @return The {@link CatalogDelta} from {@code since} to the
+     *         current catalog version
+     */
+    @GetMapping(GET_CATALOG_CHANGES)
+    public CatalogDelta getCatalogChanges
+        (@RequestParam(SINCE_PARAM) long since,
+         @RequestParam(value = EPOCH_PARAM, required = false) String epoch) {
+        return mService
+            // Forward to the service.
+            .getCatalogChanges(epoch, since);
+    }
 }
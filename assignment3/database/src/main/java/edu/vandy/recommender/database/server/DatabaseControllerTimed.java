@@ -10,6 +10,8 @@ import java.util.List;
 import java.util.Map;
 
 import static edu.vandy.recommender.common.Constants.EndPoint.*;
+import static edu.vandy.recommender.common.Constants.Params.SHARDS_PARAM;
+import static edu.vandy.recommender.common.Constants.Params.SHARD_PARAM;
 
 /**
  * The Spring controller for the {@link DatabaseService}, whose timed
@@ -63,18 +65,23 @@ public class DatabaseControllerTimed {
     }
 
     /**
+     * @param shard The index of the shard, if any
+     * @param shards The number of shards, if any
      * @return A {@link Map} that associates the movie title with
-     *         the cosine vector for each movie
+     *         the cosine vector for each movie of the catalog or of
+     *         the given shard
      */
     @GetMapping(GET_MOVIES_MAP)
-    public Map<String, List<Double>> getMoviesMapTimed() {
+    public Map<String, List<Double>> getMoviesMapTimed
+        (@RequestParam(value = SHARD_PARAM, required = false) Integer shard,
+         @RequestParam(value = SHARDS_PARAM, required = false) Integer shards) {
         System.out.println("DatabaseControllerTimed.getMoviesMapTimed()");
         return mRunTimer
             // Forward request.
             .runAndRecordTime(mController.getId()
                         + ":"
                         + GET_MOVIES_MAP,
-                () -> mController.getMoviesMap());
+                () -> mController.getMoviesMap(shard, shards));
     }
 
     /**
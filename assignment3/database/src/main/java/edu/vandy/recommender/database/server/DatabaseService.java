@@ -1,17 +1,23 @@
 package edu.vandy.recommender.database.server;
 
+import edu.vandy.recommender.common.ShardPartition;
+import edu.vandy.recommender.common.TitleIndex;
+import edu.vandy.recommender.common.model.CatalogDelta;
 import edu.vandy.recommender.common.model.Movie;
 import edu.vandy.recommender.database.repository.DatabaseRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import static edu.vandy.recommender.common.Constants.Params.MOVIES_CACHE;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * This class defines implementation methods that are called by the
@@ -37,6 +43,36 @@ public class DatabaseService {
     @Autowired
     DatabaseRepository mRepository;
 
+    /**
+     * Spring-injected log of the catalog versions.
+     */
+    @Autowired
+    CatalogChangeLog mChangeLog;
+
+    /**
+     * The {@link Movie} entries in ascending title order (ignoring
+     * case) together with a {@link TitleIndex} whose title ids are
+     * their positions.
+     */
+    private record SearchIndex(List<Movie> movies, TitleIndex index) {
+        /**
+         * @param ids Title ids in ascending order
+         * @return The {@link Movie} objects with the given {@code ids}
+         */
+        List<Movie> movies(int[] ids) {
+            var matches = new ArrayList<Movie>(ids.length);
+            for (int id : ids)
+                matches.add(movies.get(id));
+            return matches;
+        }
+    }
+
+    /**
+     * The {@link SearchIndex} that's built from the repository the
+     * first time a search needs it.
+     */
+    private volatile SearchIndex mSearchIndex;
+
     /**
      * @return A {@link Map} that associates the movie title with
      *         the cosine vector for each movie
@@ -74,6 +110,34 @@ public class DatabaseService {
         // SOLUTION-END return null;
     }
 
+    /**
+     * Get the movies owned by one shard of a sharded recommender
+     * cluster, so each shard only transfers and holds its slice of
+     * the catalog.
+     *
+     * @param partition The {@link ShardPartition} of the shard
+     * @return A {@link Map} that associates the movie title with the
+     *         cosine vector for each movie the shard owns
+     */
+    @Cacheable(MOVIES_CACHE)
+    public Map<String, List<Double>> getMoviesMap(ShardPartition partition) {
+        return mRepository
+            // Get a List of all the Movies.
+            .findAllByOrderByIdAsc()
+
+            // Convert List to Stream.
+            .stream()
+
+            // Keep the movies of the shard.
+            .filter(m -> partition.owns(m.id))
+
+            // Collect the results into TreeMap.
+            .collect(toMap(m -> m.id,
+                           m -> m.vector,
+                           (v1, v2) -> v1,
+                           TreeMap::new));
+    }
+
     /**
      * @return A {@link List} of all {@link Movie} database entries
      * sorted in ascending order by the {@link Movie} title (id)
@@ -87,9 +151,95 @@ public class DatabaseService {
         // SOLUTION-END return null;
     }
 
+    /**
+     * Add or replace a {@link Movie} in the database and record the
+     * change in a new catalog version.
+     *
+     * @param movie The {@link Movie} to save
+     * @return The saved {@link Movie}
+     */
+    @CacheEvict(value = MOVIES_CACHE, allEntries = true)
+    public synchronized Movie saveMovie(Movie movie) {
+        Movie saved = mRepository.save(movie);
+        mSearchIndex = null;
+        mChangeLog.record(saved.id);
+        return saved;
+    }
+
+    /**
+     * Delete the {@link Movie} with the given {@code title} from the
+     * database and record the change in a new catalog version.
+     *
+     * @param title The title of the {@link Movie} to delete
+     * @return True if the {@link Movie} was deleted, or false if
+     *         there's no such {@link Movie}
+     */
+    @CacheEvict(value = MOVIES_CACHE, allEntries = true)
+    public synchronized boolean deleteMovie(String title) {
+        if (!mRepository.existsById(title))
+            return false;
+
+        mRepository.deleteById(title);
+        mSearchIndex = null;
+        mChangeLog.record(title);
+        return true;
+    }
+
+    /**
+     * @return The current catalog version
+     */
+    public long getCatalogVersion() {
+        return mChangeLog.getVersion();
+    }
+
+    /**
+     * Get the changes of the movie catalog since the given catalog
+     * version, whose cost is proportional to the number of changes.
+     * The entire catalog is returned instead if the changes are no
+     * longer retained or the {@code epoch} is out of date.
+     *
+     * @param epoch The epoch of the {@code since} version, or null if
+     *              the client hasn't seen an epoch yet
+     * @param since The catalog version the client has
+     * @return The {@link CatalogDelta} from {@code since} to the
+     *         current catalog version
+     */
+    public CatalogDelta getCatalogChanges(String epoch, long since) {
+        // Read the version before the movies, so any change that
+        // races with this call is sent again by the next one.
+        var changes = mChangeLog.changesSince(since);
+
+        if (!changes.complete()
+            || (epoch != null && !epoch.equals(mChangeLog.getEpoch())))
+            return new CatalogDelta(mChangeLog.getEpoch(),
+                                    since,
+                                    changes.version(),
+                                    true,
+                                    mRepository.findAllByOrderByIdAsc(),
+                                    List.of());
+
+        // Changed titles that no longer exist were deleted.
+        List<Movie> upserts = mRepository.findAllById(changes.titles());
+        var found = upserts
+            .stream()
+            .map(Movie::getTitle)
+            .collect(toSet());
+
+        return new CatalogDelta(mChangeLog.getEpoch(),
+                                since,
+                                changes.version(),
+                                false,
+                                upserts,
+                                changes
+                                    .titles()
+                                    .stream()
+                                    .filter(title -> !found.contains(title))
+                                    .toList());
+    }
+
     /**
      * Search for movie titles containing the given query {@link
-     * String} using JPA.
+     * String} using an in-memory {@link TitleIndex}.
      *
      * @param query The search query
      * @return A {@link List} of {@link Movie} objects containing
@@ -97,52 +247,55 @@ public class DatabaseService {
      *         the {@link Movie} title (id)
      */
     public List<Movie> search(String query) {
-        // Forward to the repository.
-        // TODO -- you fill in here, replacing 'return null' with
-        // the proper code.
-        // SOLUTION-START
-        return mRepository
-            .findByIdContainingIgnoreCaseOrderByIdAsc(query);
-        // SOLUTION-END return null;
+        var searchIndex = getSearchIndex();
+
+        // Look up the matching titles in the trigram index.
+        return searchIndex.movies(searchIndex.index().search(query));
     }
 
     /**
      * Search for movie titles in the database containing the given
-     * {@link String} queries using Java parallel streams.
+     * {@link String} queries using an in-memory {@link TitleIndex}.
      *
      * @param queries The {@link List} of search queries
      * @return A {@link List} of {@link Movie} objects containing the
      *         queries sorted in ascending order by the {@link Movie}
      *         title (id)
      */
-
     public List<Movie> search(List<String> queries) {
-        // Use Java parallel streams and JPA to locate all movies
-        // whose 'id' matches the List of 'queries' and return them
-        // as a List of Movie objects.
-        // TODO -- you fill in here.
-        // SOLUTION-START
-        return queries
-            // Convert the List to a Stream.
-            .parallelStream()
-                                
-            // Flatten the Stream of Streams into a Stream.
-            .flatMap(query ->
-                     // Forward to the search() method
-                     search(query)
-
-                     // Convert List to a Stream.
-                     .stream())
-
-            // Eliminate any duplicates.
-            .distinct()
-
-            // Sort the Movies.
-            .sorted()
-
-            // Convert Stream to a List.
-            .toList();
-        // SOLUTION-END return null;
+        var searchIndex = getSearchIndex();
+
+        // Merge the matches of all the queries, which removes any
+        // duplicates and keeps them sorted.
+        return searchIndex.movies(searchIndex.index().searchAny(queries));
+    }
+
+    /**
+     * @return The {@link SearchIndex} over all {@link Movie} entries,
+     *         which is built from the repository on first use
+     */
+    private SearchIndex getSearchIndex() {
+        SearchIndex searchIndex = mSearchIndex;
+        if (searchIndex == null)
+            synchronized (this) {
+                searchIndex = mSearchIndex;
+                if (searchIndex == null) {
+                    var movies =
+                        new ArrayList<>(mRepository.findAllByOrderByIdAsc());
+
+                    // Sort the Movies, which compares their titles
+                    // ignoring case.
+                    movies.sort(null);
+
+                    mSearchIndex = searchIndex = new SearchIndex
+                        (movies,
+                         new TitleIndex(movies
+                                        .stream()
+                                        .map(Movie::getTitle)
+                                        .toList()));
+                }
+            }
+        return searchIndex;
     }
 
     /**
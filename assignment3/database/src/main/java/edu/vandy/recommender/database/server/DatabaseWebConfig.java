@@ -0,0 +1,37 @@
+package edu.vandy.recommender.database.server;
+
+import edu.vandy.recommender.common.MovieMapCodec;
+import edu.vandy.recommender.common.MovieMapHttpMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * This class registers the {@link MovieMapHttpMessageConverter} so
+ * the {@link DatabaseController} can return the movie map in the
+ * compact binary format to clients that ask for {@link
+ * MovieMapCodec#MEDIA_TYPE} via their {@code Accept} header.
+ */
+@Configuration
+public class DatabaseWebConfig
+       implements WebMvcConfigurer {
+    /**
+     * The number of bits per vector component in the binary movie
+     * map, i.e., either 32 or 64.
+     */
+    @Value("${app.movie-map.precision:64}")
+    private int mPrecision;
+
+    /**
+     * Append the binary converter after the default ones, so JSON
+     * remains the representation for clients accepting any type.
+     */
+    @Override
+    public void extendMessageConverters
+        (List<HttpMessageConverter<?>> converters) {
+        converters.add(new MovieMapHttpMessageConverter(mPrecision / Byte.SIZE));
+    }
+}
@@ -1,5 +1,6 @@
 package edu.vandy.recommender.database.server
 
+import edu.vandy.recommender.common.ShardPartition
 import edu.vandy.recommender.common.model.Movie
 import edu.vandy.recommender.database.repository.DatabaseRepository
 import io.mockk.confirmVerified
@@ -60,43 +61,79 @@ class DatabaseServiceTest : AssignmentTests() {
 
     @Test
     fun `search is implemented correctly`() {
-        every { r.findByIdContainingIgnoreCaseOrderByIdAsc(any()) } returns lm
-        assertThat(s.search("")).isSameAs(lm)
-        verify {
-            s.search("")
-            r.findByIdContainingIgnoreCaseOrderByIdAsc(any())
+        val movies = listOf("b Mock", "A", "mocking", "C").map { Movie(it, null) }
+        every { r.findAllByOrderByIdAsc() } returns movies
+
+        assertThat(s.search("MOCK")).containsExactly(movies[0], movies[2])
+        assertThat(s.search("c")).containsExactly(movies[0], movies[3], movies[2])
+
+        // The index is built from the repository only once.
+        verify(exactly = 1) { r.findAllByOrderByIdAsc() }
+        verify(exactly = 2) {
+            s.search(any<String>())
+            s["getSearchIndex"]()
         }
         doConfirmVerified()
     }
 
     @Test
     fun `search(list) is implemented correctly`() {
-        every { ls.parallelStream() } answers { ss }
-        every { ss.flatMap<Movie>(any()) } answers {
-            firstArg<Function<String, Stream<Movie>>>().apply("")
-            sm
-        }
-        every { lm.stream() } answers { sm }
-        every { sm.sorted() } answers { sm }
-        every { s.search(any<String>()) } answers { lm }
-        every { sm.distinct() } answers { sm }
-        every { sm.toList() } answers { lm }
+        val movies = listOf("Star Wars", "alien", "Aliens", "Up").map { Movie(it, null) }
+        every { r.findAllByOrderByIdAsc() } returns movies
 
-        assertThat(s.search(ls)).isSameAs(lm)
+        assertThat(s.search(listOf("star", "ALIEN", "alien")))
+            .containsExactly(movies[1], movies[2], movies[0])
 
         verify(exactly = 1) {
-            s.search(any<String>())
-            ls.parallelStream()
-            ss.flatMap<Movie>(any())
-            lm.stream()
-            sm.sorted()
-            sm.distinct()
-            sm.toList()
             s.search(any<List<String>>())
+            s["getSearchIndex"]()
+            r.findAllByOrderByIdAsc()
         }
         doConfirmVerified()
     }
 
+    @Test
+    fun `catalog changes contain only the movies changed since a version`() {
+        val log = CatalogChangeLog().also { it.injectInto(s) }
+        val a = Movie("a", listOf(1.0))
+        val b = Movie("b", listOf(2.0))
+        every { r.save(any<Movie>()) } answers { firstArg() }
+        every { r.existsById("b") } returns true
+        every { r.deleteById("b") } returns Unit
+        every { r.findAllById(listOf("a", "b")) } returns listOf(a)
+        every { r.findAllByOrderByIdAsc() } returns listOf(a)
+
+        s.saveMovie(b)
+        s.saveMovie(a)
+        assertThat(s.deleteMovie("b")).isTrue
+        assertThat(s.catalogVersion).isEqualTo(3)
+
+        val delta = s.getCatalogChanges(null, 1)
+        assertThat(delta.epoch).isEqualTo(log.epoch)
+        assertThat(delta.version).isEqualTo(3)
+        assertThat(delta.reset).isFalse
+        assertThat(delta.upserts).containsExactly(a)
+        assertThat(delta.deletions).containsExactly("b")
+
+        assertThat(s.getCatalogChanges(log.epoch, 3).upserts).isEmpty()
+        assertThat(s.getCatalogChanges("old", 1).reset).isTrue
+        assertThat(s.getCatalogChanges(log.epoch, 4).upserts).containsExactly(a)
+    }
+
+    @Test
+    fun `sharded movie maps partition the catalog`() {
+        val movies = (1..100).map { Movie("m$it", listOf(it.toDouble())) }
+        every { r.findAllByOrderByIdAsc() } returns movies
+
+        val maps = (0 until 3).map { s.getMoviesMap(ShardPartition(it, 3)) }
+
+        assertThat(maps.flatMap { it.keys }).hasSameElementsAs(movies.map { it.id })
+        assertThat(maps.sumOf { it.size }).isEqualTo(movies.size)
+        maps.forEachIndexed { shard, map ->
+            assertThat(map.keys).allMatch { ShardPartition.shardOf(it, 3) == shard }
+        }
+    }
+
     private fun doConfirmVerified() {
         confirmVerified(s, r, tsm, sm, lm, ls, ss)
     }
@@ -1,14 +1,25 @@
 package edu.vandy.recommender.common;
 
+import edu.vandy.recommender.common.model.QueryRecommendations;
+import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.common.model.RecommendationSnapshot;
+import edu.vandy.recommender.common.model.ShardQuery;
+import edu.vandy.recommender.common.model.ShardedRecommendations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 
 import static edu.vandy.recommender.common.Constants.EndPoint.*;
+import static edu.vandy.recommender.common.Constants.Params.DEADLINE_HEADER;
+import static edu.vandy.recommender.common.Constants.Params.DEADLINE_PARAM;
 
 /**
  * A common controller implementation that redirects all requests to custom
@@ -132,4 +143,161 @@ public abstract class BaseController<T> {
             // Delegate request to service.
             .getRecommendations(watchedMovies, maxCount);
     }
+
+    /**
+     * Recommend the {@code maxCount} movies from our database for each
+     * of a batch of watched-movie lists in the request body, which
+     * are scored together in one pass over the catalog.  The results
+     * are streamed back per query as newline-delimited JSON when the
+     * client accepts it.
+     *
+     * @param watchedMovies {@link List} of {@link List<String>}
+     *                      queries, each containing titles that a user
+     *                      has watched
+     * @param maxCount      The upper limit for the number of
+     *                      recommendations returned per query
+     * @return A {@link Flux} of the {@link QueryRecommendations} of
+     * each query
+     */
+    @PostMapping(value = POST_BATCH_RECOMMENDATIONS,
+                 produces = {MediaType.APPLICATION_NDJSON_VALUE,
+                             MediaType.APPLICATION_JSON_VALUE})
+    public Flux<QueryRecommendations> batchRecommendations
+        (@RequestBody List<List<String>> watchedMovies,
+         @RequestParam int maxCount) {
+        System.out.println("batchRecommendations()");
+        return getService()
+            // Delegate request to service.
+            .getBatchRecommendations(watchedMovies, maxCount);
+    }
+
+    /**
+     * Recommend {@code maxCount} movies as a function of a {@code
+     * watchedMovie} within a time budget given in milliseconds by the
+     * {@code deadlineMs} request parameter or the {@code
+     * X-Deadline-Ms} header, returning the best recommendations found
+     * when the budget expires, flagged as partial.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie that has been watched
+     * @param maxCount     The upper limit for the number of
+     *                     recommendations returned
+     * @param deadlineParam The budget in milliseconds, if any
+     * @param deadlineHeader The budget in milliseconds used if there's
+     *                       no {@code deadlineParam}, if any
+     * @return A {@link Mono} of the final {@link
+     * RecommendationSnapshot}, which is empty if the {@code
+     * watchedMovie} isn't in the catalog
+     */
+    @GetMapping(value = GET_PROGRESSIVE_RECOMMENDATIONS,
+                produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<RecommendationSnapshot> progressiveRecommendations
+        (@RequestParam String watchedMovie,
+         @RequestParam int maxCount,
+         @RequestParam(name = DEADLINE_PARAM, required = false) Long deadlineParam,
+         @RequestHeader(name = DEADLINE_HEADER, required = false) Long deadlineHeader) {
+        System.out.println("progressiveRecommendations()");
+        return getService()
+            // Delegate request to service and keep the final snapshot,
+            // which is empty if the movie isn't in the catalog.
+            .getProgressiveRecommendations(watchedMovie,
+                                           maxCount,
+                                           toDeadline(deadlineParam, deadlineHeader))
+            .last(new RecommendationSnapshot(List.of(), false, 0, 0));
+    }
+
+    /**
+     * Stream the intermediate results of a deadline-aware
+     * recommendation request as newline-delimited JSON or server-sent
+     * events, where each {@link RecommendationSnapshot} holds the best
+     * recommendations found so far.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie that has been watched
+     * @param maxCount     The upper limit for the number of
+     *                     recommendations returned
+     * @param deadlineParam The budget in milliseconds, if any
+     * @param deadlineHeader The budget in milliseconds used if there's
+     *                       no {@code deadlineParam}, if any
+     * @return A {@link Flux} of {@link RecommendationSnapshot} objects
+     */
+    @GetMapping(value = GET_PROGRESSIVE_RECOMMENDATIONS,
+                produces = {MediaType.APPLICATION_NDJSON_VALUE,
+                            MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<RecommendationSnapshot> progressiveRecommendationsStream
+        (@RequestParam String watchedMovie,
+         @RequestParam int maxCount,
+         @RequestParam(name = DEADLINE_PARAM, required = false) Long deadlineParam,
+         @RequestHeader(name = DEADLINE_HEADER, required = false) Long deadlineHeader) {
+        System.out.println("progressiveRecommendationsStream()");
+        return getService()
+            // Delegate request to service.
+            .getProgressiveRecommendations(watchedMovie,
+                                           maxCount,
+                                           toDeadline(deadlineParam, deadlineHeader));
+    }
+
+    /**
+     * Returns the normalized vector of a movie this recommender holds,
+     * which a shard coordinator fetches from the movie's owner.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie
+     * @return The vector of the movie, which is empty if there's no
+     * such movie
+     */
+    @GetMapping(GET_MOVIE_VECTOR)
+    public List<Double> movieVector(@RequestParam String watchedMovie) {
+        return getService()
+            // Delegate request to service.
+            .getMovieVector(watchedMovie);
+    }
+
+    /**
+     * Recommend the top movies of this recommender's slice of the
+     * catalog for a query vector scattered by a shard coordinator.
+     *
+     * @param query The {@link ShardQuery} in the request body
+     * @return A {@link Flux} of the shard's {@link Ranking} objects
+     */
+    @PostMapping(POST_SHARD_RECOMMENDATIONS)
+    public Flux<Ranking> shardRecommendations(@RequestBody ShardQuery query) {
+        return getService()
+            // Delegate request to service.
+            .getShardRecommendations(query);
+    }
+
+    /**
+     * Recommend {@code maxCount} movies from the whole sharded cluster
+     * as a function of a {@code watchedMovie}, which is only served by
+     * a recommender running as the shard coordinator.  Shards that
+     * don't answer in time are left out and the result is flagged as
+     * partial.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie that has been watched
+     * @param maxCount     The upper limit for the number of
+     *                     recommendations returned
+     * @return A {@link Mono} of the merged {@link
+     * ShardedRecommendations}
+     */
+    @GetMapping(GET_SHARDED_RECOMMENDATIONS)
+    public Mono<ShardedRecommendations> shardedRecommendations
+        (@RequestParam String watchedMovie,
+         @RequestParam int maxCount) {
+        System.out.println("shardedRecommendations()");
+        return getService()
+            // Delegate request to service.
+            .getShardedRecommendations(watchedMovie, maxCount);
+    }
+
+    /**
+     * @return The budget given by the {@code param} or else the
+     *         {@code header} as a {@link Duration}, or null if neither
+     *         is given
+     */
+    private static Duration toDeadline(Long param, Long header) {
+        Long millis = param != null ? param : header;
+        return millis == null ? null : Duration.ofMillis(Math.max(0, millis));
+    }
 }
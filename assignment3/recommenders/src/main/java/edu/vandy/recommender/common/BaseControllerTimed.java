@@ -1,12 +1,22 @@
 package edu.vandy.recommender.common;
 
+import edu.vandy.recommender.common.model.QueryRecommendations;
+import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.common.model.RecommendationSnapshot;
+import edu.vandy.recommender.common.model.ShardQuery;
+import edu.vandy.recommender.common.model.ShardedRecommendations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
 import static edu.vandy.recommender.common.Constants.EndPoint.*;
+import static edu.vandy.recommender.common.Constants.Params.DEADLINE_HEADER;
+import static edu.vandy.recommender.common.Constants.Params.DEADLINE_PARAM;
 
 /**
  * A common controller implementation that computes the time needed to
@@ -124,4 +134,195 @@ public abstract class BaseControllerTimed<T> {
                 () -> mController.recommendations(watchedMovies,
                     maxCount));
     }
+
+    /**
+     * Recommend the {@code maxCount} movies from our database for each
+     * of a batch of watched-movie lists in the request body, which
+     * are scored together in one pass over the catalog.
+     * <p>
+     * This endpoint also records the execution run time of this call,
+     * up to the completion of the returned {@link Flux}, via the
+     * {@code Timer} microservice.
+     *
+     * @param watchedMovies {@link List} of {@link List<String>}
+     *                      queries, each containing titles that a user
+     *                      has watched
+     * @param maxCount      The upper limit for the number of
+     *                      recommendations returned per query
+     * @return A {@link Flux} of the {@link QueryRecommendations} of
+     * each query
+     */
+    @PostMapping(value = POST_BATCH_RECOMMENDATIONS,
+                 produces = {MediaType.APPLICATION_NDJSON_VALUE,
+                             MediaType.APPLICATION_JSON_VALUE})
+    public Flux<QueryRecommendations> batchRecommendationsTimed
+        (@RequestBody List<List<String>> watchedMovies,
+         @RequestParam int maxCount) {
+        System.out.println("batchRecommendationsTimed()");
+        return mRunTimer
+            // Delegate request to service.
+            .runAndRecordTime(mController.getId()
+                              + ":"
+                              + POST_BATCH_RECOMMENDATIONS,
+                mController.batchRecommendations(watchedMovies,
+                    maxCount));
+    }
+
+    /**
+     * Recommend {@code maxCount} movies as a function of a {@code
+     * watchedMovie} within a time budget given in milliseconds by the
+     * {@code deadlineMs} request parameter or the {@code
+     * X-Deadline-Ms} header, returning the best recommendations found
+     * when the budget expires, flagged as partial.
+     * <p>
+     * This endpoint also records the execution run time of this call,
+     * up to the completion of the returned {@link Mono}, via the
+     * {@code Timer} microservice.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie that has been watched
+     * @param maxCount     The upper limit for the number of
+     *                     recommendations returned
+     * @param deadlineParam The budget in milliseconds, if any
+     * @param deadlineHeader The budget in milliseconds used if there's
+     *                       no {@code deadlineParam}, if any
+     * @return A {@link Mono} of the final {@link
+     * RecommendationSnapshot}
+     */
+    @GetMapping(value = GET_PROGRESSIVE_RECOMMENDATIONS,
+                produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<RecommendationSnapshot> progressiveRecommendationsTimed
+        (@RequestParam String watchedMovie,
+         @RequestParam int maxCount,
+         @RequestParam(name = DEADLINE_PARAM, required = false) Long deadlineParam,
+         @RequestHeader(name = DEADLINE_HEADER, required = false) Long deadlineHeader) {
+        System.out.println("progressiveRecommendationsTimed()");
+        return mRunTimer
+            // Delegate request to service.
+            .runAndRecordTime(mController.getId()
+                              + ":"
+                              + GET_PROGRESSIVE_RECOMMENDATIONS,
+                mController.progressiveRecommendations(watchedMovie,
+                    maxCount,
+                    deadlineParam,
+                    deadlineHeader).flux())
+            // Keep the single final snapshot.
+            .singleOrEmpty();
+    }
+
+    /**
+     * Stream the intermediate results of a deadline-aware
+     * recommendation request as newline-delimited JSON or server-sent
+     * events, where each {@link RecommendationSnapshot} holds the best
+     * recommendations found so far.
+     * <p>
+     * This endpoint also records the execution run time of this call,
+     * up to the completion of the returned {@link Flux}, via the
+     * {@code Timer} microservice.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie that has been watched
+     * @param maxCount     The upper limit for the number of
+     *                     recommendations returned
+     * @param deadlineParam The budget in milliseconds, if any
+     * @param deadlineHeader The budget in milliseconds used if there's
+     *                       no {@code deadlineParam}, if any
+     * @return A {@link Flux} of {@link RecommendationSnapshot} objects
+     */
+    @GetMapping(value = GET_PROGRESSIVE_RECOMMENDATIONS,
+                produces = {MediaType.APPLICATION_NDJSON_VALUE,
+                            MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<RecommendationSnapshot> progressiveRecommendationsStreamTimed
+        (@RequestParam String watchedMovie,
+         @RequestParam int maxCount,
+         @RequestParam(name = DEADLINE_PARAM, required = false) Long deadlineParam,
+         @RequestHeader(name = DEADLINE_HEADER, required = false) Long deadlineHeader) {
+        System.out.println("progressiveRecommendationsStreamTimed()");
+        return mRunTimer
+            // Delegate request to service.
+            .runAndRecordTime(mController.getId()
+                              + ":"
+                              + GET_PROGRESSIVE_RECOMMENDATIONS,
+                mController.progressiveRecommendationsStream(watchedMovie,
+                    maxCount,
+                    deadlineParam,
+                    deadlineHeader));
+    }
+
+    /**
+     * Returns the normalized vector of a movie this recommender holds,
+     * which a shard coordinator fetches from the movie's owner.
+     * <p>
+     * This endpoint also records the execution run time of this call
+     * via the {@code Timer} microservice.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie
+     * @return The vector of the movie, which is empty if there's no
+     * such movie
+     */
+    @GetMapping(GET_MOVIE_VECTOR)
+    public List<Double> movieVectorTimed(@RequestParam String watchedMovie) {
+        System.out.println("movieVectorTimed()");
+        return mRunTimer
+            // Delegate request to service.
+            .runAndRecordTime(mController.getId()
+                              + ":"
+                              + GET_MOVIE_VECTOR,
+                () -> mController.movieVector(watchedMovie));
+    }
+
+    /**
+     * Recommend the top movies of this recommender's slice of the
+     * catalog for a query vector scattered by a shard coordinator.
+     * <p>
+     * This endpoint also records the execution run time of this call,
+     * up to the completion of the returned {@link Flux}, via the
+     * {@code Timer} microservice.
+     *
+     * @param query The {@link ShardQuery} in the request body
+     * @return A {@link Flux} of the shard's {@link Ranking} objects
+     */
+    @PostMapping(POST_SHARD_RECOMMENDATIONS)
+    public Flux<Ranking> shardRecommendationsTimed(@RequestBody ShardQuery query) {
+        System.out.println("shardRecommendationsTimed()");
+        return mRunTimer
+            // Delegate request to service.
+            .runAndRecordTime(mController.getId()
+                              + ":"
+                              + POST_SHARD_RECOMMENDATIONS,
+                mController.shardRecommendations(query));
+    }
+
+    /**
+     * Recommend {@code maxCount} movies from the whole sharded cluster
+     * as a function of a {@code watchedMovie}, which is only served by
+     * a recommender running as the shard coordinator.
+     * <p>
+     * This endpoint also records the execution run time of this call,
+     * up to the completion of the returned {@link Mono}, via the
+     * {@code Timer} microservice.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie that has been watched
+     * @param maxCount     The upper limit for the number of
+     *                     recommendations returned
+     * @return A {@link Mono} of the merged {@link
+     * ShardedRecommendations}
+     */
+    @GetMapping(GET_SHARDED_RECOMMENDATIONS)
+    public Mono<ShardedRecommendations> shardedRecommendationsTimed
+        (@RequestParam String watchedMovie,
+         @RequestParam int maxCount) {
+        System.out.println("shardedRecommendationsTimed()");
+        return mRunTimer
+            // Delegate request to service.
+            .runAndRecordTime(mController.getId()
+                              + ":"
+                              + GET_SHARDED_RECOMMENDATIONS,
+                mController.shardedRecommendations(watchedMovie,
+                    maxCount).flux())
+            // Keep the single merged result.
+            .singleOrEmpty();
+    }
 }
@@ -1,11 +1,29 @@
 package edu.vandy.recommender.common;
 
+import edu.vandy.recommender.common.model.QueryRecommendations;
+import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.common.model.RecommendationSnapshot;
+import edu.vandy.recommender.common.model.ShardQuery;
+import edu.vandy.recommender.common.model.ShardedRecommendations;
+import edu.vandy.recommender.utils.TopKSelector;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * This abstract class defines the methods that are called by the
@@ -22,9 +40,10 @@ import java.util.Map;
  */
 public abstract class BaseService<T> {
     /**
-     * This auto-wired {@link Map} field contains all movie cosine
-     * vectors that are configured automatically by Spring sorted in
-     * ascending order (ignoring case).
+     * This auto-wired {@link MovieCatalog} field contains all movie
+     * titles and cosine vectors packed into primitive arrays that
+     * are configured automatically by Spring, with movie ids assigned
+     * in ascending title order.
      */
     @Autowired
     /*
@@ -32,8 +51,368 @@ public abstract class BaseService<T> {
      * for candidate beans when autowiring. It may also be used to annotate
      * other custom annotations that can then in turn be used as qualifiers.
      */
-    @Qualifier("movieMap")
-    protected Map<String, List<Double>> mMovieMap;
+    @Qualifier("movieCatalog")
+    protected MovieCatalog mCatalog;
+
+    /**
+     * Provides the {@link MovieCatalogStore} that keeps the catalog in
+     * sync with the database microservice, which is only available
+     * when {@code app.catalog-sync.enabled} is true.
+     */
+    @Autowired
+    protected ObjectProvider<MovieCatalogStore> mCatalogStore;
+
+    /**
+     * The strategy used to answer single-movie recommendation
+     * requests, which defaults to the exhaustive scan.
+     */
+    @Value("${app.recommender.mode:exact}")
+    protected RecommenderMode mMode = RecommenderMode.EXACT;
+
+    /**
+     * Provides the {@link HnswIndex} that's built at startup when
+     * the recommender runs in {@link RecommenderMode#HNSW} mode.
+     */
+    @Autowired
+    protected ObjectProvider<HnswIndex> mHnswIndex;
+
+    /**
+     * The {@link HnswIndex} rebuilt over a catalog that replaced the
+     * one loaded at startup, or null if none has been rebuilt.
+     */
+    private final AtomicReference<HnswIndex> mRebuiltHnswIndex =
+        new AtomicReference<>();
+
+    /**
+     * True while an {@link HnswIndex} is being rebuilt, so at most one
+     * rebuild runs at a time.
+     */
+    private final AtomicBoolean mHnswRebuilding = new AtomicBoolean();
+
+    /**
+     * Provides the {@link QuantizedCatalog} that's built at startup
+     * when the recommender runs in {@link RecommenderMode#QUANTIZED}
+     * mode.
+     */
+    @Autowired
+    protected ObjectProvider<QuantizedCatalog> mQuantizedCatalog;
+
+    /**
+     * Provides the {@link NeighborTable} of precomputed neighbors,
+     * which is only available when {@code app.neighbor-table.enabled}
+     * is true.
+     */
+    @Autowired
+    protected ObjectProvider<NeighborTable> mNeighborTable;
+
+    /**
+     * Provides the {@link RecommendationCache} of single-movie
+     * recommendations, which is only available when {@code
+     * app.recommendation-cache.enabled} is true.
+     */
+    @Autowired
+    protected ObjectProvider<RecommendationCache> mRecommendationCache;
+
+    /**
+     * Provides the {@link RequestCoalescer} that shares computations
+     * between identical concurrent requests, which is only available
+     * when {@code app.request-coalescing.enabled} is true.
+     */
+    @Autowired
+    protected ObjectProvider<RequestCoalescer> mRequestCoalescer;
+
+    /**
+     * Provides the {@link MicroBatcher} that scores concurrent
+     * single-movie requests in one pass over the catalog, which is
+     * only available when {@code app.micro-batching.enabled} is true.
+     */
+    @Autowired
+    protected ObjectProvider<MicroBatcher> mMicroBatcher;
+
+    /**
+     * Provides the {@link ShardCoordinator} that answers requests for
+     * a sharded cluster, which is only available when {@code
+     * app.shard.coordinator.enabled} is true.
+     */
+    @Autowired
+    protected ObjectProvider<ShardCoordinator> mShardCoordinator;
+
+    /**
+     * True if multi-movie recommendations score each movie against
+     * the sum of the watched vectors (one dot product per movie),
+     * else false to sum one cosine similarity per watched movie.
+     */
+    @Value("${app.recommender.profile-vector:true}")
+    protected boolean mProfileVector = true;
+
+    /**
+     * Get the current {@link MovieCatalog}, which is the synchronized
+     * catalog if a {@link MovieCatalogStore} is available, else the
+     * catalog loaded at startup.  Each request must read it once and
+     * use that snapshot throughout, since movie ids are only
+     * meaningful within one catalog.
+     *
+     * @return The current {@link MovieCatalog}
+     */
+    protected MovieCatalog getCatalog() {
+        MovieCatalogStore store = mCatalogStore == null
+            ? null
+            : mCatalogStore.getIfAvailable();
+
+        return store == null ? mCatalog : store.getCatalog();
+    }
+
+    /**
+     * Get the {@link HnswIndex} of the given {@code catalog}.  The
+     * index is built over the catalog loaded at startup, if the
+     * recommender runs in {@link RecommenderMode#HNSW} mode, and the
+     * caller must scan the exact vectors if there's no index.  Once
+     * a sync replaces that catalog, the index is rebuilt over the new
+     * one on a background thread and the caller must scan the exact
+     * vectors until the rebuild is done.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @return The {@link HnswIndex} of the {@code catalog}, or null if
+     *         the caller must scan the exact vectors
+     */
+    protected HnswIndex getHnswIndex(MovieCatalog catalog) {
+        HnswIndex rebuilt = mRebuiltHnswIndex.get();
+        HnswIndex index = rebuilt != null
+            ? rebuilt
+            : mHnswIndex.getIfAvailable();
+        if (index == null || index.getCatalog() == catalog)
+            return index;
+
+        if (mHnswRebuilding.compareAndSet(false, true)) {
+            System.out.println("The catalog has changed since the HNSW index"
+                               + " was built, so it's being rebuilt over "
+                               + catalog.size()
+                               + " movies and requests scan the exact"
+                               + " vectors meanwhile");
+            var thread = new Thread(() -> {
+                    try {
+                        long start = System.nanoTime();
+                        mRebuiltHnswIndex.set(index.rebuild(catalog));
+                        System.out.println("Rebuilt HNSW index over "
+                                           + catalog.size()
+                                           + " movies in "
+                                           + (System.nanoTime() - start) / 1_000_000
+                                           + " msecs");
+                    } finally {
+                        mHnswRebuilding.set(false);
+                    }
+                }, "hnsw-index-builder");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return null;
+    }
+
+    /**
+     * Find the top {@code maxCount} recommendations for the movie
+     * with the given {@code watchedId} using the approximate {@link
+     * HnswIndex} of its catalog.
+     *
+     * @param index The {@link HnswIndex} of the request's catalog
+     * @param watchedId The catalog id of the watched movie
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @return A {@link List} of {@link Ranking} objects in descending
+     *         similarity order
+     */
+    protected List<Ranking> getHnswRecommendations(HnswIndex index,
+                                                   int watchedId,
+                                                   int maxCount) {
+        var result = index.searchById(watchedId, maxCount);
+        var rankings = new ArrayList<Ranking>(result.size());
+
+        for (int i = 0; i < result.size(); i++)
+            rankings.add(new Ranking(index.getCatalog().title(result.ids()[i]),
+                                     result.scores()[i]));
+        return rankings;
+    }
+
+    /**
+     * Get the {@link QuantizedCatalog}, which is built at startup in
+     * {@link RecommenderMode#QUANTIZED} mode, if it quantizes the
+     * given {@code catalog}.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @return The {@link QuantizedCatalog} of the {@code catalog}, or
+     *         null if the caller must scan the exact vectors
+     */
+    protected QuantizedCatalog getQuantizedCatalog(MovieCatalog catalog) {
+        QuantizedCatalog quantized = mQuantizedCatalog == null
+            ? null
+            : mQuantizedCatalog.getIfAvailable();
+
+        return quantized != null && quantized.getCatalog() == catalog
+            ? quantized
+            : null;
+    }
+
+    /**
+     * Read the top {@code maxCount} recommendations for the movie with
+     * the given {@code watchedId} from the {@link NeighborTable}, if
+     * it's enabled, completely built, built from the given {@code
+     * catalog}, and holds at least {@code maxCount} neighbors per
+     * movie.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @param watchedId The catalog id of the watched movie
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @return An {@link Optional} containing the {@link Ranking}
+     *         objects in descending similarity order, or an empty
+     *         {@link Optional} if the caller must compute them
+     */
+    protected Optional<List<Ranking>> getPrecomputedRecommendations
+        (MovieCatalog catalog,
+         int watchedId,
+         int maxCount) {
+        NeighborTable table = mNeighborTable == null
+            ? null
+            : mNeighborTable.getIfAvailable();
+
+        if (table == null
+            || !table.isReady()
+            || maxCount > table.getK()
+            || table.getCatalog() != catalog)
+            return Optional.empty();
+
+        return Optional.of(table.getRecommendations(watchedId, maxCount));
+    }
+
+    /**
+     * @return The {@link RecommendationCache} if it's enabled, else
+     *         null
+     */
+    protected RecommendationCache getRecommendationCache() {
+        return mRecommendationCache == null
+            ? null
+            : mRecommendationCache.getIfAvailable();
+    }
+
+    /**
+     * Return a function that computes the sum of cosine similarities
+     * between a catalog movie and all the {@code watchedIds} movies.
+     *
+     * In profile-vector mode the normalized watched vectors are summed
+     * into a single profile vector once, since the sum of their dot
+     * products with a movie equals the dot product of the movie with
+     * their sum.  Each movie then costs one dot product regardless of
+     * how many movies have been watched.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @param watchedIds The catalog ids of the watched movies
+     * @return A function that maps a movie id to its score
+     */
+    protected IntToDoubleFunction getMultiMovieScorer(MovieCatalog catalog,
+                                                      int[] watchedIds) {
+        if (!mProfileVector)
+            return id -> CosineSimilarityUtils
+                .sumOfCosines(catalog, id, watchedIds);
+
+        double[] profile = CosineSimilarityUtils
+            .profileVector(catalog, watchedIds);
+        return id -> CosineSimilarityUtils.dot(catalog, id, profile);
+    }
+
+    /**
+     * @return The {@link RequestCoalescer} if it's enabled, else null
+     */
+    protected RequestCoalescer getRequestCoalescer() {
+        return mRequestCoalescer == null
+            ? null
+            : mRequestCoalescer.getIfAvailable();
+    }
+
+    /**
+     * @return The {@link MicroBatcher} if it's enabled, else null
+     */
+    protected MicroBatcher getMicroBatcher() {
+        return mMicroBatcher == null
+            ? null
+            : mMicroBatcher.getIfAvailable();
+    }
+
+    /**
+     * @return The {@link ShardCoordinator} if it's enabled, else null
+     */
+    protected ShardCoordinator getShardCoordinator() {
+        return mShardCoordinator == null
+            ? null
+            : mShardCoordinator.getIfAvailable();
+    }
+
+    /**
+     * Convert the pairs retained by the {@code selector} into {@link
+     * Ranking} objects, so only the winners of a selection are ever
+     * boxed.  This call empties the {@code selector}.
+     *
+     * @param catalog The {@link MovieCatalog} the ids belong to
+     * @param selector A {@link TopKSelector} of catalog ids and scores
+     * @return A {@link List} of {@link Ranking} objects in descending
+     *         similarity order
+     */
+    protected List<Ranking> toRankings(MovieCatalog catalog,
+                                       TopKSelector selector) {
+        return BlockScanner.toRankings(catalog, selector);
+    }
+
+    /**
+     * @param catalog The {@link MovieCatalog} the ids belong to
+     * @param ids Movie ids
+     * @return A {@link BitSet} containing the given {@code ids}, which
+     *         supports O(1) membership tests
+     */
+    protected BitSet toIdSet(MovieCatalog catalog, int[] ids) {
+        return BlockScanner.toIdSet(catalog, ids);
+    }
+
+    /**
+     * Get the normalized vector of a movie this recommender holds, so
+     * a {@link ShardCoordinator} can scatter it to the other shards.
+     *
+     * @param title The title of the movie
+     * @return The normalized vector of the movie, or an empty {@link
+     *         List} if there's no such movie
+     */
+    public List<Double> getMovieVector(String title) {
+        MovieCatalog catalog = getCatalog();
+        int id = catalog.idOf(title);
+        if (id < 0)
+            return List.of();
+
+        var vector = new ArrayList<Double>(catalog.dimension());
+        for (double component : catalog.vector(id))
+            vector.add(component);
+        return vector;
+    }
+
+    /**
+     * Recommend movies for the whole sharded cluster as a function of
+     * a single {@code watchedMovie} via the {@link ShardCoordinator}.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie that has been watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @return A {@link Mono} that emits the merged {@link
+     *         ShardedRecommendations}, or fails with a 404 status if
+     *         this recommender isn't a coordinator
+     */
+    public Mono<ShardedRecommendations> getShardedRecommendations
+        (String watchedMovie,
+         int maxCount) {
+        ShardCoordinator coordinator = getShardCoordinator();
+        if (coordinator == null)
+            return Mono.error(new ResponseStatusException
+                              (HttpStatus.NOT_FOUND,
+                               "This recommender isn't a shard coordinator"));
+
+        return coordinator.getRecommendations(watchedMovie, maxCount);
+    }
 
     /**
      * Get a {@link Collection} of all movies represented as {@link
@@ -83,4 +462,56 @@ public abstract class BaseService<T> {
      */
     public abstract T getRecommendations(List<String> watchedMovies,
                                          int maxCount);
+
+    /**
+     * Recommend the given number of movies for each of a batch of
+     * watched-movie lists, scoring all of them together so the
+     * catalog is scanned once per batch instead of once per list.
+     *
+     * @param watchedMovies A {@link List} of queries, each of which
+     *                      is a {@link List} of titles of movies a
+     *                      user has watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned per query
+     * @return A {@link Flux} that emits the {@link
+     *         QueryRecommendations} of each query as soon as they're
+     *         computed
+     */
+    public abstract Flux<QueryRecommendations> getBatchRecommendations
+        (List<List<String>> watchedMovies,
+         int maxCount);
+
+    /**
+     * Recommend {@code maxCount} movies as a function of a single
+     * {@code watchedMovie} by scoring the catalog progressively, so
+     * the best recommendations found so far can be returned when the
+     * {@code deadline} expires.
+     *
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie that has been watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @param deadline The time budget of the request, or null if it
+     *                 has none
+     * @return A {@link Flux} that emits a {@link
+     *         RecommendationSnapshot} each time more of the catalog has
+     *         been scored, the last of which is flagged as partial if
+     *         the deadline expired first
+     */
+    public abstract Flux<RecommendationSnapshot> getProgressiveRecommendations
+        (String watchedMovie,
+         int maxCount,
+         Duration deadline);
+
+    /**
+     * Recommend the top {@code query.maxCount} movies of the catalog
+     * this recommender holds, which is its slice of the catalog when
+     * it's a shard of a sharded cluster.
+     *
+     * @param query The {@link ShardQuery} scattered by a {@link
+     *              ShardCoordinator}
+     * @return A {@link Flux} that emits the {@link Ranking} objects in
+     *         descending similarity order
+     */
+    public abstract Flux<Ranking> getShardRecommendations(ShardQuery query);
 }
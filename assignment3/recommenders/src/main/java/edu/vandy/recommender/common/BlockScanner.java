@@ -0,0 +1,471 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.common.model.QueryRecommendations;
+import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.common.model.RecommendationSnapshot;
+import edu.vandy.recommender.common.model.ShardQuery;
+import edu.vandy.recommender.utils.TopKSelector;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * This class scans a {@link MovieCatalog} in blocks of {@link
+ * #BLOCK_SIZE} contiguous movie ids on behalf of a recommender.  It
+ * holds the scanning logic that all concurrency models share, i.e.,
+ * scoring a block, grouping batch queries, validating shard queries,
+ * and scoring the catalog progressively, while the {@link
+ * BlockExecutor} it's given decides how the blocks run concurrently.
+ */
+public class BlockScanner {
+    /**
+     * The number of contiguous catalog ids scored per block.
+     */
+    public static final int BLOCK_SIZE = 1024;
+
+    /**
+     * The max number of batch queries scored together per group,
+     * which bounds the memory of their selectors and keeps their
+     * profile vectors in cache.
+     */
+    public static final int MAX_BATCH_GROUP = 32;
+
+    /**
+     * Scores the movies of one catalog block into a {@link
+     * TopKSelector}.
+     */
+    @FunctionalInterface
+    public interface BlockScorer {
+        /**
+         * Score the movies of a block.
+         *
+         * @param block The index of the block
+         * @param selector Receives the ids and scores of the movies
+         */
+        void score(int block, TopKSelector selector);
+    }
+
+    /**
+     * Runs the blocks of a scan, which is the only part of a scan
+     * that depends on the concurrency model of the recommender.
+     */
+    @FunctionalInterface
+    public interface BlockExecutor {
+        /**
+         * Score {@code blockCount} blocks concurrently, each into a
+         * {@link TopKSelector} of capacity {@code maxCount}, and merge
+         * the selectors.
+         *
+         * @param blockCount The number of blocks
+         * @param maxCount The upper limit for the number of ids
+         *                 selected
+         * @param scorer Scores the block with the given index
+         * @return A {@link Mono} that emits the merged {@link
+         *         TopKSelector}
+         */
+        Mono<TopKSelector> selectBlocks(int blockCount,
+                                        int maxCount,
+                                        BlockScorer scorer);
+    }
+
+    /**
+     * Scores a validated shard query.
+     */
+    @FunctionalInterface
+    public interface ShardScan {
+        /**
+         * @param vector The normalized query vector
+         * @param excludedId The id of the movie to leave out, or
+         *                   {@code -1} to keep all movies
+         * @return A {@link Flux} that emits the {@link Ranking}
+         *         objects in descending similarity order
+         */
+        Flux<Ranking> scan(double[] vector, int excludedId);
+    }
+
+    /**
+     * The number of blocks that are scored at the same time.
+     */
+    private final int mParallelism;
+
+    /**
+     * Runs the blocks of each scan.
+     */
+    private final BlockExecutor mExecutor;
+
+    /**
+     * Create a scanner.
+     *
+     * @param parallelism The number of blocks that are scored at the
+     *                    same time, which decides how many blocks a
+     *                    progressive round scores and how batch
+     *                    queries are grouped
+     * @param executor Runs the blocks of each scan
+     */
+    public BlockScanner(int parallelism, BlockExecutor executor) {
+        mParallelism = Math.max(1, parallelism);
+        mExecutor = executor;
+    }
+
+    /**
+     * @return The number of blocks that are scored at the same time
+     */
+    public int getParallelism() {
+        return mParallelism;
+    }
+
+    /**
+     * @param catalog A {@link MovieCatalog}
+     * @return The number of blocks the {@code catalog} is split into
+     */
+    public static int blockCount(MovieCatalog catalog) {
+        return (catalog.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * @param catalog The {@link MovieCatalog} to score
+     * @param candidate Selects the movie ids that may be selected
+     * @param scorer Maps a movie id to its score
+     * @return A {@link BlockScorer} that offers the candidates of a
+     *         block of the {@code catalog} with their scores
+     */
+    public static BlockScorer blockScorer(MovieCatalog catalog,
+                                          IntPredicate candidate,
+                                          IntToDoubleFunction scorer) {
+        int size = catalog.size();
+        return (block, selector) -> {
+            int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+            for (int id = block * BLOCK_SIZE; id < end; id++)
+                if (candidate.test(id))
+                    selector.offer(id, scorer.applyAsDouble(id));
+        };
+    }
+
+    /**
+     * Select the top {@code maxCount} catalog ids and scores by
+     * scoring every block of the {@code catalog} with the {@link
+     * BlockExecutor}.
+     *
+     * @param catalog The {@link MovieCatalog} to select from
+     * @param candidate Selects the movie ids that may be selected
+     * @param scorer Maps a movie id to its score
+     * @param maxCount The upper limit for the number of ids selected
+     * @return A {@link Mono} that emits a {@link TopKSelector} of the
+     *         top {@code maxCount} ids and scores
+     */
+    public Mono<TopKSelector> selectTop(MovieCatalog catalog,
+                                        IntPredicate candidate,
+                                        IntToDoubleFunction scorer,
+                                        int maxCount) {
+        return mExecutor.selectBlocks(blockCount(catalog),
+                                      maxCount,
+                                      blockScorer(catalog, candidate, scorer));
+    }
+
+    /**
+     * Look up the catalog ids of the watched movies of each query of
+     * a batch, ignoring titles that aren't in the {@code catalog}.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @param watchedMovies The titles of the watched movies of each
+     *                      query
+     * @return The catalog ids of the watched movies of each query
+     */
+    public static int[][] toBatchIds(MovieCatalog catalog,
+                                     List<List<String>> watchedMovies) {
+        return watchedMovies
+            .stream()
+            .map(titles -> titles
+                 .stream()
+                 .mapToInt(catalog::idOf)
+                 .filter(id -> id >= 0)
+                 .toArray())
+            .toArray(int[][]::new);
+    }
+
+    /**
+     * @param queryCount The number of queries in a batch
+     * @return The number of queries scored together per group, which
+     *         spreads the queries over {@link #getParallelism()}
+     *         groups of at most {@link #MAX_BATCH_GROUP} queries
+     */
+    public int batchGroupSize(int queryCount) {
+        return Math.max(1, Math.min(MAX_BATCH_GROUP,
+                                    (queryCount + mParallelism - 1) / mParallelism));
+    }
+
+    /**
+     * Score one group of batch queries with {@link #selectTopBatch}.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @param watchedIds The catalog ids of the watched movies of all
+     *                   queries of the batch
+     * @param start The index of the first query of the group
+     * @param end The index after the last query of the group
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned per query
+     * @return The {@link QueryRecommendations} of the group's queries
+     *         in query order
+     */
+    public static List<QueryRecommendations> scoreBatchGroup(MovieCatalog catalog,
+                                                             int[][] watchedIds,
+                                                             int start,
+                                                             int end,
+                                                             int maxCount) {
+        TopKSelector[] selectors = selectTopBatch
+            (catalog,
+             Arrays.copyOfRange(watchedIds, start, end),
+             maxCount);
+
+        var results = new ArrayList<QueryRecommendations>(selectors.length);
+        for (int i = 0; i < selectors.length; i++)
+            results.add(new QueryRecommendations(start + i,
+                                                 toRankings(catalog, selectors[i])));
+        return results;
+    }
+
+    /**
+     * Select the top {@code maxCount} movies for each of a batch of
+     * multi-movie queries with one blocked pass over the catalog via
+     * {@link CosineSimilarityUtils#multiply}.  Each query is scored
+     * with the profile vector of its watched movies and excludes
+     * them, like a single multi-movie request in profile-vector mode.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @param watchedIds The catalog ids of the watched movies of each
+     *                   query, where a query without ids selects
+     *                   nothing
+     * @param maxCount The upper limit for the number of movies
+     *                 selected per query
+     * @return A {@link TopKSelector} for each query
+     */
+    public static TopKSelector[] selectTopBatch(MovieCatalog catalog,
+                                                int[][] watchedIds,
+                                                int maxCount) {
+        var selectors = new TopKSelector[watchedIds.length];
+        var watched = new BitSet[watchedIds.length];
+        int dimension = catalog.dimension();
+
+        // Pack the profile vectors of the queries that have watched
+        // movies into a matrix.
+        var queries = new int[watchedIds.length];
+        var profiles = new double[watchedIds.length * dimension];
+        int queryCount = 0;
+        for (int i = 0; i < watchedIds.length; i++) {
+            selectors[i] = new TopKSelector(Math.max(0, maxCount));
+            if (watchedIds[i].length == 0 || maxCount < 1)
+                continue;
+
+            watched[i] = toIdSet(catalog, watchedIds[i]);
+            System.arraycopy(CosineSimilarityUtils
+                             .profileVector(catalog, watchedIds[i]), 0,
+                             profiles, queryCount * dimension,
+                             dimension);
+            queries[queryCount++] = i;
+        }
+
+        CosineSimilarityUtils
+            .multiply(catalog,
+                      profiles,
+                      queryCount,
+                      (query, id, score) -> {
+                          int i = queries[query];
+                          if (!watched[i].get(id))
+                              selectors[i].offer(id, score);
+                      });
+        return selectors;
+    }
+
+    /**
+     * Validate a {@link ShardQuery} against the {@code catalog} and
+     * score its normalized vector with the {@code scan}.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @param query The {@link ShardQuery} scattered by a {@link
+     *              ShardCoordinator}
+     * @param scan Scores the validated query
+     * @return A {@link Flux} that emits the {@link Ranking} objects in
+     *         descending similarity order, or fails with an {@link
+     *         IllegalArgumentException} if the query vector doesn't
+     *         match the catalog's dimension
+     */
+    public static Flux<Ranking> scanShard(MovieCatalog catalog,
+                                          ShardQuery query,
+                                          ShardScan scan) {
+        if (catalog.isEmpty() || query.maxCount < 1)
+            return Flux.empty();
+        if (query.vector == null || query.vector.size() != catalog.dimension())
+            return Flux.error(new IllegalArgumentException
+                              ("The query vector must have "
+                               + catalog.dimension()
+                               + " components"));
+
+        double[] vector = CosineSimilarityUtils
+            .normalize(query.vector
+                       .stream()
+                       .mapToDouble(Double::doubleValue)
+                       .toArray());
+        int excludedId = query.excludedMovie == null
+            ? -1
+            : catalog.idOf(query.excludedMovie);
+
+        return scan.scan(vector, excludedId);
+    }
+
+    /**
+     * Recommend {@code maxCount} movies as a function of a single
+     * {@code watchedMovie} by scoring the catalog progressively, so
+     * the best recommendations found so far can be returned when the
+     * {@code deadline} expires.  The catalog blocks are scored in a
+     * random order, one round of {@link #getParallelism()} blocks at
+     * a time, and the running top {@code maxCount} is emitted after
+     * each round.  The first round is always scored in full, and once
+     * the deadline expires the remaining blocks are skipped, so the
+     * last snapshot holds the best movies of a random sample of the
+     * catalog and is flagged as partial.  The exact vectors are
+     * always scanned.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @param watchedMovie A {@link String} indicating the title of the
+     *                     movie that has been watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @param deadline The time budget of the request, or null if it
+     *                 has none
+     * @return A {@link Flux} that emits a {@link
+     *         RecommendationSnapshot} after each round, which is empty
+     *         if the {@code watchedMovie} isn't in the catalog
+     */
+    public Flux<RecommendationSnapshot> scanProgressively(MovieCatalog catalog,
+                                                          String watchedMovie,
+                                                          int maxCount,
+                                                          Duration deadline) {
+        int watchedId = catalog.idOf(watchedMovie);
+        if (watchedId < 0)
+            return Flux.empty();
+
+        long start = System.nanoTime();
+        long budget = deadline == null ? Long.MAX_VALUE : deadline.toNanos();
+        BooleanSupplier expired = () -> System.nanoTime() - start >= budget;
+
+        // Visit the blocks in a random order, so a partial result is
+        // an unbiased sample of the catalog.
+        int size = catalog.size();
+        int[] blocks = shuffledBlocks(blockCount(catalog));
+
+        // The watched movie itself is never scored.
+        int total = size - 1;
+        int rounds = (blocks.length + mParallelism - 1) / mParallelism;
+        double[] query = catalog.vector(watchedId);
+        BlockScorer scorer = blockScorer(catalog,
+                                         id -> id != watchedId,
+                                         id -> CosineSimilarityUtils
+                                             .dot(catalog, id, query));
+        var best = new TopKSelector(Math.max(0, maxCount));
+        var scored = new AtomicInteger();
+
+        return Flux
+            // Emit the index of each round of blocks.
+            .range(0, rounds)
+
+            // Score the rounds one after the other, always running the
+            // first one so there's at least one snapshot.
+            .concatMap(round -> {
+                    if (round > 0 && expired.getAsBoolean())
+                        return Mono.<RecommendationSnapshot>empty();
+
+                    int first = round * mParallelism;
+                    return mExecutor
+                        .selectBlocks
+                        (Math.min(mParallelism, blocks.length - first),
+                         maxCount,
+                         (position, selector) -> {
+                             // Skip the blocks left when the deadline
+                             // expires, except in the first round.
+                             if (round > 0 && expired.getAsBoolean())
+                                 return;
+
+                             int block = blocks[first + position];
+                             scorer.score(block, selector);
+
+                             int begin = block * BLOCK_SIZE;
+                             int end = Math.min(size, begin + BLOCK_SIZE);
+                             scored.addAndGet(end - begin
+                                              - (begin <= watchedId && watchedId < end ? 1 : 0));
+                         })
+                        .map(selector -> {
+                                // Merge the round into the running top
+                                // results and emit a copy of them.
+                                best.merge(selector);
+                                int count = scored.get();
+                                return new RecommendationSnapshot
+                                    (toRankings(catalog,
+                                                new TopKSelector(best.capacity())
+                                                .merge(best)),
+                                     count < total,
+                                     count,
+                                     total);
+                            });
+                });
+    }
+
+    /**
+     * Convert the pairs retained by the {@code selector} into {@link
+     * Ranking} objects, so only the winners of a selection are ever
+     * boxed.  This call empties the {@code selector}.
+     *
+     * @param catalog The {@link MovieCatalog} the ids belong to
+     * @param selector A {@link TopKSelector} of catalog ids and scores
+     * @return A {@link List} of {@link Ranking} objects in descending
+     *         similarity order
+     */
+    public static List<Ranking> toRankings(MovieCatalog catalog,
+                                           TopKSelector selector) {
+        var rankings = new ArrayList<Ranking>(selector.size());
+        selector.drain((rank, id, score) ->
+                       rankings.add(new Ranking(catalog.title(id), score)));
+        return rankings;
+    }
+
+    /**
+     * @param catalog The {@link MovieCatalog} the ids belong to
+     * @param ids Movie ids
+     * @return A {@link BitSet} containing the given {@code ids}, which
+     *         supports O(1) membership tests
+     */
+    public static BitSet toIdSet(MovieCatalog catalog, int[] ids) {
+        var set = new BitSet(catalog.size());
+        for (int id : ids)
+            set.set(id);
+        return set;
+    }
+
+    /**
+     * @param blockCount The number of blocks a catalog is split into
+     * @return The indices of the blocks in a random order, so a scan
+     *         that stops early has scored an unbiased sample of the
+     *         catalog
+     */
+    static int[] shuffledBlocks(int blockCount) {
+        int[] blocks = IntStream.range(0, blockCount).toArray();
+        var random = ThreadLocalRandom.current();
+        for (int i = blocks.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int block = blocks[i];
+            blocks[i] = blocks[j];
+            blocks[j] = block;
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,313 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.common.BlockScanner.BlockScorer;
+import edu.vandy.recommender.common.model.QueryRecommendations;
+import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.common.model.RecommendationSnapshot;
+import edu.vandy.recommender.common.model.ShardQuery;
+import edu.vandy.recommender.utils.TopKSelector;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+import static edu.vandy.recommender.common.Converters.titles2Rankings;
+
+/**
+ * This abstract class implements the {@link BaseService} methods for
+ * recommenders that compute their results synchronously by scoring
+ * each catalog block as a concurrent chunk of work.  Each chunk keeps
+ * its best movies in a private {@link TopKSelector} and the selectors
+ * are merged once all chunks are done, so subclasses only decide how
+ * the chunks are run via {@link #mapChunks}.
+ *
+ * These recommenders always scan the exact vectors, i.e., the
+ * recommendation cache, request coalescing, micro-batching, and the
+ * approximate {@link RecommenderMode} modes remain specific to the
+ * ParallelFlux recommender, so the concurrency models can be compared
+ * on identical work.
+ */
+public abstract class ChunkedService
+       extends BaseService<List<Ranking>> {
+    /**
+     * Scans the catalog in blocks that are run as concurrent chunks.
+     */
+    protected final BlockScanner mScanner =
+        new BlockScanner(getParallelism(), this::selectBlocks);
+
+    /**
+     * Run {@code chunkCount} chunks of work concurrently and wait for
+     * all of them to finish.
+     *
+     * @param chunkCount The number of chunks
+     * @param chunk Computes the result of the chunk with the given
+     *              index
+     * @return The results of the chunks in index order
+     */
+    protected abstract <R> List<R> mapChunks(int chunkCount,
+                                             IntFunction<R> chunk);
+
+    /**
+     * @return The number of chunks that run at the same time, which
+     *         is read once when the service is constructed, so it
+     *         mustn't depend on the state of a subclass
+     */
+    protected int getParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Get all movies represented as {@link Ranking} objects.
+     *
+     * @return A {@link List} of the movie titles sorted in ascending
+     *         order (ignoring case)
+     */
+    @Override
+    public List<Ranking> getAllMovies() {
+        return titles2Rankings(getCatalog().titles());
+    }
+
+    /**
+     * Search for the movie titles in the catalog containing the given
+     * query {@link String}.
+     *
+     * @param query The search query
+     * @return A {@link List} of the matching movie titles in ascending
+     *         sorted order (ignoring case)
+     */
+    @Override
+    public List<Ranking> search(String query) {
+        return titles2Rankings(getCatalog().titleIndex().searchTitles(query));
+    }
+
+    /**
+     * Recommend {@code maxCount} movies as a function of a single
+     * {@code watchedMovie}.
+     *
+     * @param watchedMovie A {@link String} indicating the title of
+     *                     the movie that has been watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @return A {@link List} of the movies most similar to the {@code
+     *         watchedMovie} in descending similarity order
+     */
+    @Override
+    public List<Ranking> getRecommendations(String watchedMovie,
+                                            int maxCount) {
+        MovieCatalog catalog = getCatalog();
+        int watchedId = catalog.idOf(watchedMovie);
+        if (watchedId < 0)
+            return List.of();
+
+        double[] query = catalog.vector(watchedId);
+        return getTopRecommendations
+            (catalog,
+             id -> id != watchedId,
+             id -> CosineSimilarityUtils.dot(catalog, id, query),
+             maxCount);
+    }
+
+    /**
+     * Recommend {@code maxCount} movies as a function of the films
+     * the user has watched, ignoring titles that aren't in the
+     * catalog.
+     *
+     * @param watchedMovies A {@link List} of titles of movies the
+     *                      user has watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @return A {@link List} of the movies most similar to those in
+     *         {@code watchedMovies} in descending similarity order
+     */
+    @Override
+    public List<Ranking> getRecommendations(List<String> watchedMovies,
+                                            int maxCount) {
+        MovieCatalog catalog = getCatalog();
+        int[] watchedIds = watchedMovies
+            .stream()
+            .mapToInt(catalog::idOf)
+            .filter(id -> id >= 0)
+            .toArray();
+        if (watchedIds.length == 0)
+            return List.of();
+
+        BitSet watched = toIdSet(catalog, watchedIds);
+        return getTopRecommendations(catalog,
+                                     id -> !watched.get(id),
+                                     getMultiMovieScorer(catalog, watchedIds),
+                                     maxCount);
+    }
+
+    /**
+     * Recommend {@code maxCount} movies for each of a batch of
+     * watched-movie lists.  The queries are split into one group per
+     * chunk, each scored with one cache-blocked pass over the
+     * catalog, and the results are emitted once all groups are done.
+     *
+     * @param watchedMovies A {@link List} of queries, each of which
+     *                      is a {@link List} of titles of movies a
+     *                      user has watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned per query
+     * @return A {@link Flux} that emits the {@link
+     *         QueryRecommendations} of each query in query order
+     */
+    @Override
+    public Flux<QueryRecommendations> getBatchRecommendations
+        (List<List<String>> watchedMovies,
+         int maxCount) {
+        return Flux
+            .defer(() -> {
+                    MovieCatalog catalog = getCatalog();
+                    int[][] watchedIds = BlockScanner.toBatchIds(catalog, watchedMovies);
+                    int groupSize = mScanner.batchGroupSize(watchedIds.length);
+                    int groups = (watchedIds.length + groupSize - 1) / groupSize;
+
+                    return Flux
+                        .fromIterable(mapChunks(groups, group -> {
+                                    int start = group * groupSize;
+                                    return BlockScanner.scoreBatchGroup
+                                        (catalog,
+                                         watchedIds,
+                                         start,
+                                         Math.min(watchedIds.length,
+                                                  start + groupSize),
+                                         maxCount);
+                                }))
+                        .flatMapIterable(results -> results);
+                })
+
+            // Keep the blocking scan off the caller's thread.
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Recommend {@code maxCount} movies as a function of a single
+     * {@code watchedMovie} within the {@code deadline} via {@link
+     * BlockScanner#scanProgressively}, which runs one round of {@link
+     * #getParallelism()} chunks at a time.
+     *
+     * @param watchedMovie A {@link String} indicating the title of
+     *                     the movie that has been watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @param deadline The time budget of the request, or null if it
+     *                 has none
+     * @return A {@link Flux} that emits a {@link
+     *         RecommendationSnapshot} after each round
+     */
+    @Override
+    public Flux<RecommendationSnapshot> getProgressiveRecommendations
+        (String watchedMovie,
+         int maxCount,
+         Duration deadline) {
+        return mScanner.scanProgressively(getCatalog(),
+                                          watchedMovie,
+                                          maxCount,
+                                          deadline);
+    }
+
+    /**
+     * Recommend the top {@code query.maxCount} movies of this
+     * recommender's catalog for the query vector of a {@link
+     * ShardQuery}.
+     *
+     * @param query The {@link ShardQuery} scattered by a shard
+     *              coordinator
+     * @return A {@link Flux} that emits the {@link Ranking} objects
+     *         in descending similarity order
+     */
+    @Override
+    public Flux<Ranking> getShardRecommendations(ShardQuery query) {
+        MovieCatalog catalog = getCatalog();
+        return BlockScanner
+            .scanShard(catalog,
+                       query,
+                       (vector, excludedId) -> mScanner
+                       .selectTop(catalog,
+                                  id -> id != excludedId,
+                                  id -> CosineSimilarityUtils.dot(catalog, id, vector),
+                                  query.maxCount)
+                       .flatMapIterable(selector -> toRankings(catalog, selector)));
+    }
+
+    /**
+     * Find the top {@code maxCount} catalog movies by scoring the
+     * catalog blocks as concurrent chunks.  {@link Ranking} objects
+     * are only created for the final winners.
+     *
+     * @param catalog The {@link MovieCatalog} to select from
+     * @param candidate Selects the movie ids that may be recommended
+     * @param scorer Maps a movie id to its similarity score
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @return A {@link List} of the top {@code maxCount} {@link
+     *         Ranking} objects in descending similarity order
+     */
+    protected List<Ranking> getTopRecommendations(MovieCatalog catalog,
+                                                  IntPredicate candidate,
+                                                  IntToDoubleFunction scorer,
+                                                  int maxCount) {
+        if (maxCount < 1 || catalog.isEmpty())
+            return List.of();
+
+        return toRankings(catalog,
+                          selectBlocksNow(BlockScanner.blockCount(catalog),
+                                          maxCount,
+                                          BlockScanner.blockScorer(catalog,
+                                                                   candidate,
+                                                                   scorer)));
+    }
+
+    /**
+     * Score the blocks as concurrent chunks via {@link #mapChunks},
+     * keeping the blocking scan off the caller's thread.
+     *
+     * @param blockCount The number of blocks
+     * @param maxCount The upper limit for the number of ids selected
+     * @param scorer Scores the block with the given index
+     * @return A {@link Mono} that emits the merged {@link
+     *         TopKSelector}
+     */
+    private Mono<TopKSelector> selectBlocks(int blockCount,
+                                            int maxCount,
+                                            BlockScorer scorer) {
+        return Mono
+            .fromSupplier(() -> selectBlocksNow(blockCount, maxCount, scorer))
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Score {@code blockCount} blocks as concurrent chunks, each into
+     * its own {@link TopKSelector}, and merge the selectors once all
+     * chunks are done.
+     *
+     * @param blockCount The number of blocks
+     * @param maxCount The upper limit for the number of ids selected
+     * @param scorer Scores the block with the given index
+     * @return The merged {@link TopKSelector}
+     */
+    private TopKSelector selectBlocksNow(int blockCount,
+                                         int maxCount,
+                                         BlockScorer scorer) {
+        List<TopKSelector> selectors = mapChunks
+            (blockCount,
+             block -> {
+                 var selector = new TopKSelector(Math.max(0, maxCount));
+                 scorer.score(block, selector);
+                 return selector;
+             });
+
+        // Merge the chunk selectors into one.
+        var best = new TopKSelector(Math.max(0, maxCount));
+        for (TopKSelector selector : selectors)
+            best.merge(selector);
+        return best;
+    }
+}
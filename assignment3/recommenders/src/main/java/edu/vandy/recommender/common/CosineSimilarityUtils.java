@@ -8,9 +8,58 @@ import java.util.stream.StreamSupport;
 /**
  * This class computes the cosine similarity value for two {@link
  * List}s of {@link Double} objects using Java sequential or parallel
- * streams.
+ * streams, as well as for vectors stored in the primitive row-major
+ * matrix of a {@link MovieCatalog}.
  */
 public class CosineSimilarityUtils {
+    /**
+     * Receives the scores computed by {@link #multiply}.
+     */
+    @FunctionalInterface
+    public interface ScoreConsumer {
+        /**
+         * Accept the score of a catalog movie for a query.
+         *
+         * @param query The index of the query vector
+         * @param id The id of the catalog movie
+         * @param score The dot product of the query and the movie
+         */
+        void accept(int query, int id, double score);
+    }
+
+    /**
+     * The number of catalog vector bytes {@link #multiply} scores
+     * against all queries before moving on, which is sized to stay in
+     * the L2 cache.
+     */
+    private static final int BLOCK_BYTES = 128 * 1024;
+
+    /**
+     * The {@link SimilarityKernel} used to score vectors stored in
+     * primitive arrays, which defaults to the portable scalar loop.
+     */
+    private static volatile SimilarityKernel sKernel =
+        new ScalarSimilarityKernel();
+
+    /**
+     * Set the {@link SimilarityKernel} used by the primitive array
+     * methods of this class.  This method is intended to be called
+     * once at startup.
+     *
+     * @param kernel The {@link SimilarityKernel} to use
+     */
+    public static void setKernel(SimilarityKernel kernel) {
+        sKernel = kernel;
+    }
+
+    /**
+     * @return The {@link SimilarityKernel} used by the primitive
+     *         array methods of this class
+     */
+    public static SimilarityKernel getKernel() {
+        return sKernel;
+    }
+
     /**
      * Compute the cosine similarity value for two {@link List}s of
      * {@link Double} objects using Java sequential or parallel
@@ -90,4 +139,204 @@ public class CosineSimilarityUtils {
             // Sum all the cosine similarities together.
             .reduce(0.0, Double::sum);
     }
+
+    /**
+     * Compute the cosine similarity value between the vector of the
+     * movie with the given {@code id} in the {@link MovieCatalog} and
+     * the {@code query} vector.  Since the catalog vectors are
+     * already L2-normalized, this is a single dot product.
+     *
+     * @param catalog The {@link MovieCatalog} containing the movie
+     * @param id The id of the movie in the {@code catalog}
+     * @param query The L2-normalized vector to compare with (see
+     *              {@link #normalize(double[])}), which must have
+     *              {@code catalog.dimension()} components
+     * @return The computed cosine similarity index
+     */
+    public static double cosineSimilarity(MovieCatalog catalog,
+                                          int id,
+                                          double[] query) {
+        return dot(catalog, id, query);
+    }
+
+    /**
+     * Compute the dot product of the normalized vector of the movie
+     * with the given {@code id} in the {@link MovieCatalog} and the
+     * given {@code vector}.
+     *
+     * @param catalog The {@link MovieCatalog} containing the movie
+     * @param id The id of the movie in the {@code catalog}
+     * @param vector The vector to multiply with, which must have
+     *               {@code catalog.dimension()} components
+     * @return The dot product of the two vectors
+     */
+    public static double dot(MovieCatalog catalog,
+                             int id,
+                             double[] vector) {
+        return dot(catalog.vectors(),
+                   catalog.offset(id),
+                   vector,
+                   0,
+                   catalog.dimension());
+    }
+
+    /**
+     * Sum the normalized vectors of the given movies into a profile
+     * vector.  The dot product of a catalog movie with this profile
+     * equals the sum of the movie's cosine similarities with each of
+     * the given movies, i.e., {@link #sumOfCosines(MovieCatalog, int,
+     * int[])}.
+     *
+     * @param catalog The {@link MovieCatalog} containing the movies
+     * @param ids The ids of the movies to sum
+     * @return A new array containing the profile vector
+     */
+    public static double[] profileVector(MovieCatalog catalog,
+                                         int[] ids) {
+        double[] vectors = catalog.vectors();
+        var profile = new double[catalog.dimension()];
+
+        for (int id : ids) {
+            int offset = catalog.offset(id);
+            for (int i = 0; i < profile.length; i++)
+                profile[i] += vectors[offset + i];
+        }
+
+        return profile;
+    }
+
+    /**
+     * Compute the dot product of every catalog vector with every
+     * query vector, i.e., the product of the query matrix and the
+     * transposed catalog matrix.  The catalog is processed in blocks
+     * of rows that fit in the L2 cache, and each block is scored
+     * against all queries before the next one is loaded, so the
+     * catalog is streamed from memory once per call instead of once
+     * per query.
+     *
+     * @param catalog The {@link MovieCatalog} to score
+     * @param queries The row-major matrix of {@code queryCount} query
+     *                vectors of the catalog dimension
+     * @param queryCount The number of query vectors
+     * @param consumer Receives the score of each catalog movie for
+     *                 each query
+     */
+    public static void multiply(MovieCatalog catalog,
+                                double[] queries,
+                                int queryCount,
+                                ScoreConsumer consumer) {
+        multiply(catalog, 0, catalog.size(), queries, queryCount, consumer);
+    }
+
+    /**
+     * Compute the dot product of the catalog vectors with ids from
+     * {@code start} up to {@code end} with every query vector, as
+     * described in {@link #multiply(MovieCatalog, double[], int,
+     * ScoreConsumer)}, so disjoint id ranges can be scored in
+     * parallel.
+     *
+     * @param catalog The {@link MovieCatalog} to score
+     * @param start The first catalog id to score
+     * @param end The catalog id after the last one to score
+     * @param queries The row-major matrix of {@code queryCount} query
+     *                vectors of the catalog dimension
+     * @param queryCount The number of query vectors
+     * @param consumer Receives the score of each catalog movie for
+     *                 each query
+     */
+    public static void multiply(MovieCatalog catalog,
+                                int start,
+                                int end,
+                                double[] queries,
+                                int queryCount,
+                                ScoreConsumer consumer) {
+        SimilarityKernel kernel = sKernel;
+        double[] vectors = catalog.vectors();
+        int dimension = catalog.dimension();
+        int blockRows = Math.max(1, BLOCK_BYTES / (Math.max(1, dimension) * Double.BYTES));
+
+        for (int block = start; block < end; block += blockRows) {
+            int blockEnd = Math.min(end, block + blockRows);
+            for (int query = 0; query < queryCount; query++) {
+                int queryOffset = query * dimension;
+                for (int id = block; id < blockEnd; id++)
+                    consumer.accept(query,
+                                    id,
+                                    kernel.dot(queries,
+                                               queryOffset,
+                                               vectors,
+                                               catalog.offset(id),
+                                               dimension));
+            }
+        }
+    }
+
+    /**
+     * Calculates sum of cosine similarities of the vector of the
+     * movie with the given {@code id} with the vectors of the {@code
+     * watchedIds} movies, all of which are stored L2-normalized in
+     * the {@link MovieCatalog}.
+     *
+     * @param catalog The {@link MovieCatalog} containing the movies
+     * @param id The id of the movie we want to calculate similarity
+     * @param watchedIds The ids of the watched movies to compare with
+     * @return A {@link double} containing the sum of cosine
+     *         similarities
+     */
+    public static double sumOfCosines(MovieCatalog catalog,
+                                      int id,
+                                      int[] watchedIds) {
+        SimilarityKernel kernel = sKernel;
+        double[] vectors = catalog.vectors();
+        int offset = catalog.offset(id);
+        int dimension = catalog.dimension();
+
+        double sum = 0.0;
+        for (int watchedId : watchedIds)
+            sum += kernel.dot(vectors,
+                       offset,
+                       vectors,
+                       catalog.offset(watchedId),
+                       dimension);
+        return sum;
+    }
+
+    /**
+     * Compute the dot product of two vectors stored in primitive
+     * {@code double} arrays using the selected {@link
+     * SimilarityKernel}.
+     *
+     * @param a The array containing the first vector
+     * @param aOffset The index in {@code a} where the first vector
+     *                starts
+     * @param b The array containing the second vector
+     * @param bOffset The index in {@code b} where the second vector
+     *                starts
+     * @param length The number of components in each vector
+     * @return The dot product of the two vectors
+     */
+    public static double dot(double[] a,
+                             int aOffset,
+                             double[] b,
+                             int bOffset,
+                             int length) {
+        return sKernel.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Return an L2-normalized copy of the given {@code vector}.  A
+     * zero vector is returned unchanged.
+     *
+     * @param vector The vector to normalize
+     * @return A new array containing the normalized vector
+     */
+    public static double[] normalize(double[] vector) {
+        double norm = Math.sqrt(dot(vector, 0, vector, 0, vector.length));
+        double[] result = vector.clone();
+
+        if (norm > 0.0)
+            for (int i = 0; i < result.length; i++)
+                result[i] /= norm;
+        return result;
+    }
 }
@@ -0,0 +1,128 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.common.model.ShardQuery;
+import edu.vandy.recommender.utils.WebUtils;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static edu.vandy.recommender.common.Constants.EndPoint.GET_MOVIE_VECTOR;
+import static edu.vandy.recommender.common.Constants.EndPoint.POST_SHARD_RECOMMENDATIONS;
+import static edu.vandy.recommender.common.Constants.Params.SHARD_COUNT_METADATA;
+import static edu.vandy.recommender.common.Constants.Params.SHARD_INDEX_METADATA;
+import static edu.vandy.recommender.common.Constants.Params.WATCHED_MOVIE_PARAM;
+
+/**
+ * A {@link ShardCoordinator.ShardClient} that finds the instances of
+ * each shard via the Eureka {@link DiscoveryClient}, where every
+ * recommender registers the index and count of its {@link
+ * ShardPartition} as instance metadata, and calls them directly with
+ * a {@link WebClient}.  A request goes to a random instance of the
+ * shard, so replicas of a shard share its load.
+ */
+public class DiscoveryShardClient
+       implements ShardCoordinator.ShardClient {
+    /**
+     * Finds the registered recommender instances.
+     */
+    private final DiscoveryClient mDiscoveryClient;
+
+    /**
+     * Sends the requests.
+     */
+    private final WebClient mWebClient;
+
+    /**
+     * The id the recommenders are registered under.
+     */
+    private final String mServiceId;
+
+    /**
+     * The number of shards in the cluster.
+     */
+    private final int mShardCount;
+
+    /**
+     * Create a client.
+     *
+     * @param discoveryClient Finds the registered recommender
+     *                        instances
+     * @param webClient Sends the requests
+     * @param serviceId The id the recommenders are registered under
+     * @param shardCount The number of shards in the cluster
+     */
+    public DiscoveryShardClient(DiscoveryClient discoveryClient,
+                                WebClient webClient,
+                                String serviceId,
+                                int shardCount) {
+        mDiscoveryClient = discoveryClient;
+        mWebClient = webClient;
+        mServiceId = serviceId;
+        mShardCount = shardCount;
+    }
+
+    @Override
+    public Mono<List<Double>> getMovieVector(int shard, String title) {
+        return Mono
+            .fromCallable(() -> UriComponentsBuilder
+                          .fromUri(instanceOf(shard).getUri())
+                          .path("/" + GET_MOVIE_VECTOR)
+                          .queryParam(WATCHED_MOVIE_PARAM, title)
+                          .encode()
+                          .toUriString())
+            .flatMap(url -> WebUtils
+                     .makeGetRequestFlux(mWebClient, url, Double.class)
+                     .collectList())
+            // An empty vector means the shard has no such movie.
+            .filter(vector -> !vector.isEmpty());
+    }
+
+    @Override
+    public Flux<Ranking> getRecommendations(int shard, ShardQuery query) {
+        return Mono
+            .fromCallable(() -> UriComponentsBuilder
+                          .fromUri(instanceOf(shard).getUri())
+                          .path("/" + POST_SHARD_RECOMMENDATIONS)
+                          .toUriString())
+            .flatMapMany(url -> WebUtils
+                         .makePostRequestFlux(mWebClient, url, query, Ranking.class));
+    }
+
+    /**
+     * @param shard The index of a shard
+     * @return A random registered instance of the {@code shard}
+     * @throws IllegalStateException If no instance of the {@code
+     *                               shard} is registered
+     */
+    private ServiceInstance instanceOf(int shard) {
+        var instances = mDiscoveryClient
+            .getInstances(mServiceId)
+            .stream()
+            .filter(instance -> isInstanceOf(instance, shard))
+            .toList();
+
+        if (instances.isEmpty())
+            throw new IllegalStateException
+                ("No instance of shard " + shard + " is registered");
+
+        return instances
+            .get(ThreadLocalRandom.current().nextInt(instances.size()));
+    }
+
+    /**
+     * @return True if the {@code instance} registered as the given
+     *         {@code shard} of a cluster of this size, else false
+     */
+    private boolean isInstanceOf(ServiceInstance instance, int shard) {
+        var metadata = instance.getMetadata();
+        return String.valueOf(shard).equals(metadata.get(SHARD_INDEX_METADATA))
+            && String.valueOf(mShardCount).equals(metadata.get(SHARD_COUNT_METADATA));
+    }
+}
@@ -38,6 +38,27 @@ public class GetTopRecommendationsFlux {
             .transform(GetTopK.getTopK(maxCount));
     }
 
+    /**
+     * Recommend {@code maxCount} movies from the {@link ParallelFlux}
+     * of distinct {@link Ranking} objects using a Heap per rail, so
+     * only the top {@code maxCount} of each rail reach the sequential
+     * merge.
+     *
+     * @param rankingFlux A {@link ParallelFlux} of {@link Ranking}
+     *                    objects
+     * @param maxCount    The upper limit for the number of
+     *                    recommendations returned
+     * @return A {@link Flux} of movie titles ranked in descending
+     *         similarity order
+     */
+    public static Flux<Ranking> getTopRecommendationsHeap
+        (ParallelFlux<Ranking> rankingFlux,
+         int maxCount) {
+        // Collect the top maxCount entries of each rail and merge
+        // them into a Flux.
+        return GetTopK.getTopK(rankingFlux, maxCount);
+    }
+
     /**
      * Recommend {@code maxCount} movies from the {@link ParallelFlux}
      * of distinct {@link Ranking} objects by sorting the results.
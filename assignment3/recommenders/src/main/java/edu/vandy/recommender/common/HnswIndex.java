@@ -0,0 +1,544 @@
+package edu.vandy.recommender.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class implements a Hierarchical Navigable Small World (HNSW)
+ * graph index over the L2-normalized vectors of a {@link
+ * MovieCatalog}.  It answers approximate top-k cosine similarity
+ * queries by greedily walking a hierarchy of proximity graphs, which
+ * visits a small fraction of the catalog instead of scanning every
+ * movie.
+ *
+ * The index is built once by the constructor and all its fields are
+ * final, so it's safely published and {@link #search} may be called
+ * concurrently.  The accuracy/latency trade-off is tuned via {@code
+ * m} (the number of links per node) and {@code efSearch} (the size of
+ * the dynamic candidate list), which are both fixed when the index is
+ * built.  {@link #rebuild} builds an index with the same parameters
+ * over another catalog.
+ *
+ * See Malkov and Yashunin, "Efficient and robust approximate nearest
+ * neighbor search using Hierarchical Navigable Small World graphs".
+ */
+public class HnswIndex {
+    /**
+     * The result of a {@link #search} call, which contains the movie
+     * ids and their similarity scores in descending score order.
+     *
+     * @param ids The ids of the nearest movies
+     * @param scores The cosine similarity of each movie in {@code
+     *               ids} with the query
+     */
+    public record Result(int[] ids, double[] scores) {
+        /**
+         * @return The number of movies in this result
+         */
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * A movie id paired with its similarity to the current query.
+     */
+    private record Candidate(int id, double score) {
+    }
+
+    /**
+     * Orders {@link Candidate} objects from best to worst score.
+     */
+    private static final Comparator<Candidate> BEST_FIRST =
+        Comparator.comparingDouble(Candidate::score).reversed();
+
+    /**
+     * Orders {@link Candidate} objects from worst to best score.
+     */
+    private static final Comparator<Candidate> WORST_FIRST =
+        Comparator.comparingDouble(Candidate::score);
+
+    /**
+     * The catalog whose vectors are indexed.
+     */
+    private final MovieCatalog mCatalog;
+
+    /**
+     * The kernel used to compute similarities, which is captured once
+     * so the hot loops call it directly.
+     */
+    private final SimilarityKernel mKernel;
+
+    /**
+     * The maximum number of links per node on the upper layers.
+     */
+    private final int mM;
+
+    /**
+     * The maximum number of links per node on layer 0.
+     */
+    private final int mMaxM0;
+
+    /**
+     * The size of the dynamic candidate list used while building.
+     */
+    private final int mEfConstruction;
+
+    /**
+     * The size of the dynamic candidate list used while searching.
+     */
+    private final int mEfSearch;
+
+    /**
+     * The random seed used to assign node levels.
+     */
+    private final long mSeed;
+
+    /**
+     * The links of each node, i.e., {@code mLinks[id][level]} holds
+     * the neighbor ids of node {@code id} on the given layer.
+     */
+    private final int[][][] mLinks;
+
+    /**
+     * The node every search starts from, which lives on the top
+     * layer, or -1 if the catalog is empty.
+     */
+    private final int mEntryPoint;
+
+    /**
+     * The highest layer in the graph.
+     */
+    private final int mMaxLevel;
+
+    /**
+     * A bounded pool of visited markers shared by all searches.  A
+     * search borrows one and returns it when it's done, so concurrent
+     * searches don't allocate and clear an array of catalog size per
+     * request regardless of which (virtual) thread runs them.  Since
+     * searches never block, the pool holds one set per processor.
+     */
+    private final BlockingQueue<Visited> mVisitedPool =
+        new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Build an HNSW index over all vectors in the {@code catalog}.
+     *
+     * @param catalog The {@link MovieCatalog} to index
+     * @param m The maximum number of links per node (layer 0 allows
+     *          twice as many)
+     * @param efConstruction The candidate list size used to build
+     *                       the graph
+     * @param efSearch The default candidate list size used to search
+     *                 the graph
+     * @param seed The random seed used to assign node levels
+     */
+    public HnswIndex(MovieCatalog catalog,
+                     int m,
+                     int efConstruction,
+                     int efSearch,
+                     long seed) {
+        if (m < 2 || efConstruction < 1 || efSearch < 1)
+            throw new IllegalArgumentException
+                ("Invalid HNSW parameters m = "
+                 + m
+                 + ", efConstruction = "
+                 + efConstruction
+                 + ", efSearch = "
+                 + efSearch);
+
+        mCatalog = catalog;
+        mKernel = CosineSimilarityUtils.getKernel();
+        mM = m;
+        mMaxM0 = 2 * m;
+        mEfConstruction = efConstruction;
+        mEfSearch = efSearch;
+        mSeed = seed;
+        mLinks = new int[catalog.size()][][];
+
+        var random = new Random(seed);
+        double levelMultiplier = 1.0 / Math.log(m);
+
+        // Insert the movies one at a time, tracking the entry point
+        // of the graph built so far.
+        var top = new EntryPoint();
+        for (int id = 0; id < catalog.size(); id++)
+            insert(id,
+                   (int) (-Math.log(1.0 - random.nextDouble())
+                          * levelMultiplier),
+                   top);
+
+        mEntryPoint = top.mId;
+        mMaxLevel = top.mLevel;
+    }
+
+    /**
+     * Build an index with the parameters of this index over another
+     * {@code catalog}, e.g., one that replaced the catalog of this
+     * index after a sync.
+     *
+     * @param catalog The {@link MovieCatalog} to index
+     * @return A new {@link HnswIndex} over the {@code catalog}
+     */
+    public HnswIndex rebuild(MovieCatalog catalog) {
+        return new HnswIndex(catalog, mM, mEfConstruction, mEfSearch, mSeed);
+    }
+
+    /**
+     * @return The {@link MovieCatalog} indexed by this object
+     */
+    public MovieCatalog getCatalog() {
+        return mCatalog;
+    }
+
+    /**
+     * @return The maximum number of links per node
+     */
+    public int getM() {
+        return mM;
+    }
+
+    /**
+     * @return The default candidate list size used to search
+     */
+    public int getEfSearch() {
+        return mEfSearch;
+    }
+
+    /**
+     * Find the (approximately) {@code k} most similar catalog movies
+     * to the catalog movie with the given {@code id}, excluding the
+     * movie itself.
+     *
+     * @param id The id of the query movie
+     * @param k The number of movies to return
+     * @return The nearest movies in descending similarity order
+     */
+    public Result searchById(int id, int k) {
+        return search(mCatalog.vectors(),
+                      mCatalog.offset(id),
+                      k,
+                      Math.max(mEfSearch, k + 1),
+                      id);
+    }
+
+    /**
+     * Find the (approximately) {@code k} most similar catalog movies
+     * to the given L2-normalized {@code query} vector.
+     *
+     * @param query The array containing the query vector
+     * @param offset The index in {@code query} where the vector starts
+     * @param k The number of movies to return
+     * @param ef The candidate list size, which is raised to {@code k}
+     *           if smaller
+     * @param excludedId The id of a movie to leave out of the result,
+     *                   or {@code -1} to keep all movies
+     * @return The nearest movies in descending similarity order
+     */
+    public Result search(double[] query,
+                         int offset,
+                         int k,
+                         int ef,
+                         int excludedId) {
+        if (mEntryPoint < 0 || k <= 0)
+            return new Result(new int[0], new double[0]);
+
+        // Descend greedily through the upper layers.
+        int entryPoint = mEntryPoint;
+        for (int level = mMaxLevel; level > 0; level--)
+            entryPoint = greedyClosest(query, offset, entryPoint, level);
+
+        // Run a beam search on layer 0 with one extra slot for the
+        // excluded movie.
+        var nearest = searchLayer(query,
+                                  offset,
+                                  entryPoint,
+                                  Math.max(ef, k + 1),
+                                  0);
+
+        var ids = new int[Math.min(k, nearest.size())];
+        var scores = new double[ids.length];
+
+        int count = 0;
+        for (int i = 0; i < nearest.size() && count < ids.length; i++) {
+            var candidate = nearest.get(i);
+            if (candidate.id() != excludedId) {
+                ids[count] = candidate.id();
+                scores[count++] = candidate.score();
+            }
+        }
+
+        return count == ids.length
+            ? new Result(ids, scores)
+            : new Result(Arrays.copyOf(ids, count),
+                         Arrays.copyOf(scores, count));
+    }
+
+    /**
+     * Insert the catalog movie with the given {@code id} into the
+     * graph on layers {@code 0..level}, raising the {@code top} entry
+     * point of the graph if the node reaches a new layer.
+     */
+    private void insert(int id, int level, EntryPoint top) {
+        mLinks[id] = new int[level + 1][0];
+
+        if (top.mId < 0) {
+            // The first node is the entry point.
+            top.mId = id;
+            top.mLevel = level;
+            return;
+        }
+
+        double[] vectors = mCatalog.vectors();
+        int offset = mCatalog.offset(id);
+
+        // Descend greedily to the layer where this node starts.
+        int entryPoint = top.mId;
+        for (int l = top.mLevel; l > level; l--)
+            entryPoint = greedyClosest(vectors, offset, entryPoint, l);
+
+        // Connect the node on each of its layers.
+        for (int l = Math.min(level, top.mLevel); l >= 0; l--) {
+            var nearest = searchLayer(vectors,
+                                      offset,
+                                      entryPoint,
+                                      mEfConstruction,
+                                      l);
+            int[] neighbors = selectNeighbors(nearest, mM);
+            mLinks[id][l] = neighbors;
+
+            // Add the reverse links, pruning any overfull node.
+            for (int neighbor : neighbors)
+                addLink(neighbor, id, l);
+
+            entryPoint = nearest.get(0).id();
+        }
+
+        if (level > top.mLevel) {
+            top.mId = id;
+            top.mLevel = level;
+        }
+    }
+
+    /**
+     * Add a link from {@code from} to {@code to} on the given layer,
+     * shrinking the link list with the neighbor selection heuristic
+     * if it exceeds the per-layer maximum.
+     */
+    private void addLink(int from, int to, int level) {
+        int[] links = mLinks[from][level];
+        int maxLinks = level == 0 ? mMaxM0 : mM;
+
+        if (links.length < maxLinks) {
+            var grown = Arrays.copyOf(links, links.length + 1);
+            grown[links.length] = to;
+            mLinks[from][level] = grown;
+            return;
+        }
+
+        // Rank the existing links plus the new one by similarity to
+        // 'from' and keep the best diverse subset.
+        var candidates = new ArrayList<Candidate>(links.length + 1);
+        for (int link : links)
+            candidates.add(new Candidate(link, similarity(from, link)));
+        candidates.add(new Candidate(to, similarity(from, to)));
+        candidates.sort(BEST_FIRST);
+
+        mLinks[from][level] = selectNeighbors(candidates, maxLinks);
+    }
+
+    /**
+     * Select up to {@code max} neighbors from {@code candidates}
+     * (sorted best first) using the HNSW heuristic, which prefers
+     * candidates that are closer to the query than to any neighbor
+     * already selected.  Remaining slots are filled with the best
+     * pruned candidates.
+     */
+    private int[] selectNeighbors(List<Candidate> candidates, int max) {
+        var selected = new int[Math.min(max, candidates.size())];
+        var pruned = new ArrayList<Candidate>();
+        int count = 0;
+
+        for (var candidate : candidates) {
+            if (count == selected.length)
+                break;
+
+            boolean diverse = true;
+            for (int i = 0; i < count && diverse; i++)
+                diverse = similarity(candidate.id(), selected[i])
+                    < candidate.score();
+
+            if (diverse)
+                selected[count++] = candidate.id();
+            else
+                pruned.add(candidate);
+        }
+
+        for (int i = 0; count < selected.length; i++)
+            selected[count++] = pruned.get(i).id();
+
+        return selected;
+    }
+
+    /**
+     * Walk the given layer from {@code entryPoint} towards the query,
+     * always moving to the most similar neighbor, until no neighbor
+     * improves on the current node.
+     */
+    private int greedyClosest(double[] query,
+                              int offset,
+                              int entryPoint,
+                              int level) {
+        int current = entryPoint;
+        double best = similarity(query, offset, current);
+
+        for (boolean improved = true; improved; ) {
+            improved = false;
+            for (int neighbor : mLinks[current][level]) {
+                double score = similarity(query, offset, neighbor);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Run a beam search of width {@code ef} over the given layer.
+     *
+     * @return Up to {@code ef} nodes sorted best first
+     */
+    private List<Candidate> searchLayer(double[] query,
+                                        int offset,
+                                        int entryPoint,
+                                        int ef,
+                                        int level) {
+        var visited = borrowVisited();
+        var candidates = new PriorityQueue<>(BEST_FIRST);
+        var results = new PriorityQueue<>(WORST_FIRST);
+
+        try {
+            var start = new Candidate(entryPoint,
+                                      similarity(query, offset, entryPoint));
+            visited.visit(entryPoint);
+            candidates.add(start);
+            results.add(start);
+
+            while (!candidates.isEmpty()) {
+                var current = candidates.poll();
+
+                // Stop once the best candidate can't improve the
+                // results.
+                if (current.score() < results.peek().score()
+                    && results.size() >= ef)
+                    break;
+
+                for (int neighbor : mLinks[current.id()][level]) {
+                    if (!visited.visit(neighbor))
+                        continue;
+
+                    double score = similarity(query, offset, neighbor);
+                    if (results.size() < ef
+                        || score > results.peek().score()) {
+                        var candidate = new Candidate(neighbor, score);
+                        candidates.add(candidate);
+                        results.add(candidate);
+                        if (results.size() > ef)
+                            results.poll();
+                    }
+                }
+            }
+        } finally {
+            // Let the next search reuse the markers, or drop them if
+            // the pool is already full.
+            mVisitedPool.offer(visited);
+        }
+
+        var nearest = new ArrayList<>(results);
+        nearest.sort(BEST_FIRST);
+        return nearest;
+    }
+
+    /**
+     * @return Visited markers from the pool, or new ones if all of
+     *         them are in use, that are reset for a new search
+     */
+    private Visited borrowVisited() {
+        Visited visited = mVisitedPool.poll();
+        return (visited == null ? new Visited(mLinks.length) : visited)
+            .reset();
+    }
+
+    /**
+     * @return The cosine similarity of the query and catalog movie
+     *         {@code id}
+     */
+    private double similarity(double[] query, int offset, int id) {
+        return mKernel.dot(query,
+                           offset,
+                           mCatalog.vectors(),
+                           mCatalog.offset(id),
+                           mCatalog.dimension());
+    }
+
+    /**
+     * @return The cosine similarity of catalog movies {@code a} and
+     *         {@code b}
+     */
+    private double similarity(int a, int b) {
+        return similarity(mCatalog.vectors(), mCatalog.offset(a), b);
+    }
+
+    /**
+     * The entry point of the graph while it's being built.
+     */
+    private static class EntryPoint {
+        private int mId = -1;
+        private int mLevel = -1;
+    }
+
+    /**
+     * Tracks which nodes a search has visited using a generation
+     * counter, so resetting it between searches is O(1).
+     */
+    private static class Visited {
+        private final int[] mMarks;
+        private int mGeneration;
+
+        Visited(int size) {
+            mMarks = new int[size];
+        }
+
+        /**
+         * Start a new search.
+         */
+        Visited reset() {
+            if (++mGeneration == 0) {
+                // Clear the marks when the counter wraps around.
+                Arrays.fill(mMarks, 0);
+                mGeneration = 1;
+            }
+            return this;
+        }
+
+        /**
+         * @return True if {@code id} hadn't been visited yet
+         */
+        boolean visit(int id) {
+            if (mMarks[id] == mGeneration)
+                return false;
+            mMarks[id] = mGeneration;
+            return true;
+        }
+    }
+}
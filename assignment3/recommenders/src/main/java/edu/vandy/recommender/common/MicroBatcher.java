@@ -0,0 +1,339 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.utils.TopKSelector;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class gathers the single-movie queries that arrive within a
+ * short window, up to a max batch size, and scores all of them in one
+ * pass over the catalog via {@link CosineSimilarityUtils#multiply},
+ * so concurrent requests share the memory traffic of a scan instead
+ * of each streaming the whole catalog.
+ *
+ * A batch is dispatched when its window expires or as soon as it's
+ * full.  The catalog is split into slices that are scored on the
+ * given {@link Executor}, each into its own selectors that are merged
+ * once all slices are done, so no thread blocks waiting for another.
+ * The size, wait, and scoring time of each batch are reported to a
+ * {@link Listener}, e.g., to tune the window against latency goals.
+ */
+public class MicroBatcher
+       implements AutoCloseable {
+    /**
+     * Receives the statistics of each batch.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called when a batch has been scored.
+         *
+         * @param size The number of queries in the batch
+         * @param waitNanos The time the oldest query of the batch
+         *                  waited before scoring started
+         * @param scoreNanos The time spent scoring the batch
+         */
+        void onBatch(int size, long waitNanos, long scoreNanos);
+    }
+
+    /**
+     * A query waiting to be scored.
+     *
+     * @param catalog The {@link MovieCatalog} to score
+     * @param query The L2-normalized query vector
+     * @param excludedId The id of a movie to leave out, or -1
+     * @param maxCount The number of movies to select
+     * @param result Completed with the selected movies
+     * @param arrival The {@link System#nanoTime()} of the submission
+     */
+    private record Request(MovieCatalog catalog,
+                           double[] query,
+                           int excludedId,
+                           int maxCount,
+                           CompletableFuture<TopKSelector> result,
+                           long arrival) {}
+
+    /**
+     * The smallest number of catalog movies worth scoring as a
+     * separate slice, which is small enough that a catalog of a few
+     * thousand movies is still split across the parallelism.
+     */
+    private static final int MIN_SLICE_SIZE = 512;
+
+    /**
+     * How long the first query of a batch waits for others.
+     */
+    private final long mWindowNanos;
+
+    /**
+     * The max number of queries per batch.
+     */
+    private final int mMaxBatchSize;
+
+    /**
+     * The max number of slices a batch is split into.
+     */
+    private final int mParallelism;
+
+    /**
+     * Runs the slices of each batch.
+     */
+    private final Executor mExecutor;
+
+    /**
+     * Receives the statistics of each batch, or null.
+     */
+    private final Listener mListener;
+
+    /**
+     * Dispatches a batch when its window expires.
+     */
+    private final ScheduledExecutorService mTimer;
+
+    /**
+     * The queries of the batch that's being gathered.
+     */
+    private List<Request> mPending = new ArrayList<>();
+
+    /**
+     * Dispatches the pending batch when its window expires.
+     */
+    private ScheduledFuture<?> mFlush;
+
+    /**
+     * Create a batcher.
+     *
+     * @param window How long the first query of a batch waits for
+     *               others
+     * @param maxBatchSize The max number of queries per batch
+     * @param parallelism The max number of slices scored in parallel
+     *                    per batch
+     * @param executor Runs the slices of each batch
+     * @param listener Receives the statistics of each batch, or null
+     */
+    public MicroBatcher(Duration window,
+                        int maxBatchSize,
+                        int parallelism,
+                        Executor executor,
+                        Listener listener) {
+        if (maxBatchSize < 1 || parallelism < 1)
+            throw new IllegalArgumentException
+                ("The batch size and parallelism must be positive");
+
+        mWindowNanos = window.toNanos();
+        mMaxBatchSize = maxBatchSize;
+        mParallelism = parallelism;
+        mExecutor = executor;
+        mListener = listener;
+        mTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "micro-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submit a query to be scored with the next batch.
+     *
+     * @param catalog The {@link MovieCatalog} to score
+     * @param query The L2-normalized query vector
+     * @param excludedId The id of a movie to leave out of the result,
+     *                   or {@code -1} to keep all movies
+     * @param maxCount The number of movies to select
+     * @return A {@link CompletableFuture} to a {@link TopKSelector} of
+     *         the top {@code maxCount} movies and their scores
+     */
+    public CompletableFuture<TopKSelector> submit(MovieCatalog catalog,
+                                                  double[] query,
+                                                  int excludedId,
+                                                  int maxCount) {
+        var request = new Request(catalog,
+                                  query,
+                                  excludedId,
+                                  Math.max(0, maxCount),
+                                  new CompletableFuture<>(),
+                                  System.nanoTime());
+        List<Request> full = null;
+
+        synchronized (this) {
+            mPending.add(request);
+            if (mPending.size() >= mMaxBatchSize) {
+                full = drain();
+            } else if (mPending.size() == 1)
+                mFlush = mTimer.schedule(this::flush,
+                                         mWindowNanos,
+                                         TimeUnit.NANOSECONDS);
+        }
+
+        if (full != null)
+            dispatch(full);
+        return request.result();
+    }
+
+    /**
+     * Stop gathering batches, failing the queries that are pending.
+     */
+    @Override
+    public void close() {
+        List<Request> pending;
+        synchronized (this) {
+            pending = drain();
+        }
+        mTimer.shutdownNow();
+        pending.forEach(request -> request
+                        .result()
+                        .completeExceptionally(new IllegalStateException
+                                               ("The micro-batcher is closed")));
+    }
+
+    /**
+     * @param size A batch size
+     * @return The power-of-two range containing {@code size}, e.g.,
+     *         "1", "2-3", or "4-7", which bounds the number of
+     *         distinct metric tags
+     */
+    public static String sizeBucket(int size) {
+        int low = Integer.highestOneBit(Math.max(1, size));
+        int high = low * 2 - 1;
+        return low == high ? String.valueOf(low) : low + "-" + high;
+    }
+
+    /**
+     * Dispatch the pending batch when its window expires.
+     */
+    private void flush() {
+        List<Request> batch;
+        synchronized (this) {
+            batch = drain();
+        }
+        dispatch(batch);
+    }
+
+    /**
+     * Take the pending batch and start gathering a new one.
+     */
+    private List<Request> drain() {
+        List<Request> batch = mPending;
+        mPending = new ArrayList<>();
+        if (mFlush != null) {
+            mFlush.cancel(false);
+            mFlush = null;
+        }
+        return batch;
+    }
+
+    /**
+     * Score the {@code batch}, grouping its queries by catalog.
+     */
+    private void dispatch(List<Request> batch) {
+        if (batch.isEmpty())
+            return;
+
+        var groups = new IdentityHashMap<MovieCatalog, List<Request>>();
+        for (Request request : batch)
+            groups.computeIfAbsent(request.catalog(), catalog -> new ArrayList<>())
+                .add(request);
+
+        long start = System.nanoTime();
+        long wait = start - batch.get(0).arrival();
+
+        CompletableFuture
+            .allOf(groups
+                   .entrySet()
+                   .stream()
+                   .map(group -> score(group.getKey(), group.getValue()))
+                   .toArray(CompletableFuture[]::new))
+            .whenComplete((ignored, throwable) -> {
+                    if (mListener != null)
+                        mListener.onBatch(batch.size(),
+                                          wait,
+                                          System.nanoTime() - start);
+                });
+    }
+
+    /**
+     * Score the {@code requests} of one {@code catalog} in parallel
+     * slices and complete their results.
+     *
+     * @return A {@link CompletableFuture} that completes when all
+     *         results are complete
+     */
+    private CompletableFuture<Void> score(MovieCatalog catalog,
+                                          List<Request> requests) {
+        int dimension = catalog.dimension();
+        var queries = new double[requests.size() * dimension];
+        for (int i = 0; i < requests.size(); i++)
+            System.arraycopy(requests.get(i).query(), 0,
+                             queries, i * dimension,
+                             dimension);
+
+        int slices = Math.max(1, Math.min(mParallelism,
+                                          catalog.size() / MIN_SLICE_SIZE));
+        var futures = new ArrayList<CompletableFuture<TopKSelector[]>>(slices);
+        for (int slice = 0; slice < slices; slice++) {
+            int start = (int) ((long) catalog.size() * slice / slices);
+            int end = (int) ((long) catalog.size() * (slice + 1) / slices);
+            futures.add(CompletableFuture.supplyAsync
+                        (() -> scoreSlice(catalog, requests, queries, start, end),
+                         mExecutor));
+        }
+
+        return CompletableFuture
+            .allOf(futures.toArray(CompletableFuture[]::new))
+            .whenComplete((ignored, throwable) -> {
+                    for (int i = 0; i < requests.size(); i++) {
+                        var result = requests.get(i).result();
+                        if (throwable != null) {
+                            result.completeExceptionally(throwable);
+                            continue;
+                        }
+
+                        // Merge the selectors of the slices.
+                        var selector = futures.get(0).join()[i];
+                        for (int slice = 1; slice < slices; slice++)
+                            selector.merge(futures.get(slice).join()[i]);
+                        result.complete(selector);
+                    }
+                });
+    }
+
+    /**
+     * Score the catalog ids from {@code start} up to {@code end}
+     * against all {@code requests}.
+     *
+     * @return A {@link TopKSelector} for each request
+     */
+    private static TopKSelector[] scoreSlice(MovieCatalog catalog,
+                                             List<Request> requests,
+                                             double[] queries,
+                                             int start,
+                                             int end) {
+        var selectors = new TopKSelector[requests.size()];
+        var excluded = new int[requests.size()];
+        for (int i = 0; i < selectors.length; i++) {
+            selectors[i] = new TopKSelector(requests.get(i).maxCount());
+            excluded[i] = requests.get(i).excludedId();
+        }
+
+        CosineSimilarityUtils
+            .multiply(catalog,
+                      start,
+                      end,
+                      queries,
+                      selectors.length,
+                      (query, id, score) -> {
+                          if (id != excluded[query])
+                              selectors[query].offer(id, score);
+                      });
+        return selectors;
+    }
+}
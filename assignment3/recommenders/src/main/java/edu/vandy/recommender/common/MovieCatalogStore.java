@@ -0,0 +1,174 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.common.model.CatalogDelta;
+import edu.vandy.recommender.common.model.Movie;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * This class keeps a recommender's copy of the movie catalog in sync
+ * with the database microservice by polling for the changes since
+ * the catalog version it has and applying them.
+ *
+ * Each update builds a new immutable {@link MovieCatalog} and
+ * publishes it together with its version through a single volatile
+ * write, so a request that reads {@link #getCatalog()} once sees one
+ * consistent catalog even while updates are applied.  Only the
+ * changed movies are transferred, unless the database asks for a
+ * reset because the changes are no longer retained.
+ */
+public class MovieCatalogStore
+       implements AutoCloseable {
+    /**
+     * An immutable catalog and the version it corresponds to.
+     *
+     * @param catalog The {@link MovieCatalog}
+     * @param epoch The epoch of the {@code version}, or null if it's
+     *              not known yet
+     * @param version The catalog version
+     */
+    private record Snapshot(MovieCatalog catalog,
+                            String epoch,
+                            long version) {}
+
+    /**
+     * Fetches the {@link CatalogDelta} for a given epoch and version.
+     */
+    private final BiFunction<String, Long, CatalogDelta> mChanges;
+
+    /**
+     * The current {@link Snapshot}.
+     */
+    private volatile Snapshot mSnapshot;
+
+    /**
+     * Polls for changes once {@link #start(Duration)} is called.
+     */
+    private ScheduledExecutorService mPoller;
+
+    /**
+     * Create a store for the {@code catalog} loaded from the database.
+     * Its version is assumed to be 0 of an unknown epoch, which is
+     * safe since reapplying changes the catalog already contains
+     * doesn't alter it.
+     *
+     * @param catalog The initial {@link MovieCatalog}
+     * @param changes Fetches the {@link CatalogDelta} since a given
+     *                epoch and version
+     */
+    public MovieCatalogStore(MovieCatalog catalog,
+                             BiFunction<String, Long, CatalogDelta> changes) {
+        mSnapshot = new Snapshot(catalog, null, 0);
+        mChanges = changes;
+    }
+
+    /**
+     * @return The current {@link MovieCatalog}
+     */
+    public MovieCatalog getCatalog() {
+        return mSnapshot.catalog();
+    }
+
+    /**
+     * @return The version of the current {@link MovieCatalog}
+     */
+    public long getVersion() {
+        return mSnapshot.version();
+    }
+
+    /**
+     * Fetch and apply the changes since the current version.
+     *
+     * @return True if the catalog changed, else false
+     */
+    public synchronized boolean sync() {
+        Snapshot snapshot = mSnapshot;
+        return apply(mChanges.apply(snapshot.epoch(), snapshot.version()));
+    }
+
+    /**
+     * Apply the {@code delta} to the current catalog and publish the
+     * result.
+     *
+     * @param delta The {@link CatalogDelta} to apply
+     * @return True if the catalog changed, else false
+     */
+    public synchronized boolean apply(CatalogDelta delta) {
+        Snapshot snapshot = mSnapshot;
+        MovieCatalog catalog;
+
+        if (delta.reset)
+            catalog = MovieCatalog.of(toMap(delta.upserts));
+        else if (delta.since != snapshot.version()
+                 || (snapshot.epoch() != null
+                     && !snapshot.epoch().equals(delta.epoch)))
+            // The delta doesn't start from the current version.
+            return false;
+        else if (delta.upserts.isEmpty() && delta.deletions.isEmpty())
+            catalog = snapshot.catalog();
+        else
+            catalog = snapshot.catalog().withChanges(toMap(delta.upserts),
+                                                     delta.deletions);
+
+        mSnapshot = new Snapshot(catalog, delta.epoch, delta.version);
+        return catalog != snapshot.catalog();
+    }
+
+    /**
+     * Start polling for changes on a daemon thread.
+     *
+     * @param interval The delay between the end of one poll and the
+     *                 start of the next one
+     */
+    public synchronized void start(Duration interval) {
+        if (mPoller != null)
+            return;
+
+        mPoller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "catalog-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        mPoller.scheduleWithFixedDelay(() -> {
+            try {
+                if (sync())
+                    System.out.println("Updated movie catalog to version "
+                                       + getVersion()
+                                       + " with "
+                                       + getCatalog().size()
+                                       + " movies");
+            } catch (Exception e) {
+                // Keep serving the current catalog and retry later.
+                System.out.println("Unable to sync movie catalog: " + e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop polling for changes.
+     */
+    @Override
+    public synchronized void close() {
+        if (mPoller != null)
+            mPoller.shutdownNow();
+    }
+
+    /**
+     * @return A {@link LinkedHashMap} that associates the title of
+     *         each {@link Movie} with its vector
+     */
+    private static LinkedHashMap<String, List<Double>> toMap
+        (List<Movie> movies) {
+        var map = new LinkedHashMap<String, List<Double>>(movies.size() * 4 / 3 + 1);
+        for (Movie movie : movies)
+            map.put(movie.id, movie.vector);
+        return map;
+    }
+}
@@ -1,26 +1,30 @@
 package edu.vandy.recommender.common;
 
+import edu.vandy.recommender.common.model.CatalogDelta;
 import edu.vandy.recommender.common.model.Movie;
 import edu.vandy.recommender.utils.WebUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.AbstractMap.SimpleImmutableEntry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
 import java.util.TreeMap;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
+import static edu.vandy.recommender.common.Constants.EndPoint.GET_CATALOG_CHANGES;
 import static edu.vandy.recommender.common.Constants.EndPoint.GET_MOVIES_MAP;
 import static edu.vandy.recommender.common.Constants.GATEWAY_PORT;
 import static edu.vandy.recommender.common.Constants.LOCAL_HOST;
+import static edu.vandy.recommender.common.Constants.Params.EPOCH_PARAM;
+import static edu.vandy.recommender.common.Constants.Params.SHARDS_PARAM;
+import static edu.vandy.recommender.common.Constants.Params.SHARD_PARAM;
+import static edu.vandy.recommender.common.Constants.Params.SINCE_PARAM;
 import static edu.vandy.recommender.common.Constants.Service.DATABASE;
-import static java.util.stream.Collectors.toMap;
 
 /**
  * Loads the {@link Movie} titles and cosine vectors from various
@@ -29,11 +33,6 @@ import static java.util.stream.Collectors.toMap;
  */
 @Component
 public class MoviesLoader {
-    /**
-     * Separator used in each dataset line entry.
-     */
-    private static final String SPLITTER = " ";
-
     /**
      * This {@link RestTemplate} is used to connect to the database
      * microservice.
@@ -41,6 +40,120 @@ public class MoviesLoader {
     private static final RestTemplate sRestTemplate =
         new RestTemplate();
 
+    /**
+     * This {@link RestTemplate} is used to fetch the movie map from
+     * the database microservice in the binary {@link MovieMapCodec}
+     * format.
+     */
+    private static final RestTemplate sBinaryRestTemplate =
+        new RestTemplate(List.of(new MovieMapHttpMessageConverter()));
+
+    /**
+     * Load the movie titles and vectors from the database
+     * microservice directly into a {@link MovieCatalog}.  The movie
+     * map is requested in the compact binary {@link MovieMapCodec}
+     * format, which avoids parsing every vector component from JSON
+     * text and boxing it, and falls back to JSON if the binary
+     * transfer fails (e.g., the database doesn't support it).
+     *
+     * @return A {@link MovieCatalog} containing all movie titles and
+     *         associated cosine vectors
+     */
+    public static MovieCatalog loadCatalogFromDatabase() {
+        return loadCatalogFromDatabase(ShardPartition.UNSHARDED);
+    }
+
+    /**
+     * Load the movies owned by the given shard from the database
+     * microservice into a {@link MovieCatalog}, as described in
+     * {@link #loadCatalogFromDatabase()}.
+     *
+     * @param partition The {@link ShardPartition} of this recommender
+     * @return A {@link MovieCatalog} containing the titles and
+     *         associated cosine vectors of the shard's movies
+     */
+    public static MovieCatalog loadCatalogFromDatabase(ShardPartition partition) {
+        String url = getMoviesMapUrl(partition);
+
+        try {
+            long start = System.nanoTime();
+
+            // The converter sends "Accept: application/x-movie-map".
+            MovieCatalog catalog = sBinaryRestTemplate
+                .getForObject(url, MovieCatalog.class);
+
+            if (catalog != null) {
+                System.out.println("Successfully loaded "
+                                   + catalog.size()
+                                   + " movies in binary form from the"
+                                   + " database microservice at "
+                                   + url
+                                   + " in "
+                                   + (System.nanoTime() - start) / 1_000_000
+                                   + " msecs");
+                return catalog;
+            }
+        } catch (Exception e) {
+            System.out.println("Binary movie map transfer failed, "
+                               + "falling back to JSON: "
+                               + e);
+        }
+
+        return MovieCatalog.of(loadMoviesFromDatabase(partition));
+    }
+
+    /**
+     * Load the movie catalog from a snapshot file written by {@link
+     * #saveCatalogSnapshot(MovieCatalog, Path)}, provided it's no
+     * older than {@code maxAge}.
+     *
+     * @param path The {@link Path} of the snapshot file
+     * @param maxAge The max age of a usable snapshot
+     * @return The {@link MovieCatalog} stored in the snapshot, or
+     *         null if there's no usable snapshot
+     */
+    public static MovieCatalog loadCatalogFromSnapshot(Path path,
+                                                       Duration maxAge) {
+        try {
+            if (!Files.isRegularFile(path)
+                || Files.getLastModifiedTime(path).toInstant()
+                .isBefore(Instant.now().minus(maxAge)))
+                return null;
+
+            long start = System.nanoTime();
+            var catalog = MovieCatalogSnapshot.read(path);
+
+            System.out.println("Successfully loaded "
+                               + catalog.size()
+                               + " movies from the snapshot "
+                               + path
+                               + " in "
+                               + (System.nanoTime() - start) / 1_000_000
+                               + " msecs");
+            return catalog;
+        } catch (Exception e) {
+            System.out.println("ERROR: snapshot load failed: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Save the movie catalog to a snapshot file, which later starts
+     * can load with {@link #loadCatalogFromSnapshot(Path, Duration)}.
+     * A failure is only logged, since the snapshot is an optimization.
+     *
+     * @param catalog The {@link MovieCatalog} to save
+     * @param path The {@link Path} of the snapshot file
+     */
+    public static void saveCatalogSnapshot(MovieCatalog catalog,
+                                           Path path) {
+        try {
+            MovieCatalogSnapshot.write(catalog, path);
+        } catch (Exception e) {
+            System.out.println("ERROR: snapshot save failed: " + e);
+        }
+    }
+
     /**
      * Load the movie titles and vectors from the database
      * microservice.
@@ -49,18 +162,28 @@ public class MoviesLoader {
      * the cosine vector for each movie
      */
     public static Map<String, List<Double>> loadMoviesFromDatabase() {
+        return loadMoviesFromDatabase(ShardPartition.UNSHARDED);
+    }
+
+    /**
+     * Load the titles and vectors of the movies owned by the given
+     * shard from the database microservice.
+     *
+     * @param partition The {@link ShardPartition} of this recommender
+     * @return A {@link Map} that associates the movie title with
+     * the cosine vector for each movie of the shard
+     */
+    public static Map<String, List<Double>> loadMoviesFromDatabase
+        (ShardPartition partition) {
         // Use a helper method from WebUtils to get a URL string
         // to database microservice URL accessed via the API
-        // gateway on the localhost at the GET_ALL_MOVIES path.
-        // TODO -- you fill in here, replacing 'String url = null' with
-        // the proper code.
-        String url = null;
+        // gateway on the localhost at the GET_MOVIES_MAP path.
+        String url = getMoviesMapUrl(partition);
 
-        // Use a helper method from WebUtils to get the List of all
-        // Movie objects from the database microservice.
-        // TODO -- you fill in here, replacing 'Map<String,
-        // List<Double>> movieMap = null' with the proper code.
-        Map<String, List<Double>> movieMap = null;
+        // Use a helper method from WebUtils to get the Map of all
+        // movies from the database microservice.
+        Map<String, List<Double>> movieMap = WebUtils
+            .makeGetRequestMap(sRestTemplate, url);
 
         if (movieMap == null) {
             throw new IllegalStateException
@@ -76,6 +199,55 @@ public class MoviesLoader {
         return movieMap;
     }
 
+    /**
+     * Load the changes of the movie catalog since the given version
+     * from the database microservice.
+     *
+     * @param epoch The epoch of the {@code since} version, or null if
+     *              it's not known yet
+     * @param since The catalog version the caller has
+     * @return The {@link CatalogDelta} from {@code since} to the
+     *         current catalog version
+     */
+    public static CatalogDelta loadCatalogChanges(String epoch,
+                                                  long since) {
+        var url = UriComponentsBuilder
+            .fromHttpUrl(WebUtils
+                         .buildUrlString(GATEWAY_PORT,
+                                         LOCAL_HOST,
+                                         DATABASE
+                                         + "/"
+                                         + GET_CATALOG_CHANGES))
+            .queryParam(SINCE_PARAM, since)
+            .queryParamIfPresent(EPOCH_PARAM, Optional.ofNullable(epoch))
+            .toUriString();
+
+        return WebUtils.makeGetRequest(sRestTemplate,
+                                       url,
+                                       CatalogDelta.class);
+    }
+
+    /**
+     * @param partition The {@link ShardPartition} of this recommender
+     * @return The URL of the database microservice's movie map, or of
+     *         the slice owned by the given shard, accessed via the API
+     *         gateway on the localhost
+     */
+    private static String getMoviesMapUrl(ShardPartition partition) {
+        String url = WebUtils
+            .buildUrlString(GATEWAY_PORT,
+                            LOCAL_HOST,
+                            DATABASE + "/" + GET_MOVIES_MAP);
+        if (!partition.isSharded())
+            return url;
+
+        return UriComponentsBuilder
+            .fromHttpUrl(url)
+            .queryParam(SHARD_PARAM, partition.index())
+            .queryParam(SHARDS_PARAM, partition.count())
+            .toUriString();
+    }
+
     /**
      * Load the movie titles and vectors from a file in the resources
      * folder.
@@ -86,22 +258,12 @@ public class MoviesLoader {
      */
     public static TreeMap<String, List<Double>> loadMoviesFromResources
         (final String dataset) {
-        // Create an InputStream from the file specified by the
-        // `dataset` variable.
-        try (InputStream is = MoviesLoader.class
-             .getResourceAsStream("/" + dataset)) {
-
-            // Create an InputStreamReader from the InputStream.
-            InputStreamReader isr =
-                new InputStreamReader(Objects.requireNonNull(is));
-
-            // Create a BufferedReader from the InputStreamReader.
-            BufferedReader br = new BufferedReader(isr);
-
-            // Use the loadCSVFile() method to load the CSV data from
-            // the BufferedReader and convert it into a Map data
-            // structure.
-            var map = loadCSVFile(br);
+        try {
+            // Parse the CSV data with the shared MovieDatasetParser
+            // and convert it into a TreeMap data structure.
+            var map = MovieDatasetParser
+                .parseResource(dataset)
+                .toMap();
 
             System.out.println("Successfully loaded "
                                + map.size()
@@ -117,68 +279,4 @@ public class MoviesLoader {
             return new TreeMap<>();
         }
     }
-
-    /**
-     * Factory method that builds a cosine vector {@link Map} from a
-     * CSV file containing the cosine values for all the movies.
-     *
-     * @param reader A {@link BufferedReader}.
-     * @return A {@link TreeMap} that associates the movie title with
-     * the cosine vector for each movie
-     */
-    private static TreeMap<String, List<Double>> loadCSVFile
-        (BufferedReader reader) {
-        // Read all lines from filename and convert into a Stream of
-        // Strings.
-        Stream<String> lines = reader.lines();
-
-        return lines
-            // Consume the first line, which gives the format of the
-            // CSV file.
-            .skip(1)
-
-            // Divide the title from the cosine vector.
-            .map(line -> line.split(";"))
-
-            // Put the title and the associated cosine vector in map.
-            .map(strings -> new SimpleImmutableEntry<>
-                 (strings[0], parseVector(strings[1])))
-
-            // Trigger intermediate processing and collect the results
-            // into a Map.
-            .collect(toMap(SimpleImmutableEntry::getKey,
-                           SimpleImmutableEntry::getValue,
-                           (x, y) -> x,
-                           TreeMap::new));
-    }
-
-    /**
-     * Convert the {@link String} representation of movie cosine
-     * values into a {@link List<Double>}.
-     *
-     * @param movieValues The {@link String} vector of cosine values
-     *                    representing a movie
-     * @return A {@link List<Double>} containing the movie cosine
-     * values
-     */
-    private static List<Double> parseVector(String movieValues) {
-        // Access the vector stored in String form.
-        return Pattern
-            // Compile splitter into a regular expression (regex).
-            .compile(SPLITTER)
-
-            // Use regex to split the vector into a stream of strings.
-            .splitAsStream(movieValues
-                           // Remove brackets and spaces.
-                           .substring(3, movieValues.length() - 2))
-
-            // Make the stream a parallel stream.
-            .parallel()
-
-            // Convert each cosine value from String to Double.
-            .map(Double::valueOf)
-
-            // Collect the Stream<Double> into an List<Double>.
-            .toList();
-    }
 }
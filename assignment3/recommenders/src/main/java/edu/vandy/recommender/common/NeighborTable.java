@@ -0,0 +1,185 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.utils.TopKSelector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * This class stores the precomputed top-K most similar movies of every
+ * movie in a {@link MovieCatalog}.  The neighbors are kept in two
+ * parallel primitive arrays (movie ids and {@code float} scores) with
+ * {@code K} slots per movie, so answering a single-movie
+ * recommendation request for up to {@code K} movies is an array read
+ * instead of a full catalog scan.
+ *
+ * The table is filled by {@link #build()}, which scores the rows in
+ * parallel across all cores and publishes its progress via {@link
+ * #getBuiltRows()}.  Callers must check {@link #isReady()} before
+ * reading it and fall back to the exhaustive scan until then.
+ */
+public class NeighborTable {
+    /**
+     * The catalog whose neighbors are precomputed.
+     */
+    private final MovieCatalog mCatalog;
+
+    /**
+     * The number of neighbors stored per movie.
+     */
+    private final int mK;
+
+    /**
+     * The neighbor ids stored in row-major order, i.e., the neighbors
+     * of movie {@code id} occupy {@code [id * mK, (id + 1) * mK)} in
+     * descending score order.
+     */
+    private final int[] mNeighborIds;
+
+    /**
+     * The neighbor scores stored parallel to {@link #mNeighborIds}.
+     */
+    private final float[] mNeighborScores;
+
+    /**
+     * The number of rows that have been computed so far.
+     */
+    private final AtomicInteger mBuiltRows = new AtomicInteger();
+
+    /**
+     * True once every row has been computed.
+     */
+    private volatile boolean mReady;
+
+    /**
+     * Allocate an empty neighbor table for the {@code catalog}.
+     *
+     * @param catalog The {@link MovieCatalog} whose neighbors are
+     *                precomputed
+     * @param k The number of neighbors stored per movie, which is
+     *          capped at {@code catalog.size() - 1}
+     */
+    public NeighborTable(MovieCatalog catalog, int k) {
+        if (k < 1)
+            throw new IllegalArgumentException
+                ("The neighbor count must be positive: " + k);
+
+        mCatalog = catalog;
+        mK = Math.max(0, Math.min(k, catalog.size() - 1));
+        mNeighborIds = new int[catalog.size() * mK];
+        mNeighborScores = new float[catalog.size() * mK];
+    }
+
+    /**
+     * Compute the neighbors of every movie in parallel.  This method
+     * blocks until the table is complete.
+     *
+     * @return This table
+     */
+    public NeighborTable build() {
+        SimilarityKernel kernel = CosineSimilarityUtils.getKernel();
+
+        IntStream
+            // Score each row independently on all cores.
+            .range(0, mCatalog.size())
+            .parallel()
+            .forEach(id -> {
+                buildRow(kernel, id);
+                mBuiltRows.incrementAndGet();
+            });
+
+        mReady = true;
+        return this;
+    }
+
+    /**
+     * @return True once every row has been computed
+     */
+    public boolean isReady() {
+        return mReady;
+    }
+
+    /**
+     * @return The {@link MovieCatalog} whose neighbors are stored
+     */
+    public MovieCatalog getCatalog() {
+        return mCatalog;
+    }
+
+    /**
+     * @return The number of neighbors stored per movie
+     */
+    public int getK() {
+        return mK;
+    }
+
+    /**
+     * @return The number of rows computed so far
+     */
+    public int getBuiltRows() {
+        return mBuiltRows.get();
+    }
+
+    /**
+     * @return The fraction of rows computed so far in the range [0, 1]
+     */
+    public double getProgress() {
+        return mCatalog.isEmpty()
+            ? 1.0
+            : (double) mBuiltRows.get() / mCatalog.size();
+    }
+
+    /**
+     * Return the top {@code maxCount} precomputed recommendations for
+     * the movie with the given {@code id}.
+     *
+     * @param id The id of the watched movie
+     * @param maxCount The number of recommendations, which must not
+     *                 exceed {@link #getK()}
+     * @return A {@link List} of {@link Ranking} objects in descending
+     *         similarity order
+     */
+    public List<Ranking> getRecommendations(int id, int maxCount) {
+        if (!mReady)
+            throw new IllegalStateException("The neighbor table isn't built");
+
+        int count = Math.min(maxCount, mK);
+        int offset = id * mK;
+        var rankings = new ArrayList<Ranking>(count);
+
+        for (int i = offset; i < offset + count; i++)
+            rankings.add(new Ranking(mCatalog.title(mNeighborIds[i]),
+                                     (double) mNeighborScores[i]));
+        return rankings;
+    }
+
+    /**
+     * Score every other movie against movie {@code id} and store the
+     * best {@code mK} in its row.
+     */
+    private void buildRow(SimilarityKernel kernel, int id) {
+        double[] vectors = mCatalog.vectors();
+        int dimension = mCatalog.dimension();
+        int offset = mCatalog.offset(id);
+        var selector = new TopKSelector(mK);
+
+        for (int other = 0; other < mCatalog.size(); other++)
+            if (other != id)
+                selector.offer(other,
+                               kernel.dot(vectors,
+                                          offset,
+                                          vectors,
+                                          mCatalog.offset(other),
+                                          dimension));
+
+        // Copy the neighbors into the row from best to worst.
+        int row = id * mK;
+        selector.drain((rank, other, score) -> {
+            mNeighborIds[row + rank] = other;
+            mNeighborScores[row + rank] = (float) score;
+        });
+    }
+}
@@ -0,0 +1,202 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.utils.TopKSelector;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * This class stores an int8 copy of the L2-normalized vectors of a
+ * {@link MovieCatalog}, i.e., each vector is scaled by its own factor
+ * so its largest component maps to 127 and every component is
+ * rounded to a {@code byte}.  The quantized matrix is an eighth of the
+ * size of the {@code double} matrix, so a full scan streams an eighth
+ * of the memory, and a dot product is computed with integer
+ * arithmetic.
+ *
+ * Quantized similarities are only approximate, so a search first
+ * picks the top {@code candidateMultiplier * k} movies by their
+ * quantized similarity and then re-ranks those candidates with their
+ * exact full-precision similarity to return the top {@code k}.  The
+ * multiplier trades scan accuracy for re-ranking work, and {@link
+ * RecallHarness} measures the resulting recall against the exhaustive
+ * scan.  Instances are immutable once constructed.
+ *
+ * This is a latency-only optimization and doesn't reduce memory use:
+ * the re-ranking reads the {@code double} matrix of the {@link
+ * MovieCatalog}, which every other recommendation path needs as
+ * well, so the codes and scales are kept in addition to it and grow
+ * the resident catalog by about an eighth.
+ */
+public class QuantizedCatalog {
+    /**
+     * The largest magnitude of a quantized component.
+     */
+    private static final int MAX_CODE = 127;
+
+    /**
+     * The catalog whose vectors are quantized.
+     */
+    private final MovieCatalog mCatalog;
+
+    /**
+     * The quantized vectors stored in row-major order with the same
+     * layout as {@link MovieCatalog#vectors()}.
+     */
+    private final byte[] mCodes;
+
+    /**
+     * The factor that maps the quantized components of each vector
+     * back to its normalized components, indexed by movie id.
+     */
+    private final float[] mScales;
+
+    /**
+     * The number of components in each vector.
+     */
+    private final int mDimension;
+
+    /**
+     * The number of candidates re-ranked per requested movie.
+     */
+    private final int mCandidateMultiplier;
+
+    /**
+     * Quantize all vectors of the {@code catalog}.
+     *
+     * @param catalog The {@link MovieCatalog} to quantize
+     * @param candidateMultiplier The number of candidates re-ranked
+     *                            per requested movie, which must be
+     *                            at least 1
+     */
+    public QuantizedCatalog(MovieCatalog catalog,
+                            int candidateMultiplier) {
+        if (candidateMultiplier < 1)
+            throw new IllegalArgumentException
+                ("The candidate multiplier must be at least 1: "
+                 + candidateMultiplier);
+
+        // An int accumulates the products of a whole row safely.
+        if (catalog.dimension() > Integer.MAX_VALUE / (MAX_CODE * MAX_CODE))
+            throw new IllegalArgumentException
+                ("Vector dimension "
+                 + catalog.dimension()
+                 + " is too large to quantize");
+
+        mCatalog = catalog;
+        mDimension = catalog.dimension();
+        mCandidateMultiplier = candidateMultiplier;
+        mCodes = new byte[catalog.size() * mDimension];
+        mScales = new float[catalog.size()];
+
+        double[] vectors = catalog.vectors();
+        for (int id = 0; id < catalog.size(); id++) {
+            int offset = catalog.offset(id);
+
+            double max = 0.0;
+            for (int i = 0; i < mDimension; i++)
+                max = Math.max(max, Math.abs(vectors[offset + i]));
+            if (max == 0.0)
+                // Leave a zero vector as all zero codes.
+                continue;
+
+            float scale = (float) (max / MAX_CODE);
+            mScales[id] = scale;
+            for (int i = 0; i < mDimension; i++)
+                mCodes[offset + i] = (byte) Math.round(vectors[offset + i] / scale);
+        }
+    }
+
+    /**
+     * @return The {@link MovieCatalog} whose vectors are quantized
+     */
+    public MovieCatalog getCatalog() {
+        return mCatalog;
+    }
+
+    /**
+     * @return The number of candidates re-ranked per requested movie
+     */
+    public int getCandidateMultiplier() {
+        return mCandidateMultiplier;
+    }
+
+    /**
+     * @param maxCount The number of movies requested
+     * @return The number of candidates to pick by quantized
+     *         similarity for {@code maxCount} movies
+     */
+    public int candidateCount(int maxCount) {
+        return (int) Math.max(0, Math.min(mCatalog.size(),
+                                          (long) maxCount * mCandidateMultiplier));
+    }
+
+    /**
+     * Approximate the cosine similarity of two catalog movies from
+     * their quantized vectors.
+     *
+     * @param a The id of the first movie
+     * @param b The id of the second movie
+     * @return The approximate cosine similarity of the two movies
+     */
+    public double dot(int a, int b) {
+        int aOffset = a * mDimension;
+        int bOffset = b * mDimension;
+
+        int sum = 0;
+        for (int i = 0; i < mDimension; i++)
+            sum += mCodes[aOffset + i] * mCodes[bOffset + i];
+
+        return (double) mScales[a] * mScales[b] * sum;
+    }
+
+    /**
+     * Re-rank the {@code candidates} by their exact score and keep
+     * the top {@code maxCount} of them.  This call empties the
+     * {@code candidates}.
+     *
+     * @param candidates A {@link TopKSelector} of the candidate ids
+     *                   and their quantized similarities
+     * @param exactScorer Maps a movie id to its exact score
+     * @param maxCount The number of movies to keep
+     * @return A {@link TopKSelector} of the top {@code maxCount}
+     *         candidates and their exact scores
+     */
+    public TopKSelector rerank(TopKSelector candidates,
+                               IntToDoubleFunction exactScorer,
+                               int maxCount) {
+        var selector = new TopKSelector(Math.max(0, maxCount));
+        candidates.drain((rank, id, score) ->
+                         selector.offer(id, exactScorer.applyAsDouble(id)));
+        return selector;
+    }
+
+    /**
+     * Find the {@code k} catalog movies most similar to the movie with
+     * the given {@code id} with a sequential quantized scan followed
+     * by an exact re-ranking of the candidates.
+     *
+     * @param id The id of the query movie
+     * @param k The number of movies to return
+     * @return The ids of the movies found in descending similarity
+     *         order, excluding the query movie
+     */
+    public int[] searchById(int id, int k) {
+        var candidates = new TopKSelector(candidateCount(k));
+        for (int other = 0; other < mCatalog.size(); other++)
+            if (other != id)
+                candidates.offer(other, dot(id, other));
+
+        var selector = rerank(candidates,
+                              other -> CosineSimilarityUtils
+                                  .dot(mCatalog.vectors(),
+                                       mCatalog.offset(id),
+                                       mCatalog.vectors(),
+                                       mCatalog.offset(other),
+                                       mDimension),
+                              Math.max(0, Math.min(k, mCatalog.size() - 1)));
+
+        var ids = new int[selector.size()];
+        selector.drain((rank, other, score) -> ids[rank] = other);
+        return ids;
+    }
+}
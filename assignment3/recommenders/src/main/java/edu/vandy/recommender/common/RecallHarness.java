@@ -0,0 +1,120 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.utils.TopKSelector;
+
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * This class measures the recall@k of an approximate recommender
+ * against the exhaustive scan, i.e., the average fraction of the
+ * exact top-k movies that the approximate search also returns.  It's
+ * used to pick index parameters that trade accuracy for latency
+ * knowingly.
+ */
+public class RecallHarness {
+    /**
+     * An approximate top-k search that is evaluated by this harness.
+     */
+    @FunctionalInterface
+    public interface Searcher {
+        /**
+         * Find the {@code k} catalog movies most similar to the movie
+         * with the given {@code id}, excluding the movie itself.
+         *
+         * @param id The id of the query movie
+         * @param k The number of movies to return
+         * @return The ids of the movies found
+         */
+        int[] search(int id, int k);
+    }
+
+    /**
+     * A utility class should not be instantiated.
+     */
+    private RecallHarness() {
+    }
+
+    /**
+     * Measure the recall@k of {@code searcher} over a random sample of
+     * query movies from the {@code catalog}.
+     *
+     * @param catalog The {@link MovieCatalog} being searched
+     * @param searcher The approximate search to evaluate
+     * @param k The number of recommendations per query
+     * @param samples The number of query movies to sample
+     * @param seed The random seed used to pick the query movies
+     * @return The average recall@k in the range [0, 1]
+     */
+    public static double recallAtK(MovieCatalog catalog,
+                                   Searcher searcher,
+                                   int k,
+                                   int samples,
+                                   long seed) {
+        if (catalog.size() < 2 || samples <= 0 || k <= 0)
+            return 1.0;
+
+        var random = new Random(seed);
+        double total = 0.0;
+
+        for (int i = 0; i < samples; i++) {
+            int id = random.nextInt(catalog.size());
+            int[] exact = exactTopK(catalog, id, k);
+
+            var expected = new HashSet<Integer>();
+            for (int exactId : exact)
+                expected.add(exactId);
+
+            int hits = 0;
+            for (int found : searcher.search(id, k))
+                if (expected.contains(found))
+                    hits++;
+
+            total += (double) hits / exact.length;
+        }
+
+        return total / samples;
+    }
+
+    /**
+     * Find the exact top-k movies for the movie with the given {@code
+     * id} by scoring every other movie in the {@code catalog}.
+     *
+     * @param catalog The {@link MovieCatalog} to scan
+     * @param id The id of the query movie
+     * @param k The number of movies to return
+     * @return The ids of the {@code k} most similar movies in
+     *         descending similarity order
+     */
+    public static int[] exactTopK(MovieCatalog catalog, int id, int k) {
+        SimilarityKernel kernel = CosineSimilarityUtils.getKernel();
+        double[] vectors = catalog.vectors();
+        var selector = new TopKSelector
+            (Math.max(0, Math.min(k, catalog.size() - 1)));
+
+        for (int other = 0; other < catalog.size(); other++)
+            if (other != id)
+                selector.offer(other,
+                               kernel.dot(vectors,
+                                          catalog.offset(id),
+                                          vectors,
+                                          catalog.offset(other),
+                                          catalog.dimension()));
+
+        var ids = new int[selector.size()];
+        selector.drain((rank, other, score) -> ids[rank] = other);
+        return ids;
+    }
+
+    /**
+     * Convenience method that formats a recall report line.
+     *
+     * @param name The name of the evaluated search
+     * @param k The number of recommendations per query
+     * @param recall The measured recall@k
+     * @return A human-readable report line
+     */
+    public static String report(String name, int k, double recall) {
+        return String.format("%s recall@%d = %.4f", name, k, recall);
+    }
+}
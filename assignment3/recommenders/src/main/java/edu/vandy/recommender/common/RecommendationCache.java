@@ -0,0 +1,134 @@
+package edu.vandy.recommender.common;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.vandy.recommender.common.model.Ranking;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+/**
+ * This class caches the single-movie recommendations of popular
+ * titles in a bounded Caffeine {@link AsyncCache} that evicts entries
+ * by size and by age.
+ *
+ * Each entry holds the top {@link #getMaxCount()} recommendations of
+ * a title, so a request for any smaller {@code maxCount} is served by
+ * a prefix of the same entry, while larger requests bypass the cache.
+ * Concurrent misses for the same title share one computation.
+ *
+ * Entries are keyed by the {@link MovieCatalog} they were computed
+ * from as well as by title, so reloading the catalog makes all
+ * existing entries unreachable and they are discarded the first time
+ * the new catalog is used.
+ */
+public class RecommendationCache {
+    /**
+     * The cached recommendations in descending similarity order.
+     */
+    private final AsyncCache<Key, List<Ranking>> mCache;
+
+    /**
+     * The number of recommendations computed and stored per title.
+     */
+    private final int mMaxCount;
+
+    /**
+     * The {@link MovieCatalog} of the most recent request.
+     */
+    private volatile MovieCatalog mCatalog;
+
+    /**
+     * Create an empty cache.
+     *
+     * @param maximumSize The max number of titles cached
+     * @param timeToLive How long an entry is kept after it's computed
+     * @param maxCount The number of recommendations stored per title
+     */
+    public RecommendationCache(long maximumSize,
+                               Duration timeToLive,
+                               int maxCount) {
+        if (maxCount < 1)
+            throw new IllegalArgumentException
+                ("The cached recommendation count must be positive: "
+                 + maxCount);
+
+        mMaxCount = maxCount;
+        mCache = Caffeine
+            .newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive)
+            .recordStats()
+            .buildAsync();
+    }
+
+    /**
+     * @return The underlying {@link AsyncCache}, e.g., to publish its
+     *         hit, miss, and eviction statistics
+     */
+    public AsyncCache<?, ?> getCache() {
+        return mCache;
+    }
+
+    /**
+     * @return The number of recommendations stored per title
+     */
+    public int getMaxCount() {
+        return mMaxCount;
+    }
+
+    /**
+     * Get the top {@code maxCount} recommendations for the movie with
+     * the given {@code title}, computing and caching the top {@link
+     * #getMaxCount()} of them if they aren't cached yet.
+     *
+     * @param catalog The {@link MovieCatalog} the recommendations are
+     *                computed from
+     * @param title The title of the watched movie
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @param loader Computes the top {@code n} recommendations
+     *               asynchronously for a given {@code n}
+     * @return A {@link CompletableFuture} to the {@link Ranking}
+     *         objects in descending similarity order
+     */
+    public CompletableFuture<List<Ranking>> get
+        (MovieCatalog catalog,
+         String title,
+         int maxCount,
+         IntFunction<CompletableFuture<List<Ranking>>> loader) {
+        if (maxCount < 1)
+            return CompletableFuture.completedFuture(List.of());
+        if (maxCount > mMaxCount)
+            return loader.apply(maxCount);
+
+        // Discard the entries of the previous catalog once a new one
+        // is in use.
+        if (catalog != mCatalog) {
+            mCatalog = catalog;
+            mCache.synchronous().asMap().keySet()
+                .removeIf(key -> key.catalog() != catalog);
+        }
+
+        return mCache
+            .get(new Key(catalog, title),
+                 (key, executor) -> loader.apply(mMaxCount))
+            .thenApply(rankings -> rankings
+                       .subList(0, Math.min(maxCount, rankings.size())));
+    }
+
+    /**
+     * Discard all cached recommendations.
+     */
+    public void invalidateAll() {
+        mCache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Identifies the recommendations of one title in one catalog,
+     * where catalogs are compared by identity.
+     */
+    private record Key(MovieCatalog catalog, String title) {}
+}
@@ -0,0 +1,27 @@
+package edu.vandy.recommender.common;
+
+/**
+ * The strategies a recommender can use to answer single-movie
+ * recommendation requests, which is selected via the {@code
+ * app.recommender.mode} property.
+ */
+public enum RecommenderMode {
+    /**
+     * Score every movie in the catalog and keep the exact top
+     * results.
+     */
+    EXACT,
+
+    /**
+     * Search the approximate {@link HnswIndex} built at startup.
+     */
+    HNSW,
+
+    /**
+     * Scan the int8 {@link QuantizedCatalog} built at startup and
+     * re-rank its best candidates with their exact similarities.
+     * This lowers scan latency at the cost of extra memory, since
+     * the full-precision catalog is kept for the re-ranking.
+     */
+    QUANTIZED
+}
@@ -0,0 +1,153 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.common.model.Ranking;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This class coalesces identical concurrent recommendation requests,
+ * i.e., the first request for a key starts the computation and every
+ * request for the same key that arrives while it's in flight shares
+ * its result instead of starting another scan ("single-flight").
+ *
+ * A key is normalized to the catalog the request is served from, the
+ * kind of request, the sorted ids of the watched movies, and the
+ * requested count, so requests that name the same movies in a
+ * different order are coalesced.  A key is forgotten as soon as its
+ * computation completes, so nothing is cached beyond the requests
+ * that overlap it.
+ */
+public class RequestCoalescer {
+    /**
+     * The computations in flight.
+     */
+    private final Map<Key, CompletableFuture<List<Ranking>>> mInFlight =
+        new ConcurrentHashMap<>();
+
+    /**
+     * The number of requests that started a computation.
+     */
+    private final LongAdder mComputed = new LongAdder();
+
+    /**
+     * The number of requests that shared a computation in flight.
+     */
+    private final LongAdder mCoalesced = new LongAdder();
+
+    /**
+     * Get the result of the request identified by the given key
+     * components, sharing the computation of an identical request
+     * that's in flight or else starting it via the {@code loader}.
+     *
+     * @param catalog The {@link MovieCatalog} the request is served
+     *                from
+     * @param kind Distinguishes requests whose results differ for the
+     *             same movies, e.g., single- and multi-movie requests
+     * @param watchedIds The catalog ids of the watched movies
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @param loader Starts the computation of the request
+     * @return A {@link CompletableFuture} to the {@link Ranking}
+     *         objects of the request
+     */
+    public CompletableFuture<List<Ranking>> execute
+        (MovieCatalog catalog,
+         String kind,
+         int[] watchedIds,
+         int maxCount,
+         Supplier<CompletableFuture<List<Ranking>>> loader) {
+        var key = new Key(catalog, kind, sorted(watchedIds), maxCount);
+        var promise = new CompletableFuture<List<Ranking>>();
+
+        var inFlight = mInFlight.putIfAbsent(key, promise);
+        if (inFlight != null) {
+            mCoalesced.increment();
+            // Give each caller its own future, so cancelling it
+            // doesn't affect the others.
+            return inFlight.copy();
+        }
+
+        mComputed.increment();
+        try {
+            loader
+                .get()
+                .whenComplete((rankings, throwable) -> {
+                        // Forget the key before completing, so
+                        // requests that arrive afterwards compute a
+                        // fresh result.
+                        mInFlight.remove(key, promise);
+                        if (throwable != null)
+                            promise.completeExceptionally(throwable);
+                        else
+                            promise.complete(rankings);
+                    });
+        } catch (RuntimeException e) {
+            mInFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+        return promise.copy();
+    }
+
+    /**
+     * @return The number of requests that started a computation
+     */
+    public long getComputedCount() {
+        return mComputed.sum();
+    }
+
+    /**
+     * @return The number of requests that shared the computation of
+     *         an identical request in flight
+     */
+    public long getCoalescedCount() {
+        return mCoalesced.sum();
+    }
+
+    /**
+     * @return The number of computations in flight
+     */
+    public int getInFlightCount() {
+        return mInFlight.size();
+    }
+
+    /**
+     * @return A sorted copy of the {@code ids}
+     */
+    private static int[] sorted(int[] ids) {
+        int[] copy = ids.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /**
+     * Identifies a normalized request, where catalogs are compared by
+     * identity.
+     */
+    private record Key(MovieCatalog catalog,
+                       String kind,
+                       int[] watchedIds,
+                       int maxCount) {
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Key other
+                && catalog == other.catalog
+                && maxCount == other.maxCount
+                && kind.equals(other.kind)
+                && Arrays.equals(watchedIds, other.watchedIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * System.identityHashCode(catalog)
+                               + kind.hashCode())
+                         + Arrays.hashCode(watchedIds))
+                + maxCount;
+        }
+    }
+}
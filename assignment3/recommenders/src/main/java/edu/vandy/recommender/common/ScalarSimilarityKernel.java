@@ -0,0 +1,23 @@
+package edu.vandy.recommender.common;
+
+/**
+ * This {@link SimilarityKernel} computes dot products with a plain
+ * loop, which works on any JVM.
+ */
+public class ScalarSimilarityKernel
+       implements SimilarityKernel {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double dot(double[] a,
+                      int aOffset,
+                      double[] b,
+                      int bOffset,
+                      int length) {
+        double dotProduct = 0.0;
+        for (int i = 0; i < length; i++)
+            dotProduct += a[aOffset + i] * b[bOffset + i];
+        return dotProduct;
+    }
+}
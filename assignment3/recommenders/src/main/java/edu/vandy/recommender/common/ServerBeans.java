@@ -1,14 +1,28 @@
 package edu.vandy.recommender.common;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class contains a {@code Bean} annotation that can be injected into
@@ -20,26 +34,473 @@ import java.util.TreeMap;
     factory = YamlPropertySourceFactory.class)
 public class ServerBeans {
     /**
-     * Constructs a {@link TreeMap} Bean that contains the movie titles
-     * and cosine vectors.
+     * Constructs the {@link ShardPartition} Bean of this recommender,
+     * which owns the whole catalog unless {@code app.shard.count} is
+     * greater than 1.
      *
-     * @return A {@link Map} containing all movie titles and associated
-     *         cosine vectors.
+     * @param index The index of this recommender's shard
+     * @param count The number of shards in the cluster
+     * @return The {@link ShardPartition} of this recommender
      */
     @Lazy // Only create this bean lazily (on demand).
-    @Bean("movieMap")
-    public Map<String, List<Double>> getMovieMap
-        (@Value("${app.dataset}") final String dataset) {
+    @Bean("shardPartition")
+    public ShardPartition getShardPartition
+        (@Value("${app.shard.index:0}") final int index,
+         @Value("${app.shard.count:1}") final int count) {
+        return new ShardPartition(index, count);
+    }
+
+    /**
+     * Constructs a {@link MovieCatalog} Bean that contains the movie
+     * titles and cosine vectors packed into primitive arrays, which
+     * are loaded from the database microservice.  Snapshots are
+     * opt-in: if {@code app.snapshot.path} is set, the catalog is read
+     * from that file while it's no older than {@code maxAge}, else
+     * it's loaded from the database and saved to that file.  A
+     * sharded recommender only loads the movies of its {@link
+     * ShardPartition} and keeps them in a snapshot file of its own.
+     *
+     * @param snapshot The path of the snapshot file, or an empty
+     *                 {@link String} to disable snapshots
+     * @param maxAge The max age of a usable snapshot
+     * @param partition The {@link ShardPartition} of this recommender
+     * @return A {@link MovieCatalog} containing all movie titles and
+     *         associated cosine vectors.
+     */
+    @Lazy // Only create this bean lazily (on demand).
+    @Bean("movieCatalog")
+    public MovieCatalog getMovieCatalog
+        (@Value("${app.snapshot.path:}") final String snapshot,
+         @Value("${app.snapshot.max-age:1h}") final Duration maxAge,
+         @Qualifier("shardPartition") ShardPartition partition) {
         try {
-            // return LoadVectors.loadVectors(dataset);
-            return MoviesLoader.loadMoviesFromDatabase();
+            Path path = snapshot.isEmpty() ? null : Path.of(snapshot);
+            if (path != null && partition.isSharded())
+                path = path.resolveSibling(path.getFileName()
+                                           + ".shard-"
+                                           + partition.index()
+                                           + "-of-"
+                                           + partition.count());
+
+            if (path != null) {
+                var catalog = MoviesLoader
+                    .loadCatalogFromSnapshot(path, maxAge);
+                if (catalog != null)
+                    return catalog;
+            }
+
+            var catalog = MoviesLoader.loadCatalogFromDatabase(partition);
+            if (path != null && !catalog.isEmpty())
+                MoviesLoader.saveCatalogSnapshot(catalog, path);
+            return catalog;
         } catch (Exception e) {
             System.out.println(
                 "ERROR! Unable to retrieve movie cosine"
                     + " vectors from database microservice: "
                     + e);
-            // Return an empty TreeMap.
-            return new TreeMap<>();
+            // Return an empty MovieCatalog.
+            return MovieCatalog.empty();
+        }
+    }
+
+    /**
+     * Constructs a {@link MovieCatalogStore} Bean that keeps the
+     * movie catalog in sync with the database microservice by
+     * polling it for the changes since the version it has, which is
+     * only created when {@code app.catalog-sync.enabled} is true.
+     *
+     * @param movieCatalog The {@link MovieCatalog} loaded at startup
+     * @param interval The delay between two polls
+     * @param partition The {@link ShardPartition} of this recommender,
+     *                  whose movies are the only ones kept
+     * @return A {@link MovieCatalogStore} that's polling for changes
+     */
+    @Lazy(false) // Create eagerly despite lazy initialization.
+    @ConditionalOnProperty(name = "app.catalog-sync.enabled",
+                           havingValue = "true")
+    @Bean("movieCatalogStore")
+    public MovieCatalogStore getMovieCatalogStore
+        (@Qualifier("movieCatalog") MovieCatalog movieCatalog,
+         @Value("${app.catalog-sync.interval:30s}") final Duration interval,
+         @Qualifier("shardPartition") ShardPartition partition) {
+        var store = new MovieCatalogStore(movieCatalog, (epoch, since) -> {
+            var delta = MoviesLoader.loadCatalogChanges(epoch, since);
+            // Drop the movies other shards own, whereas deleting a
+            // movie this shard doesn't have is harmless.
+            if (partition.isSharded())
+                delta.upserts = delta
+                    .upserts
+                    .stream()
+                    .filter(movie -> partition.owns(movie.id))
+                    .toList();
+            return delta;
+        });
+        store.start(interval);
+        return store;
+    }
+
+    /**
+     * Constructs an {@link HnswIndex} Bean over the movie catalog,
+     * which is only created when {@code app.recommender.mode} is
+     * hnsw.  The index is built eagerly at startup so the first
+     * request doesn't pay for it.  If {@code app.hnsw.recall-samples}
+     * is positive the recall of the new index is measured against
+     * the exhaustive scan and printed.  It depends on the {@link
+     * SimilarityKernel} Bean since the index captures the installed
+     * kernel when it's built.
+     *
+     * @param movieCatalog The {@link MovieCatalog} to index
+     * @param m The maximum number of links per node
+     * @param efConstruction The candidate list size used to build
+     * @param efSearch The candidate list size used to search
+     * @param recallSamples The number of queries used to measure
+     *                      recall, or 0 to skip the measurement
+     * @return An {@link HnswIndex} over all movie vectors
+     */
+    @Lazy(false) // Create eagerly despite lazy initialization.
+    @ConditionalOnProperty(name = "app.recommender.mode",
+                           havingValue = "hnsw")
+    @DependsOn("similarityKernel")
+    @Bean("hnswIndex")
+    public HnswIndex getHnswIndex
+        (@Qualifier("movieCatalog") MovieCatalog movieCatalog,
+         @Value("${app.hnsw.m:16}") final int m,
+         @Value("${app.hnsw.ef-construction:200}") final int efConstruction,
+         @Value("${app.hnsw.ef-search:64}") final int efSearch,
+         @Value("${app.hnsw.recall-samples:0}") final int recallSamples) {
+        long start = System.nanoTime();
+        var index = new HnswIndex(movieCatalog,
+                                  m,
+                                  efConstruction,
+                                  efSearch,
+                                  42);
+        System.out.println("Built HNSW index over "
+                           + movieCatalog.size()
+                           + " movies in "
+                           + (System.nanoTime() - start) / 1_000_000
+                           + " msecs");
+
+        if (recallSamples > 0) {
+            // Compare the index with the exhaustive scan.
+            double recall = RecallHarness
+                .recallAtK(movieCatalog,
+                           (id, k) -> index.searchById(id, k).ids(),
+                           10,
+                           recallSamples,
+                           7);
+            System.out.println(RecallHarness
+                               .report("HNSW(m = " + m
+                                       + ", efSearch = " + efSearch + ")",
+                                       10,
+                                       recall));
+        }
+
+        return index;
+    }
+
+    /**
+     * Constructs a {@link QuantizedCatalog} Bean over the movie
+     * catalog, which is only created when {@code
+     * app.recommender.mode} is quantized.  The vectors are quantized
+     * eagerly at startup so the first request doesn't pay for it.
+     * If {@code app.quantized.recall-samples} is positive the recall
+     * of the quantized scan plus re-ranking is measured against the
+     * exact scan and printed.
+     *
+     * @param movieCatalog The {@link MovieCatalog} to quantize
+     * @param candidateMultiplier The number of candidates re-ranked
+     *                            per requested movie
+     * @param recallSamples The number of queries used to measure
+     *                      recall, or 0 to skip the measurement
+     * @return A {@link QuantizedCatalog} of all movie vectors
+     */
+    @Lazy(false) // Create eagerly despite lazy initialization.
+    @ConditionalOnProperty(name = "app.recommender.mode",
+                           havingValue = "quantized")
+    @Bean("quantizedCatalog")
+    public QuantizedCatalog getQuantizedCatalog
+        (@Qualifier("movieCatalog") MovieCatalog movieCatalog,
+         @Value("${app.quantized.candidate-multiplier:4}") final int candidateMultiplier,
+         @Value("${app.quantized.recall-samples:0}") final int recallSamples) {
+        long start = System.nanoTime();
+        var quantized = new QuantizedCatalog(movieCatalog, candidateMultiplier);
+        System.out.println("Quantized "
+                           + movieCatalog.size()
+                           + " movie vectors in "
+                           + (System.nanoTime() - start) / 1_000_000
+                           + " msecs");
+
+        if (recallSamples > 0) {
+            // Compare the quantized scan with the exhaustive scan.
+            double recall = RecallHarness
+                .recallAtK(movieCatalog,
+                           quantized::searchById,
+                           10,
+                           recallSamples,
+                           7);
+            System.out.println(RecallHarness
+                               .report("QUANTIZED(candidate-multiplier = "
+                                       + candidateMultiplier + ")",
+                                       10,
+                                       recall));
+        }
+
+        return quantized;
+    }
+
+    /**
+     * Constructs a {@link NeighborTable} Bean that precomputes the
+     * top-K neighbors of every movie, which is only created when
+     * {@code app.neighbor-table.enabled} is true.  The table is built
+     * eagerly at startup, either in the background (the default) or
+     * before the application starts serving requests.  Its progress
+     * is published via Micrometer gauges.  It depends on the {@link
+     * SimilarityKernel} Bean so the table is scored with the selected
+     * kernel rather than the scalar default.
+     *
+     * @param movieCatalog The {@link MovieCatalog} whose neighbors
+     *                     are precomputed
+     * @param k The number of neighbors stored per movie
+     * @param background True if the table should be built on a
+     *                   background thread, else false
+     * @param meterRegistry Provides the {@link MeterRegistry} used to
+     *                      publish the build progress, if any
+     * @return A {@link NeighborTable} that's being built
+     */
+    @Lazy(false) // Create eagerly despite lazy initialization.
+    @ConditionalOnProperty(name = "app.neighbor-table.enabled",
+                           havingValue = "true")
+    @DependsOn("similarityKernel")
+    @Bean("neighborTable")
+    public NeighborTable getNeighborTable
+        (@Qualifier("movieCatalog") MovieCatalog movieCatalog,
+         @Value("${app.neighbor-table.k:50}") final int k,
+         @Value("${app.neighbor-table.background:true}") final boolean background,
+         ObjectProvider<MeterRegistry> meterRegistry) {
+        var table = new NeighborTable(movieCatalog, k);
+
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder("recommender.neighbor.table.rows",
+                          table,
+                          NeighborTable::getBuiltRows)
+                .description("Movies whose neighbors have been precomputed")
+                .register(registry);
+            Gauge.builder("recommender.neighbor.table.progress",
+                          table,
+                          NeighborTable::getProgress)
+                .description("Fraction of the neighbor table built")
+                .register(registry);
+        });
+
+        Runnable build = () -> {
+            long start = System.nanoTime();
+            table.build();
+            System.out.println("Built neighbor table of "
+                               + table.getK()
+                               + " neighbors for "
+                               + movieCatalog.size()
+                               + " movies in "
+                               + (System.nanoTime() - start) / 1_000_000
+                               + " msecs");
+        };
+
+        if (background) {
+            var thread = new Thread(build, "neighbor-table-builder");
+            thread.setDaemon(true);
+            thread.start();
+        } else
+            build.run();
+
+        return table;
+    }
+
+    /**
+     * Constructs a {@link RecommendationCache} Bean that caches the
+     * single-movie recommendations of popular titles, which is only
+     * created when {@code app.recommendation-cache.enabled} is true,
+     * since only the {@code ParallelFluxService} consults it.  Its
+     * hit, miss, and eviction statistics are published via Micrometer
+     * under the "recommendations" cache name.
+     *
+     * @param maximumSize The max number of titles cached
+     * @param timeToLive How long an entry is kept after it's computed
+     * @param maxCount The number of recommendations stored per title
+     * @param meterRegistry Provides the {@link MeterRegistry} used to
+     *                      publish the cache statistics, if any
+     * @return An empty {@link RecommendationCache}
+     */
+    @Lazy(false) // Create eagerly despite lazy initialization.
+    @ConditionalOnProperty(name = "app.recommendation-cache.enabled",
+                           havingValue = "true")
+    @Bean("recommendationCache")
+    public RecommendationCache getRecommendationCache
+        (@Value("${app.recommendation-cache.max-size:10000}") final long maximumSize,
+         @Value("${app.recommendation-cache.ttl:10m}") final Duration timeToLive,
+         @Value("${app.recommendation-cache.k-max:100}") final int maxCount,
+         ObjectProvider<MeterRegistry> meterRegistry) {
+        var cache = new RecommendationCache(maximumSize, timeToLive, maxCount);
+
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics
+                                  .monitor(registry,
+                                           cache.getCache(),
+                                           "recommendations"));
+        return cache;
+    }
+
+    /**
+     * Constructs a {@link RequestCoalescer} Bean that lets identical
+     * concurrent recommendation requests share one computation, which
+     * is only created when {@code app.request-coalescing.enabled} is
+     * true, since only the {@code ParallelFluxService} uses it.  The
+     * number of computed and coalesced requests is published via
+     * Micrometer.
+     *
+     * @param meterRegistry Provides the {@link MeterRegistry} used to
+     *                      publish the coalescing statistics, if any
+     * @return An idle {@link RequestCoalescer}
+     */
+    @Lazy(false) // Create eagerly despite lazy initialization.
+    @ConditionalOnProperty(name = "app.request-coalescing.enabled",
+                           havingValue = "true")
+    @Bean("requestCoalescer")
+    public RequestCoalescer getRequestCoalescer
+        (ObjectProvider<MeterRegistry> meterRegistry) {
+        var coalescer = new RequestCoalescer();
+
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder("recommender.requests.computed",
+                                    coalescer,
+                                    RequestCoalescer::getComputedCount)
+                .description("Recommendation requests that started a computation")
+                .register(registry);
+            FunctionCounter.builder("recommender.requests.coalesced",
+                                    coalescer,
+                                    RequestCoalescer::getCoalescedCount)
+                .description("Recommendation requests that shared an identical request in flight")
+                .register(registry);
+            Gauge.builder("recommender.requests.in.flight",
+                          coalescer,
+                          RequestCoalescer::getInFlightCount)
+                .description("Distinct recommendation computations in flight")
+                .register(registry);
+        });
+        return coalescer;
+    }
+
+    /**
+     * Constructs a {@link MicroBatcher} Bean that scores the
+     * single-movie requests arriving within {@code
+     * app.micro-batching.window} together, which is only created when
+     * {@code app.micro-batching.enabled} is true.  Each batch is
+     * scored on the parallel() Scheduler, and its size, wait time,
+     * and scoring time are published via Micrometer, tagged by batch
+     * size range.
+     *
+     * @param window How long the first request of a batch waits for
+     *               others
+     * @param maxBatchSize The max number of requests per batch
+     * @param meterRegistry Provides the {@link MeterRegistry} used to
+     *                      publish the batch statistics, if any
+     * @return A {@link MicroBatcher} that's gathering requests
+     */
+    @Lazy(false) // Create eagerly despite lazy initialization.
+    @ConditionalOnProperty(name = "app.micro-batching.enabled",
+                           havingValue = "true")
+    @Bean("microBatcher")
+    public MicroBatcher getMicroBatcher
+        (@Value("${app.micro-batching.window:2ms}") final Duration window,
+         @Value("${app.micro-batching.max-batch-size:64}") final int maxBatchSize,
+         ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        MicroBatcher.Listener listener = null;
+
+        if (registry != null) {
+            // Register the meters once up front, since a batch can
+            // only fall into one of the few size buckets up to
+            // maxBatchSize.
+            DistributionSummary sizes = DistributionSummary
+                .builder("recommender.batch.size")
+                .description("Requests scored per micro-batch")
+                .register(registry);
+            var waitTimers = new HashMap<String, Timer>();
+            var scoreTimers = new HashMap<String, Timer>();
+
+            for (int size = 1; size > 0 && size <= maxBatchSize; size <<= 1) {
+                String bucket = MicroBatcher.sizeBucket(size);
+                waitTimers.put(bucket, Timer
+                               .builder("recommender.batch.wait")
+                               .description("Time the oldest request of a micro-batch waited")
+                               .tag("size", bucket)
+                               .register(registry));
+                scoreTimers.put(bucket, Timer
+                                .builder("recommender.batch.score")
+                                .description("Time spent scoring a micro-batch")
+                                .tag("size", bucket)
+                                .register(registry));
+            }
+
+            listener = (size, waitNanos, scoreNanos) -> {
+                String bucket = MicroBatcher.sizeBucket(size);
+                sizes.record(size);
+                waitTimers.get(bucket).record(waitNanos, TimeUnit.NANOSECONDS);
+                scoreTimers.get(bucket).record(scoreNanos, TimeUnit.NANOSECONDS);
+            };
         }
+
+        return new MicroBatcher(window,
+                                maxBatchSize,
+                                Schedulers.DEFAULT_POOL_SIZE,
+                                runnable -> Schedulers.parallel().schedule(runnable),
+                                listener);
+    }
+
+    /**
+     * Constructs a {@link ShardCoordinator} Bean that answers
+     * recommendation requests for the whole sharded cluster by
+     * scattering them to the shards registered with Eureka and
+     * merging their answers, which is only created when {@code
+     * app.shard.coordinator.enabled} is true.
+     *
+     * @param count The number of shards in the cluster
+     * @param timeout How long to wait for each shard before leaving
+     *                it out of a result
+     * @param serviceId The id the recommenders are registered under
+     * @param discoveryClient Finds the registered shards
+     * @return A {@link ShardCoordinator} of the cluster
+     */
+    @Lazy(false) // Create eagerly despite lazy initialization.
+    @ConditionalOnProperty(name = "app.shard.coordinator.enabled",
+                           havingValue = "true")
+    @Bean("shardCoordinator")
+    public ShardCoordinator getShardCoordinator
+        (@Value("${app.shard.count:1}") final int count,
+         @Value("${app.shard.coordinator.timeout:500ms}") final Duration timeout,
+         @Value("${spring.application.name:parallelflux}") final String serviceId,
+         DiscoveryClient discoveryClient) {
+        return new ShardCoordinator(new DiscoveryShardClient(discoveryClient,
+                                                             WebClient.create(),
+                                                             serviceId,
+                                                             count),
+                                    count,
+                                    timeout);
+    }
+
+    /**
+     * Constructs the {@link SimilarityKernel} Bean selected by the
+     * {@code app.kernel} property and installs it in {@link
+     * CosineSimilarityUtils} at startup.
+     *
+     * @param kernel Either "auto" (the default), "scalar", or "vector"
+     * @return The selected {@link SimilarityKernel}
+     */
+    @Lazy(false) // Create eagerly despite lazy initialization.
+    @Bean("similarityKernel")
+    public SimilarityKernel getSimilarityKernel
+        (@Value("${app.kernel:auto}") final String kernel) {
+        SimilarityKernel similarityKernel = SimilarityKernel.select(kernel);
+        System.out.println("Using similarity kernel: "
+                           + similarityKernel.getClass().getSimpleName());
+        CosineSimilarityUtils.setKernel(similarityKernel);
+        return similarityKernel;
     }
 }
@@ -0,0 +1,194 @@
+package edu.vandy.recommender.common;
+
+import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.common.model.ShardQuery;
+import edu.vandy.recommender.common.model.ShardedRecommendations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class answers recommendation requests for a sharded
+ * recommender cluster, where each shard only holds the movies of its
+ * {@link ShardPartition}.  The vector of the watched movie is fetched
+ * from the shard that owns it and scattered to all shards, each of
+ * which returns its local top {@code maxCount} movies, and the
+ * partial lists are gathered and merged into the global top {@code
+ * maxCount}.
+ *
+ * A shard that fails or doesn't answer within the timeout is left
+ * out, so the result is flagged as partial and names the missing
+ * shards instead of failing the whole request.
+ */
+public class ShardCoordinator {
+    /**
+     * Sends requests to the shards of the cluster.
+     */
+    public interface ShardClient {
+        /**
+         * Get the normalized vector of a movie from the shard that
+         * owns it.
+         *
+         * @param shard The index of the shard
+         * @param title The title of the movie
+         * @return A {@link Mono} that emits the vector, which is
+         *         empty if the shard has no such movie
+         */
+        Mono<List<Double>> getMovieVector(int shard, String title);
+
+        /**
+         * Get the top movies of a shard for the given query.
+         *
+         * @param shard The index of the shard
+         * @param query The {@link ShardQuery}
+         * @return A {@link Flux} that emits the shard's {@link
+         *         Ranking} objects in descending similarity order
+         */
+        Flux<Ranking> getRecommendations(int shard, ShardQuery query);
+    }
+
+    /**
+     * The answer of one shard, whose {@code rankings} are null if it
+     * failed or timed out.
+     */
+    private record Answer(int shard, List<Ranking> rankings) {}
+
+    /**
+     * Sends requests to the shards.
+     */
+    private final ShardClient mClient;
+
+    /**
+     * The number of shards in the cluster.
+     */
+    private final int mShardCount;
+
+    /**
+     * How long to wait for each shard.
+     */
+    private final Duration mTimeout;
+
+    /**
+     * Create a coordinator.
+     *
+     * @param client Sends requests to the shards
+     * @param shardCount The number of shards in the cluster
+     * @param timeout How long to wait for each shard
+     */
+    public ShardCoordinator(ShardClient client,
+                            int shardCount,
+                            Duration timeout) {
+        if (shardCount < 1)
+            throw new IllegalArgumentException
+                ("The shard count must be positive: " + shardCount);
+
+        mClient = client;
+        mShardCount = shardCount;
+        mTimeout = timeout;
+    }
+
+    /**
+     * @return The number of shards in the cluster
+     */
+    public int getShardCount() {
+        return mShardCount;
+    }
+
+    /**
+     * Recommend {@code maxCount} movies from the whole cluster as a
+     * function of a single {@code watchedMovie}.
+     *
+     * @param watchedMovie The title of the movie that has been watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @return A {@link Mono} that emits the merged {@link
+     *         ShardedRecommendations}, which are empty if the movie
+     *         is unknown or its owner didn't answer
+     */
+    public Mono<ShardedRecommendations> getRecommendations(String watchedMovie,
+                                                           int maxCount) {
+        int owner = ShardPartition.shardOf(watchedMovie, mShardCount);
+
+        return mClient
+            // Fetch the vector from the owner of the watched movie.
+            .getMovieVector(owner, watchedMovie)
+            .timeout(mTimeout)
+
+            // Scatter the vector to all shards, which never fails.
+            .flatMap(vector -> scatter(new ShardQuery(vector, watchedMovie, maxCount)))
+
+            // The owner has no such movie.
+            .switchIfEmpty(Mono.fromSupplier(() -> result(List.of(), List.of())))
+
+            // The owner failed, so no shard can be queried.
+            .onErrorReturn(result(List.of(), List.of(owner)));
+    }
+
+    /**
+     * Send the {@code query} to every shard and merge their answers.
+     *
+     * @return A {@link Mono} that emits the merged {@link
+     *         ShardedRecommendations}
+     */
+    private Mono<ShardedRecommendations> scatter(ShardQuery query) {
+        return Flux
+            // Emit the index of each shard.
+            .range(0, mShardCount)
+
+            // Query all shards concurrently, turning a failure or
+            // timeout into a missing answer.
+            .flatMap(shard -> mClient
+                     .getRecommendations(shard, query)
+                     .collectList()
+                     .timeout(mTimeout)
+                     .map(rankings -> new Answer(shard, rankings))
+                     .onErrorReturn(new Answer(shard, null)))
+
+            // Gather the answers.
+            .collectList()
+            .map(answers -> gather(answers, query.maxCount));
+    }
+
+    /**
+     * Merge the rankings of the shards that answered into the top
+     * {@code maxCount} movies.
+     */
+    private ShardedRecommendations gather(List<Answer> answers,
+                                          int maxCount) {
+        var rankings = new ArrayList<Ranking>();
+        var missing = new ArrayList<Integer>();
+
+        for (Answer answer : answers)
+            if (answer.rankings() == null)
+                missing.add(answer.shard());
+            else
+                rankings.addAll(answer.rankings());
+
+        // Each shard's list holds at most maxCount movies, so sorting
+        // their union is cheap.
+        rankings.sort(Comparator
+                      .comparingDouble((Ranking ranking) -> ranking.cosineSimilarity)
+                      .reversed());
+        missing.sort(null);
+
+        return result(rankings.subList(0, Math.min(Math.max(0, maxCount),
+                                                   rankings.size())),
+                      missing);
+    }
+
+    /**
+     * @return {@link ShardedRecommendations} holding the given {@code
+     *         rankings}, which are partial if shards are missing
+     */
+    private ShardedRecommendations result(List<Ranking> rankings,
+                                          List<Integer> missing) {
+        return new ShardedRecommendations(new ArrayList<>(rankings),
+                                          !missing.isEmpty(),
+                                          mShardCount,
+                                          missing);
+    }
+}
@@ -0,0 +1,71 @@
+package edu.vandy.recommender.common;
+
+/**
+ * This interface defines the dense arithmetic kernel that {@link
+ * CosineSimilarityUtils} uses to score vectors stored in primitive
+ * {@code double} arrays.  Since the vectors in a {@link MovieCatalog}
+ * are L2-normalized, a dot product is all that's needed to compute
+ * their cosine similarity.
+ *
+ * The implementation is chosen once at startup via {@link
+ * #select(String)}, which falls back to {@link ScalarSimilarityKernel}
+ * whenever the {@code jdk.incubator.vector} module isn't available.
+ */
+public interface SimilarityKernel {
+    /**
+     * Compute the dot product of two vectors stored in primitive
+     * {@code double} arrays.
+     *
+     * @param a The array containing the first vector
+     * @param aOffset The index in {@code a} where the first vector
+     *                starts
+     * @param b The array containing the second vector
+     * @param bOffset The index in {@code b} where the second vector
+     *                starts
+     * @param length The number of components in each vector
+     * @return The dot product of the two vectors
+     */
+    double dot(double[] a,
+               int aOffset,
+               double[] b,
+               int bOffset,
+               int length);
+
+    /**
+     * @return True if the {@code jdk.incubator.vector} module has been
+     *         added to the running JVM, else false
+     */
+    static boolean isVectorApiAvailable() {
+        return ModuleLayer
+            .boot()
+            .findModule("jdk.incubator.vector")
+            .isPresent();
+    }
+
+    /**
+     * Factory method that returns the {@link SimilarityKernel}
+     * matching the given {@code name}.
+     *
+     * @param name Either "scalar", "vector", or "auto", which picks
+     *             "vector" if the Vector API is available and
+     *             "scalar" otherwise
+     * @return The selected {@link SimilarityKernel}
+     */
+    static SimilarityKernel select(String name) {
+        return switch (name.toLowerCase()) {
+            case "scalar" -> new ScalarSimilarityKernel();
+            case "vector" -> {
+                if (!isVectorApiAvailable())
+                    throw new IllegalStateException
+                        ("The vector kernel requires the JVM option "
+                         + "'--add-modules jdk.incubator.vector'");
+                yield new VectorSimilarityKernel();
+            }
+            case "auto" -> isVectorApiAvailable()
+                ? new VectorSimilarityKernel()
+                : new ScalarSimilarityKernel();
+            default -> throw new IllegalArgumentException
+                ("Unknown similarity kernel: " + name);
+        };
+    }
+}
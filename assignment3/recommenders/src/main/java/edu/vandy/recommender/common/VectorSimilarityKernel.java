@@ -0,0 +1,53 @@
+package edu.vandy.recommender.common;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This {@link SimilarityKernel} computes dot products with the JDK
+ * Vector API, which the JIT compiles to SIMD instructions that
+ * process several vector components per CPU instruction.
+ *
+ * This class must only be loaded when the JVM runs with {@code
+ * --add-modules jdk.incubator.vector}, which {@link
+ * SimilarityKernel#select(String)} checks before instantiating it.
+ */
+public class VectorSimilarityKernel
+       implements SimilarityKernel {
+    /**
+     * The widest {@link DoubleVector} shape the CPU supports.
+     */
+    private static final VectorSpecies<Double> SPECIES =
+        DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double dot(double[] a,
+                      int aOffset,
+                      double[] b,
+                      int bOffset,
+                      int length) {
+        var sum = DoubleVector.zero(SPECIES);
+        int upperBound = SPECIES.loopBound(length);
+
+        int i = 0;
+
+        // Multiply and accumulate a full vector of lanes at a time.
+        for (; i < upperBound; i += SPECIES.length()) {
+            var va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            var vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+
+        double dotProduct = sum.reduceLanes(VectorOperators.ADD);
+
+        // Handle the remaining components that don't fill a vector.
+        for (; i < length; i++)
+            dotProduct += a[aOffset + i] * b[bOffset + i];
+
+        return dotProduct;
+    }
+}
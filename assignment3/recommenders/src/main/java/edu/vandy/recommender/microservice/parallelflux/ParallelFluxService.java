@@ -1,22 +1,36 @@
 package edu.vandy.recommender.microservice.parallelflux;
 
 import edu.vandy.recommender.common.BaseService;
+import edu.vandy.recommender.common.BlockScanner;
+import edu.vandy.recommender.common.BlockScanner.BlockScorer;
 import edu.vandy.recommender.common.Converters;
 import edu.vandy.recommender.common.CosineSimilarityUtils;
+import edu.vandy.recommender.common.HnswIndex;
+import edu.vandy.recommender.common.MicroBatcher;
+import edu.vandy.recommender.common.MovieCatalog;
+import edu.vandy.recommender.common.QuantizedCatalog;
+import edu.vandy.recommender.common.RecommendationCache;
+import edu.vandy.recommender.common.RecommenderMode;
+import edu.vandy.recommender.common.RequestCoalescer;
+import edu.vandy.recommender.common.model.QueryRecommendations;
 import edu.vandy.recommender.common.model.Ranking;
+import edu.vandy.recommender.common.model.RecommendationSnapshot;
+import edu.vandy.recommender.common.model.ShardQuery;
+import edu.vandy.recommender.utils.GetTopK;
+import edu.vandy.recommender.utils.TopKSelector;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.publisher.ParallelFlux;
 import reactor.core.scheduler.Schedulers;
 
-import java.util.Comparator;
+import java.time.Duration;
+import java.util.BitSet;
 import java.util.List;
-
-import static edu.vandy.recommender.common.Converters.titles2Rankings;
-import static edu.vandy.recommender.common.CosineSimilarityUtils.cosineSimilarity;
-import static edu.vandy.recommender.common.CosineSimilarityUtils.sumOfCosines;
-import static edu.vandy.recommender.common.GetTopRecommendationsFlux.getTopRecommendationsHeap;
-import static edu.vandy.recommender.common.GetTopRecommendationsFlux.getTopRecommendationsSort;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Supplier;
 
 /**
  * This class defines implementation methods that are called by the
@@ -37,6 +51,23 @@ import static edu.vandy.recommender.common.GetTopRecommendationsFlux.getTopRecom
 @Service
 public class ParallelFluxService
        extends BaseService<Flux<Ranking>> {
+    /**
+     * The {@link RequestCoalescer} kind of single-movie requests.
+     */
+    private static final String SINGLE_MOVIE = "single";
+
+    /**
+     * The {@link RequestCoalescer} kind of multi-movie requests.
+     */
+    private static final String MULTI_MOVIE = "multi";
+
+    /**
+     * Scans the catalog in blocks that are run on the rails of the
+     * parallel() Scheduler.
+     */
+    private final BlockScanner mScanner =
+        new BlockScanner(Schedulers.DEFAULT_POOL_SIZE, this::selectBlocks);
+
     /**
      * Get a {@link Flux} that emits all movies represented as {@link
      * String} objects.
@@ -47,13 +78,13 @@ public class ParallelFluxService
      */
     @Override
     public Flux<Ranking> getAllMovies() {
-        // Convert the mMovieMap keyset into a Flux via a helper
+        // Convert the catalog titles into a Flux via a helper
         // method in the Converters class.
 
         // TODO -- you fill in here, replacing 'return null'
         // with the proper code.
         return Flux.fromIterable(
-                Converters.titles2Rankings(mMovieMap.keySet()));
+                Converters.titles2Rankings(getCatalog().titles()));
     }
 
     /**
@@ -68,28 +99,13 @@ public class ParallelFluxService
      */
     @Override
     public Flux<Ranking> search(String query) {
-        // Perform the following steps using a Project Reactor
-        // ParallelFlux.
-        // 
-        // 1. Create a Flux of Ranking objects containing movie titles
-        //    from mMovieMap using a helper method in the Converters class.
-        // 2. Convert Flux to a ParallelFlux.
-        // 3. Run each rail in the parallel thread pool.
-        // 4. Only keep titles that contain the search query (ignore
-        //    case).
-        // 5. Convert ParallelFlux to Flux.
-        // 6. Sort Ranking objects by title in ascending order before
-        //    returning.
-
-        // TODO -- you fill in here, replacing 'return null' with
-        // the proper code.
+        // Look up the matching titles in the catalog's trigram
+        // index, which returns them in ascending title order, and
+        // convert them into a Flux via a helper method in the
+        // Converters class.
         return Flux.fromIterable(
-                Converters.titles2Rankings(mMovieMap.keySet()))
-                .parallel()
-                .runOn(Schedulers.parallel())
-                .filter(r -> r.getTitle().toLowerCase().contains(query.toLowerCase()))
-                .sequential()
-                .sort(Comparator.comparing(Ranking::getTitle));
+                Converters.titles2Rankings(
+                        getCatalog().titleIndex().searchTitles(query)));
     }
 
     /**
@@ -113,35 +129,159 @@ public class ParallelFluxService
         // watchedMovie param.
 
         // Start by checking that the 'watchedMovie' exists in
-        // mMovieMap, returning an empty Flux if it's not there.
+        // the catalog, returning an empty Flux if it's not there.
+        // The same catalog snapshot serves the whole request.
 
         // TODO -- you fill in here, replacing 'return null' with
         // the proper code.
-        if (!mMovieMap.containsKey(watchedMovie)) {
+        MovieCatalog catalog = getCatalog();
+        int watchedId = catalog.idOf(watchedMovie);
+        if (watchedId < 0) {
             return Flux.empty();
         }
 
-        // Next, create a local Flux variable that is initialized via
-        // the following steps:
-        //
-        // 1. Call a helper method to get the vector portion of the
-        //    input movie and create a ParallelFlux stream containing
-        //    all the entries in the Map.
-        // 2. Filter out the 'watchedMovie' from the Flux stream.
-        // 3. Convert the ParallelFlux back to a Flux.
-
-        // TODO -- you fill in here, replacing 'Flux<Ranking> entries
-        // = null' with the proper code.
-        Flux<Ranking> entries = computeRecommendationsParallelFlux(mMovieMap.get(watchedMovie))
-                .filter(ranking -> !ranking.getTitle().equals(watchedMovie))
-                .sequential();
-
-        // Call a helper method that return the top maxCount
-        // recommendations in the Flux of entries.
-
-        // TODO -- you fill in here, replacing 'return null' with the
-        // proper code.
-        return getTopRecommendationsHeap(entries, maxCount);
+        // Read the precomputed neighbors if the table is ready and
+        // holds enough of them.
+        var precomputed =
+            getPrecomputedRecommendations(catalog, watchedId, maxCount);
+        if (precomputed.isPresent()) {
+            return Flux.fromIterable(precomputed.get());
+        }
+
+        // Serve the request from the recommendation cache if it's
+        // enabled, which computes the top recommendations of each
+        // title once and shares them between concurrent requests.
+        // Identical requests that aren't served from the cache share
+        // one computation while it's in flight.
+        RecommendationCache cache = getRecommendationCache();
+        if (cache == null) {
+            return coalesce(catalog,
+                            SINGLE_MOVIE,
+                            new int[] {watchedId},
+                            maxCount,
+                            () -> getSingleMovieRecommendations
+                                (catalog, watchedId, maxCount));
+        }
+
+        return Mono
+            .fromFuture(() -> cache
+                        .get(catalog,
+                             watchedMovie,
+                             maxCount,
+                             count -> coalesce(catalog,
+                                               SINGLE_MOVIE,
+                                               new int[] {watchedId},
+                                               count,
+                                               () -> getSingleMovieRecommendations
+                                                   (catalog, watchedId, count))
+                                 .collectList()
+                                 .toFuture()))
+            .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * Share the computation of a request with the identical requests
+     * that arrive while it's in flight if the {@link
+     * RequestCoalescer} is enabled, else just compute it.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @param kind The kind of the request
+     * @param watchedIds The catalog ids of the watched movies
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @param computation Computes the recommendations of the request
+     * @return A {@link Flux} that emits the {@link Ranking} objects
+     *         of the request
+     */
+    protected Flux<Ranking> coalesce(MovieCatalog catalog,
+                                     String kind,
+                                     int[] watchedIds,
+                                     int maxCount,
+                                     Supplier<Flux<Ranking>> computation) {
+        RequestCoalescer coalescer = getRequestCoalescer();
+        if (coalescer == null) {
+            return computation.get();
+        }
+
+        return Mono
+            .fromFuture(() -> coalescer
+                        .execute(catalog,
+                                 kind,
+                                 watchedIds,
+                                 maxCount,
+                                 () -> computation
+                                     .get()
+                                     .collectList()
+                                     .toFuture()))
+            .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * Compute the top {@code maxCount} recommendations for the movie
+     * with the given {@code watchedId} with the configured {@link
+     * RecommenderMode}.
+     *
+     * @param catalog The {@link MovieCatalog} of the request
+     * @param watchedId The catalog id of the watched movie
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @return A {@link Flux} that emits the {@link Ranking} objects
+     *         in descending similarity order
+     */
+    protected Flux<Ranking> getSingleMovieRecommendations(MovieCatalog catalog,
+                                                          int watchedId,
+                                                          int maxCount) {
+        // Search the approximate index instead of scanning the whole
+        // catalog if it's been selected and has been built from this
+        // catalog.
+        HnswIndex index = mMode == RecommenderMode.HNSW
+            ? getHnswIndex(catalog)
+            : null;
+        if (index != null) {
+            return Flux.defer(() -> Flux
+                    .fromIterable(getHnswRecommendations(index,
+                                                         watchedId,
+                                                         maxCount)));
+        }
+
+        // Score every other movie against the normalized vector of
+        // the watched movie and return the top maxCount of them.
+        double[] query = catalog.vector(watchedId);
+
+        // Scan the int8 vectors if they've been selected and were
+        // quantized from this catalog, and re-rank the best
+        // candidates with their exact similarities.
+        QuantizedCatalog quantized = mMode == RecommenderMode.QUANTIZED
+            ? getQuantizedCatalog(catalog)
+            : null;
+        if (quantized != null) {
+            return mScanner
+                .selectTop
+                (catalog,
+                 id -> id != watchedId,
+                 id -> quantized.dot(watchedId, id),
+                 quantized.candidateCount(maxCount))
+                .map(candidates -> quantized
+                     .rerank(candidates,
+                             id -> CosineSimilarityUtils.dot(catalog, id, query),
+                             maxCount))
+                .flatMapIterable(selector -> toRankings(catalog, selector));
+        }
+
+        // Score the query together with the other queries that
+        // arrive within the micro-batching window if it's enabled.
+        MicroBatcher batcher = getMicroBatcher();
+        if (batcher != null) {
+            return Mono
+                .fromFuture(() -> batcher.submit(catalog, query, watchedId, maxCount))
+                .flatMapIterable(selector -> toRankings(catalog, selector));
+        }
+
+        return getTopRecommendationsParallelFlux
+            (catalog,
+             id -> id != watchedId,
+             id -> CosineSimilarityUtils.dot(catalog, id, query),
+             maxCount);
     }
 
     /**
@@ -160,85 +300,224 @@ public class ParallelFluxService
     public Flux<Ranking> getRecommendations(List<String> watchedMovies,
                                             int maxCount) {
         // Remove all movies from the watchedMovies List that do not
-        // have a corresponding Movie in the mMovieMap map *without*
+        // have a corresponding Movie in the catalog *without*
         // affecting the original contents of the watchedMovies List.
         // If the resulting List is empty, return an empty Flux.
         // TODO -- you fill in here.
+        MovieCatalog catalog = getCatalog();
         List<String> validWatchedMovies = watchedMovies
                 .stream()
-                .filter(mMovieMap::containsKey)
+                .filter(catalog::contains)
                 .toList();
 
         if (validWatchedMovies.isEmpty()) {
             return Flux.empty();
         }
 
-        // Perform the following steps using a Project Reactor
-        // ParallelFlux.
-        //
-        // 1. Convert mMovieMap into a flux.
-        // 2. Convert the Flux to a ParallelFlux.
-        // 3. Run the ParallelFlux on the parallel() Scheduler.
-        // 4. Filter out 'watchedMovies' from the stream since they
-        //    shouldn't be considered as recommendations.
-        // 5. Rank movies by sum of cosine similarity functions
-        //    to the previously watched movies.
-        // 6. Convert the ParallelFlux back to a Flux.
-
-        // TODO -- you fill in here, replacing 'Flux<Ranking> entries
-        // = null' with the proper code.
-        Flux<Ranking> entries = Flux.fromIterable(mMovieMap.entrySet())
-                .parallel()
-                .runOn(Schedulers.parallel())
-                .filter(e -> !validWatchedMovies.contains(e.getKey()))
-                .map(e -> new Ranking(
-                        e.getKey(),
-                        CosineSimilarityUtils.sumOfCosines(
-                                e.getValue(),
-                                validWatchedMovies,
-                                mMovieMap,
-                                true)))
-                .sequential();
-
-        // Call a helper method to get/return the top maxCount
-        // recommendations.
-        // TODO -- you fill in here, replacing 'return null' with the
-        // proper code.
-        return getTopRecommendationsSort(entries, maxCount);
+        // Look up the catalog ids of the watched movies once so the
+        // per-movie scoring below works only with primitive arrays
+        // and excludes the watched movies with an O(1) id lookup.
+        int[] watchedIds = validWatchedMovies
+                .stream()
+                .mapToInt(catalog::idOf)
+                .toArray();
+        BitSet watched = toIdSet(catalog, watchedIds);
+        IntToDoubleFunction scorer = getMultiMovieScorer(catalog, watchedIds);
+
+        // Rank the movies that haven't been watched by the sum of
+        // their cosine similarities to the watched movies and return
+        // the top maxCount of them.
+        return coalesce(catalog,
+                        MULTI_MOVIE,
+                        watchedIds,
+                        maxCount,
+                        () -> getTopRecommendationsParallelFlux
+                            (catalog,
+                             id -> !watched.get(id),
+                             scorer,
+                             maxCount));
     }
 
     /**
-     * Compute the cosine similarity between a movie and all other
-     * movies in the database using Project Reactor {@link
-     * ParallelFlux}.
+     * Recommend {@code maxCount} movies for each of a batch of
+     * watched-movie lists using Project Reactor {@link ParallelFlux}.
+     * The queries are split into groups that are scored on the
+     * parallel() Scheduler, each with one cache-blocked pass over the
+     * catalog, and the results of a group are emitted as soon as it's
+     * done.
      *
-     * @param vector A {@link List} containing a vector description of
-     *               the watched movie
-     * @return A {@link ParallelFlux} that emits {@link Ranking}
-     *         objects representing the cosine similarity between
-     *         movies
+     * @param watchedMovies A {@link List} of queries, each of which
+     *                      is a {@link List} of titles of movies a
+     *                      user has watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned per query
+     * @return A {@link Flux} that emits the {@link
+     *         QueryRecommendations} of each query
+     */
+    @Override
+    public Flux<QueryRecommendations> getBatchRecommendations
+        (List<List<String>> watchedMovies,
+         int maxCount) {
+        // Look up the catalog ids of the watched movies of each
+        // query and spread the queries over the parallel()
+        // Scheduler's threads.
+        MovieCatalog catalog = getCatalog();
+        int[][] watchedIds = BlockScanner.toBatchIds(catalog, watchedMovies);
+        int groupSize = mScanner.batchGroupSize(watchedIds.length);
+        int groups = (watchedIds.length + groupSize - 1) / groupSize;
+
+        return Flux
+            // Emit the index of each group of queries.
+            .range(0, groups)
+
+            // Convert the Flux to a ParallelFlux.
+            .parallel()
+
+            // Run the ParallelFlux on the parallel() Scheduler.
+            .runOn(Schedulers.parallel())
+
+            // Score each group of queries together.
+            .flatMap(group -> {
+                    int start = group * groupSize;
+                    return Flux
+                        .fromIterable(BlockScanner.scoreBatchGroup
+                                      (catalog,
+                                       watchedIds,
+                                       start,
+                                       Math.min(watchedIds.length, start + groupSize),
+                                       maxCount));
+                })
+
+            // Merge the rails into a Flux.
+            .sequential();
+    }
+
+    /**
+     * Recommend {@code maxCount} movies as a function of a single
+     * {@code watchedMovie} within the {@code deadline} via {@link
+     * BlockScanner#scanProgressively}, which runs one round of blocks
+     * per parallel() rail at a time.  This mode always scans the
+     * exact vectors, whatever the configured {@link RecommenderMode}.
+     *
+     * @param watchedMovie A {@link String} indicating the title of
+     *                     the movie that has been watched
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @param deadline The time budget of the request, or null if it
+     *                 has none
+     * @return A {@link Flux} that emits a {@link
+     *         RecommendationSnapshot} after each round
+     */
+    @Override
+    public Flux<RecommendationSnapshot> getProgressiveRecommendations
+        (String watchedMovie,
+         int maxCount,
+         Duration deadline) {
+        return mScanner.scanProgressively(getCatalog(),
+                                          watchedMovie,
+                                          maxCount,
+                                          deadline);
+    }
+
+    /**
+     * Recommend the top {@code query.maxCount} movies of this
+     * recommender's catalog for the query vector of a {@link
+     * ShardQuery}, scoring it through the micro-batcher if it's
+     * enabled.
+     *
+     * @param query The {@link ShardQuery} scattered by a shard
+     *              coordinator
+     * @return A {@link Flux} that emits the {@link Ranking} objects
+     *         in descending similarity order
      */
-    protected ParallelFlux<Ranking> computeRecommendationsParallelFlux
-        (List<Double> vector) {
-        // Perform the following steps using a Project Reactor
-        // ParallelFlux.
-        //
-        // 1. Convert mMovieMap to a Flux.
-        // 2. Convert the Flux to a ParallelFlux.
-        // 3. Run the ParallelFlux on the parallel() Scheduler.
-        // 4. Call the cosineSimilarity() helper method to create a
-        //    new Ranking object.
-
-        // TODO -- you fill in here, replacing 'return null' with the
-        // proper code.
-        return Flux.fromIterable(mMovieMap.entrySet())
-                .parallel()
-                .runOn(Schedulers.parallel())
-                .map(movie -> new Ranking(
-                        movie.getKey(),
-                        CosineSimilarityUtils.cosineSimilarity(
-                                movie.getValue(),
-                                vector,
-                                true)));
+    @Override
+    public Flux<Ranking> getShardRecommendations(ShardQuery query) {
+        MovieCatalog catalog = getCatalog();
+        return BlockScanner.scanShard(catalog, query, (vector, excludedId) -> {
+                MicroBatcher batcher = getMicroBatcher();
+                if (batcher != null) {
+                    return Mono
+                        .fromFuture(() -> batcher.submit(catalog,
+                                                         vector,
+                                                         excludedId,
+                                                         query.maxCount))
+                        .flatMapIterable(selector -> toRankings(catalog, selector));
+                }
+
+                return getTopRecommendationsParallelFlux
+                    (catalog,
+                     id -> id != excludedId,
+                     id -> CosineSimilarityUtils.dot(catalog, id, vector),
+                     query.maxCount);
+            });
+    }
+
+    /**
+     * Find the top {@code maxCount} catalog movies using Project
+     * Reactor {@link ParallelFlux}.  The catalog is split into blocks
+     * of contiguous ids that are scored on the parallel() Scheduler,
+     * each rail keeps its best movies in a {@link TopKSelector} over
+     * primitive ids and scores, and the rail selectors are merged at
+     * the end.  {@link Ranking} objects are only created for the
+     * final winners.
+     *
+     * @param catalog The {@link MovieCatalog} to select from
+     * @param candidate Selects the movie ids that may be recommended
+     * @param scorer Maps a movie id to its similarity score
+     * @param maxCount The upper limit for the number of
+     *                 recommendations returned
+     * @return A {@link Flux} that emits the top {@code maxCount}
+     *         {@link Ranking} objects in descending similarity order
+     */
+    protected Flux<Ranking> getTopRecommendationsParallelFlux
+        (MovieCatalog catalog,
+         IntPredicate candidate,
+         IntToDoubleFunction scorer,
+         int maxCount) {
+        if (maxCount < 1 || catalog.isEmpty())
+            return Flux.empty();
+
+        return mScanner
+            .selectTop(catalog, candidate, scorer, maxCount)
+            // Convert the winners into Ranking objects.
+            .flatMapIterable(selector -> toRankings(catalog, selector));
+    }
+
+    /**
+     * Score the blocks using Project Reactor {@link ParallelFlux} on
+     * the parallel() Scheduler via the per-rail heap operator of
+     * {@link GetTopK}, where each rail keeps its best movies in its
+     * own {@link TopKSelector}, and merge the rail selectors.
+     *
+     * @param blockCount The number of blocks
+     * @param maxCount The upper limit for the number of ids selected
+     * @param scorer Scores the block with the given index
+     * @return A {@link Mono} that emits the merged {@link
+     *         TopKSelector}
+     */
+    private Mono<TopKSelector> selectBlocks(int blockCount,
+                                            int maxCount,
+                                            BlockScorer scorer) {
+        return GetTopK
+            .getTopK(Flux
+                     // Emit the index of each block.
+                     .range(0, blockCount)
+
+                     // Convert the Flux to a ParallelFlux.
+                     .parallel()
+
+                     // Run the ParallelFlux on the parallel() Scheduler.
+                     .runOn(Schedulers.parallel()),
+
+                     // Score each block into a selector that's private
+                     // to the rail.
+                     () -> new TopKSelector(Math.max(0, maxCount)),
+                     (selector, block) -> {
+                         scorer.score(block, selector);
+                         return selector;
+                     },
+
+                     // Merge the rail selectors into one.
+                     TopKSelector::merge);
     }
 }
@@ -0,0 +1,20 @@
+package edu.vandy.recommender.microservice.parallelstream;
+
+import edu.vandy.recommender.common.BaseController;
+import edu.vandy.recommender.common.model.Ranking;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * The Spring controller for the {@link ParallelStreamService}.
+ *
+ * {@code @RestController} is a convenience annotation for creating
+ * Restful controllers. It is a specialization of {@code @Component}
+ * and is automatically detected through classpath scanning. It adds
+ * the {@code @Controller} and {@code @ResponseBody} annotations. It
+ * also converts responses to JSON.
+ */
+@RestController
+public class ParallelStreamController extends BaseController<List<Ranking>> {
+}
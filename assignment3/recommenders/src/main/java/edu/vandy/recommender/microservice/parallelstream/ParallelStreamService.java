@@ -0,0 +1,62 @@
+package edu.vandy.recommender.microservice.parallelstream;
+
+import edu.vandy.recommender.common.ChunkedService;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * This class defines implementation methods that are called by the
+ * {@link ParallelStreamController}, which serves as the main
+ * "front-end" app gateway entry point for remote clients that want to
+ * receive movie recommendations.
+ *
+ * This class implements the abstract methods in {@link
+ * ChunkedService} using Java parallel streams, which split the chunks
+ * of the catalog among the worker threads of the common {@link
+ * ForkJoinPool}.
+ *
+ * This class is annotated as a Spring {@code @Service}, which enables
+ * the automatic detection and wiring of dependent implementation
+ * classes via classpath scanning.
+ */
+@Service
+public class ParallelStreamService
+       extends ChunkedService {
+    /**
+     * Run the chunks as a parallel stream on the common {@link
+     * ForkJoinPool}.
+     *
+     * @param chunkCount The number of chunks
+     * @param chunk Computes the result of the chunk with the given
+     *              index
+     * @return The results of the chunks in index order
+     */
+    @Override
+    protected <R> List<R> mapChunks(int chunkCount,
+                                    IntFunction<R> chunk) {
+        return IntStream
+            // Emit the index of each chunk.
+            .range(0, chunkCount)
+
+            // Run the chunks in parallel.
+            .parallel()
+
+            // Compute the result of each chunk.
+            .mapToObj(chunk)
+
+            // Collect the results in index order.
+            .toList();
+    }
+
+    /**
+     * @return The parallelism of the common {@link ForkJoinPool}
+     */
+    @Override
+    protected int getParallelism() {
+        return ForkJoinPool.getCommonPoolParallelism();
+    }
+}
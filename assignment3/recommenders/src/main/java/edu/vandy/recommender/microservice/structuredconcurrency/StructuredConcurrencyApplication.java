@@ -0,0 +1,41 @@
+package edu.vandy.recommender.microservice.structuredconcurrency;
+
+import edu.vandy.recommender.common.BaseApplication;
+import edu.vandy.recommender.common.ServerBeans;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ComponentScan;
+
+import static edu.vandy.recommender.common.BaseApplication.run;
+
+/**
+ * This class provides the entry point for the {@link
+ * StructuredConcurrencyApplication} microservice, which uses Java
+ * structured concurrency to fan the scoring of the movie catalog out
+ * over virtual threads.
+ *
+ * The {@code @SpringBootApplication} annotation enables apps to use
+ * autoconfiguration, component scan, and to define extra
+ * configurations on their "application" class.
+ *
+ * The {@code @ComponentScan} annotation tells Spring the packages to
+ * scan for annotated components (i.e., tagged with
+ * {@code @Component}).
+ *
+ * The {@code @PropertySources} and {@code @PropertySource}
+ * annotations are used to provide a properties file to the Spring
+ * Environment.
+ */
+@SpringBootApplication
+@ComponentScan(basePackageClasses = {
+    StructuredConcurrencyApplication.class,
+    ServerBeans.class})
+public class StructuredConcurrencyApplication extends BaseApplication {
+    /**
+     * The static main() entry point runs this Spring application.
+     */
+    public static void main(String[] args) {
+        // Call BaseApplication helper to build and run this
+        // application.
+        run(StructuredConcurrencyApplication.class, args);
+    }
+}
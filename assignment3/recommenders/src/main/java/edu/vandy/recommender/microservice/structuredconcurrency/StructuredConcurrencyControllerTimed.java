@@ -0,0 +1,20 @@
+package edu.vandy.recommender.microservice.structuredconcurrency;
+
+import edu.vandy.recommender.common.BaseControllerTimed;
+import edu.vandy.recommender.common.model.Ranking;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+import static edu.vandy.recommender.common.Constants.EndPoint.TIMED;
+
+/**
+ * The Spring controller for the {@link StructuredConcurrencyService}
+ * that handles timed method invocations.
+ */
+@RestController
+@RequestMapping(TIMED)
+public class StructuredConcurrencyControllerTimed
+    extends BaseControllerTimed<List<Ranking>> {
+}
@@ -0,0 +1,66 @@
+package edu.vandy.recommender.microservice.structuredconcurrency;
+
+import edu.vandy.recommender.common.ChunkedService;
+import jdk.incubator.concurrent.StructuredTaskScope;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * This class defines implementation methods that are called by the
+ * {@link StructuredConcurrencyController}, which serves as the main
+ * "front-end" app gateway entry point for remote clients that want to
+ * receive movie recommendations.
+ *
+ * This class implements the abstract methods in {@link
+ * ChunkedService} using a {@link StructuredTaskScope} that forks one
+ * virtual thread per chunk of the catalog and fails the whole request
+ * as soon as any chunk fails.
+ *
+ * This class is annotated as a Spring {@code @Service}, which enables
+ * the automatic detection and wiring of dependent implementation
+ * classes via classpath scanning.
+ */
+@Service
+public class StructuredConcurrencyService
+       extends ChunkedService {
+    /**
+     * Fork each chunk on its own virtual thread and join them all.
+     *
+     * @param chunkCount The number of chunks
+     * @param chunk Computes the result of the chunk with the given
+     *              index
+     * @return The results of the chunks in index order
+     */
+    @Override
+    protected <R> List<R> mapChunks(int chunkCount,
+                                    IntFunction<R> chunk) {
+        try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            List<Future<R>> futures = IntStream
+                // Emit the index of each chunk.
+                .range(0, chunkCount)
+
+                // Fork each chunk on a new virtual thread.
+                .mapToObj(index -> scope.fork(() -> chunk.apply(index)))
+                .toList();
+
+            // Wait for all chunks to finish, or for the first failure,
+            // which cancels the chunks that are still running.
+            scope.join();
+            scope.throwIfFailed(throwable -> throwable instanceof RuntimeException e
+                                ? e
+                                : new IllegalStateException(throwable));
+
+            return futures
+                .stream()
+                .map(Future::resultNow)
+                .toList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
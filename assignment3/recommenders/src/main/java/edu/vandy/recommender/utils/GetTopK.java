@@ -1,18 +1,23 @@
 package edu.vandy.recommender.utils;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.ParallelFlux;
 
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static java.util.Collections.reverseOrder;
 
 /**
  * This Java utility class efficiently finds the top {@code k} items
- * in a {@link Flux}, {@link Stream}, or {@link List} using a Java
- * {@link PriorityQueue}, which is implemented internally via a Heap
- * data structure (<a
+ * in a {@link Flux}, {@link ParallelFlux}, {@link Stream}, or {@link
+ * List} using a Java {@link PriorityQueue}, which is implemented
+ * internally via a Heap data structure (<a
  * href="http://en.wikipedia.org/wiki/Heap_(data_structure)">here</a>).
  */
 public class GetTopK {
@@ -180,6 +185,85 @@ public class GetTopK {
         }
     }
 
+    /**
+     * This method returns a {@link Flux} that emits the top {@code k}
+     * items in the {@code flux} parameter.  Each rail keeps its own
+     * bounded heap, so the rails never contend on a shared queue and
+     * the merge at the end only sees at most {@code rails * k} items
+     * instead of every item in the {@code flux}.
+     *
+     * @param flux The {@link ParallelFlux} given as input
+     * @param k The max number of items to return
+     * @return A {@link Flux} that emits the top {@code k}
+     *         items in the {@code flux} parameter
+     */
+    public static <T> Flux<T> getTopK(ParallelFlux<T> flux,
+                                      int k) {
+        if (k < 1)
+            // Return an empty Flux if k < 1.
+            return Flux.empty();
+        else
+            return GetTopK
+                // Collect the top k items of each rail into a heap
+                // that is private to the rail and merge the heaps.
+                .getTopK(flux,
+                         PriorityQueue<T>::new,
+                         (heap, item) -> offer(heap, item, k),
+                         (heap, other) -> {
+                             for (T item : other)
+                                 offer(heap, item, k);
+                             return heap;
+                         })
+
+                // Emit the top k items from highest to lowest.
+                .flatMapMany(GetTopK::convertHeapToFlux);
+    }
+
+    /**
+     * This method reduces the {@code flux} into a single bounded
+     * heap.  Each rail offers its items to a heap of its own, so the
+     * rails never contend, and the rail heaps are merged once all
+     * rails are done.  The heap can be any bounded top-k container,
+     * e.g., a {@link PriorityQueue} or a selector over primitive ids
+     * and scores.
+     *
+     * @param flux The {@link ParallelFlux} given as input
+     * @param heap Makes the empty heap of a rail
+     * @param offer Offers an item to a heap and returns the heap
+     * @param merge Merges the second heap into the first one and
+     *              returns the first one
+     * @return A {@link Mono} that emits the merged heap
+     */
+    public static <T, H> Mono<H> getTopK(ParallelFlux<T> flux,
+                                         Supplier<H> heap,
+                                         BiFunction<H, ? super T, H> offer,
+                                         BinaryOperator<H> merge) {
+        return flux
+            // Collect the items of each rail into its own heap.
+            .reduce(heap, offer)
+
+            // Merge the rail heaps into one.
+            .reduce(merge);
+    }
+
+    /**
+     * Insert the {@code item} into the {@code heap} and remove the
+     * item of lowest priority if the heap's size exceeds {@code k}.
+     *
+     * @param heap The heap containing the top k items
+     * @param item The item to insert
+     * @param k The max number of items to keep
+     * @return The {@code heap}
+     */
+    private static <T> PriorityQueue<T> offer(PriorityQueue<T> heap,
+                                              T item,
+                                              int k) {
+        heap.offer(item);
+        if (heap.size() > k)
+            heap.poll();
+        return heap;
+    }
+
     /**
      * Returns a {@link Flux} that contains the items in the queue
      * sorted from highest to lowest.
@@ -0,0 +1,195 @@
+package edu.vandy.recommender.utils;
+
+/**
+ * This Java utility class finds the top {@code k} {@code (id, score)}
+ * pairs among any number of offered pairs without allocating an
+ * object per pair.  The pairs are kept in a bounded binary min-heap
+ * that's stored in two preallocated primitive arrays, with the worst
+ * retained pair at the root, so each offer costs O(1) if the pair is
+ * rejected and O(log k) otherwise.
+ *
+ * Ties are broken in favor of the lower id, so the result doesn't
+ * depend on the order in which the pairs are offered.  This class
+ * isn't thread-safe; concurrent producers should each fill their own
+ * selector and {@link #merge(TopKSelector)} them at the end.
+ */
+public class TopKSelector {
+    /**
+     * Receives the retained pairs when the selector is drained.
+     */
+    @FunctionalInterface
+    public interface Consumer {
+        /**
+         * Accept the retained pair at position {@code rank}.
+         *
+         * @param rank The 0-based position of the pair in descending
+         *             score order
+         * @param id The id of the pair
+         * @param score The score of the pair
+         */
+        void accept(int rank, int id, double score);
+    }
+
+    /**
+     * The ids of the retained pairs in heap order.
+     */
+    private final int[] mIds;
+
+    /**
+     * The scores of the retained pairs in heap order.
+     */
+    private final double[] mScores;
+
+    /**
+     * The number of pairs currently retained.
+     */
+    private int mSize;
+
+    /**
+     * Create a selector that retains the top {@code k} pairs.
+     *
+     * @param k The max number of pairs to retain
+     */
+    public TopKSelector(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException
+                ("The selector capacity must not be negative: " + k);
+
+        mIds = new int[k];
+        mScores = new double[k];
+    }
+
+    /**
+     * @return The max number of pairs this selector retains
+     */
+    public int capacity() {
+        return mIds.length;
+    }
+
+    /**
+     * @return The number of pairs currently retained
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return True if no pairs are retained
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Offer a pair to this selector, which retains it if it's among
+     * the top {@code k} pairs offered so far.
+     *
+     * @param id The id of the pair
+     * @param score The score of the pair
+     * @return True if the pair was retained, else false
+     */
+    public boolean offer(int id, double score) {
+        if (mSize < mIds.length) {
+            mIds[mSize] = id;
+            mScores[mSize] = score;
+            siftUp(mSize++);
+            return true;
+        } else if (mSize > 0 && worse(0, id, score)) {
+            mIds[0] = id;
+            mScores[0] = score;
+            siftDown(0);
+            return true;
+        } else
+            return false;
+    }
+
+    /**
+     * Offer all pairs retained by {@code other} to this selector,
+     * which leaves {@code other} unchanged.
+     *
+     * @param other Another {@link TopKSelector}
+     * @return This selector
+     */
+    public TopKSelector merge(TopKSelector other) {
+        for (int i = 0; i < other.mSize; i++)
+            offer(other.mIds[i], other.mScores[i]);
+        return this;
+    }
+
+    /**
+     * Pass the retained pairs to the {@code consumer} in descending
+     * score order and empty this selector, so it can be reused.
+     *
+     * @param consumer The {@link Consumer} receiving the pairs
+     */
+    public void drain(Consumer consumer) {
+        // Repeatedly move the worst pair to the end of the arrays,
+        // which leaves them sorted from best to worst.
+        int size = mSize;
+        while (mSize > 1) {
+            swap(0, --mSize);
+            siftDown(0);
+        }
+
+        for (int rank = 0; rank < size; rank++)
+            consumer.accept(rank, mIds[rank], mScores[rank]);
+
+        mSize = 0;
+    }
+
+    /**
+     * Remove all retained pairs.
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * @return True if the pair at heap index {@code i} ranks below
+     *         the pair {@code (id, score)}
+     */
+    private boolean worse(int i, int id, double score) {
+        return mScores[i] < score
+            || (mScores[i] == score && mIds[i] > id);
+    }
+
+    /**
+     * Restore the min-heap order by moving entry {@code i} up.
+     */
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, mIds[parent], mScores[parent]))
+                break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Restore the min-heap order by moving entry {@code i} down.
+     */
+    private void siftDown(int i) {
+        for (int child; (child = 2 * i + 1) < mSize; i = child) {
+            if (child + 1 < mSize
+                && worse(child + 1, mIds[child], mScores[child]))
+                child++;
+            if (!worse(child, mIds[i], mScores[i]))
+                break;
+            swap(i, child);
+        }
+    }
+
+    /**
+     * Swap heap entries {@code i} and {@code j}.
+     */
+    private void swap(int i, int j) {
+        int id = mIds[i];
+        mIds[i] = mIds[j];
+        mIds[j] = id;
+
+        double score = mScores[i];
+        mScores[i] = mScores[j];
+        mScores[j] = score;
+    }
+}
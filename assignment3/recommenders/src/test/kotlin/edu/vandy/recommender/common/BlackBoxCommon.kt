@@ -3,8 +3,6 @@ package edu.vandy.recommender.common
 import edu.vandy.recommender.common.CosineSimilarityUtils.sumOfCosines
 import edu.vandy.recommender.common.model.Ranking
 import io.mockk.clearAllMocks
-import io.mockk.clearMocks
-import io.mockk.every
 import org.assertj.core.api.Assertions.assertThat
 import org.assertj.core.api.Assertions.fail
 import kotlin.math.max
@@ -16,7 +14,7 @@ import kotlin.time.measureTime
 @ExperimentalTime
 object BlackBoxCommon {
     fun getRecommendationsSingleBlackBox(
-        vectorMap: MutableMap<String, List<Double>>,
+        inject: (MovieCatalog) -> Unit,
         size: Int = 1_000,
         block: (String, Int) -> List<Ranking>
     ) {
@@ -32,12 +30,10 @@ object BlackBoxCommon {
             val input =
                 map.entries.toList()[Random.nextInt(0, map.entries.size)]
 
-            every { vectorMap.entries } answers { map.entries }
-            every { vectorMap[input.key] } answers { map[input.key] }
-            every { vectorMap.containsKey(any()) } answers { true }
+            inject(MovieCatalog.of(map))
 
             val expected =
-                vectorMap.entries
+                map.entries
                     .asSequence()
                     .filterNot { it.key == input.key }
                     .map {
@@ -66,7 +62,6 @@ object BlackBoxCommon {
             try {
                 assertThat(results).isEqualTo(expected)
             } finally {
-                clearMocks(vectorMap)
                 clearAllMocks()
             }
         }
@@ -75,7 +70,7 @@ object BlackBoxCommon {
     }
 
     fun getRecommendationsMultipleBlackBoxTest(
-        vectorMap: MutableMap<String, List<Double>>,
+        inject: (MovieCatalog) -> Unit,
         size: Int = 1_000,
         runTestCode: (List<String>, Int) -> List<Ranking>
     ) {
@@ -102,15 +97,11 @@ object BlackBoxCommon {
 
             assertThat(input.size == input.distinct().size)
 
-            every { vectorMap.entries } answers { map.entries }
-            every { vectorMap[any()] } answers {
-                map[firstArg()]
-            }
-            every { vectorMap.containsKey(any()) } answers { true }
+            inject(MovieCatalog.of(map))
 
             val expected: List<Ranking>
             val t1 = measureTime {
-                expected = vectorMap
+                expected = map
                     .asSequence()
                     .filterNot { input.contains(it.key) }
                     .map { entry ->
@@ -118,7 +109,7 @@ object BlackBoxCommon {
                                 sumOfCosines(
                                     entry.value,
                                     input,
-                                    vectorMap,
+                                    map,
                                     true
                                 )
                             Ranking(entry.key, similarity)
@@ -174,7 +165,6 @@ object BlackBoxCommon {
                 }
             }
 
-            clearMocks(vectorMap)
             clearAllMocks()
 
         }
@@ -0,0 +1,91 @@
+package edu.vandy.recommender.common
+
+import edu.vandy.recommender.common.TestCatalogs.randomMovies
+import edu.vandy.recommender.common.model.Ranking
+import edu.vandy.recommender.common.model.ShardQuery
+import edu.vandy.recommender.utils.TopKSelector
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.offset
+import org.junit.jupiter.api.Test
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import test.admin.AssignmentTests
+import java.time.Duration
+
+class BlockScannerTest : AssignmentTests() {
+    private val catalog = MovieCatalog.of(randomMovies(6 * BlockScanner.BLOCK_SIZE, 4, 5))
+
+    /**
+     * Runs the blocks one after the other on the caller's thread.
+     */
+    private val scanner = BlockScanner(3) { blockCount, maxCount, scorer ->
+        val best = TopKSelector(maxOf(0, maxCount))
+        for (block in 0 until blockCount)
+            best.merge(TopKSelector(maxOf(0, maxCount)).also { scorer.score(block, it) })
+        Mono.just(best)
+    }
+
+    @Test
+    fun `selectTop scores every block`() {
+        val watched = catalog.idOf("m42")
+        val query = catalog.vector(watched)
+
+        val selector = scanner.selectTop(catalog,
+                                         { it != watched },
+                                         { CosineSimilarityUtils.dot(catalog, it, query) },
+                                         7).block()!!
+
+        assertThat(BlockScanner.toRankings(catalog, selector).map { it.title })
+            .containsExactlyElementsOf(
+                RecallHarness.exactTopK(catalog, watched, 7).map { catalog.title(it) }
+            )
+    }
+
+    @Test
+    fun `batchGroupSize spreads the queries over the parallelism`() {
+        assertThat(scanner.batchGroupSize(0)).isEqualTo(1)
+        assertThat(scanner.batchGroupSize(7)).isEqualTo(3)
+        assertThat(scanner.batchGroupSize(10_000)).isEqualTo(BlockScanner.MAX_BATCH_GROUP)
+    }
+
+    @Test
+    fun `scanShard validates the query before scanning it`() {
+        val scan = BlockScanner.ShardScan { vector, excludedId ->
+            Flux.just(Ranking("$excludedId", vector.sumOf { it * it }))
+        }
+
+        assertThat(BlockScanner.scanShard(catalog, ShardQuery(listOf(3.0, 0.0, 0.0, 4.0), "m1", 2), scan)
+                       .collectList().block())
+            .singleElement()
+            .satisfies({
+                assertThat(it.title).isEqualTo("${catalog.idOf("m1")}")
+                assertThat(it.cosineSimilarity).isCloseTo(1.0, offset(1e-12))
+            })
+        assertThat(BlockScanner.scanShard(catalog, ShardQuery(listOf(1.0), null, 2), scan)
+                       .collectList()
+                       .onErrorResume(IllegalArgumentException::class.java) { Mono.empty() }
+                       .block())
+            .isNull()
+        assertThat(BlockScanner.scanShard(catalog, ShardQuery(listOf(1.0), null, 0), scan)
+                       .collectList().block())
+            .isEmpty()
+    }
+
+    @Test
+    fun `scanProgressively scores a round of blocks per snapshot`() {
+        val snapshots = scanner.scanProgressively(catalog, "m10", 5, null)
+            .collectList().block()!!
+
+        // 6 full blocks in rounds of 3 blocks.
+        assertThat(snapshots).hasSize(2)
+        assertThat(snapshots[0].scored)
+            .isBetween(3 * BlockScanner.BLOCK_SIZE - 1, 3 * BlockScanner.BLOCK_SIZE)
+        assertThat(snapshots[1].partial).isFalse
+        assertThat(snapshots[1].scored).isEqualTo(catalog.size() - 1)
+
+        val expired = scanner.scanProgressively(catalog, "m10", 5, Duration.ZERO)
+            .collectList().block()!!
+        assertThat(expired).hasSize(1)
+        assertThat(expired[0].partial).isTrue
+    }
+}
@@ -9,6 +9,7 @@ import org.assertj.core.api.Assertions.assertThat
 import org.junit.jupiter.api.Test
 import org.reactivestreams.Publisher
 import reactor.core.publisher.Flux
+import reactor.core.scheduler.Schedulers
 import test.admin.AssignmentTests
 import java.util.function.Function
 
@@ -29,7 +30,7 @@ class GetTopRecommendationsFluxTest: AssignmentTests() {
             firstArg<Function<Flux<Ranking>, Publisher<Ranking>>>().apply(fri)
             fro
         }
-        every { getTopRecommendationsHeap(any(), any()) } answers {
+        every { getTopRecommendationsHeap(any<Flux<Ranking>>(), any()) } answers {
             callOriginal()
         }
         every { GetTopK.getTopK<Function<Flux<Ranking>, Flux<Ranking>>>(count) } answers { func }
@@ -37,7 +38,7 @@ class GetTopRecommendationsFluxTest: AssignmentTests() {
         assertThat(getTopRecommendationsHeap(fri, count)).isSameAs(fro)
 
         verify(exactly = 1) {
-            getTopRecommendationsHeap(any(), any())
+            getTopRecommendationsHeap(any<Flux<Ranking>>(), any())
             GetTopK.getTopK<Function<Flux<Ranking>, Flux<Ranking>>>(count)
             fri.transform(any<Function<in Flux<Ranking>, out Publisher<Ranking>>>())
         }
@@ -81,4 +82,31 @@ class GetTopRecommendationsFluxTest: AssignmentTests() {
 
         confirmVerified(fri, fro, fr)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `getTopRecommendationsHeap keeps the top rankings of every rail`() {
+        val rankings = (1..1000).map { Ranking("m$it", ((it * 7919) % 1000).toDouble()) }
+        val expected = rankings.sortedByDescending { it.cosineSimilarity }.take(10)
+
+        val results = getTopRecommendationsHeap(
+            Flux.fromIterable(rankings).parallel(4).runOn(Schedulers.parallel()),
+            10
+        ).collectList().block()!!
+
+        assertThat(results).containsExactlyElementsOf(expected)
+    }
+
+    @Test
+    fun `getTopRecommendationsHeap handles small and empty rails`() {
+        val rankings = (1..3).map { Ranking("m$it", it.toDouble()) }
+
+        assertThat(
+            getTopRecommendationsHeap(Flux.fromIterable(rankings).parallel(8), 5)
+                .collectList().block()!!.map { it.title }
+        ).containsExactly("m3", "m2", "m1")
+        assertThat(
+            getTopRecommendationsHeap(Flux.fromIterable(rankings).parallel(2), 0)
+                .collectList().block()
+        ).isEmpty()
+    }
+}
@@ -0,0 +1,92 @@
+package edu.vandy.recommender.common
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.within
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import kotlin.random.Random
+
+class HnswIndexTest : AssignmentTests() {
+    private val random = Random(1)
+
+    private val catalog = MovieCatalog.of(
+        (1..2_000).associate {
+            "movie$it" to (1..16).map { random.nextDouble(-1.0, 1.0) }
+        }
+    )
+
+    @Test
+    fun `search has high recall against the exhaustive scan`() {
+        val index = HnswIndex(catalog, 16, 200, 64, 42)
+
+        val recall = RecallHarness.recallAtK(
+            catalog,
+            { id, k -> index.searchById(id, k).ids() },
+            10,
+            100,
+            7
+        )
+
+        assertThat(recall).isGreaterThan(0.9)
+    }
+
+    @Test
+    fun `searchById excludes the query and orders by similarity`() {
+        val index = HnswIndex(catalog, 8, 100, 32, 42)
+        val result = index.searchById(5, 20)
+
+        assertThat(result.size()).isEqualTo(20)
+        assertThat(result.ids()).doesNotContain(5)
+        assertThat(result.scores().toList())
+            .isSortedAccordingTo(Comparator.reverseOrder())
+        result.ids().forEachIndexed { i, id ->
+            assertThat(result.scores()[i]).isCloseTo(
+                CosineSimilarityUtils.dot(
+                    catalog.vectors(), catalog.offset(5),
+                    catalog.vectors(), catalog.offset(id),
+                    catalog.dimension()
+                ),
+                within(1e-12)
+            )
+        }
+    }
+
+    @Test
+    fun `concurrent searches match sequential ones`() {
+        val index = HnswIndex(catalog, 8, 100, 32, 42)
+        val expected = (0 until 200).map { index.searchById(it, 10).ids().toList() }
+
+        val results = (0 until 200).toList().parallelStream()
+            .map { index.searchById(it, 10).ids().toList() }
+            .toList()
+
+        assertThat(results).isEqualTo(expected)
+    }
+
+    @Test
+    fun `rebuild indexes another catalog with the same parameters`() {
+        val index = HnswIndex(catalog, 8, 100, 32, 42)
+        val other = MovieCatalog.of(
+            (1..500).associate { "other$it" to (1..16).map { random.nextDouble(-1.0, 1.0) } }
+        )
+
+        val rebuilt = index.rebuild(other)
+
+        assertThat(rebuilt.catalog).isSameAs(other)
+        assertThat(rebuilt.m).isEqualTo(index.m)
+        assertThat(rebuilt.efSearch).isEqualTo(index.efSearch)
+        assertThat(rebuilt.searchById(3, 10).ids())
+            .isEqualTo(HnswIndex(other, 8, 100, 32, 42).searchById(3, 10).ids())
+    }
+
+    @Test
+    fun `search handles tiny catalogs`() {
+        val tiny = MovieCatalog.of(mapOf("a" to listOf(1.0, 0.0)))
+        val index = HnswIndex(tiny, 4, 10, 10, 42)
+
+        assertThat(index.searchById(0, 5).size()).isEqualTo(0)
+        assertThat(HnswIndex(MovieCatalog.empty(), 4, 10, 10, 42)
+                       .search(doubleArrayOf(), 0, 5, 10, -1)
+                       .size()).isEqualTo(0)
+    }
+}
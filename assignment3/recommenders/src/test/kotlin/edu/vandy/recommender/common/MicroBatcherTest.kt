@@ -0,0 +1,133 @@
+package edu.vandy.recommender.common
+
+import edu.vandy.recommender.utils.TopKSelector
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.every
+import io.mockk.mockk
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.springframework.beans.factory.ObjectProvider
+import test.admin.AssignmentTests
+import java.time.Duration
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import kotlin.random.Random
+
+class MicroBatcherTest : AssignmentTests() {
+    private val random = Random(11)
+
+    private fun catalog(size: Int) = MovieCatalog.of(
+        (1..size).associate {
+            "movie$it" to (1..8).map { random.nextDouble(-1.0, 1.0) }
+        }
+    )
+
+    private val batches = mutableListOf<Int>()
+
+    private val listener = MicroBatcher.Listener { size, _, _ ->
+        synchronized(batches) { batches.add(size) }
+    }
+
+    /**
+     * The listener is called after the results of a batch complete,
+     * so wait until it has seen [count] batches.
+     */
+    private fun awaitBatches(count: Int): List<Int> {
+        val deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos()
+        while (synchronized(batches) { batches.size } < count && System.nanoTime() < deadline)
+            Thread.sleep(1)
+        return synchronized(batches) { batches.toList() }
+    }
+
+    private fun ids(selector: TopKSelector): List<Int> {
+        val ids = mutableListOf<Int>()
+        selector.drain { _, id, _ -> ids.add(id) }
+        return ids
+    }
+
+    @Test
+    fun `full batches are scored at once in parallel slices`() {
+        val catalog = catalog(10_000)
+        val pool = Executors.newFixedThreadPool(4)
+        MicroBatcher(Duration.ofMinutes(1), 3, 4, pool, listener).use { batcher ->
+            val results = (0 until 6).map {
+                batcher.submit(catalog, catalog.vector(it), it, 10)
+            }
+
+            results.forEachIndexed { id, result ->
+                assertThat(ids(result.join()))
+                    .containsExactlyElementsOf(RecallHarness.exactTopK(catalog, id, 10).toList())
+            }
+        }
+        pool.shutdown()
+
+        assertThat(awaitBatches(2)).containsExactly(3, 3)
+    }
+
+    @Test
+    fun `a catalog of a few thousand movies is split into several slices`() {
+        val catalog = catalog(4_800)
+        var slices = 0
+        val counting = Executor { slices++; it.run() }
+        MicroBatcher(Duration.ofMinutes(1), 1, 8, counting, null).use { batcher ->
+            val result = batcher.submit(catalog, catalog.vector(7), 7, 10)
+
+            assertThat(ids(result.join()))
+                .containsExactlyElementsOf(RecallHarness.exactTopK(catalog, 7, 10).toList())
+        }
+
+        assertThat(slices).isEqualTo(8)
+    }
+
+    @Test
+    fun `partial batches are scored when the window expires`() {
+        val first = catalog(50)
+        val second = catalog(20)
+        MicroBatcher(Duration.ofMillis(200), 64, 2, Executor { it.run() }, listener).use { batcher ->
+            val a = batcher.submit(first, first.vector(3), 3, 5)
+            val b = batcher.submit(second, second.vector(4), -1, 5)
+            val empty = batcher.submit(first, first.vector(3), 3, 0)
+
+            assertThat(ids(a.join())).containsExactlyElementsOf(RecallHarness.exactTopK(first, 3, 5).toList())
+            assertThat(ids(b.join()).first()).isEqualTo(4)
+            assertThat(empty.join().isEmpty).isTrue
+        }
+
+        assertThat(awaitBatches(1)).containsExactly(3)
+    }
+
+    @Test
+    fun `closing fails pending queries`() {
+        val catalog = catalog(10)
+        val batcher = MicroBatcher(Duration.ofMinutes(1), 64, 1, Executor { it.run() }, null)
+        val pending = batcher.submit(catalog, catalog.vector(0), 0, 5)
+
+        batcher.close()
+
+        assertThat(runCatching { pending.join() }.exceptionOrNull())
+            .isInstanceOf(CompletionException::class.java)
+        assertThat((1..9).map { MicroBatcher.sizeBucket(it) })
+            .containsExactly("1", "2-3", "2-3", "4-7", "4-7", "4-7", "4-7", "8-15", "8-15")
+    }
+
+    @Test
+    fun `the bean registers its meters once per size bucket`() {
+        val registry = SimpleMeterRegistry()
+        val provider = mockk<ObjectProvider<MeterRegistry>>()
+        every { provider.getIfAvailable() } returns registry
+        val catalog = catalog(100)
+
+        ServerBeans().getMicroBatcher(Duration.ofMinutes(1), 6, provider).use { batcher ->
+            assertThat(registry.meters.map { it.id.getTag("size") })
+                .containsExactlyInAnyOrder(null, "1", "1", "2-3", "2-3", "4-7", "4-7")
+
+            (0 until 12)
+                .map { batcher.submit(catalog, catalog.vector(it), it, 5) }
+                .forEach { it.join() }
+        }
+
+        assertThat(registry.meters).hasSize(7)
+    }
+}
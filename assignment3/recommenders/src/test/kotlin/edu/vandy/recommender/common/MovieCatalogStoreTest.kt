@@ -0,0 +1,56 @@
+package edu.vandy.recommender.common
+
+import edu.vandy.recommender.common.model.CatalogDelta
+import edu.vandy.recommender.common.model.Movie
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+
+class MovieCatalogStoreTest : AssignmentTests() {
+    private val catalog = MovieCatalog.of(
+        mapOf("a" to listOf(1.0, 0.0), "b" to listOf(0.0, 1.0))
+    )
+
+    private val requests = mutableListOf<Pair<String?, Long>>()
+
+    private val deltas = ArrayDeque<CatalogDelta>()
+
+    private val store = MovieCatalogStore(catalog) { epoch, since ->
+        requests.add(epoch to since)
+        deltas.removeFirst()
+    }
+
+    @Test
+    fun `sync applies deltas from the current version`() {
+        deltas.add(CatalogDelta("e", 0, 2, false, listOf(Movie("c", listOf(1.0, 1.0))), listOf("a")))
+        deltas.add(CatalogDelta("e", 2, 2, false, listOf(), listOf()))
+        deltas.add(CatalogDelta("e", 2, 3, false, listOf(Movie("b", listOf(2.0, 0.0))), listOf()))
+
+        assertThat(store.sync()).isTrue
+        assertThat(store.catalog.titles()).containsExactly("b", "c")
+        assertThat(store.version).isEqualTo(2)
+
+        val synced = store.catalog
+        assertThat(store.sync()).isFalse
+        assertThat(store.catalog).isSameAs(synced)
+
+        assertThat(store.sync()).isTrue
+        assertThat(store.catalog.vector(0)).containsExactly(1.0, 0.0)
+        assertThat(requests).containsExactly(null to 0L, "e" to 2L, "e" to 2L)
+        assertThat(catalog.titles()).containsExactly("a", "b")
+    }
+
+    @Test
+    fun `stale deltas are ignored and resets replace the catalog`() {
+        store.apply(CatalogDelta("e", 0, 1, false, listOf(), listOf("b")))
+
+        assertThat(store.apply(CatalogDelta("e", 0, 2, false, listOf(), listOf("a")))).isFalse
+        assertThat(store.apply(CatalogDelta("f", 1, 2, false, listOf(), listOf("a")))).isFalse
+        assertThat(store.catalog.titles()).containsExactly("a")
+
+        assertThat(store.apply(CatalogDelta("f", 1, 7, true, listOf(Movie("z", listOf(3.0, 4.0))), listOf())))
+            .isTrue
+        assertThat(store.catalog.titles()).containsExactly("z")
+        assertThat(store.version).isEqualTo(7)
+    }
+}
@@ -0,0 +1,67 @@
+package edu.vandy.recommender.common
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.api.Assertions.within
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import kotlin.random.Random
+
+class NeighborTableTest : AssignmentTests() {
+    private val random = Random(3)
+
+    private val catalog = MovieCatalog.of(
+        (1..500).associate {
+            "movie$it" to (1..12).map { random.nextDouble(-1.0, 1.0) }
+        }
+    )
+
+    @Test
+    fun `build matches the exhaustive scan`() {
+        val table = NeighborTable(catalog, 10)
+
+        assertThat(table.isReady).isFalse
+        table.build()
+        assertThat(table.isReady).isTrue
+        assertThat(table.builtRows).isEqualTo(catalog.size())
+        assertThat(table.progress).isEqualTo(1.0)
+
+        listOf(0, 17, 499).forEach { id ->
+            val rankings = table.getRecommendations(id, 10)
+            val expected = RecallHarness.exactTopK(catalog, id, 10)
+
+            assertThat(rankings.map { it.title })
+                .containsExactlyElementsOf(expected.map { catalog.title(it) })
+            rankings.forEach {
+                assertThat(it.cosineSimilarity).isCloseTo(
+                    CosineSimilarityUtils.cosineSimilarity(
+                        catalog, id, catalog.vector(catalog.idOf(it.title))
+                    ),
+                    within(1e-6)
+                )
+            }
+        }
+    }
+
+    @Test
+    fun `getRecommendations returns a prefix of the row`() {
+        val table = NeighborTable(catalog, 10).build()
+
+        assertThat(table.getRecommendations(3, 4))
+            .containsExactlyElementsOf(table.getRecommendations(3, 10).take(4))
+    }
+
+    @Test
+    fun `getRecommendations fails until the table is built`() {
+        assertThatThrownBy { NeighborTable(catalog, 10).getRecommendations(0, 1) }
+            .isInstanceOf(IllegalStateException::class.java)
+    }
+
+    @Test
+    fun `k is capped by the catalog size`() {
+        val small = MovieCatalog.of(mapOf("a" to listOf(1.0), "b" to listOf(2.0)))
+
+        assertThat(NeighborTable(small, 10).k).isEqualTo(1)
+        assertThat(NeighborTable(MovieCatalog.empty(), 10).build().k).isEqualTo(0)
+    }
+}
@@ -0,0 +1,65 @@
+package edu.vandy.recommender.common
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.api.Assertions.within
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import kotlin.random.Random
+
+class QuantizedCatalogTest : AssignmentTests() {
+    private val random = Random(1)
+
+    private val catalog = MovieCatalog.of(
+        (1..2_000).associate {
+            "movie$it" to (1..16).map { random.nextDouble(-1.0, 1.0) }
+        }
+    )
+
+    @Test
+    fun `quantized similarities approximate the exact ones`() {
+        val quantized = QuantizedCatalog(catalog, 1)
+
+        for (a in 0 until 50)
+            for (b in 0 until 50)
+                assertThat(quantized.dot(a, b)).isCloseTo(
+                    CosineSimilarityUtils.dot(
+                        catalog.vectors(), catalog.offset(a),
+                        catalog.vectors(), catalog.offset(b),
+                        catalog.dimension()
+                    ),
+                    within(0.02)
+                )
+    }
+
+    @Test
+    fun `re-ranking more candidates raises recall against the exhaustive scan`() {
+        fun recall(multiplier: Int) = RecallHarness.recallAtK(
+            catalog,
+            QuantizedCatalog(catalog, multiplier)::searchById,
+            10,
+            100,
+            7
+        )
+
+        val single = recall(1)
+        val reranked = recall(4)
+
+        assertThat(reranked).isGreaterThan(0.98).isGreaterThanOrEqualTo(single)
+    }
+
+    @Test
+    fun `searchById excludes the query and handles tiny catalogs`() {
+        assertThat(QuantizedCatalog(catalog, 2).searchById(5, 20))
+            .hasSize(20)
+            .doesNotContain(5)
+            .containsExactly(*RecallHarness.exactTopK(catalog, 5, 20))
+
+        val tiny = MovieCatalog.of(mapOf("a" to listOf(1.0, 0.0)))
+        assertThat(QuantizedCatalog(tiny, 4).searchById(0, 5)).isEmpty()
+        assertThat(QuantizedCatalog(MovieCatalog.empty(), 4).candidateCount(5)).isZero
+
+        assertThatThrownBy { QuantizedCatalog(catalog, 0) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+    }
+}
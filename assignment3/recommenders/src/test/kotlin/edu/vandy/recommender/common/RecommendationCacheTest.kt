@@ -0,0 +1,55 @@
+package edu.vandy.recommender.common
+
+import edu.vandy.recommender.common.model.Ranking
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+
+class RecommendationCacheTest : AssignmentTests() {
+    private val catalog = MovieCatalog.of(mapOf("a" to listOf(1.0), "b" to listOf(2.0)))
+
+    private val loads = mutableListOf<Int>()
+
+    private fun load(count: Int): CompletableFuture<List<Ranking>> {
+        loads.add(count)
+        return CompletableFuture.completedFuture(
+            List(count) { Ranking("r$it", 1.0 - it / 100.0) }
+        )
+    }
+
+    @Test
+    fun `cache serves smaller requests by prefix and bypasses larger ones`() {
+        val cache = RecommendationCache(10, Duration.ofMinutes(1), 5)
+
+        assertThat(cache.get(catalog, "a", 2, ::load).join().map { it.title })
+            .containsExactly("r0", "r1")
+        assertThat(cache.get(catalog, "a", 5, ::load).join()).hasSize(5)
+        assertThat(cache.get(catalog, "a", 8, ::load).join()).hasSize(8)
+        assertThat(cache.get(catalog, "a", 0, ::load).join()).isEmpty()
+
+        assertThat(loads).containsExactly(5, 8)
+        assertThat(cache.cache.synchronous().stats().hitCount()).isEqualTo(1)
+    }
+
+    @Test
+    fun `cache discards entries when the catalog is reloaded`() {
+        val cache = RecommendationCache(10, Duration.ofMinutes(1), 5)
+        val reloaded = MovieCatalog.of(mapOf("a" to listOf(1.0)))
+
+        cache.get(catalog, "a", 3, ::load).join()
+        cache.get(reloaded, "a", 3, ::load).join()
+        cache.get(reloaded, "a", 3, ::load).join()
+
+        assertThat(loads).containsExactly(5, 5)
+        assertThat(cache.cache.synchronous().estimatedSize()).isEqualTo(1)
+
+        cache.invalidateAll()
+        cache.get(reloaded, "a", 3, ::load).join()
+        assertThat(loads).containsExactly(5, 5, 5)
+        assertThatThrownBy { RecommendationCache(10, Duration.ofMinutes(1), 0) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+    }
+}
@@ -0,0 +1,65 @@
+package edu.vandy.recommender.common
+
+import edu.vandy.recommender.common.model.Ranking
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+
+class RequestCoalescerTest : AssignmentTests() {
+    private val catalog = MovieCatalog.of(mapOf("a" to listOf(1.0), "b" to listOf(2.0)))
+
+    private val loads = mutableListOf<CompletableFuture<List<Ranking>>>()
+
+    private fun load(): CompletableFuture<List<Ranking>> =
+        CompletableFuture<List<Ranking>>().also { loads.add(it) }
+
+    @Test
+    fun `identical concurrent requests share one computation`() {
+        val coalescer = RequestCoalescer()
+
+        val first = coalescer.execute(catalog, "multi", intArrayOf(1, 0), 5, ::load)
+        val second = coalescer.execute(catalog, "multi", intArrayOf(0, 1), 5, ::load)
+        val other = coalescer.execute(catalog, "single", intArrayOf(0, 1), 5, ::load)
+        coalescer.execute(catalog, "multi", intArrayOf(0, 1), 6, ::load)
+        coalescer.execute(MovieCatalog.of(mapOf("a" to listOf(1.0))), "multi", intArrayOf(0, 1), 5, ::load)
+
+        assertThat(loads).hasSize(4)
+        assertThat(coalescer.computedCount).isEqualTo(4)
+        assertThat(coalescer.coalescedCount).isEqualTo(1)
+        assertThat(coalescer.inFlightCount).isEqualTo(4)
+
+        // Cancelling one caller's future doesn't affect the others.
+        first.cancel(true)
+        loads[0].complete(listOf(Ranking("b", 1.0)))
+        assertThat(second.join().map { it.title }).containsExactly("b")
+        assertThat(other).isNotDone
+
+        // A request after the computation completes starts a new one.
+        coalescer.execute(catalog, "multi", intArrayOf(0, 1), 5, ::load)
+        assertThat(loads).hasSize(5)
+        assertThat(coalescer.inFlightCount).isEqualTo(4)
+    }
+
+    @Test
+    fun `failures are shared and forgotten`() {
+        val coalescer = RequestCoalescer()
+
+        val first = coalescer.execute(catalog, "single", intArrayOf(0), 5, ::load)
+        val second = coalescer.execute(catalog, "single", intArrayOf(0), 5, ::load)
+        loads[0].completeExceptionally(IllegalStateException("boom"))
+
+        listOf(first, second).forEach {
+            assertThat(runCatching { it.join() }.exceptionOrNull())
+                .isInstanceOf(CompletionException::class.java)
+                .hasRootCauseInstanceOf(IllegalStateException::class.java)
+        }
+
+        val thrown = coalescer.execute(catalog, "single", intArrayOf(0), 5) {
+            throw IllegalArgumentException("bad")
+        }
+        assertThat(thrown).isCompletedExceptionally
+        assertThat(coalescer.inFlightCount).isZero
+    }
+}
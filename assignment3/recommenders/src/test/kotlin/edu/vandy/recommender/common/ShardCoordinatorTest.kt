@@ -0,0 +1,110 @@
+package edu.vandy.recommender.common
+
+import edu.vandy.recommender.common.model.Ranking
+import edu.vandy.recommender.common.model.ShardQuery
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import test.admin.AssignmentTests
+import java.time.Duration
+import kotlin.random.Random
+
+class ShardCoordinatorTest : AssignmentTests() {
+    private val random = Random(3)
+
+    private val map = (1..600).associate {
+        "m$it" to (1..6).map { random.nextDouble(-1.0, 1.0) }
+    }
+
+    private val catalog = MovieCatalog.of(map)
+
+    private val shards = (0 until 3).map { shard ->
+        MovieCatalog.of(map.filterKeys { ShardPartition(shard, 3).owns(it) })
+    }
+
+    /**
+     * Scans the catalog of each shard, unless the shard is [down] or
+     * [stalled].
+     */
+    private inner class FakeClient(val down: Set<Int> = setOf(),
+                                   val stalled: Set<Int> = setOf()) :
+        ShardCoordinator.ShardClient {
+        override fun getMovieVector(shard: Int, title: String): Mono<List<Double>> =
+            answer(shard, Mono.justOrEmpty<List<Double>>(
+                shards[shard].idOf(title).takeIf { it >= 0 }?.let {
+                    shards[shard].vector(it).toList()
+                }
+            ))
+
+        override fun getRecommendations(shard: Int, query: ShardQuery): Flux<Ranking> {
+            val local = shards[shard]
+            val vector = CosineSimilarityUtils.normalize(query.vector.toDoubleArray())
+            return answer(shard, Mono.just(
+                (0 until local.size())
+                    .filter { local.title(it) != query.excludedMovie }
+                    .map { Ranking(local.title(it), CosineSimilarityUtils.dot(local, it, vector)) }
+                    .sortedByDescending { it.cosineSimilarity }
+                    .take(query.maxCount)
+            )).flatMapIterable { it }
+        }
+
+        fun <T : Any> answer(shard: Int, result: Mono<T>): Mono<T> = when (shard) {
+            in down -> Mono.error(IllegalStateException("shard $shard is down"))
+            in stalled -> Mono.never()
+            else -> result
+        }
+    }
+
+    private fun exactTopK(title: String, k: Int, shardsLeft: Collection<Int> = listOf(0, 1, 2)) =
+        RecallHarness.exactTopK(catalog, catalog.idOf(title), catalog.size())
+            .map { catalog.title(it) }
+            .filter { ShardPartition.shardOf(it, 3) in shardsLeft }
+            .take(k)
+
+    @Test
+    fun `merged shard results match the unsharded scan`() {
+        val coordinator = ShardCoordinator(FakeClient(), 3, Duration.ofSeconds(5))
+
+        map.keys.shuffled(random).take(20).forEach { title ->
+            val result = coordinator.getRecommendations(title, 10).block()!!
+
+            assertThat(result.partial).isFalse
+            assertThat(result.shards).isEqualTo(3)
+            assertThat(result.missingShards).isEmpty()
+            assertThat(result.rankings.map { it.title })
+                .containsExactlyElementsOf(exactTopK(title, 10))
+        }
+    }
+
+    @Test
+    fun `slow or failed shards are left out of a partial result`() {
+        val title = map.keys.first { ShardPartition.shardOf(it, 3) == 0 }
+        val coordinator = ShardCoordinator(FakeClient(down = setOf(1), stalled = setOf(2)),
+                                           3,
+                                           Duration.ofMillis(100))
+
+        val result = coordinator.getRecommendations(title, 10).block()!!
+
+        assertThat(result.partial).isTrue
+        assertThat(result.missingShards).containsExactly(1, 2)
+        assertThat(result.rankings.map { it.title })
+            .containsExactlyElementsOf(exactTopK(title, 10, listOf(0)))
+    }
+
+    @Test
+    fun `unknown movies and unavailable owners return no recommendations`() {
+        val title = map.keys.first { ShardPartition.shardOf(it, 3) == 1 }
+
+        val unknown = ShardCoordinator(FakeClient(), 3, Duration.ofSeconds(5))
+            .getRecommendations("unknown", 10).block()!!
+        assertThat(unknown.rankings).isEmpty()
+        assertThat(unknown.partial).isFalse
+
+        val ownerDown = ShardCoordinator(FakeClient(stalled = setOf(1)), 3, Duration.ofMillis(100))
+            .getRecommendations(title, 10).block()!!
+        assertThat(ownerDown.rankings).isEmpty()
+        assertThat(ownerDown.partial).isTrue
+        assertThat(ownerDown.missingShards).containsExactly(1)
+    }
+}
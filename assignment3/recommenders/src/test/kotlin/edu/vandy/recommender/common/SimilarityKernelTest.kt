@@ -0,0 +1,54 @@
+package edu.vandy.recommender.common
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.api.Assertions.within
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import kotlin.random.Random
+
+class SimilarityKernelTest : AssignmentTests() {
+    private val kernels = listOf(
+        ScalarSimilarityKernel(),
+        VectorSimilarityKernel()
+    )
+
+    @Test
+    fun `kernels match the stream-based cosine similarity`() {
+        // Odd lengths exercise the non-vectorized tail loop.
+        listOf(1, 3, 20, 37, 300).forEach { dimension ->
+            val a = (1..dimension).map { Random.nextDouble(-0.9, 0.9) }
+            val b = (1..dimension).map { Random.nextDouble(-0.9, 0.9) }
+            val expected = CosineSimilarityUtils.cosineSimilarity(a, b, false)
+            val na = CosineSimilarityUtils.normalize(a.toDoubleArray())
+            val nb = CosineSimilarityUtils.normalize(b.toDoubleArray())
+
+            kernels.forEach {
+                assertThat(it.dot(na, 0, nb, 0, dimension))
+                    .isCloseTo(expected, within(1e-12))
+            }
+        }
+    }
+
+    @Test
+    fun `kernels honor offsets`() {
+        val a = doubleArrayOf(9.0, 9.0, 1.0, 2.0, 3.0)
+        val b = doubleArrayOf(4.0, 5.0, 6.0, 9.0)
+
+        kernels.forEach {
+            assertThat(it.dot(a, 2, b, 0, 3)).isEqualTo(32.0)
+        }
+    }
+
+    @Test
+    fun `select returns the requested kernel`() {
+        assertThat(SimilarityKernel.select("scalar"))
+            .isInstanceOf(ScalarSimilarityKernel::class.java)
+        assertThat(SimilarityKernel.select("Vector"))
+            .isInstanceOf(VectorSimilarityKernel::class.java)
+        assertThat(SimilarityKernel.select("auto"))
+            .isInstanceOf(VectorSimilarityKernel::class.java)
+        assertThatThrownBy { SimilarityKernel.select("gpu") }
+            .isInstanceOf(IllegalArgumentException::class.java)
+    }
+}
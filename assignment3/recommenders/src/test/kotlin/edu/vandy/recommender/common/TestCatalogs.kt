@@ -0,0 +1,60 @@
+package edu.vandy.recommender.common
+
+import io.mockk.every
+import io.mockk.mockk
+import org.springframework.beans.factory.ObjectProvider
+import test.admin.injectInto
+import kotlin.random.Random
+
+/**
+ * Catalog fixtures shared by the recommender service tests.
+ */
+object TestCatalogs {
+    /**
+     * @return The movies "m1" to "m[size]", whose vectors only differ
+     *         in their first component, so every movie has distinct
+     *         and predictable neighbors
+     */
+    fun linearMovies(size: Int = 50): Map<String, List<Double>> =
+        (1..size).associate { "m$it" to listOf(it.toDouble(), 2.0, -3.0, 1.0) }
+
+    /**
+     * @return The movies "m1" to "m[size]" with reproducible random
+     *         vectors of [dimension] components in [-1, 1)
+     */
+    fun randomMovies(
+        size: Int,
+        dimension: Int,
+        seed: Int
+    ): Map<String, List<Double>> {
+        val random = Random(seed)
+        return (1..size).associate {
+            "m$it" to (1..dimension).map { random.nextDouble(-1.0, 1.0) }
+        }
+    }
+
+    /**
+     * Injects a [MovieCatalog] of [movies] into the [service].
+     *
+     * @return The injected catalog
+     */
+    fun inject(service: BaseService<*>, movies: Map<String, List<Double>>): MovieCatalog =
+        MovieCatalog.of(movies).also { it.injectInto(service) }
+
+    /**
+     * Injects a mocked [ObjectProvider] that supplies the receiver
+     * into the [field] of the [service], as if the optional bean
+     * were enabled.
+     *
+     * @return The receiver
+     */
+    inline fun <reified T : Any> T.provideTo(service: BaseService<*>, field: String): T {
+        val value = this
+        mockk<ObjectProvider<T>>().also {
+            every { it.getIfAvailable() } returns value
+            every { it.getObject() } returns value
+            it.injectInto(service, field)
+        }
+        return value
+    }
+}
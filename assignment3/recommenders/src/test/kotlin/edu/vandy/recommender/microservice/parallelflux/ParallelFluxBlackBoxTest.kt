@@ -3,20 +3,22 @@ package edu.vandy.recommender.microservice.parallelflux
 import com.ninjasquad.springmockk.MockkBean
 import com.ninjasquad.springmockk.SpykBean
 import edu.vandy.recommender.common.BlackBoxCommon
+import edu.vandy.recommender.common.MovieCatalog
 import edu.vandy.recommender.common.ServerBeans
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.Timeout
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest
 import org.springframework.test.context.ContextConfiguration
 import test.admin.AssignmentTests
+import test.admin.injectInto
 import kotlin.time.ExperimentalTime
 
 @ExperimentalTime
 @WebMvcTest
 @ContextConfiguration(classes = [ParallelFluxService::class, ServerBeans::class])
 class ParallelFluxBlackBoxTest : AssignmentTests() {
-    @MockkBean(name = "movieMap")
-    lateinit var vectorMap: MutableMap<String, List<Double>>
+    @MockkBean(name = "movieCatalog")
+    lateinit var catalog: MovieCatalog
 
     @SpykBean
     lateinit var service: ParallelFluxService
@@ -25,7 +27,7 @@ class ParallelFluxBlackBoxTest : AssignmentTests() {
     @Timeout(60)
     fun `getRecommendations(single input) BlackBox test with random data set`() {
         BlackBoxCommon.getRecommendationsSingleBlackBox(
-            vectorMap
+            { it.injectInto(service) }
         ) { input, max ->
             requireNotNull(
                 service.getRecommendations(input, max).collectList().block()
@@ -37,7 +39,7 @@ class ParallelFluxBlackBoxTest : AssignmentTests() {
     @Timeout(60)
     fun `getRecommendations(multiple input) BlackBox test with random data set`() {
         BlackBoxCommon.getRecommendationsMultipleBlackBoxTest(
-            vectorMap
+            { it.injectInto(service) }
         ) { input, max ->
             requireNotNull(
                 service.getRecommendations(input, max).collectList().block()
@@ -2,27 +2,48 @@ package edu.vandy.recommender.microservice.parallelflux
 
 import edu.vandy.recommender.common.Converters
 import edu.vandy.recommender.common.CosineSimilarityUtils
-import edu.vandy.recommender.common.GetTopRecommendationsFlux
-import edu.vandy.recommender.common.GetTopRecommendationsFlux.getTopRecommendationsHeap
-import edu.vandy.recommender.common.GetTopRecommendationsFlux.getTopRecommendationsSort
+import edu.vandy.recommender.common.HnswIndex
+import edu.vandy.recommender.common.MicroBatcher
+import edu.vandy.recommender.common.MovieCatalog
+import edu.vandy.recommender.common.MovieCatalogStore
+import edu.vandy.recommender.common.NeighborTable
+import edu.vandy.recommender.common.QuantizedCatalog
+import edu.vandy.recommender.common.RecallHarness
+import edu.vandy.recommender.common.RecommendationCache
+import edu.vandy.recommender.common.RecommenderMode
+import edu.vandy.recommender.common.RequestCoalescer
 import edu.vandy.recommender.common.ServerBeans
+import edu.vandy.recommender.common.TestCatalogs.inject
+import edu.vandy.recommender.common.TestCatalogs.linearMovies
+import edu.vandy.recommender.common.TestCatalogs.provideTo
+import edu.vandy.recommender.common.TestCatalogs.randomMovies
+import edu.vandy.recommender.common.TitleIndex
+import edu.vandy.recommender.common.model.CatalogDelta
+import edu.vandy.recommender.common.model.Movie
 import edu.vandy.recommender.common.model.Ranking
+import edu.vandy.recommender.common.model.ShardQuery
+import edu.vandy.recommender.common.model.ShardedRecommendations
 import io.mockk.*
 import io.mockk.impl.annotations.MockK
 import io.mockk.impl.annotations.SpyK
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.fail
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest
 import org.springframework.test.context.ContextConfiguration
+import org.springframework.web.server.ResponseStatusException
 import reactor.core.publisher.Flux
-import reactor.core.publisher.ParallelFlux
 import reactor.core.scheduler.Scheduler
 import reactor.core.scheduler.Schedulers
 import test.admin.AssignmentTests
 import test.admin.injectInto
-import java.util.function.Function
-import java.util.function.Predicate
+import test.admin.setField
+import kotlin.random.Random
+import org.assertj.core.api.Assertions.within
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.IntPredicate
 
 /**
  * These use mocking to isolate and test only the service component.
@@ -31,7 +52,7 @@ import java.util.function.Predicate
 @ContextConfiguration(classes = [ParallelFluxService::class, ServerBeans::class])
 internal class ParallelFluxServiceTest : AssignmentTests() {
     @MockK
-    lateinit var vectorMap: MutableMap<String, List<Double>>
+    lateinit var catalog: MovieCatalog
 
     @SpyK
     var service = ParallelFluxService()
@@ -60,19 +81,19 @@ internal class ParallelFluxServiceTest : AssignmentTests() {
 
         mockkStatic(Converters::class)
         every { Converters.titles2Rankings(any()) } answers { lr }
-        vectorMap.injectInto(service)
+        catalog.injectInto(service)
         mockkStatic(CosineSimilarityUtils::class)
     }
 
     @Test
     fun `getRecommendations handles unknown watched movie`() {
-        val vectorMap = mutableMapOf(
-            "1" to listOf(1.0, 2.0, 3.0),
-            "2" to listOf(2.0, 3.0, 4.0),
-            "3" to listOf(3.0, 4.0, 5.0)
-        ).also {
-            it.injectInto(service)
-        }
+        MovieCatalog.of(
+            mutableMapOf(
+                "1" to listOf(1.0, 2.0, 3.0),
+                "2" to listOf(2.0, 3.0, 4.0),
+                "3" to listOf(3.0, 4.0, 5.0)
+            )
+        ).injectInto(service)
         assertThat(
             service.getRecommendations("?", 10).collectList().block()
         ).isEmpty()
@@ -80,13 +101,13 @@ internal class ParallelFluxServiceTest : AssignmentTests() {
 
     @Test
     fun `getRecommendations(multiple) handles unknown watched movies`() {
-        val vectorMap = mutableMapOf(
-            "1" to listOf(1.0, 2.0, 3.0),
-            "2" to listOf(2.0, 3.0, 4.0),
-            "3" to listOf(3.0, 4.0, 5.0)
-        ).also {
-            it.injectInto(service)
-        }
+        MovieCatalog.of(
+            mutableMapOf(
+                "1" to listOf(1.0, 2.0, 3.0),
+                "2" to listOf(2.0, 3.0, 4.0),
+                "3" to listOf(3.0, 4.0, 5.0)
+            )
+        ).injectInto(service)
         assertThat(
             service.getRecommendations(mutableListOf("?", "?"), 10)
                 .collectList().block()
@@ -96,17 +117,19 @@ internal class ParallelFluxServiceTest : AssignmentTests() {
     @Test
     fun `allMovies uses correct implementation and returns expected results`() {
         val fr = mockk<Flux<Ranking>>()
+        val titles = keys.toList()
         mockkStatic(Flux::class)
         every { Flux.fromIterable<Ranking>(any()) }.answers { fr }
-        every { vectorMap.keys } answers { keys }
+        every { catalog.titles() } answers { titles }
 
         assertThat(service.allMovies).isSameAs(fr)
 
         verify(exactly = 1) {
-            vectorMap.keys
+            catalog.titles()
             Flux.fromIterable<Ranking>(any())
             service.allMovies
-            Converters.titles2Rankings(any())
+            service["getCatalog"]()
+            Converters.titles2Rankings(titles)
         }
         confirmVerified(fr, service)
     }
@@ -115,238 +138,441 @@ internal class ParallelFluxServiceTest : AssignmentTests() {
     fun `search uses correct implementation and returns expected results`() {
         val input = "mock"
         val fr = mockk<Flux<Ranking>>()
-        val pfs = mockk<ParallelFlux<String>>()
-        val pfr = mockk<ParallelFlux<Ranking>>()
-        val r1 = mockk<Ranking>()
-        val r2 = mockk<Ranking>()
+        val index = TitleIndex(listOf("aMock", "Moc", "mocking"))
 
-        mockkStatic(Comparator::class)
         mockkStatic(Flux::class)
         every { Flux.fromIterable<Ranking>(any()) }.answers { fr }
-        every { fr.parallel() }.answers { pfr }
-        every { pfr.runOn(any()) }.answers { pfr }
-        every { pfr.filter(any()) }.answers {
-            assertThat(
-                firstArg<Predicate<Ranking>>().test(
-                    Ranking(
-                        "aMock",
-                        0.0
-                    )
-                )
-            ).isTrue
-            assertThat(
-                firstArg<Predicate<Ranking>>().test(
-                    Ranking(
-                        "Moc",
-                        0.0
-                    )
-                )
-            ).isFalse
-            pfr
-        }
-        every { r1.title } returns "b"
-        every { r2.title } returns "a"
-        every { pfr.sequential() }.answers { fr }
-        every { fr.sort(any<Comparator<Ranking>>()) } answers {
-            assertThat(
-                firstArg<Comparator<Ranking>>().compare(
-                    r1,
-                    r2
-                )
-            ).isEqualTo(1)
-            fr
-        }
+        every { catalog.titleIndex() } returns index
 
         assertThat(service.search(input)).isSameAs(fr)
 
         verify(exactly = 1) {
             Flux.fromIterable<Ranking>(any())
-            fr.parallel()
-            pfr.runOn(any())
-            fr.sort(any<Comparator<Ranking>>())
-            pfr.filter(any())
-            pfr.sequential()
+            catalog.titleIndex()
             service.search(input)
-            r1.title
-            r2.title
-            Schedulers.parallel()
-            Converters.titles2Rankings(any())
+            service["getCatalog"]()
+            Converters.titles2Rankings(listOf("aMock", "mocking"))
         }
 
-        confirmVerified(r1, r2, fr, pfr, pfs, service)
+        confirmVerified(fr, catalog, service)
     }
 
     @Test
     fun `searchResults returns the expected results`() {
+        unmockkStatic(Converters::class)
         val input = "mock"
-        val expected = mutableListOf("aMock2", "to kill mocking bird")
-        val set = expected.toMutableSet().apply { add("moc") }
-        every { vectorMap.keys } returns set
+        val expected = listOf("aMock2", "to kill mocking bird")
+        MovieCatalog.of(
+            (expected + "moc").associateWith { listOf(1.0, 2.0) }
+        ).injectInto(service)
         assertThat(
-            service.search(input).collectList().block()?.sort()
-        ).isEqualTo(
-            expected.sort()
-        )
+            service.search(input).collectList().block()?.map { it.title }
+        ).isEqualTo(expected)
     }
 
     @Test
     fun `getRecommendations uses correct implementation and returns expected results`() {
         val input = "mock"
         val count = 99
+        val id = 7
         val fr = mockk<Flux<Ranking>>()
-        val sequential = mockk<Flux<Ranking>>()
-        val vector = mockk<List<Double>>()
-        val entry = mockk<Ranking>()
-        val flux = mockk<ParallelFlux<Ranking>>()
-
-        mockkStatic(GetTopRecommendationsFlux::class)
-        every { vectorMap[input] } answers { vector }
-        every { service.computeRecommendationsParallelFlux(vector) } answers { flux }
-        every { entry.title } returnsMany listOf("mock1", "mock")
-        every { vectorMap.containsKey(any()) } answers { true }
-        every { flux.filter(any()) } answers {
-            assertThat(firstArg<Predicate<Ranking>>().test(entry)).isTrue
-            assertThat(firstArg<Predicate<Ranking>>().test(entry)).isFalse
-            flux
+        val vector = doubleArrayOf(1.0, 2.0, 3.0)
+
+        every { catalog.idOf(input) } answers { id }
+        every { catalog.vector(id) } answers { vector }
+        every { service.getTopRecommendationsParallelFlux(catalog, any(), any(), count) } answers {
+            assertThat(secondArg<IntPredicate>().test(id + 1)).isTrue
+            assertThat(secondArg<IntPredicate>().test(id)).isFalse
+            fr
         }
-        every { flux.sequential() } answers { sequential }
-        every { getTopRecommendationsHeap(sequential, count) } answers { fr }
 
         assertThat(service.getRecommendations(input, count)).isSameAs(fr)
 
         verify(exactly = 1) {
             service.getRecommendations(input, count)
-            vectorMap[input]
-            service.computeRecommendationsParallelFlux(vector)
-            flux.filter(any())
-            flux.sequential()
-            vectorMap.containsKey(any())
-            getTopRecommendationsHeap(sequential, count)
+            catalog.idOf(input)
+            catalog.vector(id)
+            service["getCatalog"]()
+            service["getPrecomputedRecommendations"](catalog, id, count)
+            service["getRecommendationCache"]()
+            service.coalesce(catalog, any(), intArrayOf(id), count, any())
+            service["getRequestCoalescer"]()
+            service.getSingleMovieRecommendations(catalog, id, count)
+            service["getMicroBatcher"]()
+            service.getTopRecommendationsParallelFlux(catalog, any(), any(), count)
         }
-        verify(exactly = 2) { entry.title }
 
-        confirmVerified(flux, vectorMap, sequential, service, fr, vector, entry)
+        confirmVerified(catalog, service, fr)
     }
 
     @Test
-    fun `getRecommendation(list input) uses correct implementation and returns expected results`() {
-        val input = spyk(mutableListOf("m1", "?", "m3"))
-        val o = mockk<Flux<Ranking>>()
-        val count = 99
-        val e = mockk<Entry>()
-        val fe = mockk<Flux<Entry>>()
-        val fs = mockk<Flux<String>>()
-        val pfe = mockk<ParallelFlux<Entry>>()
-        val pfr = mockk<ParallelFlux<Ranking>>()
-        val fr = mockk<Flux<Ranking>>()
-        val r = mockk<Ranking>()
-        val ld = mockk<List<Double>>()
-        val map = (1..10).map { "m$it" to listOf(1.0, 2.0, 3.0) }.toMap()
-            .toMutableMap().also {
-                it.injectInto(service)
-            }
-        mockkStatic(GetTopRecommendationsFlux::class)
-        mockkStatic(Flux::class)
+    fun `getRecommendations serves smaller requests from the recommendation cache`() {
+        val catalog = inject(service, linearMovies())
+        val cache = RecommendationCache(100, Duration.ofMinutes(1), 10)
+        cache.provideTo(service, "mRecommendationCache")
 
-        every { Flux.fromIterable<Entry>(any()) } answers {
-            assertThat(firstArg<Iterable<Entry>>()).isSameAs(map.entries)
-            fe
-        }
-        every { fe.parallel() }.answers { pfe }
-        every { pfe.runOn(any()) }.answers { pfe }
-
-        every { pfe.filter(any()) } answers {
-            val r = map.filter { firstArg<Predicate<Entry>>().test(it) }
-            assertThat(r.size).isEqualTo(map.size - 2)
-            val x = mapOf("?" to listOf(0.0)).entries.first()
-            assertThat(firstArg<Predicate<Entry>>().test(x)).isTrue
-            pfe
+        val top10 = service.getRecommendations("m10", 10).collectList().block()
+        val top3 = service.getRecommendations("m10", 3).collectList().block()
+
+        assertThat(top10?.map { it.title }).containsExactlyElementsOf(
+            RecallHarness.exactTopK(catalog, catalog.idOf("m10"), 10)
+                .map { catalog.title(it) }
+        )
+        assertThat(top3).containsExactlyElementsOf(top10?.take(3))
+        verify(exactly = 1) { service.getSingleMovieRecommendations(any(), any(), 10) }
+
+        // Larger requests bypass the cache.
+        service.getRecommendations("m10", 11).collectList().block()
+        verify(exactly = 1) { service.getSingleMovieRecommendations(any(), any(), 11) }
+    }
+
+    @Test
+    fun `getTopRecommendationsParallelFlux returns the top candidates in order`() {
+        val map = (1..3000).associate {
+            "m$it" to listOf(1.0, 0.0)
         }
-        every {e.key} answers { "x" }
-        every {e.value} answers { ld }
-        every { pfe.map<Ranking>(any()) } answers {
-            firstArg<Function<Entry, Ranking>>().apply(e)
-            pfr
+        val catalog = inject(service, map)
+        val scores = DoubleArray(3000) { ((it * 7919) % 3000).toDouble() }
+
+        val results = service
+            .getTopRecommendationsParallelFlux(catalog, { it % 2 == 0 }, { scores[it] }, 5)
+            .collectList()
+            .block()!!
+
+        val expected = (0 until 3000)
+            .filter { it % 2 == 0 }
+            .sortedByDescending { scores[it] }
+            .take(5)
+        assertThat(results.map { it.cosineSimilarity }).isEqualTo(expected.map { scores[it] })
+        assertThat(results.map { it.title }).isEqualTo(
+            expected.map { catalog.title(it) }
+        )
+        assertThat(
+            service.getTopRecommendationsParallelFlux(catalog, { true }, { 0.0 }, 0)
+                .collectList().block()
+        ).isEmpty()
+    }
+
+    @Test
+    fun `getRecommendations uses the HNSW index in hnsw mode`() {
+        val catalog = inject(service, linearMovies())
+        val index = HnswIndex(catalog, 4, 50, 50, 42)
+        index.provideTo(service, "mHnswIndex")
+        RecommenderMode.HNSW.injectInto(service)
+
+        val results = service.getRecommendations("m10", 5)
+            .collectList().block()
+
+        assertThat(results?.map { it.title })
+            .containsExactlyElementsOf(
+                RecallHarness.exactTopK(catalog, catalog.idOf("m10"), 5)
+                    .map { catalog.title(it) }
+            )
+        verify(exactly = 0) { service.getTopRecommendationsParallelFlux(any(), any(), any(), any()) }
+    }
+
+    @Test
+    fun `getRecommendations rebuilds the HNSW index after a catalog sync`() {
+        val startup = inject(service, linearMovies())
+        HnswIndex(startup, 4, 50, 50, 42).provideTo(service, "mHnswIndex")
+        RecommenderMode.HNSW.injectInto(service)
+        val store = MovieCatalogStore(startup) { _, _ -> fail("not polled") }
+        store.provideTo(service, "mCatalogStore")
+        store.apply(CatalogDelta("e", 0, 1, false, listOf(), listOf("m20")))
+        val synced = store.catalog
+
+        // Requests scan the exact vectors until the index of the
+        // synced catalog has been rebuilt in the background.
+        val scans = AtomicInteger()
+        every { service.getTopRecommendationsParallelFlux(any(), any(), any(), any()) } answers {
+            scans.incrementAndGet()
+            callOriginal()
         }
+        val deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos()
+        var results: List<Ranking>?
+        do {
+            val before = scans.get()
+            results = service.getRecommendations("m10", 5).collectList().block()
+            assertThat(results?.map { it.title }).containsExactlyElementsOf(
+                RecallHarness.exactTopK(synced, synced.idOf("m10"), 5)
+                    .map { synced.title(it) }
+            )
+        } while (scans.get() > before && System.nanoTime() < deadline)
 
-        every { vectorMap.containsKey(any()) } returnsMany listOf(
-            true,
-            false,
-            true
-        )
-        every { pfr.sequential() } answers { fr }
-        every { getTopRecommendationsSort(fr, count) } answers { o }
-        every {
-            CosineSimilarityUtils.sumOfCosines(any(), any(), any(), any())
-        } answers { -99.9 }
+        val settled = scans.get()
+        assertThat(settled).isGreaterThanOrEqualTo(1)
+        assertThat(service.getRecommendations("m10", 5).collectList().block())
+            .isEqualTo(results)
+        assertThat(scans.get()).isEqualTo(settled)
+    }
 
-        assertThat(service.getRecommendations(input, count)).isSameAs(o)
+    @Test
+    fun `getRecommendations re-ranks quantized candidates in quantized mode`() {
+        val catalog = inject(service, randomMovies(300, 8, 3))
+        val quantized = QuantizedCatalog(catalog, 4)
+        quantized.provideTo(service, "mQuantizedCatalog")
+        RecommenderMode.QUANTIZED.injectInto(service)
+
+        val results = service.getRecommendations("m10", 5)
+            .collectList().block()!!
+
+        val watched = catalog.idOf("m10")
+        assertThat(results.map { it.title })
+            .containsExactlyElementsOf(
+                quantized.searchById(watched, 5).map { catalog.title(it) }
+            )
+        results.forEach {
+            assertThat(it.cosineSimilarity).isCloseTo(
+                CosineSimilarityUtils.dot(catalog, catalog.idOf(it.title), catalog.vector(watched)),
+                within(1e-12)
+            )
+        }
+        verify(exactly = 0) { service.getTopRecommendationsParallelFlux(any(), any(), any(), any()) }
+    }
 
-        verify(exactly = 1) {
-            Schedulers.parallel()
-            e.key
-            e.value
-            Flux.fromIterable<Entry>(any())
-            fe.parallel()
-            pfe.runOn(any())
-            service.getRecommendations(any<List<String>>(), any())
-            pfe.filter(any())
-            pfe.map<Ranking>(any())
-            CosineSimilarityUtils.sumOfCosines(any(), any(), any(), any())
-            pfr.sequential()
-            getTopRecommendationsSort(fr, count)
+    @Test
+    fun `getBatchRecommendations matches separate multi-movie requests`() {
+        val random = Random(5)
+        inject(service, randomMovies(3_000, 8, 5))
+        val queries = (0 until 40).map { query ->
+            (0..query % 4).map { "m${random.nextInt(1, 3_001)}" }
+        } + listOf(listOf("unknown"), emptyList())
+
+        val results = service.getBatchRecommendations(queries, 7)
+            .collectList().block()!!
+            .sortedBy { it.query }
+
+        assertThat(results.map { it.query }).isEqualTo(queries.indices.toList())
+        results.forEach {
+            val expected = service.getRecommendations(queries[it.query], 7)
+                .collectList().block()!!
+            assertThat(it.rankings.map { r -> r.title })
+                .isEqualTo(expected.map { r -> r.title })
+            assertThat(it.rankings.map { r -> r.cosineSimilarity })
+                .isEqualTo(expected.map { r -> r.cosineSimilarity })
         }
-        confirmVerified(r, fe, fs, pfe, pfr, service)
+        assertThat(results.takeLast(2).map { it.rankings }).allMatch { it.isEmpty() }
     }
 
     @Test
-    fun `computeRecommendationFlux uses correct implementation and returns expected results`() {
-        mockkStatic(Flux::class)
-        mockkStatic(CosineSimilarityUtils::class)
-        val entry = mockk<Entry>()
-        val vector = mockk<List<Double>>()
-        val flux = mockk<Flux<Entry>>()
-        val parallelFlux = mockk<ParallelFlux<Entry>>()
-        val scheduler = mockk<Scheduler>()
-        val similarity = mockk<ParallelFlux<Ranking>>()
-        val sim = 9.2
+    fun `identical concurrent requests share one scan`() {
+        val catalog = inject(service, linearMovies())
+        val coalescer = RequestCoalescer()
+        coalescer.provideTo(service, "mRequestCoalescer")
+
+        // Hold the first scan in flight until both requests arrive.
+        val release = reactor.core.publisher.Sinks.empty<Void>()
+        every { service.getTopRecommendationsParallelFlux(any(), any(), any(), any()) } answers {
+            (callOriginal() as Flux<Ranking>).delaySubscription(release.asMono())
+        }
 
-        mockkStatic(Schedulers::class)
-        every { Schedulers.parallel() } returns sch
-        every {
-            CosineSimilarityUtils.cosineSimilarity(
-                any(), any(), any()
+        val first = service.getRecommendations(listOf("m3", "m7"), 4).collectList().toFuture()
+        val second = service.getRecommendations(listOf("m7", "m3"), 4).collectList().toFuture()
+        release.tryEmitEmpty()
+
+        assertThat(second.join().map { it.title }).isEqualTo(first.join().map { it.title })
+        assertThat(first.join()).hasSize(4)
+        assertThat(coalescer.coalescedCount).isEqualTo(1)
+        verify(exactly = 1) { service.getTopRecommendationsParallelFlux(catalog, any(), any(), 4) }
+    }
+
+    @Test
+    fun `getRecommendations scores through the micro-batcher when it's enabled`() {
+        val catalog = inject(service, linearMovies())
+        MicroBatcher(Duration.ofMillis(1), 8, 1, { it.run() }, null).use { batcher ->
+            batcher.provideTo(service, "mMicroBatcher")
+
+            val results = service.getRecommendations("m10", 5)
+                .collectList().block()
+
+            assertThat(results?.map { it.title })
+                .containsExactlyElementsOf(
+                    RecallHarness.exactTopK(catalog, catalog.idOf("m10"), 5)
+                        .map { catalog.title(it) }
+                )
+        }
+        verify(exactly = 0) { service.getTopRecommendationsParallelFlux(any(), any(), any(), any()) }
+    }
+
+    @Test
+    fun `getProgressiveRecommendations refines snapshots until the deadline`() {
+        val catalog = inject(service, randomMovies(20_000, 4, 9))
+        val watched = catalog.idOf("m10")
+
+        val snapshots = service.getProgressiveRecommendations("m10", 5, null)
+            .collectList().block()!!
+
+        assertThat(snapshots.map { it.scored }).isSorted
+        assertThat(snapshots.dropLast(1)).allMatch { it.partial }
+        with(snapshots.last()) {
+            assertThat(partial).isFalse
+            assertThat(scored).isEqualTo(total).isEqualTo(catalog.size() - 1)
+            assertThat(rankings.map { it.title }).containsExactlyElementsOf(
+                RecallHarness.exactTopK(catalog, watched, 5).map { catalog.title(it) }
             )
-        } answers { sim }
-        every { Flux.fromIterable<Entry>(any()) }.answers { flux }
-        every { flux.parallel() }.answers { parallelFlux }
-        every { parallelFlux.runOn(any()) }.answers { parallelFlux }
-        every { entry.value } answers { vector }
-        every { entry.key } answers { "mock" }
-        every { parallelFlux.map<Ranking>(any()) } answers {
-            firstArg<Function<Entry, Ranking>>().apply(entry)
-            similarity
         }
 
-        assertThat(service.computeRecommendationsParallelFlux(vector)).isSameAs(
-            similarity
+        // Use more blocks than a round scores, so the first round
+        // can't cover the whole catalog.
+        inject(service, randomMovies((Schedulers.DEFAULT_POOL_SIZE + 2) * 1024, 4, 9))
+        val expired = service.getProgressiveRecommendations("m10", 5, Duration.ZERO)
+            .collectList().block()!!
+        assertThat(expired).hasSize(1)
+        assertThat(expired[0].partial).isTrue
+        assertThat(expired[0].scored).isPositive.isLessThan(expired[0].total)
+        assertThat(expired[0].rankings).hasSize(5)
+
+        assertThat(service.getProgressiveRecommendations("?", 5, null)
+                       .collectList().block()).isEmpty()
+    }
+
+    @Test
+    fun `getShardRecommendations scores a scattered query vector`() {
+        val catalog = inject(service, randomMovies(3_000, 8, 19))
+        val vector = service.getMovieVector("m10")
+
+        val results = service
+            .getShardRecommendations(ShardQuery(vector.map { it * 3.0 }, "m10", 7))
+            .collectList().block()
+
+        assertThat(vector).hasSize(8)
+        assertThat(service.getMovieVector("?")).isEmpty()
+        assertThat(results?.map { it.title })
+            .containsExactlyElementsOf(
+                RecallHarness.exactTopK(catalog, catalog.idOf("m10"), 7)
+                    .map { catalog.title(it) }
+            )
+        assertThat(service.getShardedRecommendations("m10", 7).onErrorReturn(
+            ResponseStatusException::class.java, ShardedRecommendations()
+        ).block()?.rankings).isNull()
+    }
+
+    @Test
+    fun `getRecommendations reads the neighbor table once it's built`() {
+        val catalog = inject(service, linearMovies())
+        val table = NeighborTable(catalog, 10)
+        table.provideTo(service, "mNeighborTable")
+
+        // Requests fall through to the scan until the table is built
+        // and whenever they ask for more than k movies.
+        service.getRecommendations("m10", 5).collectList().block()
+        table.build()
+        service.getRecommendations("m10", 11).collectList().block()
+        verify(exactly = 2) { service.getTopRecommendationsParallelFlux(any(), any(), any(), any()) }
+
+        val results = service.getRecommendations("m10", 5)
+            .collectList().block()
+
+        assertThat(results).containsExactlyElementsOf(
+            table.getRecommendations(catalog.idOf("m10"), 5)
         )
+        verify(exactly = 2) { service.getTopRecommendationsParallelFlux(any(), any(), any(), any()) }
+    }
 
-        verify {
-            Schedulers.parallel()
-            service.computeRecommendationsParallelFlux(any())
-            CosineSimilarityUtils.cosineSimilarity(any(), any(), any())
-            Flux.fromIterable<Entry>(any())
-            flux.parallel()
-            entry.value
-            entry.key
-            parallelFlux.runOn(any())
-            parallelFlux.map<Ranking>(any())
+    @Test
+    fun `requests use the catalog of the catalog store`() {
+        val map = (1..20).associate {
+            "m$it" to listOf(it.toDouble(), 2.0, -3.0)
         }
+        val startup = inject(service, map)
+        val store = MovieCatalogStore(startup) { _, _ -> fail("not polled") }
+        store.provideTo(service, "mCatalogStore")
+
+        store.apply(
+            CatalogDelta(
+                "e", 0, 1, false,
+                listOf(Movie("m0", listOf(10.0, 2.0, -3.0))),
+                listOf("m20")
+            )
+        )
+        val synced = store.catalog
 
-        confirmVerified(flux, parallelFlux, scheduler, similarity, service)
+        assertThat(service.allMovies.collectList().block()).isNotNull
+        assertThat(
+            service.getRecommendations("m10", 25).collectList().block()?.map { it.title }
+        ).containsExactlyElementsOf(
+            RecallHarness.exactTopK(synced, synced.idOf("m10"), 25)
+                .map { synced.title(it) }
+        ).contains("m0").doesNotContain("m20")
+        assertThat(
+            service.getRecommendations(listOf("m0", "m20"), 3).collectList().block()
+        ).hasSize(3)
     }
 
-}
+    @Test
+    fun `getRecommendation(list input) uses correct implementation and returns expected results`() {
+        val input = mutableListOf("m1", "?", "m3")
+        val count = 99
+        val map = (1..10).associate {
+            "m$it" to listOf(it.toDouble(), 2.0, 3.0)
+        }
+        val catalog = inject(service, map)
+        val watched = listOf("m1", "m3")
+
+        every { service.getTopRecommendationsParallelFlux(catalog, any(), any(), count) } answers {
+            // Only the known watched movies are filtered out.
+            val filter = secondArg<IntPredicate>()
+            assertThat((0 until catalog.size()).filterNot { filter.test(it) })
+                .containsExactlyInAnyOrderElementsOf(watched.map { catalog.idOf(it) })
+            callOriginal()
+        }
+
+        val expected = map.entries
+            .filterNot { watched.contains(it.key) }
+            .sortedByDescending {
+                CosineSimilarityUtils.sumOfCosines(it.value, watched, map, false)
+            }
+            .map { it.key }
+
+        val results = service.getRecommendations(input, count)
+            .collectList().block()
 
-typealias Entry = Map.Entry<String, List<Double>>
+        assertThat(results?.map { it.title }).isEqualTo(expected)
+        assertThat(input).containsExactly("m1", "?", "m3")
+        verify(exactly = 1) { service.getTopRecommendationsParallelFlux(catalog, any(), any(), count) }
+        verify { Schedulers.parallel() }
+    }
+
+    @Test
+    fun `getRecommendation(list input) profile vector matches sum of cosines`() {
+        val map = randomMovies(200, 8, 17)
+        inject(service, map)
+        val input = map.keys.shuffled(Random(17)).take(20)
+
+        val profile = service.getRecommendations(input, 50)
+            .collectList().block()!!
+        service.setField("mProfileVector", false, Boolean::class.javaPrimitiveType!!)
+        val sum = service.getRecommendations(input, 50)
+            .collectList().block()!!
+
+        assertThat(profile.map { it.title }).doesNotContainAnyElementsOf(input)
+        assertThat(profile.map { it.title }).isEqualTo(sum.map { it.title })
+        profile.zip(sum).forEach { (p, s) ->
+            assertThat(p.cosineSimilarity).isCloseTo(s.cosineSimilarity, within(1e-9))
+        }
+    }
+
+    @Test
+    fun `getRecommendations scores every other movie on the parallel scheduler`() {
+        val map = (1..10).associate {
+            "m$it" to listOf(it.toDouble(), -2.0, 3.0)
+        }
+        MovieCatalog.of(map).injectInto(service)
+
+        val results = service
+            .getRecommendations("m4", map.size)
+            .collectList()
+            .block()!!
+
+        assertThat(results.map { it.title }).hasSameElementsAs(map.keys - "m4")
+        results.forEach {
+            assertThat(it.cosineSimilarity).isCloseTo(
+                CosineSimilarityUtils.cosineSimilarity(
+                    map[it.title]!!, map["m4"]!!, false
+                ),
+                within(1e-12)
+            )
+        }
+        verify { Schedulers.parallel() }
+    }
+}
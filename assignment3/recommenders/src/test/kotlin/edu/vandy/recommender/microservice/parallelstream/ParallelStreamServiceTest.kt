@@ -0,0 +1,119 @@
+package edu.vandy.recommender.microservice.parallelstream
+
+import edu.vandy.recommender.common.BaseService
+import edu.vandy.recommender.common.CosineSimilarityUtils
+import edu.vandy.recommender.common.RecallHarness
+import edu.vandy.recommender.common.TestCatalogs.inject
+import edu.vandy.recommender.common.TestCatalogs.randomMovies
+import edu.vandy.recommender.common.model.Ranking
+import edu.vandy.recommender.common.model.ShardQuery
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import test.admin.injectInto
+import java.time.Duration
+import java.util.concurrent.ForkJoinPool
+import kotlin.random.Random
+
+class ParallelStreamServiceTest : AssignmentTests() {
+    private val random = Random(11)
+
+    private val map = randomMovies(5_000, 6, 11)
+
+    private val service = ParallelStreamService()
+
+    private val catalog = inject(service, map)
+
+    @Test
+    fun `getRecommendations returns the exact top movies`() {
+        val watched = catalog.idOf("m42")
+
+        assertThat(service.getRecommendations("m42", 9).map { it.title })
+            .containsExactlyElementsOf(
+                RecallHarness.exactTopK(catalog, watched, 9).map { catalog.title(it) }
+            )
+        assertThat(service.getRecommendations("?", 9)).isEmpty()
+        assertThat(service.getRecommendations("m42", 0)).isEmpty()
+    }
+
+    @Test
+    fun `getRecommendations(list input) ranks by the sum of cosines`() {
+        val watched = listOf("m7", "m300", "m4999")
+
+        val expected = map.entries
+            .filterNot { watched.contains(it.key) }
+            .map { it.key to CosineSimilarityUtils.sumOfCosines(it.value, watched, map, false) }
+            .sortedByDescending { it.second }
+            .take(12)
+            .map { it.first }
+
+        assertThat(service.getRecommendations(watched + "?", 12).map { it.title })
+            .isEqualTo(expected)
+        assertThat(service.getRecommendations(listOf("?"), 12)).isEmpty()
+    }
+
+    @Test
+    fun `getBatchRecommendations matches separate multi-movie requests`() {
+        val queries = (0 until 30).map { query ->
+            (0..query % 3).map { "m${random.nextInt(1, 5_001)}" }
+        } + listOf(listOf("unknown"), emptyList())
+
+        val results = service.getBatchRecommendations(queries, 5)
+            .collectList().block()!!
+
+        assertThat(results.map { it.query }).isEqualTo(queries.indices.toList())
+        results.forEach {
+            assertThat(it.rankings.map { r -> r.title })
+                .isEqualTo(service.getRecommendations(queries[it.query], 5).map { r -> r.title })
+        }
+        assertThat(results.takeLast(2).map { it.rankings }).allMatch { it.isEmpty() }
+    }
+
+    @Test
+    fun `getProgressiveRecommendations refines snapshots until the deadline`() {
+        val snapshots = service.getProgressiveRecommendations("m10", 5, null)
+            .collectList().block()!!
+
+        assertThat(snapshots.map { it.scored }).isSorted
+        with(snapshots.last()) {
+            assertThat(partial).isFalse
+            assertThat(scored).isEqualTo(total).isEqualTo(catalog.size() - 1)
+            assertThat(rankings).isEqualTo(service.getRecommendations("m10", 5))
+        }
+
+        // Use more blocks than a round scores, so the first round
+        // can't cover the whole catalog.
+        inject(service, randomMovies((ForkJoinPool.getCommonPoolParallelism() + 2) * 1024, 4, 3))
+        val expired = service.getProgressiveRecommendations("m10", 5, Duration.ZERO)
+            .collectList().block()!!
+        assertThat(expired).hasSize(1)
+        assertThat(expired[0].partial).isTrue
+        assertThat(expired[0].scored).isPositive.isLessThan(expired[0].total)
+        assertThat(expired[0].rankings).hasSize(5)
+        assertThat(service.getProgressiveRecommendations("?", 5, null)
+                       .collectList().block()).isEmpty()
+    }
+
+    @Test
+    fun `progressiveRecommendations returns an empty snapshot for unknown movies`() {
+        val controller = ParallelStreamController()
+        (service as BaseService<List<Ranking>>).injectInto(controller, "service")
+
+        with(controller.progressiveRecommendations("?", 5, null, null).block()!!) {
+            assertThat(rankings).isEmpty()
+            assertThat(partial).isFalse
+        }
+        assertThat(controller.progressiveRecommendations("m10", 5, null, null).block()!!.rankings)
+            .isEqualTo(service.getRecommendations("m10", 5))
+    }
+
+    @Test
+    fun `getShardRecommendations scores a scattered query vector`() {
+        val vector = service.getMovieVector("m10")
+
+        assertThat(service
+                       .getShardRecommendations(ShardQuery(vector.map { it * 2.0 }, "m10", 4))
+                       .collectList().block())
+            .isEqualTo(service.getRecommendations("m10", 4))
+    }
+}
@@ -0,0 +1,51 @@
+package edu.vandy.recommender.microservice.structuredconcurrency
+
+import edu.vandy.recommender.common.RecallHarness
+import edu.vandy.recommender.common.TestCatalogs.inject
+import edu.vandy.recommender.common.TestCatalogs.randomMovies
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import test.admin.AssignmentTests
+import java.util.function.IntFunction
+
+class StructuredConcurrencyServiceTest : AssignmentTests() {
+    /**
+     * Exposes the chunk fan-out of the service.
+     */
+    private class ExposedService : StructuredConcurrencyService() {
+        fun <R> run(chunkCount: Int, chunk: IntFunction<R>): List<R> =
+            mapChunks(chunkCount, chunk)
+    }
+
+    private val service = ExposedService()
+
+    @Test
+    fun `mapChunks returns the chunk results in order`() {
+        assertThat(service.run(100) { it * it })
+            .isEqualTo((0 until 100).map { it * it })
+        assertThat(service.run(0) { it }).isEmpty()
+    }
+
+    @Test
+    fun `mapChunks fails with the first failure of a chunk`() {
+        val error = assertThrows<IllegalArgumentException> {
+            service.run(50) {
+                if (it == 17) throw IllegalArgumentException("chunk $it")
+                it
+            }
+        }
+        assertThat(error).hasMessage("chunk 17")
+    }
+
+    @Test
+    fun `getRecommendations returns the exact top movies`() {
+        val catalog = inject(service, randomMovies(4_000, 6, 13))
+
+        assertThat(service.getRecommendations("m5", 8).map { it.title })
+            .containsExactlyElementsOf(
+                RecallHarness.exactTopK(catalog, catalog.idOf("m5"), 8)
+                    .map { catalog.title(it) }
+            )
+    }
+}
@@ -0,0 +1,47 @@
+package edu.vandy.recommender.utils
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import test.admin.AssignmentTests
+import kotlin.random.Random
+
+class TopKSelectorTest : AssignmentTests() {
+    private fun TopKSelector.drainIds(): List<Int> =
+        mutableListOf<Int>().also { ids -> drain { _, id, _ -> ids.add(id) } }
+
+    @Test
+    fun `selector retains the top k pairs in descending order`() {
+        val random = Random(11)
+        val scores = DoubleArray(500) { random.nextDouble() }
+        val selector = TopKSelector(20)
+
+        scores.forEachIndexed { id, score -> selector.offer(id, score) }
+
+        assertThat(selector.size()).isEqualTo(20)
+        assertThat(selector.drainIds()).isEqualTo(
+            scores.indices.sortedByDescending { scores[it] }.take(20)
+        )
+        assertThat(selector.isEmpty).isTrue
+    }
+
+    @Test
+    fun `selector breaks ties by id and merges partial selectors`() {
+        val first = TopKSelector(3)
+        val second = TopKSelector(3)
+        listOf(5, 1, 3).forEach { first.offer(it, 1.0) }
+        listOf(4, 0, 2).forEach { second.offer(it, 1.0) }
+
+        assertThat(first.merge(second).drainIds()).containsExactly(0, 1, 2)
+        assertThat(second.size()).isEqualTo(3)
+    }
+
+    @Test
+    fun `selector handles zero and negative capacities`() {
+        val selector = TopKSelector(0)
+        assertThat(selector.offer(1, 1.0)).isFalse
+        assertThat(selector.drainIds()).isEmpty()
+        assertThatThrownBy { TopKSelector(-1) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+    }
+}